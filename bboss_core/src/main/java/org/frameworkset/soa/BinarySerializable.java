@@ -0,0 +1,868 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.soa;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.frameworkset.soa.SerialFactory.MagicClass;
+import org.frameworkset.util.ClassUtil;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.frameworkset.util.ClassUtil.PropertieDescription;
+
+import com.frameworkset.util.ValueObjectUtil;
+
+/**
+ * <p>Title: BinarySerializable.java</p>
+ * <p>Description: 对象的二进制序列化，与ObjectSerializable的xml序列化并存，支持的对象类型和xml序列化一致。
+ * 序列化和反序列化直接读写数据流，不拼接xml串，反序列化也不再为每次调用构建SOAApplicationContext。
+ *
+ * 每个类序列化的属性列表(布局)从ClassUtil.ClassInfo中解析一次后缓存起来；在一次序列化的数据流中，
+ * 类名和属性名称只在类第一次出现时写入，后续同类对象只写入类编号和属性值，反序列化时按照属性名称匹配本地的属性，
+ * 两端类的属性增减不影响其他属性的还原。
+ *
+ * 对象引用按照对象标识记录(与SerialStack的作用相同)，同一个对象再次出现时只写入引用编号，对象之间的循环引用
+ * 可以正确还原。SerialFactory中配置的序列化插件(Serial)和预处理插件(PreSerial)与xml序列化一样生效，
+ * 经过预处理插件还原的对象，在其内部数据中对它自身的循环引用还原为null。
+ * </p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class BinarySerializable {
+	private static final int MAGIC = 0xBB05;
+	private static final int VERSION = 1;
+	private static final Charset UTF_8 = Charset.forName(ObjectSerializable.CHARSET_UTF_8);
+
+	private static final int T_NULL = 0;
+	private static final int T_REF = 1;
+	private static final int T_STRING = 2;
+	private static final int T_INT = 3;
+	private static final int T_LONG = 4;
+	private static final int T_BOOLEAN = 5;
+	private static final int T_BYTE = 6;
+	private static final int T_SHORT = 7;
+	private static final int T_CHAR = 8;
+	private static final int T_FLOAT = 9;
+	private static final int T_DOUBLE = 10;
+	private static final int T_BIGINT = 11;
+	private static final int T_BIGDECIMAL = 12;
+	private static final int T_DATE = 13;
+	private static final int T_CLASS = 14;
+	private static final int T_ENUM = 15;
+	private static final int T_BYTES = 16;
+	private static final int T_FILE = 17;
+	private static final int T_ARRAY = 18;
+	private static final int T_LIST = 19;
+	private static final int T_SET = 20;
+	private static final int T_MAP = 21;
+	private static final int T_BEAN = 22;
+	private static final int T_THROWABLE = 23;
+	private static final int T_STACKTRACE = 24;
+	private static final int T_MAGIC_SERIAL = 25;
+	private static final int T_MAGIC_PRESERIAL = 26;
+
+	/**
+	 * 类的序列化布局缓存
+	 */
+	private static final Map<Class, ClassLayout> layouts = new ConcurrentHashMap<Class, ClassLayout>();
+
+	/**
+	 * 类的序列化布局：需要序列化的属性，异常类型不包含message和cause属性(通过构造函数还原)
+	 */
+	private static class ClassLayout {
+		private final ClassInfo classInfo;
+		private final PropertieDescription[] properties;
+		private final String[] names;
+
+		private ClassLayout(ClassInfo classInfo) {
+			this.classInfo = classInfo;
+			boolean throwable = Throwable.class.isAssignableFrom(classInfo.getClazz());
+			List<PropertieDescription> attributes = classInfo.getPropertyDescriptors();
+			List<PropertieDescription> properties = new ArrayList<PropertieDescription>();
+			for (int i = 0; attributes != null && i < attributes.size(); i++) {
+				PropertieDescription attribute = attributes.get(i);
+				if (!attribute.canseriable())
+					continue;
+				if (throwable && isexclusive(attribute.getName(), ObjectSerializable.throwable_filterattributes))
+					continue;
+				properties.add(attribute);
+			}
+			this.properties = properties.toArray(new PropertieDescription[properties.size()]);
+			this.names = new String[this.properties.length];
+			for (int i = 0; i < names.length; i++)
+				names[i] = this.properties[i].getName();
+		}
+
+		private PropertieDescription getProperty(String name) {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(name))
+					return properties[i];
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 反序列化时数据流中定义的类，properties按照数据流中属性的顺序对应本地的属性，本地不存在的属性为null
+	 */
+	private static class StreamClass {
+		private final Class type;
+		private final ClassLayout layout;
+		private final PropertieDescription[] properties;
+
+		private StreamClass(Class type, ClassLayout layout, PropertieDescription[] properties) {
+			this.type = type;
+			this.layout = layout;
+			this.properties = properties;
+		}
+	}
+
+	private static boolean isexclusive(String name, String[] filters) {
+		for (String filter : filters) {
+			if (name.equals(filter))
+				return true;
+		}
+		return false;
+	}
+
+	private static ClassLayout getClassLayout(ClassInfo classInfo) {
+		Class type = classInfo.getClazz();
+		ClassLayout layout = layouts.get(type);
+		if (layout == null) {
+			layout = new ClassLayout(classInfo);
+			layouts.put(type, layout);
+		}
+		return layout;
+	}
+
+	/**
+	 * 将对象序列化为字节数组
+	 * @param obj
+	 * @return
+	 */
+	public static byte[] toBinary(Object obj) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		toBinary(obj, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 将对象序列化到输出流，序列化完成后刷新但不关闭输出流
+	 * @param obj
+	 * @param out
+	 */
+	public static void toBinary(Object obj, OutputStream out) {
+		try {
+			DataOutputStream dataout = new DataOutputStream(new BufferedOutputStream(out));
+			dataout.writeShort(MAGIC);
+			dataout.writeByte(VERSION);
+			new BinaryWriter(dataout).writeObject(obj);
+			dataout.flush();
+		} catch (SerialException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerialException(e);
+		}
+	}
+
+	public static <T> T toBean(byte[] data, Class<T> beantype) {
+		if (data == null || data.length == 0)
+			return null;
+		return toBean(new ByteArrayInputStream(data), beantype);
+	}
+
+	/**
+	 * 从输入流反序列化对象，只读取一个对象的数据，不关闭输入流。
+	 * 输入流没有缓冲时(例如文件流、socket流)，由调用方包装BufferedInputStream
+	 * @param instream
+	 * @param beantype
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T toBean(InputStream instream, Class<T> beantype) {
+		if (instream == null)
+			return null;
+		try {
+			DataInputStream in = new DataInputStream(instream);
+			if (in.readUnsignedShort() != MAGIC)
+				throw new SerialException("Not a bboss binary serial stream.");
+			int version = in.readUnsignedByte();
+			if (version != VERSION)
+				throw new SerialException("Unsupported bboss binary serial version:" + version);
+			return (T) new BinaryReader(in).readObject();
+		} catch (SerialException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerialException(e);
+		}
+	}
+
+	private static class BinaryWriter {
+		private final DataOutputStream out;
+		private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+		private final Map<Class, Integer> classes = new HashMap<Class, Integer>();
+		private final Map<String, Integer> magicnumbers = new HashMap<String, Integer>();
+		private final SerialFactory serialFactory = SerialFactory.getSerialFactory();
+
+		private BinaryWriter(DataOutputStream out) {
+			this.out = out;
+		}
+
+		private void writeVarInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+
+		private void writeVarLong(long value) throws IOException {
+			while ((value & ~0x7FL) != 0) {
+				out.writeByte(((int) value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte((int) value);
+		}
+
+		private void writeString(String value) throws IOException {
+			byte[] bytes = value.getBytes(UTF_8);
+			writeVarInt(bytes.length);
+			out.write(bytes);
+		}
+
+		private void writeBytes(byte[] value) throws IOException {
+			writeVarInt(value.length);
+			out.write(value);
+		}
+
+		/**
+		 * 写入类编号，类第一次出现时写入类名，bean类同时写入属性名称
+		 */
+		private void writeClass(Class type, ClassLayout layout) throws IOException {
+			Integer id = classes.get(type);
+			if (id != null) {
+				writeVarInt(id.intValue() + 1);
+				return;
+			}
+			classes.put(type, classes.size());
+			writeVarInt(0);
+			writeString(type.getName());
+			if (layout != null) {
+				writeVarInt(layout.names.length);
+				for (String name : layout.names)
+					writeString(name);
+			}
+		}
+
+		private void writeMagicNumber(String magicnumber) throws IOException {
+			Integer id = magicnumbers.get(magicnumber);
+			if (id != null) {
+				writeVarInt(id.intValue() + 1);
+				return;
+			}
+			magicnumbers.put(magicnumber, magicnumbers.size());
+			writeVarInt(0);
+			writeString(magicnumber);
+		}
+
+		/**
+		 * 引用类型的对象已经写入过时写入引用编号并返回true，否则记录对象的引用编号
+		 */
+		private boolean writeReference(Object obj) throws IOException {
+			Integer id = references.get(obj);
+			if (id != null) {
+				out.writeByte(T_REF);
+				writeVarInt(id.intValue());
+				return true;
+			}
+			references.put(obj, references.size());
+			return false;
+		}
+
+		private void writeObject(Object obj) throws Exception {
+			if (obj == null) {
+				out.writeByte(T_NULL);
+				return;
+			}
+			Class vtype = obj.getClass();
+			if (vtype == String.class) {
+				out.writeByte(T_STRING);
+				writeString((String) obj);
+			} else if (vtype == Integer.class) {
+				out.writeByte(T_INT);
+				int value = ((Integer) obj).intValue();
+				writeVarInt((value << 1) ^ (value >> 31));
+			} else if (vtype == Long.class) {
+				out.writeByte(T_LONG);
+				long value = ((Long) obj).longValue();
+				writeVarLong((value << 1) ^ (value >> 63));
+			} else if (vtype == Boolean.class) {
+				out.writeByte(T_BOOLEAN);
+				out.writeBoolean(((Boolean) obj).booleanValue());
+			} else if (vtype == Byte.class) {
+				out.writeByte(T_BYTE);
+				out.writeByte(((Byte) obj).byteValue());
+			} else if (vtype == Short.class) {
+				out.writeByte(T_SHORT);
+				out.writeShort(((Short) obj).shortValue());
+			} else if (vtype == Character.class) {
+				out.writeByte(T_CHAR);
+				out.writeChar(((Character) obj).charValue());
+			} else if (vtype == Float.class) {
+				out.writeByte(T_FLOAT);
+				out.writeFloat(((Float) obj).floatValue());
+			} else if (vtype == Double.class) {
+				out.writeByte(T_DOUBLE);
+				out.writeDouble(((Double) obj).doubleValue());
+			} else if (vtype == BigInteger.class) {
+				out.writeByte(T_BIGINT);
+				writeBytes(((BigInteger) obj).toByteArray());
+			} else if (vtype == BigDecimal.class) {
+				out.writeByte(T_BIGDECIMAL);
+				BigDecimal value = (BigDecimal) obj;
+				writeBytes(value.unscaledValue().toByteArray());
+				writeVarInt(value.scale());
+			} else if (vtype == Class.class) {
+				out.writeByte(T_CLASS);
+				writeString(((Class) obj).getName());
+			} else if (obj instanceof Enum) {
+				out.writeByte(T_ENUM);
+				writeClass(((Enum) obj).getDeclaringClass(), null);
+				writeString(((Enum) obj).name());
+			} else if (!writeReference(obj)) {
+				writeReferenceObject(obj, vtype);
+			}
+		}
+
+		private void writeReferenceObject(Object obj, Class vtype) throws Exception {
+			if (vtype == byte[].class) {
+				out.writeByte(T_BYTES);
+				writeBytes((byte[]) obj);
+			} else if (java.util.Date.class.isAssignableFrom(vtype)) {
+				out.writeByte(T_DATE);
+				writeClass(vtype, null);
+				out.writeLong(((java.util.Date) obj).getTime());
+			} else if (File.class.isAssignableFrom(vtype)) {
+				out.writeByte(T_FILE);
+				writeFile((File) obj);
+			} else if (vtype.isArray()) {
+				writeArray(obj, vtype);
+			} else if (obj instanceof StackTraceElement) {
+				StackTraceElement element = (StackTraceElement) obj;
+				out.writeByte(T_STACKTRACE);
+				writeObject(element.getClassName());
+				writeObject(element.getMethodName());
+				writeObject(element.getFileName());
+				writeVarInt(element.getLineNumber() + 2);
+			} else {
+				ClassInfo classInfo = ClassUtil.getClassInfo(vtype);
+				MagicClass magicclass = serialFactory.getMagicClass(classInfo.getName());
+				if (magicclass != null && (magicclass.getPreserialObject() != null || magicclass.getSerailObject() != null)) {
+					writeMagicObject(obj, magicclass);
+				} else if (List.class.isAssignableFrom(vtype)) {
+					out.writeByte(T_LIST);
+					writeCollection((Collection) obj, classInfo.getClazz());
+				} else if (Set.class.isAssignableFrom(vtype)) {
+					out.writeByte(T_SET);
+					writeCollection((Collection) obj, classInfo.getClazz());
+				} else if (Map.class.isAssignableFrom(vtype)) {
+					out.writeByte(T_MAP);
+					writeMap((Map) obj, classInfo.getClazz());
+				} else if (Throwable.class.isAssignableFrom(vtype)) {
+					Throwable throwable = (Throwable) obj;
+					ClassLayout layout = getClassLayout(classInfo);
+					out.writeByte(T_THROWABLE);
+					writeClass(classInfo.getClazz(), layout);
+					writeObject(throwable.getMessage());
+					writeObject(throwable.getCause());
+					writeProperties(obj, layout);
+				} else {
+					ClassLayout layout = getClassLayout(classInfo);
+					out.writeByte(T_BEAN);
+					writeClass(classInfo.getClazz(), layout);
+					writeProperties(obj, layout);
+				}
+			}
+		}
+
+		/**
+		 * 序列化插件处理的对象：先执行预处理插件，再执行序列化插件，没有序列化插件时按照预处理后的对象序列化
+		 */
+		@SuppressWarnings("unchecked")
+		private void writeMagicObject(Object obj, MagicClass magicclass) throws Exception {
+			if (magicclass.getPreserialObject() != null)
+				obj = magicclass.getPreserialObject().prehandle(obj);
+			if (magicclass.getSerailObject() != null) {
+				out.writeByte(T_MAGIC_SERIAL);
+				writeMagicNumber(magicclass.getMagicnumber());
+				String value = magicclass.getSerailObject().serialize(obj);
+				if (value == null) {
+					out.writeBoolean(false);
+				} else {
+					out.writeBoolean(true);
+					writeString(value);
+				}
+			} else {
+				out.writeByte(T_MAGIC_PRESERIAL);
+				writeMagicNumber(magicclass.getMagicnumber());
+				writeObject(obj);
+			}
+		}
+
+		private void writeProperties(Object obj, ClassLayout layout) throws Exception {
+			PropertieDescription[] properties = layout.properties;
+			for (int i = 0; i < properties.length; i++)
+				writeObject(properties[i].getValue(obj));
+		}
+
+		private void writeCollection(Collection datas, Class type) throws Exception {
+			writeClass(type, null);
+			writeVarInt(datas.size());
+			Iterator itr = datas.iterator();
+			while (itr.hasNext())
+				writeObject(itr.next());
+		}
+
+		private void writeMap(Map datas, Class type) throws Exception {
+			writeClass(type, null);
+			writeVarInt(datas.size());
+			Iterator itr = datas.entrySet().iterator();
+			while (itr.hasNext()) {
+				Map.Entry entry = (Map.Entry) itr.next();
+				writeObject(entry.getKey());
+				writeObject(entry.getValue());
+			}
+		}
+
+		private void writeArray(Object obj, Class vtype) throws Exception {
+			out.writeByte(T_ARRAY);
+			writeClass(vtype, null);
+			int length = Array.getLength(obj);
+			writeVarInt(length);
+			Class ctype = vtype.getComponentType();
+			if (!ctype.isPrimitive()) {
+				Object[] values = (Object[]) obj;
+				for (int i = 0; i < length; i++)
+					writeObject(values[i]);
+			} else if (ctype == int.class) {
+				int[] values = (int[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeInt(values[i]);
+			} else if (ctype == long.class) {
+				long[] values = (long[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeLong(values[i]);
+			} else if (ctype == double.class) {
+				double[] values = (double[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeDouble(values[i]);
+			} else if (ctype == float.class) {
+				float[] values = (float[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeFloat(values[i]);
+			} else if (ctype == short.class) {
+				short[] values = (short[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeShort(values[i]);
+			} else if (ctype == char.class) {
+				char[] values = (char[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeChar(values[i]);
+			} else if (ctype == boolean.class) {
+				boolean[] values = (boolean[]) obj;
+				for (int i = 0; i < length; i++)
+					out.writeBoolean(values[i]);
+			} else {
+				out.write((byte[]) obj);
+			}
+		}
+
+		/**
+		 * 与xml序列化一致，文件类型序列化文件的内容
+		 */
+		private void writeFile(File file) throws IOException {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				byte[] v = new byte[1024];
+				int i = 0;
+				while ((i = in.read(v)) > 0)
+					content.write(v, 0, i);
+				writeBytes(content.toByteArray());
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	private static class BinaryReader {
+		private final DataInputStream in;
+		private final List<Object> references = new ArrayList<Object>();
+		private final List<StreamClass> classes = new ArrayList<StreamClass>();
+		private final List<MagicClass> magicclasses = new ArrayList<MagicClass>();
+		private final SerialFactory serialFactory = SerialFactory.getSerialFactory();
+
+		private BinaryReader(DataInputStream in) {
+			this.in = in;
+		}
+
+		private int readVarInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = in.readUnsignedByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new SerialException("Malformed varint.");
+		}
+
+		private long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 70; shift += 7) {
+				int b = in.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new SerialException("Malformed varlong.");
+		}
+
+		private byte[] readBytes() throws IOException {
+			byte[] value = new byte[readVarInt()];
+			in.readFully(value);
+			return value;
+		}
+
+		private String readString() throws IOException {
+			return new String(readBytes(), UTF_8);
+		}
+
+		private StreamClass readClass(boolean bean) throws Exception {
+			int id = readVarInt();
+			if (id > 0)
+				return classes.get(id - 1);
+			Class type = ValueObjectUtil.getClass(readString());
+			StreamClass streamClass = null;
+			if (bean) {
+				ClassLayout layout = getClassLayout(ClassUtil.getClassInfo(type));
+				PropertieDescription[] properties = new PropertieDescription[readVarInt()];
+				for (int i = 0; i < properties.length; i++)
+					properties[i] = layout.getProperty(readString());
+				streamClass = new StreamClass(type, layout, properties);
+			} else {
+				streamClass = new StreamClass(type, null, null);
+			}
+			classes.add(streamClass);
+			return streamClass;
+		}
+
+		private MagicClass readMagicClass() throws IOException {
+			int id = readVarInt();
+			if (id > 0)
+				return magicclasses.get(id - 1);
+			String magicnumber = readString();
+			MagicClass magicclass = serialFactory.getMagicClassByMagicNumber(magicnumber);
+			if (magicclass == null)
+				throw new SerialException("Serial plugin for magic number[" + magicnumber + "] not found.");
+			magicclasses.add(magicclass);
+			return magicclass;
+		}
+
+		/**
+		 * 为引用类型的对象预留引用编号，编号顺序与序列化时记录引用的顺序一致
+		 */
+		private int reserveReference() {
+			references.add(null);
+			return references.size() - 1;
+		}
+
+		private Object readObject() throws Exception {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case T_NULL:
+				return null;
+			case T_REF:
+				return references.get(readVarInt());
+			case T_STRING:
+				return readString();
+			case T_INT: {
+				int value = readVarInt();
+				return Integer.valueOf((value >>> 1) ^ -(value & 1));
+			}
+			case T_LONG: {
+				long value = readVarLong();
+				return Long.valueOf((value >>> 1) ^ -(value & 1));
+			}
+			case T_BOOLEAN:
+				return Boolean.valueOf(in.readBoolean());
+			case T_BYTE:
+				return Byte.valueOf(in.readByte());
+			case T_SHORT:
+				return Short.valueOf(in.readShort());
+			case T_CHAR:
+				return Character.valueOf(in.readChar());
+			case T_FLOAT:
+				return Float.valueOf(in.readFloat());
+			case T_DOUBLE:
+				return Double.valueOf(in.readDouble());
+			case T_BIGINT:
+				return new BigInteger(readBytes());
+			case T_BIGDECIMAL: {
+				BigInteger unscaled = new BigInteger(readBytes());
+				return new BigDecimal(unscaled, readVarInt());
+			}
+			case T_CLASS:
+				return ValueObjectUtil.getClass(readString());
+			case T_ENUM: {
+				Class type = readClass(false).type;
+				return Enum.valueOf(type, readString());
+			}
+			default:
+				return readReferenceObject(tag);
+			}
+		}
+
+		private Object readReferenceObject(int tag) throws Exception {
+			int reference = reserveReference();
+			Object value = null;
+			switch (tag) {
+			case T_BYTES:
+				value = readBytes();
+				break;
+			case T_DATE: {
+				Class type = readClass(false).type;
+				long time = in.readLong();
+				value = type == java.util.Date.class ? new java.util.Date(time)
+						: type.getConstructor(long.class).newInstance(time);
+				break;
+			}
+			case T_FILE:
+				value = readFile();
+				break;
+			case T_ARRAY:
+				return readArray(reference);
+			case T_STACKTRACE: {
+				String className = (String) readObject();
+				String methodName = (String) readObject();
+				String fileName = (String) readObject();
+				value = new StackTraceElement(className, methodName, fileName, readVarInt() - 2);
+				break;
+			}
+			case T_LIST:
+			case T_SET:
+				return readCollection(reference, tag);
+			case T_MAP:
+				return readMap(reference);
+			case T_BEAN: {
+				StreamClass streamClass = readClass(true);
+				value = newInstance(streamClass.layout.classInfo);
+				references.set(reference, value);
+				readProperties(value, streamClass);
+				return value;
+			}
+			case T_THROWABLE:
+				return readThrowable(reference);
+			case T_MAGIC_SERIAL: {
+				MagicClass magicclass = readMagicClass();
+				value = in.readBoolean() ? magicclass.getSerailObject().deserialize(readString()) : null;
+				value = posthandle(magicclass, value);
+				break;
+			}
+			case T_MAGIC_PRESERIAL: {
+				MagicClass magicclass = readMagicClass();
+				value = posthandle(magicclass, readObject());
+				break;
+			}
+			default:
+				throw new SerialException("Unknown bboss binary serial tag:" + tag);
+			}
+			references.set(reference, value);
+			return value;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Object posthandle(MagicClass magicclass, Object value) {
+			if (magicclass.getPreserialObject() != null)
+				return magicclass.getPreserialObject().posthandle(value);
+			return value;
+		}
+
+		private Object newInstance(ClassInfo classInfo) throws Exception {
+			return classInfo.getDefaultConstruction().newInstance();
+		}
+
+		private void readProperties(Object obj, StreamClass streamClass) throws Exception {
+			PropertieDescription[] properties = streamClass.properties;
+			for (int i = 0; i < properties.length; i++) {
+				Object value = readObject();
+				if (properties[i] != null && (value != null || !properties[i].getPropertyType().isPrimitive()))
+					properties[i].setValue(obj, value);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private Object readCollection(int reference, int tag) throws Exception {
+			StreamClass streamClass = readClass(false);
+			int size = readVarInt();
+			Collection datas = null;
+			try {
+				datas = (Collection) newInstance(ClassUtil.getClassInfo(streamClass.type));
+			} catch (Exception e) {
+				// Arrays$ArrayList、Collections$SingletonList等没有默认构造函数的集合类型，
+				// 以及Collections$EmptyList等构造函数不可访问的集合类型
+			}
+			if (datas == null)
+				datas = tag == T_LIST ? new ArrayList(size) : new LinkedHashSet(size);
+			references.set(reference, datas);
+			for (int i = 0; i < size; i++)
+				datas.add(readObject());
+			return datas;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Object readMap(int reference) throws Exception {
+			StreamClass streamClass = readClass(false);
+			int size = readVarInt();
+			Map datas = null;
+			try {
+				datas = (Map) newInstance(ClassUtil.getClassInfo(streamClass.type));
+			} catch (Exception e) {
+				// Collections$SingletonMap、Collections$EmptyMap等无法实例化的Map类型
+			}
+			if (datas == null)
+				datas = new LinkedHashMap(size);
+			references.set(reference, datas);
+			for (int i = 0; i < size; i++) {
+				Object key = readObject();
+				datas.put(key, readObject());
+			}
+			return datas;
+		}
+
+		private Object readArray(int reference) throws Exception {
+			Class ctype = readClass(false).type.getComponentType();
+			int length = readVarInt();
+			Object array = Array.newInstance(ctype, length);
+			references.set(reference, array);
+			if (!ctype.isPrimitive()) {
+				Object[] values = (Object[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = readObject();
+			} else if (ctype == int.class) {
+				int[] values = (int[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readInt();
+			} else if (ctype == long.class) {
+				long[] values = (long[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readLong();
+			} else if (ctype == double.class) {
+				double[] values = (double[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readDouble();
+			} else if (ctype == float.class) {
+				float[] values = (float[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readFloat();
+			} else if (ctype == short.class) {
+				short[] values = (short[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readShort();
+			} else if (ctype == char.class) {
+				char[] values = (char[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readChar();
+			} else if (ctype == boolean.class) {
+				boolean[] values = (boolean[]) array;
+				for (int i = 0; i < length; i++)
+					values[i] = in.readBoolean();
+			} else {
+				in.readFully((byte[]) array);
+			}
+			return array;
+		}
+
+		/**
+		 * 异常对象通过(message,cause)、(message)或者默认构造函数创建，再设置其他属性
+		 */
+		private Object readThrowable(int reference) throws Exception {
+			StreamClass streamClass = readClass(true);
+			String message = (String) readObject();
+			Throwable cause = (Throwable) readObject();
+			ClassInfo classInfo = streamClass.layout.classInfo;
+			Throwable throwable = null;
+			Constructor constructor = classInfo.getConstructor(String.class, Throwable.class);
+			if (constructor != null) {
+				throwable = (Throwable) constructor.newInstance(message, cause);
+			} else {
+				constructor = classInfo.getConstructor(String.class);
+				if (constructor != null)
+					throwable = (Throwable) constructor.newInstance(message);
+				else
+					throwable = (Throwable) newInstance(classInfo);
+				if (cause != null && throwable.getCause() == null)
+					throwable.initCause(cause);
+			}
+			references.set(reference, throwable);
+			readProperties(throwable, streamClass);
+			return throwable;
+		}
+
+		/**
+		 * 与xml序列化一致，文件内容还原到临时文件中
+		 */
+		private File readFile() throws IOException {
+			byte[] content = readBytes();
+			File f = File.createTempFile(java.util.UUID.randomUUID().toString(), ".soa");
+			FileOutputStream fileOut = new FileOutputStream(f);
+			try {
+				fileOut.write(content);
+				fileOut.flush();
+			} finally {
+				fileOut.close();
+			}
+			return f;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
@@ -77,6 +78,20 @@ public class ObjectSerializable {
 	 * 标识null值类型
 	 */
 	public static final String NULL_TYPE = "s:nvl";
+	
+	/**
+	 * toBean是否使用StaxDeserializer直接从xml流中反序列化对象，默认关闭，通过SOAApplicationContext反序列化。
+	 * StaxDeserializer尚未覆盖convertBeanObjectToXML输出的全部类型，确认应用中序列化的对象都能正确还原后再开启
+	 */
+	private static volatile boolean enableStaxDeserializer = false;
+	
+	public static boolean isEnableStaxDeserializer() {
+		return enableStaxDeserializer;
+	}
+
+	public static void setEnableStaxDeserializer(boolean enableStaxDeserializer) {
+		ObjectSerializable.enableStaxDeserializer = enableStaxDeserializer;
+	}
 
 	/**
 	 * @deprecated use method toObject(xml,Class)
@@ -263,6 +278,12 @@ public class ObjectSerializable {
 	}
 	public static <T> T toBean(String beanxml, Class<T> beantype,String charset)
 	{
+		if(enableStaxDeserializer)
+		{
+			if (beanxml == null || beanxml.equals(""))
+				return null;
+			return StaxDeserializer.toBean(new StringReader(beanxml), beantype);
+		}
 		SOAApplicationContext context = new SOAApplicationContext(beanxml,charset,false);
 		context.setSerial(true);
 		context.init();
@@ -273,6 +294,8 @@ public class ObjectSerializable {
 	public static <T> T toBean(String beanxml, Class<T> beantype) {
 		if (beanxml == null || beanxml.equals(""))
 			return null;
+		if(enableStaxDeserializer)
+			return StaxDeserializer.toBean(new StringReader(beanxml), beantype);
 		SOAApplicationContext context = new SOAApplicationContext(beanxml,false);
 		context.setSerial(true);
 		context.init();
@@ -285,6 +308,8 @@ public class ObjectSerializable {
 	public static <T> T toBean(InputStream instream, Class<T> beantype) {
 		if (instream == null)
 			return null;
+		if(enableStaxDeserializer)
+			return StaxDeserializer.toBean(instream, beantype);
 		SOAApplicationContext context = new SOAApplicationContext(instream,false);
 		context.setSerial(true);
 		context.init();
@@ -0,0 +1,521 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.soa;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.frameworkset.soa.SerialFactory.MagicClass;
+import org.frameworkset.spi.assemble.Pro;
+import org.frameworkset.spi.assemble.ServiceProviderManager;
+import org.frameworkset.util.ClassUtil;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.frameworkset.util.ClassUtil.PropertieDescription;
+import org.frameworkset.util.ClassUtils;
+
+import com.frameworkset.util.ValueObjectUtil;
+
+/**
+ * <p>Title: StaxDeserializer.java</p>
+ * <p>Description: ObjectSerializable序列化xml的StAX反序列化器，直接从xml流中读取&lt;p&gt;/&lt;l&gt;/&lt;s&gt;/&lt;m&gt;/&lt;a&gt;/&lt;construction&gt;元素，
+ * 按照ClassInfo缓存的属性信息把值绑定到目标对象上，不再为每次反序列化构建SOAApplicationContext和Pro组件树。
+ *
+ * 兼容convertBeanObjectToXML生成的所有数据：s:nvl空值、s:t/cs类型、v属性和CDATA值、f:属性、构造函数参数、
+ * mg魔法数字对应的序列化插件(Serial)和预处理插件(PreSerial)；refid="attr:..."引用按照序列化时的对象地址
+ * (与SerialStack中记录的地址一致)还原为同一个对象，基本类型值的转换与Pro一样通过ValueObjectUtil.typeCast完成。
+ * 数组在所有元素读取完毕后才创建，经过预处理插件还原的对象在其内部数据中的自身引用还原为预处理前的对象。
+ * </p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class StaxDeserializer {
+	public static final String DEFAULT_NAME = "_dflt_";
+	private static final XMLInputFactory inputFactory;
+	/**
+	 * 类型名称与类型的缓存
+	 */
+	private static final Map<String, Class> types = new ConcurrentHashMap<String, Class>();
+	static {
+		inputFactory = XMLInputFactory.newInstance();
+		// s:t、s:nvl、f:xxx等属性前缀没有声明命名空间，必须关闭命名空间解析
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private final XMLStreamReader reader;
+	/**
+	 * 对象地址与反序列化对象的对应关系，用来还原refid引用
+	 */
+	private final Map<String, Object> references = new HashMap<String, Object>();
+	private final SerialFactory serialFactory = SerialFactory.getSerialFactory();
+
+	private StaxDeserializer(XMLStreamReader reader) {
+		this.reader = reader;
+	}
+
+	public static <T> T toBean(InputStream instream, Class<T> beantype) {
+		if (instream == null)
+			return null;
+		try {
+			return toBean(inputFactory.createXMLStreamReader(instream), DEFAULT_NAME, beantype);
+		} catch (XMLStreamException e) {
+			throw new SerialException(e);
+		}
+	}
+
+	public static <T> T toBean(InputStream instream, String charset, Class<T> beantype) {
+		if (instream == null)
+			return null;
+		try {
+			return toBean(inputFactory.createXMLStreamReader(instream, charset), DEFAULT_NAME, beantype);
+		} catch (XMLStreamException e) {
+			throw new SerialException(e);
+		}
+	}
+
+	public static <T> T toBean(Reader in, Class<T> beantype) {
+		return toBean(in, DEFAULT_NAME, beantype);
+	}
+
+	/**
+	 * 从xml中反序列化名称为name的对象
+	 * @param in
+	 * @param name
+	 * @param beantype
+	 * @return
+	 */
+	public static <T> T toBean(Reader in, String name, Class<T> beantype) {
+		if (in == null)
+			return null;
+		try {
+			return toBean(inputFactory.createXMLStreamReader(in), name, beantype);
+		} catch (XMLStreamException e) {
+			throw new SerialException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T toBean(XMLStreamReader reader, String name, Class<T> beantype) {
+		try {
+			Object value = new StaxDeserializer(reader).readDocument(name);
+			//与SOAApplicationContext.getTBeanObject一致，将对象转换为调用方要求的类型
+			if (value != null && beantype != null && !ClassUtils.isAssignableValue(beantype, value))
+				value = ValueObjectUtil.typeCast(value, value.getClass(), beantype);
+			return (T) value;
+		} catch (SerialException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerialException(e);
+		} finally {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+			}
+		}
+	}
+
+	/**
+	 * 依次读取文档中的顶层&lt;p&gt;元素，返回名称为name的对象
+	 */
+	private Object readDocument(String name) throws Exception {
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("p")) {
+				String n = getName();
+				Object value = readProperty(n);
+				if (name.equals(n))
+					return value;
+			}
+		}
+		return null;
+	}
+
+	private String getName() {
+		String name = reader.getAttributeValue(null, "n");
+		if (name == null)
+			name = reader.getAttributeValue(null, "name");
+		return name;
+	}
+
+	private static String getAttributeName(XMLStreamReader reader, int i) {
+		String prefix = reader.getAttributePrefix(i);
+		String name = reader.getAttributeLocalName(i);
+		if (prefix == null || prefix.length() == 0)
+			return name;
+		return prefix + ":" + name;
+	}
+
+	/**
+	 * 读取当前&lt;p&gt;元素对应的对象，读取完毕后reader停留在&lt;/p&gt;上
+	 * @param address 对象在序列化数据中的地址，与序列化时记录在SerialStack中的地址一致
+	 */
+	private Object readProperty(String address) throws Exception {
+		String type = null;
+		String clazz = null;
+		String value = null;
+		String refid = null;
+		String mg = null;
+		boolean nvl = false;
+		List<String[]> fattributes = null;
+		for (int i = 0, length = reader.getAttributeCount(); i < length; i++) {
+			String name = getAttributeName(reader, i);
+			if (name.equals(Pro.soa_type_attribute))
+				type = reader.getAttributeValue(i);
+			else if (name.equals("cs") || name.equals("class"))
+				clazz = reader.getAttributeValue(i);
+			else if (name.equals("v") || name.equals("value"))
+				value = reader.getAttributeValue(i);
+			else if (name.equals(Pro.soa_type_null_attribute))
+				nvl = "true".equals(reader.getAttributeValue(i));
+			else if (name.equals("refid"))
+				refid = reader.getAttributeValue(i);
+			else if (name.equals("mg"))
+				mg = reader.getAttributeValue(i);
+			else if (name.startsWith("f:")) {
+				if (fattributes == null)
+					fattributes = new ArrayList<String[]>();
+				fattributes.add(new String[] { name.substring(2), reader.getAttributeValue(i) });
+			}
+		}
+		if (refid != null) {
+			skipElement();
+			return getReference(refid);
+		}
+		if (nvl) {
+			skipElement();
+			return null;
+		}
+		MagicClass magicclass = null;
+		if (mg != null) {
+			magicclass = serialFactory.getMagicClassByMagicNumber(mg);
+			if (magicclass == null)
+				throw new SerialException("magic=" + mg + "对应的MagicClass不存在,请检查org/frameworkset/soa/serialconf.xml文件中是否定义了magic='" + mg + "'的序列化插件.");
+			if (clazz == null)
+				clazz = magicclass.getMagicclass();
+			if (magicclass.getSerailObject() != null) {
+				Object result = magicclass.getSerailObject().deserialize(reader.getElementText());
+				result = posthandle(magicclass, result);
+				references.put(address, result);
+				return result;
+			}
+		}
+
+		ClassInfo beanInfo = null;
+		Object bean = null;
+		Object container = null;
+		List<Object> args = null;
+		StringBuilder text = null;
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String element = reader.getLocalName();
+				if (element.equals("p")) {
+					if (bean == null) {
+						beanInfo = getBeanInfo(clazz != null ? clazz : type, address);
+						bean = newInstance(beanInfo, args);
+						references.put(address, bean);
+					}
+					String name = getName();
+					setProperty(beanInfo, bean, name, readProperty(address + "->" + name));
+				} else if (element.equals("construction")) {
+					args = readConstruction(address);
+				} else if (element.equals("l") || element.equals("list")) {
+					container = readCollection(address, newList(clazz != null ? clazz : type));
+				} else if (element.equals("s") || element.equals("set")) {
+					container = readCollection(address, newCollection(clazz != null ? clazz : type, TreeSet.class));
+				} else if (element.equals("m") || element.equals("map")) {
+					container = readMap(address, newMap(clazz != null ? clazz : type));
+				} else if (element.equals("a") || element.equals("array")) {
+					container = readArray(address);
+				} else {
+					skipElement();
+				}
+			} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				if (text == null)
+					text = new StringBuilder();
+				text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+
+		Object result = null;
+		if (container != null) {
+			result = container;
+		} else if (bean != null || clazz != null) {
+			if (bean == null) {
+				beanInfo = getBeanInfo(clazz, address);
+				bean = newInstance(beanInfo, args);
+			}
+			for (int i = 0; fattributes != null && i < fattributes.size(); i++) {
+				String[] fattribute = fattributes.get(i);
+				setProperty(beanInfo, bean, fattribute[0], getFAttributeValue(fattribute[1]));
+			}
+			result = bean;
+		} else {
+			result = convertValue(value != null ? value : (text != null ? text.toString() : null), type);
+		}
+		if (magicclass != null)
+			result = posthandle(magicclass, result);
+		if (result != null)
+			references.put(address, result);
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object posthandle(MagicClass magicclass, Object value) {
+		if (magicclass.getPreserialObject() != null)
+			return magicclass.getPreserialObject().posthandle(value);
+		return value;
+	}
+
+	private Object getReference(String refid) {
+		if (refid.startsWith(ServiceProviderManager.ATTRIBUTE_PREFIX))
+			refid = refid.substring(ServiceProviderManager.ATTRIBUTE_PREFIX.length());
+		return references.get(refid);
+	}
+
+	private Object getFAttributeValue(String value) {
+		if (value.startsWith(ServiceProviderManager.ATTRIBUTE_PREFIX))
+			return getReference(value);
+		return value;
+	}
+
+	/**
+	 * 跳过当前元素及其子元素
+	 */
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	private List<Object> readConstruction(String address) throws Exception {
+		List<Object> args = new ArrayList<Object>();
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				args.add(readProperty(address + "{" + args.size() + "}"));
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				return args;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object readCollection(String address, Collection datas) throws Exception {
+		references.put(address, datas);
+		int i = 0;
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				datas.add(readProperty(address + "[" + i + "]"));
+				i++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return datas;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object readMap(String address, Map datas) throws Exception {
+		references.put(address, datas);
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String key = getName();
+				datas.put(key, readProperty(address + "[" + key + "]"));
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return datas;
+			}
+		}
+	}
+
+	private Object readArray(String address) throws Exception {
+		String componentType = reader.getAttributeValue(null, "cmt");
+		if (componentType == null)
+			componentType = reader.getAttributeValue(null, "componentType");
+		List<Object> values = new ArrayList<Object>();
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				values.add(readProperty(address + "[" + values.size() + "]"));
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				break;
+		}
+		Class ctype = null;
+		if (componentType == null || componentType.equals(Pro.COMPONENT_BEAN)) {
+			for (int i = 0; ctype == null && i < values.size(); i++) {
+				if (values.get(i) != null)
+					ctype = values.get(i).getClass();
+			}
+			if (ctype == null)
+				ctype = Object.class;
+		} else {
+			ctype = getType(componentType);
+		}
+		Object array = Array.newInstance(ctype, values.size());
+		for (int i = 0; i < values.size(); i++) {
+			Object value = values.get(i);
+			if (value == null && ctype.isPrimitive())
+				continue;
+			if (value != null && !ClassUtils.isAssignableValue(ctype, value))
+				value = ValueObjectUtil.typeCast(value, value.getClass(), ctype);
+			Array.set(array, i, value);
+		}
+		references.put(address, array);
+		return array;
+	}
+
+	private List newList(String type) throws Exception {
+		if (type == null)
+			return new ArrayList();
+		Class listtype = getType(type);
+		if (listtype == ArrayList.class)
+			return new ArrayList();
+		if (listtype.getName().equals("java.util.Collections$SynchronizedRandomAccessList")
+				|| listtype.getName().equals("java.util.Collections$SynchronizedList"))
+			return Collections.synchronizedList(new ArrayList());
+		return (List) newCollection(type, ArrayList.class);
+	}
+
+	private Collection newCollection(String type, Class defaultType) throws Exception {
+		Class ctype = type != null ? getType(type) : defaultType;
+		if (ctype.getName().equals("java.util.Collections$SynchronizedSet"))
+			return Collections.synchronizedSet(new java.util.HashSet());
+		return (Collection) ClassUtil.getClassInfo(ctype).getDefaultConstruction().newInstance();
+	}
+
+	private Map newMap(String type) throws Exception {
+		if (type == null)
+			return new HashMap();
+		Class maptype = getType(type);
+		if (maptype == HashMap.class)
+			return new HashMap();
+		if (maptype.getName().equals("java.util.Collections$SynchronizedMap"))
+			return Collections.synchronizedMap(new HashMap());
+		return (Map) ClassUtil.getClassInfo(maptype).getDefaultConstruction().newInstance();
+	}
+
+	/**
+	 * 创建bean对象，有构造函数参数时按照参数值匹配构造函数(异常对象的message和cause、StackTraceElement的属性)
+	 */
+	private Object newInstance(ClassInfo beanInfo, List<Object> args) throws Exception {
+		if (args == null || args.size() == 0)
+			return beanInfo.getDefaultConstruction().newInstance();
+		Constructor[] constructions = beanInfo.getConstructions();
+		for (int i = 0; constructions != null && i < constructions.length; i++) {
+			Class[] paramTypes = constructions[i].getParameterTypes();
+			if (paramTypes.length != args.size())
+				continue;
+			int j = 0;
+			for (; j < paramTypes.length; j++) {
+				Object arg = args.get(j);
+				if (arg == null ? paramTypes[j].isPrimitive() : !ClassUtils.isAssignableValue(paramTypes[j], arg))
+					break;
+			}
+			if (j == paramTypes.length)
+				return constructions[i].newInstance(args.toArray());
+		}
+		if (Throwable.class.isAssignableFrom(beanInfo.getClazz())) {
+			Object message = args.get(0);
+			Constructor constructor = beanInfo.getConstructor(String.class);
+			Throwable throwable = constructor != null ? (Throwable) constructor.newInstance(message)
+					: (Throwable) beanInfo.getDefaultConstruction().newInstance();
+			if (args.size() > 1 && args.get(1) instanceof Throwable)
+				throwable.initCause((Throwable) args.get(1));
+			return throwable;
+		}
+		throw new SerialException(beanInfo.getName() + " do not define a construction for params " + args + ".");
+	}
+
+	private void setProperty(ClassInfo beanInfo, Object bean, String name, Object value) throws Exception {
+		PropertieDescription propertyDescriptor = beanInfo.getPropertyDescriptor(name);
+		// 类中已经不存在的属性忽略，保持对原有序列化数据的兼容
+		if (propertyDescriptor == null)
+			return;
+		Class ptype = propertyDescriptor.getPropertyType();
+		if (value == null) {
+			if (ptype.isPrimitive())
+				return;
+		} else if (!ClassUtils.isAssignableValue(ptype, value)) {
+			value = ValueObjectUtil.typeCast(value, value.getClass(), ptype);
+		}
+		propertyDescriptor.setValue(bean, value);
+	}
+
+	/**
+	 * 基本类型值的转换，与Pro中s:t类型值的转换一致
+	 */
+	private Object convertValue(String value, String type) throws Exception {
+		if (type == null)
+			return value;
+		if (value == null)
+			return type.equals("String") ? "" : null;
+		if (type.equals("String"))
+			return value;
+		if (type.equals("byte[]"))
+			return ValueObjectUtil.byteArrayDecoder(value);
+		if (type.equals("File"))
+			return ValueObjectUtil.typeCast(ValueObjectUtil.byteArrayDecoder(value), byte[].class, File.class);
+		return ValueObjectUtil.typeCast(value, getType(type));
+	}
+
+	private ClassInfo getBeanInfo(String clazz, String address) throws ClassNotFoundException {
+		if (clazz == null)
+			throw new SerialException("Class of bean[" + address + "] is not specified.");
+		return ClassUtil.getClassInfo(getType(clazz));
+	}
+
+	private static Class getType(String type) throws ClassNotFoundException {
+		Class clazz = types.get(type);
+		if (clazz == null) {
+			if (type.equals("Object"))
+				clazz = Object.class;
+			else if (type.equals("Object[]"))
+				clazz = Object[].class;
+			else if (type.equals("File"))
+				clazz = File.class;
+			else
+				clazz = ValueObjectUtil.getClass(type);
+			types.put(type, clazz);
+		}
+		return clazz;
+	}
+}
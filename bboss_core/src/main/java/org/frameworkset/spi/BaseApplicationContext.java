@@ -37,6 +37,7 @@ import org.frameworkset.spi.assemble.BaseTXManager;
 import org.frameworkset.spi.assemble.BeanAccembleHelper;
 import org.frameworkset.spi.assemble.BeanInf;
 import org.frameworkset.spi.assemble.LinkConfigFile;
+import org.frameworkset.spi.assemble.ParallelBootstrap;
 import org.frameworkset.spi.assemble.Pro;
 import org.frameworkset.spi.assemble.ProArray;
 import org.frameworkset.spi.assemble.ProList;
@@ -45,6 +46,7 @@ import org.frameworkset.spi.assemble.ProSet;
 import org.frameworkset.spi.assemble.ProviderManagerInfo;
 import org.frameworkset.spi.assemble.RefID;
 import org.frameworkset.spi.assemble.ServiceProviderManager;
+import org.frameworkset.spi.asm.AsmProxyFactory;
 import org.frameworkset.spi.assemble.callback.AssembleCallback;
 import org.frameworkset.spi.cglib.BaseCGLibProxy;
 import org.frameworkset.spi.cglib.CGLibProxy;
@@ -497,6 +499,9 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 			initMessageSource();
 			this.applicationContextInited = true;
 		}
+		//预加载在初始化锁之外执行，避免组件初始化时访问容器的其他线程在initlock上等待
+		if(providerManager != null && ParallelBootstrap.isPreload())
+			providerManager.preInstantiateSingletons();
 		
 	}
 
@@ -519,6 +524,10 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 	
 	public static final String aop_proxy_type_cglib = "cglib";
 	public static final String aop_proxy_type_javaproxy = "javaproxy";
+	/**
+	 * 使用asm为组件类生成代理子类，组件类不满足生成条件时采用cglib代理
+	 */
+	public static final String aop_proxy_type_asm = "asm";
 	public static final String aop_proxy_type_default = aop_proxy_type_cglib;
 
 	protected static final String aop_proxy_type_key = "aop.proxy.type";
@@ -587,6 +596,8 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 				aop_proxy_type = pro.getProperty(aop_proxy_type_key, aop_proxy_type_cglib);
 				if (aop_proxy_type.equals(aop_proxy_type_cglib))
 					aop_proxy_type = aop_proxy_type_cglib;
+				else if (aop_proxy_type.equals(aop_proxy_type_asm))
+					aop_proxy_type = aop_proxy_type_asm;
 				else
 					aop_proxy_type = aop_proxy_type_default;
 			} catch (Exception e) {
@@ -877,7 +888,16 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 	 */
 	public static Object createInf(final CallContext callcontext,
 			final BaseTXManager providerManagerInfo, final Object delegate) {
-		if (BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_cglib) {
+		String proxyType = BaseApplicationContext.getAOPProxyType();
+		if (proxyType == BaseApplicationContext.aop_proxy_type_asm) {
+			providerManagerInfo.prepareMethodDispatch(delegate.getClass());
+			Object proxy = AsmProxyFactory.createProxy(delegate, callcontext, providerManagerInfo);
+			if (proxy != null)
+				return proxy;
+			proxyType = BaseApplicationContext.aop_proxy_type_cglib;
+		}
+		if (proxyType != BaseApplicationContext.aop_proxy_type_cglib) {
+			providerManagerInfo.prepareMethodDispatch(ProxyFactory.getAllInterfaces(delegate.getClass()));
 			return ProxyFactory.createProxy(new InvocationHandler(delegate) {
 				public Object invoke(Object proxy, Method method, Object[] args)
 						throws Throwable {
@@ -886,6 +906,7 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 				}
 			});
 		} else {
+			providerManagerInfo.prepareMethodDispatch(delegate.getClass());
 			CGLibProxy proxy = new CGLibProxy(delegate, callcontext, 
 					providerManagerInfo);
 			return CGLibUtil.getBeanInstance(delegate.getClass(), delegate
@@ -903,7 +924,16 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 	 */
 	public static Object createInf(
 			final Pro providerManagerInfo, final Object delegate) {
-		if (BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_cglib) {
+		String proxyType = BaseApplicationContext.getAOPProxyType();
+		if (proxyType == BaseApplicationContext.aop_proxy_type_asm) {
+			providerManagerInfo.prepareMethodDispatch(delegate.getClass());
+			Object proxy = AsmProxyFactory.createProxy(delegate, null, providerManagerInfo);
+			if (proxy != null)
+				return proxy;
+			proxyType = BaseApplicationContext.aop_proxy_type_cglib;
+		}
+		if (proxyType != BaseApplicationContext.aop_proxy_type_cglib) {
+			providerManagerInfo.prepareMethodDispatch(ProxyFactory.getAllInterfaces(delegate.getClass()));
 			return ProxyFactory.createProxy(new InvocationHandler(delegate) {
 				public Object invoke(Object proxy, Method method, Object[] args)
 						throws Throwable {
@@ -912,6 +942,7 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 				}
 			});
 		} else {
+			providerManagerInfo.prepareMethodDispatch(delegate.getClass());
 			BaseCGLibProxy proxy = new SimpleCGLibProxy(delegate,
 					providerManagerInfo);
 			return CGLibUtil.getBeanInstance(delegate.getClass(), delegate
@@ -969,7 +1000,8 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 	protected static Object createSynInf(final CallContext callcontext,
 			final ProviderManagerInfo providerManagerInfo,
 			final Object delegate) {
-		if (BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_cglib) {
+		if (BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_cglib
+				&& BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_asm) {
 			return ProxyFactory.createProxy(new InvocationHandler(delegate) {
 				public Object invoke(Object proxy, Method method, Object[] args)
 						throws Throwable {
@@ -993,7 +1025,8 @@ public abstract class  BaseApplicationContext extends DefaultResourceLoader impl
 	protected static Object createSynTXInf(final CallContext callcontext,
 			final ProviderManagerInfo providerManagerInfo,
 			final Object delegate) {
-		if (BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_cglib) {
+		if (BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_cglib
+				&& BaseApplicationContext.getAOPProxyType() != BaseApplicationContext.aop_proxy_type_asm) {
 			return ProxyFactory.createProxy(new InvocationHandler(delegate) {
 				public Object invoke(Object proxy, Method method, Object[] args)
 						throws Throwable {
@@ -0,0 +1,451 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.asm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.frameworkset.spi.CallContext;
+import org.frameworkset.spi.assemble.BaseTXManager;
+import org.frameworkset.spi.assemble.MethodDispatch;
+import org.frameworkset.spi.assemble.Pro;
+import org.frameworkset.spi.cglib.CGLibUtil;
+import org.frameworkset.spi.interceptor.AfterThrowable;
+import org.frameworkset.util.asm.ASMClassLoader;
+
+import bboss.org.objectweb.asm.ClassWriter;
+import bboss.org.objectweb.asm.Label;
+import bboss.org.objectweb.asm.MethodVisitor;
+import bboss.org.objectweb.asm.Opcodes;
+import bboss.org.objectweb.asm.Type;
+
+import com.frameworkset.proxy.Interceptor;
+
+/**
+ * <p>Title: AsmProxyFactory.java</p>
+ * <p>Description: aop.proxy.type=asm时使用的代理工厂，用asm为组件类生成代理子类，每个组件类只生成一次。
+ * 代理方法通过BaseTXManager.getMethodDispatch取得方法的调用描述符，没有异步、事务和拦截器配置的方法
+ * 直接调用目标对象的方法，不使用反射，也不创建参数数组；需要拦截的方法创建参数数组后执行拦截器链和事务处理流程，
+ * 目标方法通过生成的invokeTarget按照方法索引直接调用；异步方法仍然交给CGLibUtil处理。
+ * 拦截器和事务配置在调用时从调用描述符中获取，同一个组件类的不同配置共享一个代理类。
+ * 组件类必须是public的非final类，有public或者protected的无参构造方法，代理方法的参数和返回值类型必须是public类型，
+ * 并且组件类的classloader能够加载到bboss，不满足条件时createProxy返回null，由调用方采用cglib代理</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class AsmProxyFactory implements Opcodes {
+	private static final Logger log = Logger.getLogger(AsmProxyFactory.class);
+	private static final String PROXY_SUFFIX = "$$BBossAsmProxy";
+	private static final String METHODS_FIELD = "$methods";
+	private static final String DELEGATE_FIELD = "$delegate";
+	private static final String MANAGER_FIELD = "$manager";
+	private static final String CALLCONTEXT_FIELD = "$callcontext";
+	private static final String MANAGER_DESC = Type.getDescriptor(BaseTXManager.class);
+	private static final String CALLCONTEXT_DESC = Type.getDescriptor(CallContext.class);
+	private static final String DISPATCH_TYPE = Type.getInternalName(MethodDispatch.class);
+	private static final String INVOKER_TYPE = Type.getInternalName(AsmProxyInvoker.class);
+	private static final String INVOKE_TARGET_DESC = "(Ljava/lang/Object;I[Ljava/lang/Object;)Ljava/lang/Object;";
+	private static final String INVOKE_DESC = "(L" + INVOKER_TYPE + ";Ljava/lang/Object;ILjava/lang/reflect/Method;[Ljava/lang/Object;L"
+			+ DISPATCH_TYPE + ";" + CALLCONTEXT_DESC + MANAGER_DESC + ")Ljava/lang/Object;";
+	/**
+	 * 不能生成代理类的组件类型
+	 */
+	private static final Object UNSUPPORTED = new Object();
+	/**
+	 * 组件类型对应的代理类构造方法
+	 */
+	private static final ConcurrentHashMap<Class, Object> proxyConstructors = new ConcurrentHashMap<Class, Object>();
+
+	/**
+	 * 创建组件的asm代理
+	 * @param delegate 目标组件
+	 * @param callcontext
+	 * @param providerManagerInfo 组件的aop配置
+	 * @return 组件类不能生成代理类时返回null
+	 */
+	public static Object createProxy(Object delegate, CallContext callcontext, BaseTXManager providerManagerInfo) {
+		Class beanType = delegate.getClass();
+		Object constructor = proxyConstructors.get(beanType);
+		if (constructor == null) {
+			constructor = generate(beanType);
+			Object old = proxyConstructors.putIfAbsent(beanType, constructor);
+			if (old != null)
+				constructor = old;
+		}
+		if (constructor == UNSUPPORTED)
+			return null;
+		try {
+			return ((Constructor) constructor).newInstance(delegate, providerManagerInfo, callcontext);
+		} catch (Throwable e) {
+			log.warn("Create asm proxy for [" + beanType.getName() + "] failed,use cglib proxy instead:", e);
+			return null;
+		}
+	}
+
+	/**
+	 * 需要拦截的代理方法的调用流程，与CGLibUtil中的处理流程一致，目标方法通过生成的invokeTarget直接调用
+	 */
+	public static Object invoke(AsmProxyInvoker invoker, Object delegate, int index, Method method, Object[] args,
+			MethodDispatch dispatch, CallContext callcontext, BaseTXManager providerManagerInfo) throws Throwable {
+		if (dispatch.getAsyncMethod() != null) {
+			if (callcontext == null && providerManagerInfo instanceof Pro)
+				return CGLibUtil.invoke(delegate, method, args, null, (Pro) providerManagerInfo);
+			return CGLibUtil.invoke(delegate, method, args, null, callcontext, providerManagerInfo);
+		}
+		Interceptor txinterceptor = dispatch.newTransactionInterceptor();
+		Interceptor interceptor = dispatch.getChainInterceptor();
+		if (interceptor != null)
+			interceptor.before(method, args);
+		try {
+			Object obj = null;
+			if (txinterceptor == null)
+				obj = invoker.invokeTarget(delegate, index, args);
+			else
+				obj = txinvoke(invoker, delegate, index, method, args, txinterceptor);
+			if (interceptor != null) {
+				try {
+					interceptor.after(method, args);
+				} catch (Throwable e) {
+					throw new AfterThrowable(e);
+				}
+			}
+			return obj;
+		} catch (AfterThrowable e) {
+			throw e.getCause();
+		} catch (Throwable t) {
+			if (interceptor != null)
+				interceptor.afterThrowing(method, args, t);
+			throw t;
+		} finally {
+			if (interceptor != null)
+				interceptor.afterFinally(method, args);
+		}
+	}
+
+	private static Object txinvoke(AsmProxyInvoker invoker, Object delegate, int index, Method method, Object[] args,
+			Interceptor tx) throws Throwable {
+		try {
+			tx.before(method, args);
+			Object obj = invoker.invokeTarget(delegate, index, args);
+			tx.after(method, args);
+			return obj;
+		} catch (Throwable e) {
+			tx.afterThrowing(method, args, e);
+			throw e;
+		} finally {
+			tx.afterFinally(method, args);
+		}
+	}
+
+	private static Object generate(Class beanType) {
+		List<Method> methods = getProxyMethods(beanType);
+		if (methods == null) {
+			if (log.isDebugEnabled())
+				log.debug("Class [" + beanType.getName() + "] can not be proxied by asm,use cglib proxy instead.");
+			return UNSUPPORTED;
+		}
+		String className = beanType.getName() + PROXY_SUFFIX;
+		try {
+			byte[] code = buildClass(className.replace('.', '/'), beanType, methods);
+			Class proxyClass = new ASMClassLoader(beanType.getClassLoader()).defineClass(className, code);
+			proxyClass.getField(METHODS_FIELD).set(null, methods.toArray(new Method[methods.size()]));
+			return proxyClass.getConstructor(beanType, BaseTXManager.class, CallContext.class);
+		} catch (Throwable e) {
+			log.warn("Generate asm proxy for [" + beanType.getName() + "] failed,use cglib proxy instead:", e);
+			return UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * 获取需要代理的方法，组件类不能生成代理类时返回null
+	 */
+	private static List<Method> getProxyMethods(Class beanType) {
+		int mode = beanType.getModifiers();
+		if (!Modifier.isPublic(mode) || Modifier.isFinal(mode) || Modifier.isAbstract(mode)
+				|| beanType.isInterface() || beanType.isArray() || beanType.isPrimitive())
+			return null;
+		ClassLoader loader = beanType.getClassLoader();
+		if (loader == null)
+			return null;
+		try {
+			// 代理类引用bboss的类，组件类的classloader必须加载到同一个bboss
+			if (Class.forName(AsmProxyFactory.class.getName(), false, loader) != AsmProxyFactory.class)
+				return null;
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		try {
+			int ctormode = beanType.getDeclaredConstructor().getModifiers();
+			if (!Modifier.isPublic(ctormode) && !Modifier.isProtected(ctormode))
+				return null;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		Method[] all = beanType.getMethods();
+		Set<String> finals = new HashSet<String>();
+		for (int i = 0; i < all.length; i++) {
+			if (Modifier.isFinal(all[i].getModifiers()))
+				finals.add(all[i].getName() + Type.getMethodDescriptor(all[i]));
+		}
+		List<Method> methods = new ArrayList<Method>(all.length);
+		Set<String> signatures = new HashSet<String>();
+		for (int i = 0; i < all.length; i++) {
+			Method method = all[i];
+			String signature = method.getName() + Type.getMethodDescriptor(method);
+			if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()
+					|| finals.contains(signature) || !signatures.add(signature))
+				continue;
+			if (method.getName().equals("invokeTarget") && Type.getMethodDescriptor(method).equals(INVOKE_TARGET_DESC))
+				return null;
+			if (!isPublicType(method.getReturnType()))
+				return null;
+			Class[] params = method.getParameterTypes();
+			for (int j = 0; j < params.length; j++) {
+				if (!isPublicType(params[j]))
+					return null;
+			}
+			methods.add(method);
+		}
+		return methods;
+	}
+
+	private static boolean isPublicType(Class type) {
+		while (type.isArray())
+			type = type.getComponentType();
+		return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+	}
+
+	private static byte[] buildClass(String className, Class beanType, List<Method> methods) {
+		String owner = Type.getInternalName(beanType);
+		String ownerDesc = Type.getDescriptor(beanType);
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, className, null, owner, new String[] { INVOKER_TYPE });
+		cw.visitField(ACC_PUBLIC + ACC_STATIC, METHODS_FIELD, "[Ljava/lang/reflect/Method;", null, null).visitEnd();
+		cw.visitField(ACC_PRIVATE + ACC_FINAL, DELEGATE_FIELD, ownerDesc, null, null).visitEnd();
+		cw.visitField(ACC_PRIVATE + ACC_FINAL, MANAGER_FIELD, MANAGER_DESC, null, null).visitEnd();
+		cw.visitField(ACC_PRIVATE + ACC_FINAL, CALLCONTEXT_FIELD, CALLCONTEXT_DESC, null, null).visitEnd();
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + ownerDesc + MANAGER_DESC + CALLCONTEXT_DESC + ")V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", "()V");
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitFieldInsn(PUTFIELD, className, DELEGATE_FIELD, ownerDesc);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitFieldInsn(PUTFIELD, className, MANAGER_FIELD, MANAGER_DESC);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 3);
+		mv.visitFieldInsn(PUTFIELD, className, CALLCONTEXT_FIELD, CALLCONTEXT_DESC);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for (int i = 0; i < methods.size(); i++)
+			buildProxyMethod(cw, className, owner, ownerDesc, methods.get(i), i);
+		buildInvokeTarget(cw, owner, beanType, methods);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * 生成代理方法：
+	 * MethodDispatch dispatch = $manager.getMethodDispatch($methods[index]);
+	 * if(dispatch.isDirect()) return $delegate.method(args);
+	 * return AsmProxyFactory.invoke(this, $delegate, index, $methods[index], new Object[]{args}, dispatch, $callcontext, $manager);
+	 */
+	private static void buildProxyMethod(ClassWriter cw, String className, String owner, String ownerDesc, Method method, int index) {
+		String desc = Type.getMethodDescriptor(method);
+		Class[] params = method.getParameterTypes();
+		Class[] exceptionTypes = method.getExceptionTypes();
+		String[] exceptions = new String[exceptionTypes.length];
+		for (int i = 0; i < exceptionTypes.length; i++)
+			exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + (method.isVarArgs() ? ACC_VARARGS : 0), method.getName(), desc, null, exceptions);
+		mv.visitCode();
+		int dispatchSlot = 1;
+		for (int i = 0; i < params.length; i++)
+			dispatchSlot += Type.getType(params[i]).getSize();
+
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, className, MANAGER_FIELD, MANAGER_DESC);
+		loadMethod(mv, className, index);
+		mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(BaseTXManager.class), "getMethodDispatch",
+				"(Ljava/lang/reflect/Method;)L" + DISPATCH_TYPE + ";");
+		mv.visitVarInsn(ASTORE, dispatchSlot);
+		mv.visitVarInsn(ALOAD, dispatchSlot);
+		mv.visitMethodInsn(INVOKEVIRTUAL, DISPATCH_TYPE, "isDirect", "()Z");
+		Label intercepted = new Label();
+		mv.visitJumpInsn(IFEQ, intercepted);
+
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, className, DELEGATE_FIELD, ownerDesc);
+		int slot = 1;
+		for (int i = 0; i < params.length; i++) {
+			Type type = Type.getType(params[i]);
+			mv.visitVarInsn(type.getOpcode(ILOAD), slot);
+			slot += type.getSize();
+		}
+		mv.visitMethodInsn(INVOKEVIRTUAL, owner, method.getName(), desc);
+		Class returnType = method.getReturnType();
+		if (returnType == void.class)
+			mv.visitInsn(RETURN);
+		else
+			mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+
+		mv.visitLabel(intercepted);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, className, DELEGATE_FIELD, ownerDesc);
+		pushInt(mv, index);
+		loadMethod(mv, className, index);
+		pushInt(mv, params.length);
+		mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+		slot = 1;
+		for (int i = 0; i < params.length; i++) {
+			Type type = Type.getType(params[i]);
+			mv.visitInsn(DUP);
+			pushInt(mv, i);
+			mv.visitVarInsn(type.getOpcode(ILOAD), slot);
+			box(mv, params[i]);
+			mv.visitInsn(AASTORE);
+			slot += type.getSize();
+		}
+		mv.visitVarInsn(ALOAD, dispatchSlot);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, className, CALLCONTEXT_FIELD, CALLCONTEXT_DESC);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, className, MANAGER_FIELD, MANAGER_DESC);
+		mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(AsmProxyFactory.class), "invoke", INVOKE_DESC);
+		if (returnType == void.class) {
+			mv.visitInsn(POP);
+			mv.visitInsn(RETURN);
+		} else {
+			unbox(mv, returnType);
+			mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * 生成invokeTarget方法，按照方法索引tableswitch到目标方法的invokevirtual调用
+	 */
+	private static void buildInvokeTarget(ClassWriter cw, String owner, Class beanType, List<Method> methods) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invokeTarget", INVOKE_TARGET_DESC, null, new String[] { "java/lang/Throwable" });
+		mv.visitCode();
+		Label dflt = new Label();
+		if (methods.size() > 0) {
+			Label[] labels = new Label[methods.size()];
+			for (int i = 0; i < labels.length; i++)
+				labels[i] = new Label();
+			mv.visitVarInsn(ILOAD, 2);
+			mv.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+			for (int i = 0; i < labels.length; i++) {
+				Method method = methods.get(i);
+				mv.visitLabel(labels[i]);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, owner);
+				Class[] params = method.getParameterTypes();
+				for (int j = 0; j < params.length; j++) {
+					mv.visitVarInsn(ALOAD, 3);
+					pushInt(mv, j);
+					mv.visitInsn(AALOAD);
+					unbox(mv, params[j]);
+				}
+				mv.visitMethodInsn(INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+				if (method.getReturnType() == void.class)
+					mv.visitInsn(ACONST_NULL);
+				else
+					box(mv, method.getReturnType());
+				mv.visitInsn(ARETURN);
+			}
+		}
+		mv.visitLabel(dflt);
+		mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn("Method index is not proxied for " + beanType.getName());
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V");
+		mv.visitInsn(ATHROW);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void loadMethod(MethodVisitor mv, String className, int index) {
+		mv.visitFieldInsn(GETSTATIC, className, METHODS_FIELD, "[Ljava/lang/reflect/Method;");
+		pushInt(mv, index);
+		mv.visitInsn(AALOAD);
+	}
+
+	private static void pushInt(MethodVisitor mv, int value) {
+		if (value <= 5)
+			mv.visitInsn(ICONST_0 + value);
+		else if (value <= Byte.MAX_VALUE)
+			mv.visitIntInsn(BIPUSH, value);
+		else if (value <= Short.MAX_VALUE)
+			mv.visitIntInsn(SIPUSH, value);
+		else
+			mv.visitLdcInsn(Integer.valueOf(value));
+	}
+
+	private static Class wrapper(Class type) {
+		if (type == int.class)
+			return Integer.class;
+		if (type == long.class)
+			return Long.class;
+		if (type == boolean.class)
+			return Boolean.class;
+		if (type == double.class)
+			return Double.class;
+		if (type == float.class)
+			return Float.class;
+		if (type == short.class)
+			return Short.class;
+		if (type == byte.class)
+			return Byte.class;
+		return Character.class;
+	}
+
+	private static void box(MethodVisitor mv, Class type) {
+		if (!type.isPrimitive())
+			return;
+		Class wrapper = wrapper(type);
+		mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+				"(" + Type.getDescriptor(type) + ")" + Type.getDescriptor(wrapper));
+	}
+
+	private static void unbox(MethodVisitor mv, Class type) {
+		if (!type.isPrimitive()) {
+			if (type != Object.class)
+				mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+			return;
+		}
+		Class wrapper = wrapper(type);
+		String wrapperName = Type.getInternalName(wrapper);
+		mv.visitTypeInsn(CHECKCAST, wrapperName);
+		mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getName() + "Value", "()" + Type.getDescriptor(type));
+	}
+}
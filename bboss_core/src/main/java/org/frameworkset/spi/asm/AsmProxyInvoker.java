@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.asm;
+
+/**
+ * <p>Title: AsmProxyInvoker.java</p>
+ * <p>Description: asm生成的代理类实现的目标方法调用接口，按照代理方法索引直接调用目标对象的方法，
+ * 供拦截器和事务处理流程调用目标方法，不使用Method.invoke</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public interface AsmProxyInvoker {
+	/**
+	 * 调用目标对象的方法
+	 * @param delegate 目标对象
+	 * @param index 代理方法索引
+	 * @param args 方法参数
+	 * @return 方法返回值，基本类型返回值被装箱，void方法返回null
+	 * @throws Throwable 目标方法抛出的异常，不做包装
+	 */
+	public Object invokeTarget(Object delegate, int index, Object[] args) throws Throwable;
+}
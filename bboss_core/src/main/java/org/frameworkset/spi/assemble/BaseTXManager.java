@@ -3,8 +3,11 @@ package org.frameworkset.spi.assemble;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.frameworkset.spi.ProviderInterceptor;
@@ -459,6 +462,122 @@ public abstract class BaseTXManager implements java.io.Serializable,UNmodify
         }
     }
     
+    static InterceptorFacttory getInterceptorFacttory()
+    {
+        return interceptorFacttory;
+    }
+
+    /**
+     * 调用描述符相关的字段都是运行时缓存，不参与序列化，第一次获取调用描述符时创建，反序列化后重新解析
+     */
+    private static final Object dispatchInitLock = new Object();
+    private transient volatile Object dispatchLock;
+    /**
+     * 按Method对象标识索引的调用描述符表，只读，新增方法时复制后整体替换，调用时不需要加锁
+     */
+    private transient volatile Map<Method,MethodDispatch> dispatchTable;
+    /**
+     * 按Method相等性索引的调用描述符，同一个方法的不同Method实例共享一个描述符
+     */
+    private transient Map<Method,MethodDispatch> dispatchIndex;
+    private transient Set<Class> dispatchPreparedTypes;
+
+    /**
+     * 获取调用描述符的解析锁，同时创建解析用到的索引，只在组件第一次解析调用描述符时通过全局锁创建一次
+     */
+    private Object getDispatchLock()
+    {
+        Object lock = dispatchLock;
+        if(lock != null)
+            return lock;
+        synchronized(dispatchInitLock)
+        {
+            if(dispatchLock == null)
+            {
+                dispatchIndex = new HashMap<Method,MethodDispatch>();
+                dispatchPreparedTypes = new HashSet<Class>();
+                dispatchLock = new Object();
+            }
+            return dispatchLock;
+        }
+    }
+
+    /**
+     * 获取方法的调用描述符，代理每次调用只需要一次按对象标识的查找，
+     * 方法对应的Method实例第一次调用时解析(或者复用代理创建时解析的结果)
+     * @param method
+     * @return
+     */
+    public MethodDispatch getMethodDispatch(Method method)
+    {
+        Map<Method,MethodDispatch> table = dispatchTable;
+        MethodDispatch dispatch = null;
+        if(table != null)
+        {
+            dispatch = table.get(method);
+            if(dispatch != null)
+                return dispatch;
+        }
+        synchronized(getDispatchLock())
+        {
+            table = dispatchTable;
+            if(table != null)
+            {
+                dispatch = table.get(method);
+                if(dispatch != null)
+                    return dispatch;
+            }
+            dispatch = dispatchIndex.get(method);
+            if(dispatch == null)
+            {
+                dispatch = buildMethodDispatch(method);
+                dispatchIndex.put(method, dispatch);
+            }
+            table = table == null ? new IdentityHashMap<Method,MethodDispatch>() : new IdentityHashMap<Method,MethodDispatch>(table);
+            table.put(method, dispatch);
+            dispatchTable = table;
+            return dispatch;
+        }
+    }
+
+    /**
+     * 创建代理时预先解析代理类型所有公共方法的调用描述符
+     * @param types 代理的类或者接口
+     */
+    public void prepareMethodDispatch(Class... types)
+    {
+        if(types == null)
+            return;
+        for(int i = 0; i < types.length; i ++)
+        {
+            synchronized(getDispatchLock())
+            {
+                if(!dispatchPreparedTypes.add(types[i]))
+                    continue;
+            }
+            Method[] methods = types[i].getMethods();
+            for(int j = 0; j < methods.length; j ++)
+            {
+                if(methods[j].getDeclaringClass() == Object.class)
+                    continue;
+                getMethodDispatch(methods[j]);
+            }
+        }
+    }
+
+    private MethodDispatch buildMethodDispatch(Method method)
+    {
+        String muuid = SynchronizedMethod.buildMethodUUID(method);
+        SynchronizedMethod asyncMethod = isAsyncMethod(method,muuid);
+        SynchronizedMethod txMethod = null;
+        if(enableTransaction())
+            txMethod = txs.isTransactionMethod(method,muuid);
+        Interceptor chainInterceptor = null;
+        if(enableInterceptor())
+            chainInterceptor = getChainInterceptor(method,muuid);
+        return new MethodDispatch(asyncMethod,txMethod,chainInterceptor);
+    }
+
     public void unmodify()
     {
         interceptors = java.util.Collections.unmodifiableList(interceptors);
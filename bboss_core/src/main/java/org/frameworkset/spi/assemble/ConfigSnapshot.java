@@ -0,0 +1,437 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.assemble;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.log4j.Logger;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>Title: ConfigSnapshot.java</p>
+ * <p>Description: 组件配置文件的解析快照，记录配置文件解析时产生的sax事件，以二进制格式保存在缓存目录中，
+ * 以配置文件内容的sha-256摘要作为快照有效性的依据，配置文件未修改时直接回放快照中的事件，不再进行xml解析。
+ * 快照回放的结果直接成为容器中的组件定义，因此快照只从当前用户独占的缓存目录中加载，
+ * 并且快照的文件名和内容都使用缓存目录中的应用密钥进行hmac-sha256签名，签名不一致的快照一律丢弃。
+ * 组件定义Pro中持有容器上下文等运行时对象，无法直接序列化，因此快照保存的是解析事件而不是Pro对象本身，
+ * 回放时仍然由ProviderParser构建Pro定义，保证与xml解析的结果完全一致</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ConfigSnapshot {
+	private static Logger log = Logger.getLogger(ConfigSnapshot.class);
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int MAGIC = 0xBB05C0F1;
+	private static final short VERSION = 2;
+	private static final String SUFFIX = ".snapshot";
+	private static final String KEY_FILE = "snapshot.key";
+	private static final String HMAC = "HmacSHA256";
+	private static final int KEY_LENGTH = 32;
+	private static final int MAC_LENGTH = 32;
+	private static final int DIGEST_LENGTH = 32;
+	private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+	private static final byte E_START = 1;
+	private static final byte E_END = 2;
+	private static final byte E_CHARS = 3;
+	private static final byte E_EOF = 0;
+
+	/**
+	 * 快照中的sax事件数据
+	 */
+	private final byte[] events;
+
+	private ConfigSnapshot(byte[] events) {
+		this.events = events;
+	}
+
+	/**
+	 * 快照缓存目录，持有签名快照的应用密钥，由openCacheDir方法在校验目录安全性之后创建
+	 */
+	public static class CacheDir {
+		private final Path dir;
+		private final SecretKeySpec key;
+
+		private CacheDir(Path dir, byte[] key) {
+			this.dir = dir;
+			this.key = new SecretKeySpec(key, HMAC);
+		}
+
+		public File getDir() {
+			return dir.toFile();
+		}
+
+		private byte[] mac(byte[] data, int length) throws IOException {
+			try {
+				Mac mac = Mac.getInstance(HMAC);
+				mac.init(key);
+				mac.update(data, 0, length);
+				return mac.doFinal();
+			} catch (GeneralSecurityException e) {
+				throw new IOException(e);
+			}
+		}
+
+		/**
+		 * 获取配置文件url对应的快照文件，文件名为url的hmac签名，其他应用无法推算出快照文件名
+		 */
+		private Path getSnapshotFile(String url) throws IOException {
+			byte[] name = url.getBytes(UTF_8);
+			return dir.resolve(toHex(mac(name, name.length), 16) + SUFFIX);
+		}
+	}
+
+	/**
+	 * 打开快照缓存目录并加载应用密钥，目录不存在时创建。
+	 * 缓存目录和密钥文件必须属于当前用户并且不能是符号链接，posix文件系统中还不允许同组和其他用户写入，
+	 * 密钥文件也不允许同组和其他用户读取，不满足条件时返回null，调用方不启用快照。
+	 * 密钥在第一次使用缓存目录时随机生成，保存在目录的snapshot.key文件中，是该缓存目录对应应用的标识
+	 * @param cacheDir
+	 * @return
+	 */
+	public static CacheDir openCacheDir(File cacheDir) {
+		try {
+			Path dir = cacheDir.toPath().toAbsolutePath();
+			if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+				try {
+					if (POSIX)
+						Files.createDirectories(dir, ownerOnly("rwx------"));
+					else
+						Files.createDirectories(dir);
+				} catch (FileAlreadyExistsException e) {
+				}
+			}
+			checkOwner(dir, true);
+			Path keyFile = dir.resolve(KEY_FILE);
+			if (!Files.exists(keyFile, LinkOption.NOFOLLOW_LINKS)) {
+				byte[] key = new byte[KEY_LENGTH];
+				new SecureRandom().nextBytes(key);
+				Path temp = createTempFile(dir, KEY_FILE);
+				try {
+					Files.write(temp, key);
+					Files.move(temp, keyFile, StandardCopyOption.ATOMIC_MOVE);
+				} catch (FileAlreadyExistsException e) {
+					//并发启动的其他应用已经生成了密钥
+				} finally {
+					Files.deleteIfExists(temp);
+				}
+			}
+			checkOwner(keyFile, false);
+			byte[] key = Files.readAllBytes(keyFile);
+			if (key.length != KEY_LENGTH)
+				throw new IOException("密钥文件[" + keyFile + "]长度错误.");
+			return new CacheDir(dir, key);
+		} catch (IOException e) {
+			log.warn("组件配置快照目录[" + cacheDir + "]不可用，不启用配置文件解析快照：" + e.getMessage());
+			return null;
+		}
+	}
+
+	private static FileAttribute<Set<PosixFilePermission>> ownerOnly(String permissions) {
+		return PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions));
+	}
+
+	private static Path createTempFile(Path dir, String prefix) throws IOException {
+		//posix文件系统中Files.createTempFile创建的文件只有所有者可以读写
+		return Files.createTempFile(dir, prefix, ".tmp");
+	}
+
+	/**
+	 * 校验缓存目录或者缓存文件属于当前用户，并且不能被其他用户修改
+	 * @param path
+	 * @param directory 是否为目录，文件可能保存密钥或者签名的快照，还不允许其他用户读取
+	 * @throws IOException
+	 */
+	private static void checkOwner(Path path, boolean directory) throws IOException {
+		if (Files.isSymbolicLink(path))
+			throw new IOException("[" + path + "]是符号链接.");
+		if (directory ? !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) : !Files.isRegularFile(path,
+				LinkOption.NOFOLLOW_LINKS))
+			throw new IOException("[" + path + "]不是" + (directory ? "目录." : "文件."));
+		UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+		UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+				.lookupPrincipalByName(System.getProperty("user.name"));
+		if (!owner.equals(user))
+			throw new IOException("[" + path + "]的所有者" + owner.getName() + "不是当前用户" + user.getName() + ".");
+		if (!POSIX)
+			return;
+		Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+		if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+				|| permissions.contains(PosixFilePermission.OTHERS_WRITE))
+			throw new IOException("[" + path + "]允许其他用户写入.");
+		if (!directory
+				&& (permissions.contains(PosixFilePermission.GROUP_READ) || permissions
+						.contains(PosixFilePermission.OTHERS_READ)))
+			throw new IOException("[" + path + "]允许其他用户读取.");
+	}
+
+	/**
+	 * 计算配置文件内容的sha-256摘要
+	 * @param content
+	 * @return
+	 */
+	public static byte[] digest(byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes, int length) {
+		StringBuilder builder = new StringBuilder(length * 2);
+		for (int i = 0; i < length; i++) {
+			builder.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(bytes[i] & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 加载配置文件url对应的快照。快照不存在、不属于当前用户、签名不一致、格式版本不一致或者配置文件内容摘要不一致时返回null
+	 * @param cacheDir
+	 * @param url
+	 * @param content 配置文件当前内容
+	 * @return
+	 */
+	public static ConfigSnapshot load(CacheDir cacheDir, String url, byte[] content) {
+		Path file = null;
+		try {
+			file = cacheDir.getSnapshotFile(url);
+			if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS))
+				return null;
+			checkOwner(file, false);
+			byte[] data = Files.readAllBytes(file);
+			int length = data.length - MAC_LENGTH;
+			if (length <= 0)
+				return null;
+			byte[] mac = new byte[MAC_LENGTH];
+			System.arraycopy(data, length, mac, 0, MAC_LENGTH);
+			if (!MessageDigest.isEqual(mac, cacheDir.mac(data, length))) {
+				log.warn("配置文件[" + url + "]的解析快照[" + file + "]签名不一致，重新解析配置文件.");
+				return null;
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+			if (in.readInt() != MAGIC || in.readShort() != VERSION)
+				return null;
+			if (!url.equals(in.readUTF()))
+				return null;
+			byte[] digest = new byte[DIGEST_LENGTH];
+			if (in.readInt() != content.length)
+				return null;
+			in.readFully(digest);
+			if (!MessageDigest.isEqual(digest, digest(content)))
+				return null;
+			byte[] events = new byte[in.readInt()];
+			in.readFully(events);
+			return new ConfigSnapshot(events);
+		} catch (IOException e) {
+			log.warn("读取配置文件[" + url + "]的解析快照[" + file + "]失败，重新解析配置文件：" + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 保存配置文件url的快照，先写入只有当前用户可以读写的临时文件再改名，避免并发启动的多个应用读取到不完整的快照
+	 * @param cacheDir
+	 * @param url
+	 * @param content 生成快照时配置文件的内容
+	 */
+	public void store(CacheDir cacheDir, String url, byte[] content) {
+		Path file = null;
+		Path temp = null;
+		try {
+			file = cacheDir.getSnapshotFile(url);
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(events.length + 256);
+			DataOutputStream out = new DataOutputStream(buffer);
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeUTF(url);
+			out.writeInt(content.length);
+			out.write(digest(content));
+			out.writeInt(events.length);
+			out.write(events);
+			out.flush();
+			byte[] data = buffer.toByteArray();
+			temp = createTempFile(cacheDir.dir, file.getFileName().toString());
+			Files.write(temp, data);
+			Files.write(temp, cacheDir.mac(data, data.length), StandardOpenOption.APPEND);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("保存配置文件[" + url + "]的解析快照[" + file + "]失败：" + e.getMessage());
+		} finally {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 将快照中的sax事件回放给handler
+	 * @param handler
+	 * @throws SAXException
+	 */
+	public void replay(DefaultHandler handler) throws SAXException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(events));
+		try {
+			handler.startDocument();
+			while (true) {
+				byte event = in.readByte();
+				switch (event) {
+				case E_START:
+					String name = readString(in);
+					int length = in.readInt();
+					AttributesImpl attributes = new AttributesImpl();
+					for (int i = 0; i < length; i++) {
+						String qName = readString(in);
+						attributes.addAttribute("", "", qName, "CDATA", readString(in));
+					}
+					handler.startElement("", "", name, attributes);
+					break;
+				case E_END:
+					handler.endElement("", "", readString(in));
+					break;
+				case E_CHARS:
+					char[] ch = readString(in).toCharArray();
+					handler.characters(ch, 0, ch.length);
+					break;
+				case E_EOF:
+					handler.endDocument();
+					return;
+				default:
+					throw new SAXException("组件配置快照格式错误：未知的事件类型" + event);
+				}
+			}
+		} catch (IOException e) {
+			throw new SAXException("组件配置快照格式错误", e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * 将sax事件转发给实际的handler，同时记录事件生成快照
+	 */
+	public static class Recorder extends DefaultHandler {
+		private final DefaultHandler handler;
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(buffer);
+
+		public Recorder(DefaultHandler handler) {
+			this.handler = handler;
+		}
+
+		public void startDocument() throws SAXException {
+			handler.startDocument();
+		}
+
+		public void endDocument() throws SAXException {
+			handler.endDocument();
+		}
+
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+				throws SAXException {
+			try {
+				out.writeByte(E_START);
+				writeString(out, qName);
+				int length = attributes.getLength();
+				out.writeInt(length);
+				for (int i = 0; i < length; i++) {
+					writeString(out, attributes.getQName(i));
+					writeString(out, attributes.getValue(i));
+				}
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+			handler.startElement(uri, localName, qName, attributes);
+		}
+
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			try {
+				out.writeByte(E_END);
+				writeString(out, qName);
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+			handler.endElement(uri, localName, qName);
+		}
+
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			try {
+				out.writeByte(E_CHARS);
+				writeString(out, new String(ch, start, length));
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+			handler.characters(ch, start, length);
+		}
+
+		/**
+		 * 文档解析完成后获取记录的快照
+		 * @return
+		 */
+		public ConfigSnapshot getSnapshot() {
+			try {
+				out.writeByte(E_EOF);
+				out.flush();
+			} catch (IOException e) {
+			}
+			return new ConfigSnapshot(buffer.toByteArray());
+		}
+	}
+}
@@ -86,6 +86,13 @@ public class LinkConfigFile {
 	public LinkConfigFile getParent() {
 		return parent;
 	}
+
+	/**
+	 * 并行加载配置文件时，按照深度优先的导入顺序修正导入该配置文件的配置文件
+	 */
+	void setParent(LinkConfigFile parent) {
+		this.parent = parent;
+	}
 	
 	public ProviderManagerInfo getProviderManagerInfo(String mgrid){
 		
@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.assemble;
+
+import com.frameworkset.proxy.Interceptor;
+
+/**
+ * <p>Title: MethodDispatch.java</p>
+ * <p>Description: 代理方法的调用描述符，在代理创建时(或者方法第一次被调用时)为每个方法解析一次，
+ * 包含异步调用配置、事务配置(事务类型和回滚异常)以及拦截器链，创建后不再修改。
+ * 代理调用时直接通过BaseTXManager.getMethodDispatch获取，不再构建方法标识字符串、查找同步的索引表。
+ * 事务拦截器在调用过程中保存事务状态，每次调用通过newTransactionInterceptor创建新的实例；
+ * 拦截器链与原来按方法缓存的拦截器链一样在多次调用之间共享</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public final class MethodDispatch {
+	private final SynchronizedMethod asyncMethod;
+	private final SynchronizedMethod transactionMethod;
+	private final Interceptor chainInterceptor;
+
+	MethodDispatch(SynchronizedMethod asyncMethod, SynchronizedMethod transactionMethod, Interceptor chainInterceptor) {
+		this.asyncMethod = asyncMethod;
+		this.transactionMethod = transactionMethod;
+		this.chainInterceptor = chainInterceptor;
+	}
+
+	/**
+	 * 异步调用方法配置，不是异步方法时返回null
+	 */
+	public SynchronizedMethod getAsyncMethod() {
+		return asyncMethod;
+	}
+
+	/**
+	 * 事务方法配置，不是事务方法时返回null
+	 */
+	public SynchronizedMethod getTransactionMethod() {
+		return transactionMethod;
+	}
+
+	/**
+	 * 方法的拦截器链，没有拦截器时返回null
+	 */
+	public Interceptor getChainInterceptor() {
+		return chainInterceptor;
+	}
+
+	/**
+	 * 方法既不是异步方法、事务方法，也没有拦截器，代理可以直接调用目标方法
+	 */
+	public boolean isDirect() {
+		return asyncMethod == null && transactionMethod == null && chainInterceptor == null;
+	}
+
+	/**
+	 * 为本次调用创建事务拦截器，不是事务方法时返回null
+	 */
+	public Interceptor newTransactionInterceptor() {
+		if (transactionMethod == null)
+			return null;
+		return BaseTXManager.getInterceptorFacttory().getInterceptor(transactionMethod);
+	}
+}
@@ -0,0 +1,532 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.assemble;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.log4j.Logger;
+import org.frameworkset.spi.ApplicationContextAware;
+import org.frameworkset.spi.BaseApplicationContext;
+import org.frameworkset.spi.BaseApplicationContextAware;
+import org.frameworkset.spi.InitializingBean;
+import org.xml.sax.InputSource;
+
+/**
+ * <p>Title: ParallelBootstrap.java</p>
+ * <p>Description: 大规模组件配置的并行启动模式，由aop.properties中的以下参数控制，缺省全部关闭：
+ * <pre>
+ * ioc.bootstrap.parallel      是否在fork-join线程池中并行解析ManagerImport导入的配置文件
+ * ioc.bootstrap.parallelism   并行解析和预加载的线程数，缺省为cpu核数
+ * ioc.bootstrap.cache         是否缓存配置文件的解析快照，配置文件内容摘要不变时重启直接回放快照
+ * ioc.bootstrap.cache.dir     快照缓存目录，启用快照时必须指定，每个应用使用自己独占的目录，
+ *                             目录必须属于启动应用的用户并且其他用户不可写，否则不启用快照
+ * ioc.bootstrap.preload       容器初始化完成后是否按照依赖关系并发创建所有单例组件
+ * ioc.bootstrap.report        是否输出每个配置文件的解析耗时和每个组件的创建耗时报告
+ * </pre>
+ * 并行模式下各配置文件的解析互不依赖，被多个配置文件导入的同一个配置文件只解析一次，
+ * 解析完成后仍然按照顺序加载时的深度优先顺序合并管理服务和组件定义，
+ * 保证同名组件的覆盖规则和重复导入的处理与顺序加载完全一致</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ParallelBootstrap {
+	private static Logger log = Logger.getLogger(ParallelBootstrap.class);
+
+	private static boolean parallel = false;
+	private static int parallelism = Runtime.getRuntime().availableProcessors();
+	private static boolean cache = false;
+	private static ConfigSnapshot.CacheDir cacheDir;
+	private static boolean preload = false;
+	private static boolean report = false;
+
+	static {
+		try {
+			Properties pro = BaseApplicationContext.fillProperties();
+			parallel = getBoolean(pro, "ioc.bootstrap.parallel");
+			cache = getBoolean(pro, "ioc.bootstrap.cache");
+			preload = getBoolean(pro, "ioc.bootstrap.preload");
+			report = getBoolean(pro, "ioc.bootstrap.report");
+			String value = pro.getProperty("ioc.bootstrap.parallelism");
+			if (value != null && !value.trim().equals(""))
+				parallelism = Math.max(1, Integer.parseInt(value.trim()));
+			if (cache) {
+				value = pro.getProperty("ioc.bootstrap.cache.dir");
+				if (value != null && !value.trim().equals(""))
+					cacheDir = ConfigSnapshot.openCacheDir(new File(value.trim()));
+				else
+					log.warn("启用了ioc.bootstrap.cache但是没有指定快照缓存目录ioc.bootstrap.cache.dir，不启用配置文件解析快照.");
+			}
+		} catch (Exception e) {
+			log.warn(e.getMessage(), e);
+		}
+		if (cacheDir == null)
+			cache = false;
+	}
+
+	private static boolean getBoolean(Properties pro, String key) {
+		String value = pro.getProperty(key);
+		return value != null && value.trim().equals("true");
+	}
+
+	/**
+	 * 是否采用并行或者快照方式加载配置文件
+	 * @return
+	 */
+	public static boolean isEnabled() {
+		return parallel || cache;
+	}
+
+	public static boolean isPreload() {
+		return preload;
+	}
+
+	private final ServiceProviderManager providerManager;
+	private final long startTime = System.nanoTime();
+	private final List<ParseTask> parsed = Collections.synchronizedList(new ArrayList<ParseTask>());
+	/**
+	 * 配置文件与解析任务的对应关系，同一个配置文件只由第一个导入它的任务解析
+	 */
+	private final ConcurrentHashMap<String, ParseTask> tasks = new ConcurrentHashMap<String, ParseTask>();
+
+	public ParallelBootstrap(ServiceProviderManager providerManager) {
+		this.providerManager = providerManager;
+	}
+
+	/**
+	 * 解析mis及其导入的所有配置文件，然后按照导入顺序合并到providerManager中
+	 * @param mis
+	 */
+	public void load(List<ManagerImport> mis) {
+		List<ParseTask> roots = new ArrayList<ParseTask>(mis.size());
+		List<ParseTask> owned = new ArrayList<ParseTask>(mis.size());
+		for (int i = 0; i < mis.size(); i++)
+			roots.add(getTask(mis.get(i), null, owned));
+		ForkJoinPool pool = createPool(parallel ? parallelism : 1);
+		try {
+			for (int i = 0; i < owned.size(); i++)
+				pool.execute(owned.get(i));
+			for (int i = 0; i < owned.size(); i++)
+				owned.get(i).join();
+		} finally {
+			pool.shutdown();
+		}
+		Set<String> merging = new HashSet<String>();
+		for (int i = 0; i < roots.size(); i++)
+			merge(roots.get(i), null, merging);
+		if (report)
+			reportParse();
+	}
+
+	/**
+	 * 实际解析的配置文件数，被多个配置文件导入的配置文件只计算一次
+	 * @return
+	 */
+	int getParsedCount() {
+		return parsed.size();
+	}
+
+	/**
+	 * 获取配置文件的解析任务，配置文件第一次被导入时创建新的任务并加入owned，由调用方负责执行
+	 */
+	private ParseTask getTask(ManagerImport managerImport, LinkConfigFile parentFile, List<ParseTask> owned) {
+		ParseTask task = new ParseTask(managerImport, parentFile);
+		ParseTask old = tasks.putIfAbsent(managerImport.getFile(), task);
+		if (old != null)
+			return old;
+		owned.add(task);
+		return task;
+	}
+
+	/**
+	 * 深度优先合并解析结果，与ServiceProviderManager.load的顺序加载过程保持一致：
+	 * 配置文件挂在深度优先顺序中第一个导入它的配置文件下，正在合并的配置文件被循环导入时忽略
+	 * @param task
+	 * @param parentFile 深度优先顺序中导入该配置文件的配置文件
+	 * @param merging 当前合并路径上的配置文件
+	 */
+	private void merge(ParseTask task, LinkConfigFile parentFile, Set<String> merging) {
+		String file = task.managerImport.getFile();
+		if (providerManager.isParsered(file) || !merging.add(file))
+			return;
+		if (task.error != null) {
+			providerManager.logLoadFailure(task.managerImport.getRealPath(), task.url, parentFile, task.error);
+		} else {
+			//并行解析时导入该文件的可能是其他配置文件，按照深度优先顺序修正上级配置文件
+			task.linkconfigFile.setParent(parentFile);
+			providerManager.addParsedConfig(task.handler, task.linkconfigFile, parentFile);
+			for (int i = 0; task.children != null && i < task.children.size(); i++)
+				merge(task.children.get(i), task.linkconfigFile, merging);
+		}
+		merging.remove(file);
+		providerManager.markParsered(file);
+	}
+
+	private static ForkJoinPool createPool(int parallelism) {
+		final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				return new BootstrapWorker(pool, classLoader);
+			}
+		}, null, false);
+	}
+
+	/**
+	 * 解析线程继承启动线程的上下文类加载器，保证web应用中的配置文件和组件类能够被正确加载
+	 */
+	private static class BootstrapWorker extends ForkJoinWorkerThread {
+		BootstrapWorker(ForkJoinPool pool, ClassLoader classLoader) {
+			super(pool);
+			setContextClassLoader(classLoader);
+			setName("bboss-ioc-bootstrap-" + getPoolIndex());
+		}
+	}
+
+	/**
+	 * 单个配置文件的解析任务，解析完成后并行解析其导入的、尚未被其他任务解析的配置文件
+	 */
+	private class ParseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ManagerImport managerImport;
+		private final LinkConfigFile parentFile;
+		private String url;
+		private LinkConfigFile linkconfigFile;
+		private ProviderParser handler;
+		private Exception error;
+		/**
+		 * 导入的配置文件的解析任务，按照导入顺序排列，包括由其他任务解析的配置文件
+		 */
+		private List<ParseTask> children;
+		private boolean fromSnapshot;
+		private long time;
+
+		ParseTask(ManagerImport managerImport, LinkConfigFile parentFile) {
+			this.managerImport = managerImport;
+			this.parentFile = parentFile;
+			this.url = managerImport.getRealPath();
+		}
+
+		protected void compute() {
+			long start = System.nanoTime();
+			try {
+				url = providerManager.resolveConfigURL(managerImport);
+				linkconfigFile = new LinkConfigFile(url, managerImport.getFile(), parentFile);
+				handler = new ProviderParser(providerManager.getApplicationContext(), url, linkconfigFile);
+				fromSnapshot = parse(managerImport, url, handler);
+			} catch (Exception e) {
+				error = e;
+			}
+			time = System.nanoTime() - start;
+			parsed.add(this);
+			if (error != null)
+				return;
+			List imports = handler.getMangerimports();
+			if (imports == null || imports.size() == 0)
+				return;
+			children = new ArrayList<ParseTask>();
+			List<ParseTask> owned = new ArrayList<ParseTask>();
+			for (int i = 0; i < imports.size(); i++) {
+				try {
+					List<ManagerImport> resolvermis = AssembleUtil.getManagerImports((ManagerImport) imports.get(i));
+					for (int j = 0; j < resolvermis.size(); j++)
+						children.add(getTask(resolvermis.get(j), linkconfigFile, owned));
+				} catch (Exception e) {
+					log.error("解析配置文件[" + url + "]导入的配置文件失败.", e);
+				}
+			}
+			//只等待本任务创建的子任务，其他任务创建的子任务由创建者等待，循环导入不会产生相互等待
+			invokeAll(owned);
+		}
+	}
+
+	/**
+	 * 解析配置文件，启用快照时配置文件未修改则直接回放快照
+	 * @return 是否从快照中加载
+	 */
+	private boolean parse(ManagerImport managerImport, String url, ProviderParser handler) throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(false);
+		factory.setValidating(false);
+		SAXParser parser = factory.newSAXParser();
+		if (!cache) {
+			if (managerImport.isClasspathBase())
+				parser.parse(url, handler);
+			else
+				parser.parse(new File(url), handler);
+			return false;
+		}
+		byte[] content = read(managerImport, url);
+		ConfigSnapshot snapshot = ConfigSnapshot.load(cacheDir, url, content);
+		if (snapshot != null) {
+			snapshot.replay(handler);
+			return true;
+		}
+		InputSource source = new InputSource(new ByteArrayInputStream(content));
+		source.setSystemId(managerImport.isClasspathBase() ? url : new File(url).toURI().toString());
+		ConfigSnapshot.Recorder recorder = new ConfigSnapshot.Recorder(handler);
+		parser.parse(source, recorder);
+		recorder.getSnapshot().store(cacheDir, url, content);
+		return false;
+	}
+
+	private static byte[] read(ManagerImport managerImport, String url) throws IOException {
+		InputStream in = null;
+		try {
+			if (managerImport.isClasspathBase()) {
+				try {
+					in = new URL(url).openStream();
+				} catch (MalformedURLException e) {
+					in = new FileInputStream(url);
+				}
+			} else {
+				in = new FileInputStream(url);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int len;
+			while ((len = in.read(buffer)) > 0)
+				out.write(buffer, 0, len);
+			return out.toByteArray();
+		} finally {
+			if (in != null)
+				in.close();
+		}
+	}
+
+	private void reportParse() {
+		List<ParseTask> tasks = new ArrayList<ParseTask>(parsed);
+		Collections.sort(tasks, new Comparator<ParseTask>() {
+			public int compare(ParseTask o1, ParseTask o2) {
+				return o1.time < o2.time ? 1 : (o1.time == o2.time ? 0 : -1);
+			}
+		});
+		StringBuilder builder = new StringBuilder();
+		builder.append("组件配置文件加载完成，共").append(tasks.size()).append("个配置文件，总耗时")
+				.append(millis(System.nanoTime() - startTime)).append("ms：");
+		for (int i = 0; i < tasks.size(); i++) {
+			ParseTask task = tasks.get(i);
+			builder.append("\r\n\t").append(millis(task.time)).append("ms\t");
+			if (task.error != null)
+				builder.append("[失败]");
+			else if (task.fromSnapshot)
+				builder.append("[快照]");
+			builder.append(task.url);
+		}
+		log.info(builder.toString());
+	}
+
+	private static String millis(long nanos) {
+		return String.valueOf(TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0);
+	}
+
+	/**
+	 * 按照依赖关系分批并发创建所有单例组件：同一批中的组件之间不存在依赖关系，
+	 * 被依赖的组件先于依赖它的组件创建，存在循环依赖的组件最后在当前线程中顺序创建。
+	 * 依赖关系只能从配置中分析，组件在init-method、afterPropertiesSet、工厂方法或者容器回调中查找的其他组件无法识别，
+	 * 同一批中两个组件这样相互查找时会在组件定义的锁上死锁，因此这类组件以及依赖它们的组件不参与并发创建，
+	 * 在并发创建完成后在当前线程中顺序创建。在构造函数中查找其他组件的组件仍然可能死锁，这类组件需要关闭预加载。
+	 * 预加载在容器初始化锁之外执行，其他线程此时可以正常获取组件
+	 * @param applicationContext
+	 * @param properties 容器中的所有组件定义
+	 */
+	public static void preInstantiateSingletons(final BaseApplicationContext applicationContext,
+			Map<String, Pro> properties) {
+		long start = System.nanoTime();
+		Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+		for (Map.Entry<String, Pro> entry : properties.entrySet()) {
+			Pro pro = entry.getValue();
+			if (isPreloadable(pro))
+				dependencies.put(entry.getKey(), null);
+		}
+		for (String name : dependencies.keySet()) {
+			Set<String> depends = new HashSet<String>();
+			collectDependencies(properties.get(name), properties, depends, new HashSet<String>());
+			depends.retainAll(dependencies.keySet());
+			depends.remove(name);
+			dependencies.put(name, depends);
+		}
+		//需要顺序创建的组件及依赖它们的组件
+		Set<String> serial = new HashSet<String>();
+		for (String name : dependencies.keySet()) {
+			if (isSerial(properties.get(name)))
+				serial.add(name);
+		}
+		for (boolean changed = !serial.isEmpty(); changed;) {
+			changed = false;
+			for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+				if (!serial.contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), serial)) {
+					serial.add(entry.getKey());
+					changed = true;
+				}
+			}
+		}
+		Map<String, Set<String>> concurrent = new LinkedHashMap<String, Set<String>>();
+		for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+			if (!serial.contains(entry.getKey()))
+				concurrent.put(entry.getKey(), entry.getValue());
+		}
+
+		final Map<String, Long> times = Collections.synchronizedMap(new HashMap<String, Long>());
+		ForkJoinPool pool = createPool(parallelism);
+		try {
+			while (!concurrent.isEmpty()) {
+				List<String> wave = new ArrayList<String>();
+				for (Map.Entry<String, Set<String>> entry : concurrent.entrySet()) {
+					if (entry.getValue().isEmpty())
+						wave.add(entry.getKey());
+				}
+				if (wave.isEmpty())
+					break;
+				List<Callable<Object>> calls = new ArrayList<Callable<Object>>(wave.size());
+				for (int i = 0; i < wave.size(); i++) {
+					final String name = wave.get(i);
+					calls.add(new Callable<Object>() {
+						public Object call() {
+							instantiate(applicationContext, name, times);
+							return null;
+						}
+					});
+				}
+				pool.invokeAll(calls);
+				for (int i = 0; i < wave.size(); i++) {
+					concurrent.remove(wave.get(i));
+					dependencies.remove(wave.get(i));
+				}
+				for (Set<String> depends : concurrent.values())
+					depends.removeAll(wave);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		//存在循环依赖的组件和需要顺序创建的组件
+		for (String name : dependencies.keySet()) {
+			instantiate(applicationContext, name, times);
+		}
+		if (report)
+			reportPreload(times, System.nanoTime() - start);
+	}
+
+	private static boolean isPreloadable(Pro pro) {
+		return pro != null && pro.isBean() && pro.isSinglable() && !pro.isRefereced();
+	}
+
+	/**
+	 * 组件创建过程中是否可能执行查找其他组件的代码：配置了init-method或者工厂方法，
+	 * 实现了InitializingBean或者容器回调接口，无法确定组件类型时也按照顺序创建
+	 */
+	private static boolean isSerial(Pro pro) {
+		if (pro.getInitMethod() != null && !pro.getInitMethod().equals(""))
+			return true;
+		if (pro.getFactory_method() != null && !pro.getFactory_method().equals(""))
+			return true;
+		try {
+			Class<?> type = pro.getBeanClass();
+			return type == null || InitializingBean.class.isAssignableFrom(type)
+					|| ApplicationContextAware.class.isAssignableFrom(type)
+					|| BaseApplicationContextAware.class.isAssignableFrom(type);
+		} catch (Throwable e) {
+			return true;
+		}
+	}
+
+	private static void instantiate(BaseApplicationContext applicationContext, String name, Map<String, Long> times) {
+		long start = System.nanoTime();
+		try {
+			applicationContext.getBeanObject(name);
+		} catch (Throwable e) {
+			log.warn("预加载单例组件[" + name + "]失败，组件将在第一次使用时再创建：" + e.getMessage(), e);
+		}
+		times.put(name, System.nanoTime() - start);
+	}
+
+	/**
+	 * 收集组件通过属性、构造函数参数、内部组件和工厂组件引用的其他组件名称，
+	 * 对于引用的非单例组件继续收集其依赖的组件
+	 */
+	private static void collectDependencies(Pro pro, Map<String, Pro> properties, Set<String> depends,
+			Set<String> visited) {
+		if (pro == null)
+			return;
+		if (pro.isRefereced() && !pro.isServiceRef()) {
+			RefID refid = pro.getRefidLink();
+			addDependency(refid != null ? refid.getName() : pro.getRefid(), properties, depends, visited);
+		}
+		if (pro.getFactory_bean() != null && !pro.getFactory_bean().equals(""))
+			addDependency(pro.getFactory_bean(), properties, depends, visited);
+		List<Pro> references = pro.getReferences();
+		for (int i = 0; references != null && i < references.size(); i++)
+			collectDependencies(references.get(i), properties, depends, visited);
+		if (pro.getConstruction() != null) {
+			List<Pro> params = pro.getConstructorParams();
+			for (int i = 0; params != null && i < params.size(); i++)
+				collectDependencies(params.get(i), properties, depends, visited);
+		}
+	}
+
+	private static void addDependency(String name, Map<String, Pro> properties, Set<String> depends,
+			Set<String> visited) {
+		if (name == null || !visited.add(name))
+			return;
+		depends.add(name);
+		Pro pro = properties.get(name);
+		if (pro != null && !isPreloadable(pro))
+			collectDependencies(pro, properties, depends, visited);
+	}
+
+	private static void reportPreload(Map<String, Long> times, long total) {
+		List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(times.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+			public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+				return o2.getValue().compareTo(o1.getValue());
+			}
+		});
+		StringBuilder builder = new StringBuilder();
+		builder.append("单例组件预加载完成，共").append(entries.size()).append("个组件，总耗时").append(millis(total))
+				.append("ms：");
+		for (int i = 0; i < entries.size(); i++) {
+			Map.Entry<String, Long> entry = entries.get(i);
+			builder.append("\r\n\t").append(millis(entry.getValue())).append("ms\t").append(entry.getKey());
+		}
+		log.info(builder.toString());
+	}
+}
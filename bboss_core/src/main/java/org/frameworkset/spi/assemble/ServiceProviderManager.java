@@ -196,9 +196,16 @@ public class ServiceProviderManager {
     		 if(this.applicationContext.isfile())
     		 {
 	    		 List<ManagerImport> mis = AssembleUtil.getManagerImports(docbaseType, docbase, configfile);
-	    		 for(int i = 0; i < mis.size(); i ++)
+	    		 if(ParallelBootstrap.isEnabled())
 	    		 {
-	    			 load(mis.get(i), null);
+	    			 new ParallelBootstrap(this).load(mis);
+	    		 }
+	    		 else
+	    		 {
+		    		 for(int i = 0; i < mis.size(); i ++)
+		    		 {
+		    			 load(mis.get(i), null);
+		    		 }
 	    		 }
     		 }
     		 else
@@ -289,9 +296,13 @@ public class ServiceProviderManager {
         }
     }
 
-    private boolean isParsered(String configfile) {
+    boolean isParsered(String configfile) {
         return this.parsedList.containsKey(configfile);
     }
+    
+    void markParsered(String configfile) {
+        parsedList.put(configfile, trace);
+    }
 
     public void load(ManagerImport managerImport, LinkConfigFile parentFile) {
         if (isParsered(managerImport.getFile()))
@@ -321,32 +332,7 @@ public class ServiceProviderManager {
 
         String url = configFile;
         try {
-        	if(managerImport.isClasspathBase())
-        	{
-	            URL confURL = ServiceProviderManager.class.getClassLoader().getResource(configFile);
-	            if (confURL == null)
-	                confURL = ServiceProviderManager.class.getClassLoader().getResource("/" + configFile);
-	
-	            if (confURL == null)
-	                confURL = getTCL().getResource(configFile);
-	            if (confURL == null)
-	                confURL = getTCL().getResource("/" + configFile);
-	            if (confURL == null)
-	                confURL = ClassLoader.getSystemResource(configFile);
-	            if (confURL == null)
-	                confURL = ClassLoader.getSystemResource("/" + configFile);
-	
-	            if (confURL == null) {
-	                url = System.getProperty("user.dir");
-	                url += "/" + configFile;
-	            } else {
-	                url = confURL.toString();
-	            }
-        	}
-        	else
-        	{
-        		url = managerImport.getRealPath();
-        	}
+        	url = resolveConfigURL(managerImport);
             LinkConfigFile linkconfigFile = new LinkConfigFile(url, managerImport.getFile(), parentFile);
 
             ProviderParser handler = new ProviderParser(this.getApplicationContext(),url, linkconfigFile);
@@ -359,31 +345,90 @@ public class ServiceProviderManager {
             else
             	parser.parse(new File(url), handler);
 
-            this.addMangers(handler.getManagers());
-            this.addProperties(handler.getProperties());
-            if (parentFile == null)
-                this.traceFiles.add(linkconfigFile);
-            else
-                parentFile.addLinkConfigFile(linkconfigFile);
-            linkconfigFile.setMgrServices(handler.getManagers());
-            linkconfigFile.setProperties(handler.getProperties());
-            this.managerimports.put(linkconfigFile.getIdentity(), linkconfigFile);
+            this.addParsedConfig(handler, linkconfigFile, parentFile);
             if(handler.getMangerimports() != null && handler.getMangerimports().size() > 0)
             	this.batchLoad(handler.getMangerimports(), linkconfigFile);
 
         } catch (Exception e) {
-        	if(configFile.equals(defaultConfigFile))
-        	{
-        		 log.debug("从文件[" + defaultConfigFile+ "]装载管理服务失败，请检查文件是否存在，或者是否被正确定义。");
-        	}
-        	else if (parentFile == null) {
-                log.error("从文件[" + url + "]装载管理服务失败，请检查文件是否存在，或者是否被正确定义。",e);
+        	logLoadFailure(configFile, url, parentFile, e);
+        }
+
+    }
+    
+    /**
+     * 获取导入配置文件的完整路径
+     * @param managerImport
+     * @return
+     * @throws Exception
+     */
+    String resolveConfigURL(ManagerImport managerImport) throws Exception {
+        String configFile = managerImport.getRealPath();
+        String url = configFile;
+        if(managerImport.isClasspathBase())
+        {
+            URL confURL = ServiceProviderManager.class.getClassLoader().getResource(configFile);
+            if (confURL == null)
+                confURL = ServiceProviderManager.class.getClassLoader().getResource("/" + configFile);
+
+            if (confURL == null)
+                confURL = getTCL().getResource(configFile);
+            if (confURL == null)
+                confURL = getTCL().getResource("/" + configFile);
+            if (confURL == null)
+                confURL = ClassLoader.getSystemResource(configFile);
+            if (confURL == null)
+                confURL = ClassLoader.getSystemResource("/" + configFile);
+
+            if (confURL == null) {
+                url = System.getProperty("user.dir");
+                url += "/" + configFile;
             } else {
-                log.error("从文件[" + parentFile + "@" + url + "]装载管理服务失败，请检查文件是否存在，或者是否被正确定义。",e);
+                url = confURL.toString();
             }
-            // e.printStackTrace();
         }
-
+        else
+        {
+            url = managerImport.getRealPath();
+        }
+        return url;
+    }
+    
+    /**
+     * 将配置文件的解析结果加入容器，并记录配置文件的导入关系
+     * @param handler
+     * @param linkconfigFile
+     * @param parentFile
+     */
+    void addParsedConfig(ProviderParser handler, LinkConfigFile linkconfigFile, LinkConfigFile parentFile) {
+        this.addMangers(handler.getManagers());
+        this.addProperties(handler.getProperties());
+        if (parentFile == null)
+            this.traceFiles.add(linkconfigFile);
+        else
+            parentFile.addLinkConfigFile(linkconfigFile);
+        linkconfigFile.setMgrServices(handler.getManagers());
+        linkconfigFile.setProperties(handler.getProperties());
+        this.managerimports.put(linkconfigFile.getIdentity(), linkconfigFile);
+    }
+    
+    void logLoadFailure(String configFile, String url, LinkConfigFile parentFile, Exception e) {
+        if(configFile.equals(defaultConfigFile))
+        {
+            log.debug("从文件[" + defaultConfigFile+ "]装载管理服务失败，请检查文件是否存在，或者是否被正确定义。");
+        }
+        else if (parentFile == null) {
+            log.error("从文件[" + url + "]装载管理服务失败，请检查文件是否存在，或者是否被正确定义。",e);
+        } else {
+            log.error("从文件[" + parentFile + "@" + url + "]装载管理服务失败，请检查文件是否存在，或者是否被正确定义。",e);
+        }
+        // e.printStackTrace();
+    }
+    
+    /**
+     * 按照依赖关系并发创建容器中的所有单例组件，由aop.properties中的ioc.bootstrap.preload参数开启
+     */
+    public void preInstantiateSingletons() {
+        ParallelBootstrap.preInstantiateSingletons(applicationContext, new HashMap<String,Pro>(this.properties));
     }
     
     
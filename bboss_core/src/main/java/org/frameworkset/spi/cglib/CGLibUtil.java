@@ -28,6 +28,7 @@ import net.sf.cglib.proxy.NoOp;
 import org.apache.log4j.Logger;
 import org.frameworkset.spi.CallContext;
 import org.frameworkset.spi.assemble.BaseTXManager;
+import org.frameworkset.spi.assemble.MethodDispatch;
 import org.frameworkset.spi.assemble.Pro;
 import org.frameworkset.spi.assemble.ProviderInfoQueue;
 import org.frameworkset.spi.assemble.ProviderManagerInfo;
@@ -73,11 +74,12 @@ public class CGLibUtil {
 	public static Object invoke(final Object delegate, final Method method, final Object[] args,
 			final MethodProxy proxy,final CallContext callcontext,final BaseTXManager providerManagerInfo) throws Throwable
 	{
-		final SynchronizedMethod synmethod = providerManagerInfo.isAsyncMethod(method,null) ;
+		final MethodDispatch dispatch = providerManagerInfo.getMethodDispatch(method);
+		final SynchronizedMethod synmethod = dispatch.getAsyncMethod() ;
 		if(synmethod == null )
 		{
 			return invoke_(delegate, method, args,
-					proxy,callcontext,providerManagerInfo) ;
+					proxy,callcontext,providerManagerInfo,dispatch) ;
 		}
 		else
 		{
@@ -108,7 +110,7 @@ public class CGLibUtil {
 					
 					try {
 						return invoke_(delegate, method, args,
-								proxy,callcontext,providerManagerInfo);
+								proxy,callcontext,providerManagerInfo,dispatch);
 					} catch (Exception e) {
 						throw e;
 					}
@@ -126,11 +128,12 @@ public class CGLibUtil {
 	public static Object invoke(final Object delegate, final Method method, final Object[] args,
 			final MethodProxy proxy,final Pro providerManagerInfo) throws Throwable
 	{
-		final SynchronizedMethod synmethod = providerManagerInfo.isAsyncMethod(method,null) ;
+		final MethodDispatch dispatch = providerManagerInfo.getMethodDispatch(method);
+		final SynchronizedMethod synmethod = dispatch.getAsyncMethod() ;
 		if(synmethod == null )
 		{
 			return invoke_(delegate, method, args,
-					proxy,providerManagerInfo) ;
+					proxy,providerManagerInfo,dispatch) ;
 		}
 		else
 		{
@@ -161,7 +164,7 @@ public class CGLibUtil {
 					
 					try {
 						return invoke_(delegate, method, args,
-								proxy,providerManagerInfo);
+								proxy,providerManagerInfo,dispatch);
 					} catch (Exception e) {
 						throw e;
 					}
@@ -177,25 +180,13 @@ public class CGLibUtil {
 	}
 	
 	private static Object invoke_(Object delegate, Method method, Object[] args,
-			MethodProxy proxy,CallContext callcontext,BaseTXManager providerManagerInfo) throws Throwable
+			MethodProxy proxy,CallContext callcontext,BaseTXManager providerManagerInfo,MethodDispatch dispatch) throws Throwable
     {
 //        if (!serviceID.isRemote())
         {
         	
-            Interceptor txinterceptor = null;
-            String muuid = null;
-            if(providerManagerInfo.enableTransaction())
-            {
-            	muuid = SynchronizedMethod.buildMethodUUID(method);
-            	txinterceptor = providerManagerInfo.getTransactionInterceptor(method,muuid);
-            }
-            Interceptor interceptor = null;
-            if(providerManagerInfo.enableInterceptor())
-            {
-            	if(muuid == null)
-            		muuid = SynchronizedMethod.buildMethodUUID(method);
-            	interceptor = providerManagerInfo.getChainInterceptor(method,muuid);
-            }
+            Interceptor txinterceptor = dispatch.newTransactionInterceptor();
+            Interceptor interceptor = dispatch.getChainInterceptor();
             Object obj = null;// 只返回delegate中方法返回的值
             try
             {
@@ -342,27 +333,15 @@ public class CGLibUtil {
 		}
 	}
 	private static Object invoke_(Object delegate, Method method, Object[] args,
-			MethodProxy proxy,BaseTXManager providerManagerInfo) throws Throwable
+			MethodProxy proxy,BaseTXManager providerManagerInfo,MethodDispatch dispatch) throws Throwable
     {
 //        if (!serviceID.isRemote())
 //		try		
         {
 //            Interceptor txinterceptor = providerManagerInfo.getTransactionInterceptor(method);
 //            Interceptor interceptor = providerManagerInfo.getInterceptorChain();
-        	Interceptor txinterceptor = null;
-            String muuid = null;
-            if(providerManagerInfo.enableTransaction())
-            {
-            	muuid = SynchronizedMethod.buildMethodUUID(method);
-            	txinterceptor = providerManagerInfo.getTransactionInterceptor(method,muuid);
-            }
-            Interceptor interceptor = null;
-            if(providerManagerInfo.enableInterceptor())
-            {
-            	if(muuid == null)
-            		muuid = SynchronizedMethod.buildMethodUUID(method);
-            	interceptor = providerManagerInfo.getChainInterceptor(method,muuid);
-            }
+        	Interceptor txinterceptor = dispatch.newTransactionInterceptor();
+            Interceptor interceptor = dispatch.getChainInterceptor();
             
             Object obj = null;// 只返回delegate中方法返回的值
             try
@@ -458,7 +437,7 @@ public class CGLibUtil {
     }
 	public static Object invokeSynTX(final Object delegate, final Method method, final Object[] args,
 			final MethodProxy proxy,final CallContext callcontext,final ProviderManagerInfo providerManagerInfo) throws Throwable {
-		final SynchronizedMethod synmethod = providerManagerInfo.isAsyncMethod(method,null) ;
+		final SynchronizedMethod synmethod = providerManagerInfo.getMethodDispatch(method).getAsyncMethod() ;
 		if(synmethod == null )
 		{
 			
@@ -782,7 +761,7 @@ public class CGLibUtil {
 	public static Object invokeSyn(final Object delegate, final Method method, final Object[] args,
 			final MethodProxy proxy,final CallContext callcontext,final ProviderManagerInfo providerManagerInfo) throws Throwable{
 		
-		final SynchronizedMethod synmethod = providerManagerInfo.isAsyncMethod(method,null) ;
+		final SynchronizedMethod synmethod = providerManagerInfo.getMethodDispatch(method).getAsyncMethod() ;
 		if(synmethod == null )
 		{
 			
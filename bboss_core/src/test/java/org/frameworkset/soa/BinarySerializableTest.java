@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.soa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * <p>Title: BinarySerializableTest.java</p>
+ * <p>Description: 二进制序列化的对象还原结果，以及与xml序列化结果的一致性，耗时对比见SerializableBenchmark</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class BinarySerializableTest {
+	public static class Node {
+		private String name;
+		private int age;
+		private Date birthday;
+		private BigDecimal amount;
+		private int[] scores;
+		private Node parent;
+		private List<Node> children = new ArrayList<Node>();
+		private Map<String, Object> attributes = new HashMap<String, Object>();
+		private List<String> tags;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public Date getBirthday() {
+			return birthday;
+		}
+
+		public void setBirthday(Date birthday) {
+			this.birthday = birthday;
+		}
+
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		public void setAmount(BigDecimal amount) {
+			this.amount = amount;
+		}
+
+		public int[] getScores() {
+			return scores;
+		}
+
+		public void setScores(int[] scores) {
+			this.scores = scores;
+		}
+
+		public Node getParent() {
+			return parent;
+		}
+
+		public void setParent(Node parent) {
+			this.parent = parent;
+		}
+
+		public List<Node> getChildren() {
+			return children;
+		}
+
+		public void setChildren(List<Node> children) {
+			this.children = children;
+		}
+
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		public void setAttributes(Map<String, Object> attributes) {
+			this.attributes = attributes;
+		}
+
+		public List<String> getTags() {
+			return tags;
+		}
+
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+	}
+
+	private Node createNode() {
+		Node root = new Node();
+		root.setName("root");
+		root.setAge(40);
+		root.setBirthday(new Date(0));
+		root.setAmount(new BigDecimal("1234.56"));
+		root.setScores(new int[] { 90, 85, 77 });
+		List<String> tags = new ArrayList<String>();
+		tags.add("a");
+		tags.add("b");
+		root.setTags(Collections.unmodifiableList(tags));
+		for (int i = 0; i < 10; i++) {
+			Node child = new Node();
+			child.setName("child" + i);
+			child.setAge(i);
+			child.setParent(root);
+			child.getAttributes().put("index", i);
+			root.getChildren().add(child);
+		}
+		root.getAttributes().put("self", root);
+		return root;
+	}
+
+	@Test
+	public void testSerial() throws Exception {
+		Node root = createNode();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinarySerializable.toBinary(root, out);
+		Node node = BinarySerializable.toBean(new ByteArrayInputStream(out.toByteArray()), Node.class);
+		assertEquals("root", node.getName());
+		assertEquals(40, node.getAge());
+		assertEquals(new Date(0), node.getBirthday());
+		assertEquals(new BigDecimal("1234.56"), node.getAmount());
+		assertArrayEquals(new int[] { 90, 85, 77 }, node.getScores());
+		assertEquals(root.getTags(), node.getTags());
+		assertEquals(root.getTags().getClass(), node.getTags().getClass());
+		assertEquals(10, node.getChildren().size());
+		assertEquals(3, node.getChildren().get(3).getAttributes().get("index"));
+		// 引用和循环引用还原为同一个对象
+		assertSame(node, node.getChildren().get(5).getParent());
+		assertSame(node, node.getAttributes().get("self"));
+		assertNull(BinarySerializable.toBean(BinarySerializable.toBinary(null), Node.class));
+	}
+
+	@Test
+	public void testUninstantiableCollections() throws Exception {
+		Map<String, Object> datas = new LinkedHashMap<String, Object>();
+		datas.put("emptyList", Collections.emptyList());
+		datas.put("emptySet", Collections.emptySet());
+		datas.put("emptyMap", Collections.emptyMap());
+		datas.put("singletonList", Collections.singletonList("a"));
+		datas.put("singleton", Collections.singleton("a"));
+		datas.put("singletonMap", Collections.singletonMap("a", 1));
+		datas.put("asList", Arrays.asList("a", "b"));
+		Map<?, ?> result = BinarySerializable.toBean(BinarySerializable.toBinary(datas), Map.class);
+		assertEquals(datas.size(), result.size());
+		// 无法通过默认构造函数创建的集合还原为内容相同的List、Set和Map
+		for (Map.Entry<String, Object> entry : datas.entrySet())
+			assertEquals(entry.getKey(), entry.getValue(), result.get(entry.getKey()));
+	}
+
+	@Test
+	public void testCompareWithXML() throws Exception {
+		Node root = createNode();
+		byte[] binary = BinarySerializable.toBinary(root);
+		String xml = ObjectSerializable.toXML(root);
+		assertTrue(binary.length < xml.getBytes(ObjectSerializable.CHARSET_UTF_8).length);
+		Node fromBinary = BinarySerializable.toBean(binary, Node.class);
+		Node fromXML = ObjectSerializable.toBean(xml, Node.class);
+		assertEquals(fromXML.getName(), fromBinary.getName());
+		assertEquals(fromXML.getBirthday(), fromBinary.getBirthday());
+		assertEquals(fromXML.getAmount(), fromBinary.getAmount());
+		assertEquals(fromXML.getTags(), fromBinary.getTags());
+		assertEquals(fromXML.getChildren().size(), fromBinary.getChildren().size());
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.soa;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.frameworkset.soa.BinarySerializableTest.Node;
+
+/**
+ * <p>Title: SerializableBenchmark.java</p>
+ * <p>Description: 二进制序列化与xml序列化的数据大小和序列化/反序列化耗时对比，
+ * 以及StaxDeserializer与SOAApplicationContext的xml反序列化耗时对比，
+ * 不属于单元测试，通过main方法单独运行：
+ * java SerializableBenchmark [每种方式的执行次数,默认10000]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class SerializableBenchmark {
+	private static Node createNode() {
+		Node root = new Node();
+		root.setName("root");
+		root.setAge(40);
+		root.setBirthday(new Date(0));
+		root.setAmount(new BigDecimal("1234.56"));
+		root.setScores(new int[] { 90, 85, 77 });
+		List<String> tags = new ArrayList<String>();
+		tags.add("a");
+		tags.add("b");
+		root.setTags(Collections.unmodifiableList(tags));
+		for (int i = 0; i < 10; i++) {
+			Node child = new Node();
+			child.setName("child" + i);
+			child.setAge(i);
+			child.setParent(root);
+			child.getAttributes().put("index", i);
+			root.getChildren().add(child);
+		}
+		root.getAttributes().put("self", root);
+		return root;
+	}
+
+	private static void compareWithXML(Node root, int count) throws Exception {
+		byte[] binary = BinarySerializable.toBinary(root);
+		String xml = ObjectSerializable.toXML(root);
+		System.out.println("binary size:" + binary.length + ",xml size:"
+				+ xml.getBytes(ObjectSerializable.CHARSET_UTF_8).length);
+		//预热
+		for (int i = 0; i < count; i++) {
+			BinarySerializable.toBean(BinarySerializable.toBinary(root), Node.class);
+			ObjectSerializable.toBean(ObjectSerializable.toXML(root), Node.class);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			binary = BinarySerializable.toBinary(root);
+		long binaryWrite = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			BinarySerializable.toBean(binary, Node.class);
+		long binaryRead = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			xml = ObjectSerializable.toXML(root);
+		long xmlWrite = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			ObjectSerializable.toBean(xml, Node.class);
+		long xmlRead = System.nanoTime() - start;
+		System.out.println("binary serialize:" + (binaryWrite / count) + "ns/op,deserialize:" + (binaryRead / count)
+				+ "ns/op;xml serialize:" + (xmlWrite / count) + "ns/op,deserialize:" + (xmlRead / count) + "ns/op");
+	}
+
+	private static long deserialize(String xml, boolean stax, int count) throws Exception {
+		ObjectSerializable.setEnableStaxDeserializer(stax);
+		//预热
+		for (int i = 0; i < count; i++)
+			ObjectSerializable.toBean(xml, Node.class);
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			ObjectSerializable.toBean(xml, Node.class);
+		return System.nanoTime() - start;
+	}
+
+	private static void compareStaxWithContext(Node root, int count) throws Exception {
+		String xml = ObjectSerializable.toXML(root);
+		boolean enable = ObjectSerializable.isEnableStaxDeserializer();
+		try {
+			long staxTime = deserialize(xml, true, count);
+			long contextTime = deserialize(xml, false, count);
+			System.out.println("stax deserialize:" + (staxTime / count) + "ns/op,SOAApplicationContext deserialize:"
+					+ (contextTime / count) + "ns/op");
+		} finally {
+			ObjectSerializable.setEnableStaxDeserializer(enable);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Node root = createNode();
+		compareWithXML(root, count);
+		compareStaxWithContext(root, count);
+	}
+}
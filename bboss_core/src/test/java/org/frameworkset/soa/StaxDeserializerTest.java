@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.soa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+
+import org.frameworkset.soa.BinarySerializableTest.Node;
+import org.junit.Test;
+
+/**
+ * <p>Title: StaxDeserializerTest.java</p>
+ * <p>Description: StaxDeserializer与SOAApplicationContext反序列化结果的一致性，耗时对比见SerializableBenchmark</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class StaxDeserializerTest {
+	private Node createNode() {
+		Node root = new Node();
+		root.setName("root<&>");
+		root.setAge(40);
+		root.setBirthday(new Date(0));
+		root.setScores(new int[] { 90, 85, 77 });
+		for (int i = 0; i < 10; i++) {
+			Node child = new Node();
+			child.setName("child" + i);
+			child.setParent(root);
+			child.getAttributes().put("index", i);
+			root.getChildren().add(child);
+		}
+		root.getAttributes().put("self", root);
+		return root;
+	}
+
+	private void assertNode(Node node) {
+		assertEquals("root<&>", node.getName());
+		assertEquals(40, node.getAge());
+		assertEquals(new Date(0), node.getBirthday());
+		assertArrayEquals(new int[] { 90, 85, 77 }, node.getScores());
+		assertEquals(10, node.getChildren().size());
+		assertEquals("child3", node.getChildren().get(3).getName());
+		assertEquals(3, node.getChildren().get(3).getAttributes().get("index"));
+		assertSame(node, node.getChildren().get(5).getParent());
+		assertSame(node, node.getAttributes().get("self"));
+		assertNull(node.getAmount());
+	}
+
+	@Test
+	public void testDeserialize() throws Exception {
+		String xml = ObjectSerializable.toXML(createNode());
+		assertNode(StaxDeserializer.toBean(new java.io.StringReader(xml), Node.class));
+		assertNode(StaxDeserializer.toBean(new ByteArrayInputStream(xml.getBytes(ObjectSerializable.CHARSET_UTF_8)), Node.class));
+		boolean enable = ObjectSerializable.isEnableStaxDeserializer();
+		try {
+			ObjectSerializable.setEnableStaxDeserializer(false);
+			assertNode(ObjectSerializable.toBean(xml, Node.class));
+		} finally {
+			ObjectSerializable.setEnableStaxDeserializer(enable);
+		}
+	}
+
+	@Test
+	public void testConvertToBeanType() throws Exception {
+		String xml = ObjectSerializable.toXML(Integer.valueOf(5));
+		assertEquals(Long.valueOf(5), StaxDeserializer.toBean(new java.io.StringReader(xml), Long.class));
+	}
+
+	@Test
+	public void testEnableStaxDeserializer() throws Exception {
+		String xml = ObjectSerializable.toXML(createNode());
+		boolean enable = ObjectSerializable.isEnableStaxDeserializer();
+		try {
+			ObjectSerializable.setEnableStaxDeserializer(true);
+			assertNode(ObjectSerializable.toBean(xml, Node.class));
+		} finally {
+			ObjectSerializable.setEnableStaxDeserializer(enable);
+		}
+	}
+}
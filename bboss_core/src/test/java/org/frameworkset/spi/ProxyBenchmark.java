@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi;
+
+import org.frameworkset.spi.asm.AsmProxyFactory;
+import org.frameworkset.spi.asm.AsmProxyFactoryTest.ProxyService;
+import org.frameworkset.spi.assemble.MethodDispatchTest;
+
+/**
+ * <p>Title: ProxyBenchmark.java</p>
+ * <p>Description: 组件直接调用、容器代理(aop.proxy.type配置的代理方式)调用和asm代理调用的单次调用耗时对比，
+ * 分别测试没有aop配置的方法和事务方法，不属于单元测试，通过main方法单独运行：
+ * java ProxyBenchmark [每种调用方式的执行次数,默认2000000]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ProxyBenchmark {
+	private static long sum;
+
+	private static double add(ProxyService service, int count) {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			sum += service.add(1);
+		return (double) (System.nanoTime() - start) / count;
+	}
+
+	private static double txAdd(ProxyService service, int count) {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			sum += service.txAdd(1, 1L);
+		return (double) (System.nanoTime() - start) / count;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		ProxyService direct = new ProxyService();
+		ProxyService proxy = (ProxyService) BaseApplicationContext.createInf(
+				MethodDispatchTest.createPro(ProxyService.class), new ProxyService());
+		ProxyService asm = (ProxyService) AsmProxyFactory.createProxy(new ProxyService(), null,
+				MethodDispatchTest.createPro(ProxyService.class));
+		ProxyService[] services = new ProxyService[] { direct, proxy, asm };
+		//预热
+		for (int i = 0; i < services.length; i++) {
+			add(services[i], count);
+			txAdd(services[i], count);
+		}
+		System.out.println("direct:" + add(direct, count) + "ns/op,proxy:" + add(proxy, count) + "ns/op,asm proxy:"
+				+ add(asm, count) + "ns/op");
+		System.out.println("transaction method direct:" + txAdd(direct, count) + "ns/op,proxy:" + txAdd(proxy, count)
+				+ "ns/op,asm proxy:" + txAdd(asm, count) + "ns/op," + sum);
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.asm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.frameworkset.spi.assemble.InterceptorInfo;
+import org.frameworkset.spi.assemble.MethodDispatchTest;
+import org.frameworkset.spi.assemble.Pro;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.frameworkset.orm.annotation.Transaction;
+import com.frameworkset.proxy.Interceptor;
+
+/**
+ * <p>Title: AsmProxyFactoryTest.java</p>
+ * <p>Description: asm生成的代理类的调用结果：直接调用和经过拦截器、事务处理的调用，
+ * 基本类型和void返回值，以及目标方法和拦截器抛出的异常，耗时对比见ProxyBenchmark</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class AsmProxyFactoryTest {
+	public static class ProxyService {
+		private long total;
+
+		@Transaction
+		public long txAdd(int i, long j) {
+			total += i + j;
+			return total;
+		}
+
+		@Transaction
+		public void txFail(String message) {
+			throw new IllegalStateException(message);
+		}
+
+		public long add(int i) {
+			total += i;
+			return total;
+		}
+
+		public String join(String... parts) {
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < parts.length; i++)
+				builder.append(parts[i]);
+			return builder.toString();
+		}
+
+		public boolean isPositive(int i) {
+			return i > 0;
+		}
+
+		public double half(double value) {
+			return value / 2;
+		}
+
+		public char first(String value) {
+			return value.charAt(0);
+		}
+
+		public byte[] bytes(byte b, short s, float f) {
+			return new byte[] { b, (byte) s, (byte) f };
+		}
+
+		public void reset() {
+			total = 0;
+		}
+
+		public void read(String file) throws IOException {
+			throw new IOException(file);
+		}
+
+		public final long getTotal() {
+			return total;
+		}
+	}
+
+	public static final class FinalService {
+	}
+
+	/**
+	 * 记录拦截器的调用顺序
+	 */
+	public static class RecordInterceptor implements Interceptor {
+		static final List<String> events = new ArrayList<String>();
+
+		public void before(Method method, Object[] args) {
+			events.add("before " + method.getName() + Arrays.asList(args));
+		}
+
+		public void after(Method method, Object[] args) {
+			events.add("after " + method.getName());
+		}
+
+		public void afterThrowing(Method method, Object[] args, Throwable throwable) {
+			events.add("afterThrowing " + method.getName() + " " + throwable.getClass().getSimpleName());
+		}
+
+		public void afterFinally(Method method, Object[] args) {
+			events.add("afterFinally " + method.getName());
+		}
+	}
+
+	private static Pro createInterceptedPro() {
+		Pro pro = MethodDispatchTest.createPro(ProxyService.class);
+		InterceptorInfo interceptor = new InterceptorInfo();
+		interceptor.setBean(true);
+		interceptor.setValue(new RecordInterceptor());
+		pro.addInterceptor(interceptor);
+		return pro;
+	}
+
+	@Before
+	public void setUp() {
+		RecordInterceptor.events.clear();
+	}
+
+	@Test
+	public void testProxy() throws Exception {
+		ProxyService target = new ProxyService();
+		Object proxy = AsmProxyFactory.createProxy(target, null, MethodDispatchTest.createPro(ProxyService.class));
+		assertNotNull(proxy);
+		assertTrue(proxy instanceof AsmProxyInvoker);
+		ProxyService service = (ProxyService) proxy;
+		assertEquals(3L, service.txAdd(1, 2L));
+		assertEquals(4L, service.add(1));
+		assertEquals("ab", service.join("a", "b"));
+		assertEquals(4L, target.getTotal());
+		assertNull(AsmProxyFactory.createProxy(new FinalService(), null, MethodDispatchTest.createPro(FinalService.class)));
+	}
+
+	@Test
+	public void testReturnTypes() throws Exception {
+		ProxyService target = new ProxyService();
+		ProxyService direct = (ProxyService) AsmProxyFactory.createProxy(target, null,
+				MethodDispatchTest.createPro(ProxyService.class));
+		ProxyService intercepted = (ProxyService) AsmProxyFactory.createProxy(target, null, createInterceptedPro());
+		for (ProxyService service : new ProxyService[] { direct, intercepted }) {
+			assertTrue(service.isPositive(1));
+			assertFalse(service.isPositive(-1));
+			assertEquals(1.25, service.half(2.5), 0);
+			assertEquals('b', service.first("bboss"));
+			assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, service.bytes((byte) 1, (short) 2, 3.5f)));
+			assertEquals(5L, service.add(5));
+			service.reset();
+			assertEquals(0L, target.getTotal());
+		}
+		// 所有方法都经过拦截器，void方法也执行after
+		assertTrue(RecordInterceptor.events.contains("before half[2.5]"));
+		assertTrue(RecordInterceptor.events.contains("after reset"));
+		assertEquals(RecordInterceptor.events.size() / 3, count("afterFinally "));
+	}
+
+	@Test
+	public void testInterceptorOrder() throws Exception {
+		ProxyService service = (ProxyService) AsmProxyFactory.createProxy(new ProxyService(), null,
+				createInterceptedPro());
+		assertEquals(7L, service.txAdd(3, 4L));
+		assertEquals(Arrays.asList("before txAdd[3, 4]", "after txAdd", "afterFinally txAdd"), RecordInterceptor.events);
+	}
+
+	@Test
+	public void testException() throws Exception {
+		for (Pro pro : new Pro[] { MethodDispatchTest.createPro(ProxyService.class), createInterceptedPro() }) {
+			ProxyService service = (ProxyService) AsmProxyFactory.createProxy(new ProxyService(), null, pro);
+			try {
+				service.read("missing.xml");
+				fail("IOException expected");
+			} catch (IOException e) {
+				// 受检异常原样抛出，不包装为UndeclaredThrowableException
+				assertEquals("missing.xml", e.getMessage());
+			}
+			try {
+				service.txFail("rollback");
+				fail("IllegalStateException expected");
+			} catch (IllegalStateException e) {
+				assertEquals("rollback", e.getMessage());
+			}
+		}
+		assertEquals(Arrays.asList("before read[missing.xml]", "afterThrowing read IOException", "afterFinally read",
+				"before txFail[rollback]", "afterThrowing txFail IllegalStateException", "afterFinally txFail"),
+				RecordInterceptor.events);
+	}
+
+	@Test
+	public void testDispatchShared() throws Exception {
+		Pro pro = MethodDispatchTest.createPro(ProxyService.class);
+		ProxyService first = (ProxyService) AsmProxyFactory.createProxy(new ProxyService(), null, pro);
+		ProxyService second = (ProxyService) AsmProxyFactory.createProxy(new ProxyService(), null, createInterceptedPro());
+		// 同一个组件类的不同配置共享一个代理类，拦截器配置在调用时从各自的调用描述符中获取
+		assertSame(first.getClass(), second.getClass());
+		first.add(1);
+		assertTrue(RecordInterceptor.events.isEmpty());
+		second.add(1);
+		assertEquals(3, RecordInterceptor.events.size());
+	}
+
+	private static int count(String prefix) {
+		int count = 0;
+		for (String event : RecordInterceptor.events) {
+			if (event.startsWith(prefix))
+				count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.assemble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>Title: ConfigSnapshotTest.java</p>
+ * <p>Description: 配置文件解析快照的保存、加载和回放，配置文件修改后快照的失效，
+ * 以及篡改的快照、其他应用密钥签名的快照和其他用户可写的缓存目录的拒绝</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ConfigSnapshotTest {
+	private static final String URL = "org/frameworkset/spi/assemble/bootstrap/root.xml";
+	private static final String CONTENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<properties>\n"
+			+ "\t<managerimport file=\"a.xml\"/>\n"
+			+ "\t<property name=\"中文\" value=\"a&amp;b\">text</property>\n"
+			+ "</properties>\n";
+
+	private File cacheDir;
+	private File otherDir;
+
+	/**
+	 * 将sax事件记录为字符串，便于比较解析和回放的结果
+	 */
+	private static class EventHandler extends DefaultHandler {
+		private final List<String> events = new ArrayList<String>();
+
+		public void startDocument() {
+			events.add("startDocument");
+		}
+
+		public void endDocument() {
+			events.add("endDocument");
+		}
+
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			StringBuilder builder = new StringBuilder("<").append(qName);
+			for (int i = 0; i < attributes.getLength(); i++)
+				builder.append(" ").append(attributes.getQName(i)).append("=").append(attributes.getValue(i));
+			events.add(builder.append(">").toString());
+		}
+
+		public void endElement(String uri, String localName, String qName) {
+			events.add("</" + qName + ">");
+		}
+
+		public void characters(char[] ch, int start, int length) {
+			events.add(new String(ch, start, length));
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		cacheDir = File.createTempFile("bboss-ioc-snapshot", "");
+		cacheDir.delete();
+		otherDir = File.createTempFile("bboss-ioc-snapshot", "");
+		otherDir.delete();
+	}
+
+	@After
+	public void tearDown() {
+		delete(cacheDir);
+		delete(otherDir);
+	}
+
+	private static void delete(File dir) {
+		File[] files = dir.listFiles();
+		for (int i = 0; files != null && i < files.length; i++)
+			files[i].delete();
+		dir.delete();
+	}
+
+	private static EventHandler record(byte[] content, ConfigSnapshot.CacheDir cacheDir) throws Exception {
+		EventHandler handler = new EventHandler();
+		ConfigSnapshot.Recorder recorder = new ConfigSnapshot.Recorder(handler);
+		SAXParserFactory.newInstance().newSAXParser().parse(new ByteArrayInputStream(content), recorder);
+		recorder.getSnapshot().store(cacheDir, URL, content);
+		return handler;
+	}
+
+	private static File snapshotFile(File dir) {
+		File[] files = dir.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			if (files[i].getName().endsWith(".snapshot"))
+				return files[i];
+		}
+		return null;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		byte[] content = CONTENT.getBytes("UTF-8");
+		ConfigSnapshot.CacheDir dir = ConfigSnapshot.openCacheDir(cacheDir);
+		assertNotNull(dir);
+		EventHandler parsed = record(content, dir);
+
+		//重新打开缓存目录时使用已经生成的密钥
+		ConfigSnapshot snapshot = ConfigSnapshot.load(ConfigSnapshot.openCacheDir(cacheDir), URL, content);
+		assertNotNull(snapshot);
+		EventHandler replayed = new EventHandler();
+		snapshot.replay(replayed);
+		assertEquals(parsed.events, replayed.events);
+		assertTrue(replayed.events.contains("<property name=中文 value=a&b>"));
+		//快照可以重复回放
+		EventHandler again = new EventHandler();
+		snapshot.replay(again);
+		assertEquals(parsed.events, again.events);
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		byte[] content = CONTENT.getBytes("UTF-8");
+		ConfigSnapshot.CacheDir dir = ConfigSnapshot.openCacheDir(cacheDir);
+		record(content, dir);
+
+		assertNull(ConfigSnapshot.load(dir, URL, CONTENT.replace("a.xml", "b.xml").getBytes("UTF-8")));
+		assertNull(ConfigSnapshot.load(dir, URL, (CONTENT + " ").getBytes("UTF-8")));
+		assertNull(ConfigSnapshot.load(dir, URL + ".bak", content));
+		assertNotNull(ConfigSnapshot.load(dir, URL, content));
+	}
+
+	@Test
+	public void testTampered() throws Exception {
+		byte[] content = CONTENT.getBytes("UTF-8");
+		ConfigSnapshot.CacheDir dir = ConfigSnapshot.openCacheDir(cacheDir);
+		record(content, dir);
+		RandomAccessFile file = new RandomAccessFile(snapshotFile(cacheDir), "rw");
+		try {
+			file.seek(file.length() - 40);
+			int b = file.read();
+			file.seek(file.length() - 40);
+			file.write(b ^ 1);
+		} finally {
+			file.close();
+		}
+		assertNull(ConfigSnapshot.load(dir, URL, content));
+	}
+
+	@Test
+	public void testOtherApplication() throws Exception {
+		byte[] content = CONTENT.getBytes("UTF-8");
+		record(content, ConfigSnapshot.openCacheDir(cacheDir));
+		ConfigSnapshot.CacheDir other = ConfigSnapshot.openCacheDir(otherDir);
+		record(content, other);
+		assertNotNull(ConfigSnapshot.load(other, URL, content));
+		//其他应用的密钥签名的快照，即使放在本应用快照的位置也不会被加载
+		Files.copy(snapshotFile(cacheDir).toPath(), snapshotFile(otherDir).toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		assertNull(ConfigSnapshot.load(other, URL, content));
+	}
+
+	@Test
+	public void testInsecureDir() throws Exception {
+		if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+			return;
+		assertNotNull(ConfigSnapshot.openCacheDir(cacheDir));
+		Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+		assertNull(ConfigSnapshot.openCacheDir(cacheDir));
+		Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwx------"));
+		Files.setPosixFilePermissions(new File(cacheDir, "snapshot.key").toPath(),
+				PosixFilePermissions.fromString("rw-r--r--"));
+		assertNull(ConfigSnapshot.openCacheDir(cacheDir));
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.assemble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.frameworkset.spi.BaseApplicationContext;
+import org.junit.Test;
+
+import com.frameworkset.orm.annotation.Transaction;
+
+/**
+ * <p>Title: MethodDispatchTest.java</p>
+ * <p>Description: 代理方法调用描述符的解析结果，组件定义序列化后调用描述符的重新解析，
+ * 代理调用与直接调用的耗时对比见ProxyBenchmark</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class MethodDispatchTest {
+	public static class DispatchService {
+		private int count;
+
+		@Transaction
+		public int txAdd(int i) {
+			count += i;
+			return count;
+		}
+
+		public int add(int i) {
+			count += i;
+			return count;
+		}
+	}
+
+	/**
+	 * 创建没有aop配置的组件定义，事务方法通过@Transaction注解识别
+	 */
+	public static Pro createPro(Class type) {
+		Pro pro = new Pro();
+		pro.setBean(true);
+		pro.setClazz(type.getName());
+		return pro;
+	}
+
+	@Test
+	public void testDispatch() throws Exception {
+		Pro pro = createPro(DispatchService.class);
+		Method txAdd = DispatchService.class.getMethod("txAdd", int.class);
+		Method add = DispatchService.class.getMethod("add", int.class);
+		MethodDispatch txDispatch = pro.getMethodDispatch(txAdd);
+		assertNotNull(txDispatch.getTransactionMethod());
+		assertNotNull(txDispatch.newTransactionInterceptor());
+		assertNull(txDispatch.getAsyncMethod());
+		assertNull(txDispatch.getChainInterceptor());
+		assertSame(txDispatch, pro.getMethodDispatch(txAdd));
+		// 同一个方法的其他Method实例共享描述符
+		assertSame(txDispatch, pro.getMethodDispatch(DispatchService.class.getMethod("txAdd", int.class)));
+		MethodDispatch dispatch = pro.getMethodDispatch(add);
+		assertNull(dispatch.getTransactionMethod());
+		assertNull(dispatch.newTransactionInterceptor());
+	}
+
+	@Test
+	public void testProxyCall() throws Exception {
+		Pro pro = createPro(DispatchService.class);
+		DispatchService direct = new DispatchService();
+		DispatchService proxy = (DispatchService) BaseApplicationContext.createInf(pro, new DispatchService());
+		assertEquals(1, proxy.txAdd(1));
+		assertEquals(3, proxy.add(2));
+		assertEquals(proxy.add(0), direct.add(3));
+	}
+
+	@Test
+	public void testTransientDispatch() throws Exception {
+		Pro pro = createPro(DispatchService.class);
+		Method txAdd = DispatchService.class.getMethod("txAdd", int.class);
+		pro.prepareMethodDispatch(DispatchService.class);
+		assertNotNull(pro.getMethodDispatch(txAdd).getTransactionMethod());
+
+		// 调用描述符是运行时缓存，不参与序列化，反序列化后字段为null，再次调用时重新解析
+		String[] names = new String[] { "dispatchLock", "dispatchTable", "dispatchIndex", "dispatchPreparedTypes" };
+		for (int i = 0; i < names.length; i++) {
+			Field field = BaseTXManager.class.getDeclaredField(names[i]);
+			assertTrue(names[i], Modifier.isTransient(field.getModifiers()));
+			field.setAccessible(true);
+			field.set(pro, null);
+		}
+		MethodDispatch dispatch = pro.getMethodDispatch(txAdd);
+		assertNotNull(dispatch.getTransactionMethod());
+		assertSame(dispatch, pro.getMethodDispatch(txAdd));
+		pro.prepareMethodDispatch(DispatchService.class);
+		assertSame(dispatch, pro.getMethodDispatch(DispatchService.class.getMethod("txAdd", int.class)));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.spi.assemble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>Title: ParallelBootstrapTest.java</p>
+ * <p>Description: 并行加载与顺序加载的合并结果一致性：配置文件的导入关系、同名属性的覆盖顺序、
+ * 共享导入文件只解析一次以及循环导入的处理</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ParallelBootstrapTest {
+	private static final String BASE = "org/frameworkset/spi/assemble/bootstrap/";
+
+	private static List<ManagerImport> getManagerImports(String file) throws Exception {
+		return AssembleUtil.getManagerImports(null, null, BASE + file);
+	}
+
+	private static ServiceProviderManager loadSequential(String file) throws Exception {
+		ServiceProviderManager manager = new ServiceProviderManager(null);
+		List<ManagerImport> mis = getManagerImports(file);
+		for (int i = 0; i < mis.size(); i++)
+			manager.load(mis.get(i), null);
+		return manager;
+	}
+
+	private static ServiceProviderManager loadParallel(String file, ParallelBootstrap[] bootstrap) throws Exception {
+		ServiceProviderManager manager = new ServiceProviderManager(null);
+		bootstrap[0] = new ParallelBootstrap(manager);
+		bootstrap[0].load(getManagerImports(file));
+		return manager;
+	}
+
+	/**
+	 * 将配置文件的导入关系输出为root.xml[a.xml[c.xml],b.xml]的形式
+	 */
+	private static String toTree(List files) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < files.size(); i++) {
+			LinkConfigFile file = (LinkConfigFile) files.get(i);
+			if (i > 0)
+				builder.append(",");
+			builder.append(file.getIdentity().substring(BASE.length()));
+			if (file.getLinkConfigFiles().size() > 0)
+				builder.append("[").append(toTree(file.getLinkConfigFiles())).append("]");
+		}
+		return builder.toString();
+	}
+
+	private static void assertParents(List files, LinkConfigFile parent) {
+		for (int i = 0; i < files.size(); i++) {
+			LinkConfigFile file = (LinkConfigFile) files.get(i);
+			assertSame(parent, file.getParent());
+			assertParents(file.getLinkConfigFiles(), file);
+		}
+	}
+
+	@Test
+	public void testMergeOrder() throws Exception {
+		ServiceProviderManager sequential = loadSequential("root.xml");
+		ParallelBootstrap[] bootstrap = new ParallelBootstrap[1];
+		ServiceProviderManager parallel = loadParallel("root.xml", bootstrap);
+
+		assertEquals("root.xml[a.xml[c.xml],b.xml]", toTree(sequential.getTraceFiles()));
+		assertEquals(toTree(sequential.getTraceFiles()), toTree(parallel.getTraceFiles()));
+		assertParents(parallel.getTraceFiles(), null);
+		//深度优先合并顺序为root,a,c,b：c覆盖a的x，b覆盖c的shared
+		for (ServiceProviderManager manager : new ServiceProviderManager[] { sequential, parallel }) {
+			assertEquals("c", manager.getProperty("x"));
+			assertEquals("b", manager.getProperty("shared"));
+			assertEquals("root", manager.getProperty("root"));
+			assertEquals("a", manager.getProperty("a"));
+			assertEquals("b", manager.getProperty("b"));
+			assertEquals("c", manager.getProperty("c"));
+		}
+		assertEquals(sequential.getPropertyKeys(), parallel.getPropertyKeys());
+		//a.xml和b.xml共同导入的c.xml只解析一次
+		assertEquals(4, bootstrap[0].getParsedCount());
+	}
+
+	@Test(timeout = 30000)
+	public void testCyclicImport() throws Exception {
+		ParallelBootstrap[] bootstrap = new ParallelBootstrap[1];
+		ServiceProviderManager manager = loadParallel("cycle-root.xml", bootstrap);
+
+		assertEquals("cycle-root.xml[cycle-a.xml[cycle-b.xml]]", toTree(manager.getTraceFiles()));
+		assertParents(manager.getTraceFiles(), null);
+		assertEquals("cycle-a", manager.getProperty("cycle-a"));
+		assertEquals("cycle-b", manager.getProperty("cycle-b"));
+		assertEquals(3, bootstrap[0].getParsedCount());
+		assertNull(manager.getProperty("x"));
+	}
+}
@@ -0,0 +1,673 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.io.ObjectStreamException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.frameworkset.common.poolman.handle.ValueExchange;
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData.WrapInteger;
+
+/**
+ *
+ *
+ * <p>Title: ArrayRecord.java</p>
+ *
+ * <p>Description: 数组存储的记录，同一结果集结构的所有记录共用一个字段名称到列索引的字典(Columns，随结果集元数据缓存)，
+ * 字段值存放在Object数组中，INTEGER、BIGINT、DOUBLE、FLOAT类型的字段值存放在基本类型数组中，读取时才装箱。
+ * 对外的行为与Record一致，不在结果集中的字段通过Hashtable本身存放；
+ * 记录的读写不加锁，不能在多个线程中并发修改同一条记录；序列化时转换为普通的Record。
+ * 数据源配置compactrecord为true时查询结果使用本类</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ArrayRecord extends Record {
+	private static final int SLOT_OBJECT = 0;
+	private static final int SLOT_INT = 1;
+	private static final int SLOT_LONG = 2;
+	private static final int SLOT_DOUBLE = 3;
+	private static final int SLOT_FLOAT = 4;
+	/**
+	 * 字段值存放在基本类型数组中的标识
+	 */
+	private static final Object PRIMITIVE = new Object();
+
+	/**
+	 * 结果集结构对应的字段字典，由同一结果集元数据产生的所有记录共享
+	 */
+	public static class Columns {
+		private final String[] keys;
+		private final String[] labels;
+		private final int[] sqlTypes;
+		private final int[] slotTypes;
+		private final Map<String, Integer> index;
+		private final String[] fields;
+		private final Map samecols;
+		private final boolean hasLongs;
+		private final boolean hasDoubles;
+
+		public Columns(PoolManResultSetMetaData meta) throws SQLException {
+			int cols = meta.getColumnCounts();
+			keys = new String[cols];
+			labels = new String[cols];
+			sqlTypes = new int[cols];
+			slotTypes = new int[cols];
+			index = new HashMap<String, Integer>(cols * 4 / 3 + 1);
+			boolean longs = false;
+			boolean doubles = false;
+			for (int i = 1; i <= cols; i++) {
+				int col = i - 1;
+				WrapInteger wi = meta.getSameColumns(i);
+				//与ResultMap.buildMap中字段名称的处理方式保持一致
+				keys[col] = wi == null || i == 1 ? meta.getColumnLabelUpper(i) : wi.getColumnName(i - 1);
+				labels[col] = meta.getColumnLabel(i);
+				sqlTypes[col] = meta.getColumnType(i);
+				switch (sqlTypes[col]) {
+				case Types.INTEGER:
+					slotTypes[col] = SLOT_INT;
+					longs = true;
+					break;
+				case Types.BIGINT:
+					slotTypes[col] = SLOT_LONG;
+					longs = true;
+					break;
+				case Types.DOUBLE:
+					slotTypes[col] = SLOT_DOUBLE;
+					doubles = true;
+					break;
+				case Types.FLOAT:
+					slotTypes[col] = SLOT_FLOAT;
+					doubles = true;
+					break;
+				default:
+					slotTypes[col] = SLOT_OBJECT;
+				}
+				if (!index.containsKey(keys[col]))
+					index.put(keys[col], Integer.valueOf(col));
+			}
+			hasLongs = longs;
+			hasDoubles = doubles;
+			fields = meta.get_columnLabel_upper();
+			samecols = meta.getSamecols();
+		}
+
+		public int size() {
+			return keys.length;
+		}
+
+		public String getKey(int col) {
+			return keys[col];
+		}
+
+		/**
+		 * 获取字段名称对应的列索引，不存在时返回-1
+		 */
+		public int indexOf(Object key) {
+			if (!(key instanceof String))
+				return -1;
+			Integer idx = index.get(key);
+			return idx == null ? -1 : idx.intValue();
+		}
+	}
+
+	private final Columns columns;
+	private Object[] values;
+	private long[] longs;
+	private double[] doubles;
+
+	public ArrayRecord(Columns columns) {
+		super(1, columns.fields, columns.samecols);
+		this.columns = columns;
+		int cols = columns.size();
+		this.values = new Object[cols];
+		if (columns.hasLongs)
+			longs = new long[cols];
+		if (columns.hasDoubles)
+			doubles = new double[cols];
+	}
+
+	/**
+	 * 从结果集当前行构建记录，字段值的获取方式与ResultMap.buildMap相同
+	 */
+	public static ArrayRecord buildRecord(ResultSet rs, StatementInfo stmtInfo) throws SQLException {
+		return buildRecord(rs, stmtInfo.getMeta().getRecordColumns(), stmtInfo.getDbname());
+	}
+
+	/**
+	 * 按字段字典从结果集当前行构建记录，dbname用于读取需要数据库适配器处理的字段
+	 */
+	public static ArrayRecord buildRecord(ResultSet rs, Columns columns, String dbname) throws SQLException {
+		ArrayRecord record = new ArrayRecord(columns);
+		record.setRowid(rs.getRow());
+		Object[] values = record.values;
+		for (int col = 0; col < values.length; col++) {
+			String label = columns.labels[col];
+			switch (columns.slotTypes[col]) {
+			case SLOT_INT:
+				record.longs[col] = rs.getInt(label);
+				values[col] = PRIMITIVE;
+				break;
+			case SLOT_LONG:
+				record.longs[col] = rs.getLong(label);
+				values[col] = PRIMITIVE;
+				break;
+			case SLOT_DOUBLE:
+				record.doubles[col] = rs.getDouble(label);
+				values[col] = PRIMITIVE;
+				break;
+			case SLOT_FLOAT:
+				record.doubles[col] = rs.getFloat(label);
+				values[col] = PRIMITIVE;
+				break;
+			default:
+				values[col] = ValueExchange.getValueFromRS(rs, label, columns.sqlTypes[col], dbname);
+			}
+		}
+		return record;
+	}
+
+	public Columns getColumns() {
+		return columns;
+	}
+
+	private Object getSlot(int col) {
+		Object value = values[col];
+		if (value != PRIMITIVE)
+			return value;
+		switch (columns.slotTypes[col]) {
+		case SLOT_INT:
+			return Integer.valueOf((int) longs[col]);
+		case SLOT_LONG:
+			return Long.valueOf(longs[col]);
+		case SLOT_DOUBLE:
+			return Double.valueOf(doubles[col]);
+		default:
+			return Float.valueOf((float) doubles[col]);
+		}
+	}
+
+	private int slots() {
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null)
+				count++;
+		}
+		return count;
+	}
+
+	public Object getObject(int parameterIndex) throws SQLException {
+		if (parameterIndex >= 0 && parameterIndex < values.length)
+			return getSlot(parameterIndex);
+		return super.getObject(parameterIndex);
+	}
+
+	public int getInt(int parameterIndex) throws SQLException {
+		if (parameterIndex >= 0 && parameterIndex < values.length && values[parameterIndex] == PRIMITIVE
+				&& columns.slotTypes[parameterIndex] == SLOT_INT)
+			return (int) longs[parameterIndex];
+		return super.getInt(parameterIndex);
+	}
+
+	public long getLong(int parameterIndex) throws SQLException {
+		if (parameterIndex >= 0 && parameterIndex < values.length && values[parameterIndex] == PRIMITIVE
+				&& columns.slotTypes[parameterIndex] == SLOT_LONG)
+			return longs[parameterIndex];
+		return super.getLong(parameterIndex);
+	}
+
+	public double getDouble(int parameterIndex) throws SQLException {
+		if (parameterIndex >= 0 && parameterIndex < values.length && values[parameterIndex] == PRIMITIVE
+				&& columns.slotTypes[parameterIndex] == SLOT_DOUBLE)
+			return doubles[parameterIndex];
+		return super.getDouble(parameterIndex);
+	}
+
+	/* Map接口的实现：字典中的字段存放在数组中，其他字段存放在Hashtable中 */
+
+	public int size() {
+		return slots() + super.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public Object get(Object key) {
+		int col = columns.indexOf(key);
+		if (col >= 0)
+			return getSlot(col);
+		return super.get(key);
+	}
+
+	public boolean containsKey(Object key) {
+		int col = columns.indexOf(key);
+		if (col >= 0)
+			return values[col] != null;
+		return super.containsKey(key);
+	}
+
+	public boolean containsValue(Object value) {
+		if (value == null)
+			throw new NullPointerException();
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null && value.equals(getSlot(i)))
+				return true;
+		}
+		return super.containsValue(value);
+	}
+
+	public boolean contains(Object value) {
+		return containsValue(value);
+	}
+
+	public Object put(Object key, Object value) {
+		if (value == null)
+			throw new NullPointerException();
+		int col = columns.indexOf(key);
+		if (col >= 0) {
+			Object old = values[col] == null ? null : getSlot(col);
+			values[col] = value;
+			return old;
+		}
+		return super.put(key, value);
+	}
+
+	public Object remove(Object key) {
+		int col = columns.indexOf(key);
+		if (col >= 0) {
+			Object old = values[col] == null ? null : getSlot(col);
+			values[col] = null;
+			return old;
+		}
+		return super.remove(key);
+	}
+
+	public void putAll(Map t) {
+		Iterator<Map.Entry> it = t.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry e = it.next();
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	public void clear() {
+		for (int i = 0; i < values.length; i++)
+			values[i] = null;
+		super.clear();
+	}
+
+	public Object clone() {
+		ArrayRecord record = (ArrayRecord) super.clone();
+		record.values = values.clone();
+		if (longs != null)
+			record.longs = longs.clone();
+		if (doubles != null)
+			record.doubles = doubles.clone();
+		return record;
+	}
+
+	public Set entrySet() {
+		return new AbstractSet() {
+			public Iterator iterator() {
+				return new EntryIterator();
+			}
+
+			public int size() {
+				return ArrayRecord.this.size();
+			}
+
+			public void clear() {
+				ArrayRecord.this.clear();
+			}
+		};
+	}
+
+	public Set keySet() {
+		return new AbstractSet() {
+			public Iterator iterator() {
+				final Iterator<Map.Entry> it = new EntryIterator();
+				return new Iterator() {
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					public Object next() {
+						return it.next().getKey();
+					}
+
+					public void remove() {
+						it.remove();
+					}
+				};
+			}
+
+			public int size() {
+				return ArrayRecord.this.size();
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			public boolean remove(Object o) {
+				return ArrayRecord.this.remove(o) != null;
+			}
+
+			public void clear() {
+				ArrayRecord.this.clear();
+			}
+		};
+	}
+
+	public Collection values() {
+		return new AbstractCollection() {
+			public Iterator iterator() {
+				final Iterator<Map.Entry> it = new EntryIterator();
+				return new Iterator() {
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					public Object next() {
+						return it.next().getValue();
+					}
+
+					public void remove() {
+						it.remove();
+					}
+				};
+			}
+
+			public int size() {
+				return ArrayRecord.this.size();
+			}
+
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+
+			public void clear() {
+				ArrayRecord.this.clear();
+			}
+		};
+	}
+
+	public Enumeration keys() {
+		return Collections.enumeration(new ArrayList(keySet()));
+	}
+
+	public Enumeration elements() {
+		return Collections.enumeration(new ArrayList(values()));
+	}
+
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof Map))
+			return false;
+		Map t = (Map) o;
+		if (t.size() != size())
+			return false;
+		Iterator<Map.Entry> it = new EntryIterator();
+		while (it.hasNext()) {
+			Map.Entry e = it.next();
+			if (!e.getValue().equals(t.get(e.getKey())))
+				return false;
+		}
+		return true;
+	}
+
+	public int hashCode() {
+		int h = 0;
+		Iterator<Map.Entry> it = new EntryIterator();
+		while (it.hasNext())
+			h += it.next().hashCode();
+		return h;
+	}
+
+	public String toString() {
+		StringBuilder ret = new StringBuilder("{");
+		Iterator<Map.Entry> it = new EntryIterator();
+		while (it.hasNext()) {
+			Map.Entry e = it.next();
+			ret.append(e.getKey()).append('=').append(e.getValue());
+			if (it.hasNext())
+				ret.append(", ");
+		}
+		return ret.append('}').toString();
+	}
+
+	/* jdk 1.8 Map默认方法，Hashtable中的实现直接操作哈希表，需要改为通过数组存取 */
+
+	public Object getOrDefault(Object key, Object defaultValue) {
+		Object value = get(key);
+		return value != null ? value : defaultValue;
+	}
+
+	public void forEach(BiConsumer action) {
+		Iterator<Map.Entry> it = new EntryIterator();
+		while (it.hasNext()) {
+			Map.Entry e = it.next();
+			action.accept(e.getKey(), e.getValue());
+		}
+	}
+
+	public void replaceAll(BiFunction function) {
+		Iterator<Map.Entry> it = new EntryIterator();
+		while (it.hasNext()) {
+			Map.Entry e = it.next();
+			e.setValue(function.apply(e.getKey(), e.getValue()));
+		}
+	}
+
+	public Object putIfAbsent(Object key, Object value) {
+		Object old = get(key);
+		if (old == null)
+			put(key, value);
+		return old;
+	}
+
+	public boolean remove(Object key, Object value) {
+		Object old = get(key);
+		if (old != null && old.equals(value)) {
+			remove(key);
+			return true;
+		}
+		return false;
+	}
+
+	public boolean replace(Object key, Object oldValue, Object newValue) {
+		Object old = get(key);
+		if (old != null && old.equals(oldValue)) {
+			put(key, newValue);
+			return true;
+		}
+		return false;
+	}
+
+	public Object replace(Object key, Object value) {
+		Object old = get(key);
+		if (old != null)
+			put(key, value);
+		return old;
+	}
+
+	public Object computeIfAbsent(Object key, Function mappingFunction) {
+		Object old = get(key);
+		if (old != null)
+			return old;
+		Object value = mappingFunction.apply(key);
+		if (value != null)
+			put(key, value);
+		return value;
+	}
+
+	public Object computeIfPresent(Object key, BiFunction remappingFunction) {
+		Object old = get(key);
+		if (old == null)
+			return null;
+		Object value = remappingFunction.apply(key, old);
+		if (value == null)
+			remove(key);
+		else
+			put(key, value);
+		return value;
+	}
+
+	public Object compute(Object key, BiFunction remappingFunction) {
+		Object value = remappingFunction.apply(key, get(key));
+		if (value == null)
+			remove(key);
+		else
+			put(key, value);
+		return value;
+	}
+
+	public Object merge(Object key, Object value, BiFunction remappingFunction) {
+		Object old = get(key);
+		Object newValue = old == null ? value : remappingFunction.apply(old, value);
+		if (newValue == null)
+			remove(key);
+		else
+			put(key, newValue);
+		return newValue;
+	}
+
+	/**
+	 * 序列化时转换为普通的Record
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		Record record = new Record(size() * 4 / 3 + 1, columns.fields, columns.samecols);
+		record.setRowid(getRowid());
+		Iterator<Map.Entry> it = new EntryIterator();
+		while (it.hasNext()) {
+			Map.Entry e = it.next();
+			record.put(e.getKey(), e.getValue());
+		}
+		return record;
+	}
+
+	private class SlotEntry implements Map.Entry {
+		private final int col;
+
+		SlotEntry(int col) {
+			this.col = col;
+		}
+
+		public Object getKey() {
+			return columns.keys[col];
+		}
+
+		public Object getValue() {
+			return getSlot(col);
+		}
+
+		public Object setValue(Object value) {
+			if (value == null)
+				throw new NullPointerException();
+			Object old = getSlot(col);
+			values[col] = value;
+			return old;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry e = (Map.Entry) o;
+			return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+		}
+
+		public int hashCode() {
+			return getKey().hashCode() ^ getValue().hashCode();
+		}
+
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * 先迭代数组中的字段，再迭代Hashtable中的字段
+	 */
+	private class EntryIterator implements Iterator<Map.Entry> {
+		private int next = -1;
+		private int current = -1;
+		private Iterator<Map.Entry> extra;
+		private boolean inExtra;
+
+		EntryIterator() {
+			advance();
+		}
+
+		private void advance() {
+			next++;
+			while (next < values.length && values[next] == null)
+				next++;
+		}
+
+		public boolean hasNext() {
+			if (next < values.length)
+				return true;
+			if (extra == null)
+				extra = ArrayRecord.super.entrySet().iterator();
+			return extra.hasNext();
+		}
+
+		public Map.Entry next() {
+			if (next < values.length) {
+				current = next;
+				advance();
+				inExtra = false;
+				return new SlotEntry(current);
+			}
+			if (!hasNext())
+				throw new NoSuchElementException();
+			inExtra = true;
+			return extra.next();
+		}
+
+		public void remove() {
+			if (inExtra) {
+				extra.remove();
+			} else {
+				if (current < 0 || values[current] == null)
+					throw new IllegalStateException();
+				values[current] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.frameworkset.spi.BaseApplicationContext;
+
+import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
+import com.frameworkset.common.poolman.util.SQLManager;
+import com.frameworkset.orm.transaction.JDBCTransaction;
+import com.frameworkset.orm.transaction.TransactionManager;
+import com.frameworkset.util.ListInfo;
+
+/**
+ *
+ * <p>Title: AsyncSQLExecutor.java</p>
+ *
+ * <p>Description: SQLExecutor的异步执行门面，查询和更新在数据源专属的有界线程池中执行，立即返回CompletableFuture，
+ * 调用线程(例如servlet线程)不再阻塞等待数据库。每个数据源的线程数等于连接池的maximumSize，
+ * 超出的任务在内存队列中排队，而不是占用调用线程阻塞在连接池上。
+ * 调用返回的SQLFuture.cancel时，已经开始执行的sql通过Statement.cancel取消，尚未开始的任务不再执行；
+ * 通过thenApply等方法派生的future取消时不会取消sql。
+ * 缺省情况下任务在工作线程中执行，不参与调用线程的事务；通过submit(dbname, true, task)可以把调用线程当前的
+ * TransactionManager事务传递给工作线程，此时事务连接在任务执行期间由工作线程使用，调用线程在future完成之前
+ * 不能在同一事务中执行sql，也不能提交或者回滚事务。
+ * 需要执行ConfigSQLExecutor等其他操作时，通过submit方法提交自定义的任务</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class AsyncSQLExecutor {
+	private static final ConcurrentHashMap<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+	private static final ThreadLocal<SQLFuture<?>> current = new ThreadLocal<SQLFuture<?>>();
+	private static volatile boolean shutdownHookAdded;
+
+	/**
+	 * 可以通过Statement.cancel取消的异步执行结果
+	 */
+	public static class SQLFuture<T> extends CompletableFuture<T> {
+		private List<Statement> statements;
+
+		synchronized void addStatement(Statement stmt) throws SQLException {
+			if (isCancelled())
+				throw new SQLException("Async sql execution cancelled.");
+			if (statements == null)
+				statements = new ArrayList<Statement>();
+			statements.add(stmt);
+		}
+
+		private synchronized void cancelStatements() {
+			if (statements == null)
+				return;
+			for (int i = 0; i < statements.size(); i++) {
+				try {
+					statements.get(i).cancel();
+				} catch (Throwable e) {
+					// 语句已经关闭或者驱动不支持取消
+				}
+			}
+			statements = null;
+		}
+
+		private synchronized void clearStatements() {
+			statements = null;
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled)
+				cancelStatements();
+			return cancelled;
+		}
+	}
+
+	/**
+	 * StatementInfo创建语句时调用，在异步任务中创建的语句可以被SQLFuture.cancel取消
+	 */
+	static void registerStatement(Statement stmt) throws SQLException {
+		SQLFuture<?> future = current.get();
+		if (future != null)
+			future.addStatement(stmt);
+	}
+
+	/**
+	 * 在当前线程中执行task，task创建的语句登记到future，future取消时通过Statement.cancel取消正在执行的sql，
+	 * 供ScatterGatherExecutor等在自己的线程池中执行可取消的sql
+	 */
+	static <T> T call(SQLFuture<?> future, Callable<T> task) throws Exception {
+		SQLFuture<?> old = current.get();
+		current.set(future);
+		try {
+			return task.call();
+		} finally {
+			if (old == null)
+				current.remove();
+			else
+				current.set(old);
+			future.clearStatements();
+		}
+	}
+
+	private static ThreadPoolExecutor getExecutor(String dbname) {
+		ThreadPoolExecutor executor = executors.get(dbname);
+		if (executor != null)
+			return executor;
+		JDBCPoolMetaData info = SQLManager.getInstance().getJDBCPoolMetaData(dbname);
+		int threads = info != null && info.getMaximumSize() > 0 ? info.getMaximumSize() : Runtime.getRuntime().availableProcessors() * 2;
+		final String name = dbname;
+		ThreadPoolExecutor created = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger workerNo = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "AsyncSQL-" + name + "-worker-" + workerNo.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		created.allowCoreThreadTimeOut(true);
+		executor = executors.putIfAbsent(dbname, created);
+		if (executor != null) {
+			created.shutdown();
+			return executor;
+		}
+		addShutdownHook();
+		return created;
+	}
+
+	private static void addShutdownHook() {
+		if (shutdownHookAdded)
+			return;
+		synchronized (AsyncSQLExecutor.class) {
+			if (shutdownHookAdded)
+				return;
+			shutdownHookAdded = true;
+			BaseApplicationContext.addShutdownHook(new Runnable() {
+				public void run() {
+					shutdown();
+				}
+			});
+		}
+	}
+
+	/**
+	 * 关闭所有数据源的异步执行线程池，正在执行的任务被中断
+	 */
+	public static void shutdown() {
+		List<ThreadPoolExecutor> all = new ArrayList<ThreadPoolExecutor>(executors.values());
+		executors.clear();
+		for (ThreadPoolExecutor executor : all)
+			executor.shutdownNow();
+	}
+
+	/**
+	 * 在数据源dbname的异步线程池中执行任务
+	 * @param dbname 数据源名称，为null时使用缺省数据源
+	 * @param propagateTransaction 是否将调用线程当前的事务传递给工作线程
+	 * @param task 在工作线程中执行的任务
+	 */
+	public static <T> SQLFuture<T> submit(String dbname, boolean propagateTransaction, final Callable<T> task) {
+		if (dbname == null)
+			dbname = SQLManager.getInstance().getDefaultDBName();
+		final JDBCTransaction tx = propagateTransaction ? TransactionManager.getTransaction() : null;
+		final SQLFuture<T> future = new SQLFuture<T>();
+		Runnable runnable = new Runnable() {
+			public void run() {
+				if (future.isDone())
+					return;
+				TransactionManager tm = null;
+				try {
+					if (tx != null) {
+						tm = new TransactionManager();
+						tm.resume(tx);
+					}
+					current.set(future);
+					future.complete(task.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					current.remove();
+					future.clearStatements();
+					if (tm != null) {
+						try {
+							tm.suspendAll();
+						} catch (Exception e) {
+							// 只解除工作线程与事务的关联
+						}
+					}
+				}
+			}
+		};
+		try {
+			getExecutor(dbname).execute(runnable);
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new NestedSQLException("Async sql executor of datasource " + dbname + " is shutdown.", e));
+		}
+		return future;
+	}
+
+	/**
+	 * 在数据源dbname的异步线程池中执行任务，不传递调用线程的事务
+	 */
+	public static <T> SQLFuture<T> submit(String dbname, Callable<T> task) {
+		return submit(dbname, false, task);
+	}
+
+	public static <T> SQLFuture<List<T>> queryList(Class<T> beanType, String sql, Object... fields) {
+		return queryListWithDBName(beanType, null, sql, fields);
+	}
+
+	public static <T> SQLFuture<List<T>> queryListWithDBName(final Class<T> beanType, final String dbname, final String sql, final Object... fields) {
+		return submit(dbname, new Callable<List<T>>() {
+			public List<T> call() throws Exception {
+				return SQLExecutor.queryListWithDBName(beanType, dbname, sql, fields);
+			}
+		});
+	}
+
+	public static <T> SQLFuture<T> queryObject(Class<T> beanType, String sql, Object... fields) {
+		return queryObjectWithDBName(beanType, null, sql, fields);
+	}
+
+	public static <T> SQLFuture<T> queryObjectWithDBName(final Class<T> beanType, final String dbname, final String sql, final Object... fields) {
+		return submit(dbname, new Callable<T>() {
+			public T call() throws Exception {
+				return SQLExecutor.queryObjectWithDBName(beanType, dbname, sql, fields);
+			}
+		});
+	}
+
+	public static SQLFuture<ListInfo> queryListInfo(Class<?> beanType, String sql, long offset, int pagesize, Object... fields) {
+		return queryListInfoWithDBName(beanType, null, sql, offset, pagesize, fields);
+	}
+
+	public static SQLFuture<ListInfo> queryListInfoWithDBName(final Class<?> beanType, final String dbname, final String sql,
+			final long offset, final int pagesize, final Object... fields) {
+		return submit(dbname, new Callable<ListInfo>() {
+			public ListInfo call() throws Exception {
+				return SQLExecutor.queryListInfoWithDBName(beanType, dbname, sql, offset, pagesize, fields);
+			}
+		});
+	}
+
+	public static SQLFuture<Object> insert(String sql, Object... fields) {
+		return insertWithDBName(null, sql, fields);
+	}
+
+	public static SQLFuture<Object> insertWithDBName(final String dbname, final String sql, final Object... fields) {
+		return submit(dbname, new Callable<Object>() {
+			public Object call() throws Exception {
+				return SQLExecutor.insertWithDBName(dbname, sql, fields);
+			}
+		});
+	}
+
+	public static SQLFuture<Object> update(String sql, Object... fields) {
+		return updateWithDBName(null, sql, fields);
+	}
+
+	public static SQLFuture<Object> updateWithDBName(final String dbname, final String sql, final Object... fields) {
+		return submit(dbname, new Callable<Object>() {
+			public Object call() throws Exception {
+				return SQLExecutor.updateWithDBName(dbname, sql, fields);
+			}
+		});
+	}
+
+	public static SQLFuture<Object> delete(String sql, Object... fields) {
+		return deleteWithDBName(null, sql, fields);
+	}
+
+	public static SQLFuture<Object> deleteWithDBName(final String dbname, final String sql, final Object... fields) {
+		return submit(dbname, new Callable<Object>() {
+			public Object call() throws Exception {
+				return SQLExecutor.deleteWithDBName(dbname, sql, fields);
+			}
+		});
+	}
+}
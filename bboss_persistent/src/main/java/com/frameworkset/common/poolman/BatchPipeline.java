@@ -0,0 +1,336 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.frameworkset.persitent.util.SQLInfo;
+import org.frameworkset.spi.BaseApplicationContext;
+
+import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
+import com.frameworkset.orm.transaction.TransactionManager;
+
+/**
+ *
+ * <p>Title: BatchPipeline.java</p>
+ *
+ * <p>Description: insertBeans/updateBeans/deleteBeans的分批执行器，按照数据源的batchsize配置将bean列表切分为多个批次，
+ * 每个批次单独转换为sql参数并执行一次executeBatch，内存占用只与批次大小有关。
+ * batchcommit为true并且不在事务环境中时每个批次执行完毕后提交一次；
+ * batchpipeline为true时由转换线程将后续批次的bean转换为sql参数，当前线程同时执行已经转换好的批次。
+ * 转换线程来自数据源专属的有界线程池，线程数为cpu核数，线程全部忙碌时不排队等待也不创建新线程，
+ * 由当前线程自己依次转换和执行批次。
+ * 每个批次的执行结果按照顺序汇总到GetCUDResult中</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class BatchPipeline {
+	private static final Logger log = Logger.getLogger(BatchPipeline.class);
+	private static final ConcurrentHashMap<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+	private static volatile boolean shutdownHookAdded;
+	/**
+	 * 转换线程完成所有批次转换的标识
+	 */
+	private static final List<SQLParams> END = new ArrayList<SQLParams>(0);
+	private final String dbname;
+	private final SQLInfo sql;
+	private final List beans;
+	private final boolean batchOptimize;
+	private final int action;
+	private final int batchsize;
+	private final boolean batchcommit;
+	private final boolean batchpipeline;
+
+	public BatchPipeline(String dbname, SQLInfo sql, List beans, boolean batchOptimize, int action, JDBCPoolMetaData meta) {
+		this.dbname = dbname;
+		this.sql = sql;
+		this.beans = beans;
+		this.batchOptimize = batchOptimize;
+		this.action = action;
+		this.batchsize = meta.getBatchsize();
+		this.batchcommit = meta.isBatchcommit();
+		this.batchpipeline = meta.isBatchpipeline();
+	}
+
+	private static ThreadPoolExecutor getExecutor(String dbname) {
+		ThreadPoolExecutor executor = executors.get(dbname);
+		if (executor != null)
+			return executor;
+		int threads = Runtime.getRuntime().availableProcessors();
+		final String name = dbname;
+		ThreadPoolExecutor created = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger converterNo = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "BatchPipeline-" + name + "-converter-" + converterNo.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		created.allowCoreThreadTimeOut(true);
+		executor = executors.putIfAbsent(dbname, created);
+		if (executor != null) {
+			created.shutdown();
+			return executor;
+		}
+		addShutdownHook();
+		return created;
+	}
+
+	private static void addShutdownHook() {
+		if (shutdownHookAdded)
+			return;
+		synchronized (BatchPipeline.class) {
+			if (shutdownHookAdded)
+				return;
+			shutdownHookAdded = true;
+			BaseApplicationContext.addShutdownHook(new Runnable() {
+				public void run() {
+					shutdown();
+				}
+			});
+		}
+	}
+
+	/**
+	 * 关闭所有数据源的批次转换线程池，正在转换的批次被中断
+	 */
+	public static void shutdown() {
+		List<ThreadPoolExecutor> all = new ArrayList<ThreadPoolExecutor>(executors.values());
+		executors.clear();
+		for (ThreadPoolExecutor executor : all)
+			executor.shutdownNow();
+	}
+
+	/**
+	 * 判断是否需要分批执行
+	 */
+	public static boolean needChunk(JDBCPoolMetaData meta, List beans) {
+		return meta != null && meta.getBatchsize() > 0 && beans.size() > meta.getBatchsize();
+	}
+
+	public void execute(GetCUDResult getCUDResult) throws SQLException {
+		Connection con = null;
+		boolean autocommit = true;
+		boolean chunkcommit = false;
+		int chunks = 0;
+		List<GetCUDResult> results = getCUDResult != null ? new ArrayList<GetCUDResult>() : null;
+		Converter converter = null;
+		try {
+			con = DBUtil.getConection(dbname);
+			if (batchcommit && TransactionManager.getTransaction() == null) {
+				autocommit = con.getAutoCommit();
+				con.setAutoCommit(false);
+				chunkcommit = true;
+			}
+			if (batchpipeline)
+				converter = startConverter();
+			int start = 0;
+			while (true) {
+				List<SQLParams> params = null;
+				if (converter != null)
+					params = converter.take();
+				else if (start < beans.size())
+					params = convert(start, con);
+				else
+					params = END;
+				if (params == END)
+					break;
+				start += batchsize;
+				executeChunk(con, params, results);
+				if (chunkcommit)
+					con.commit();
+				chunks++;
+			}
+		} catch (SQLException e) {
+			if (chunkcommit)
+				rollback(con);
+			log.error("Execute batch chunk " + (chunks + 1) + " of sql[" + sql.getSql() + "] failed," + chunks
+					+ " chunks with batchsize " + batchsize + (chunkcommit ? " committed." : " executed."), e);
+			throw e;
+		} catch (RuntimeException e) {
+			if (chunkcommit)
+				rollback(con);
+			throw e;
+		} finally {
+			if (converter != null)
+				converter.shutdown();
+			if (con != null) {
+				if (chunkcommit) {
+					try {
+						con.setAutoCommit(autocommit);
+					} catch (Exception e) {
+
+					}
+				}
+				try {
+					con.close();
+				} catch (Exception e) {
+
+				}
+			}
+		}
+		if (results != null)
+			merge(getCUDResult, results);
+	}
+
+	/**
+	 * 在转换线程池中启动批次转换，线程池没有空闲线程时返回null，由当前线程转换
+	 */
+	private Converter startConverter() {
+		Converter converter = new Converter();
+		try {
+			getExecutor(dbname).execute(converter);
+			return converter;
+		} catch (RejectedExecutionException e) {
+			if (log.isDebugEnabled())
+				log.debug("Batch converters of datasource " + dbname + " are busy or shutdown, convert chunks in the calling thread.");
+			return null;
+		}
+	}
+
+	private List<SQLParams> convert(int start, Connection con) throws SQLException {
+		int end = Math.min(start + batchsize, beans.size());
+		return SQLParams.convertBeansToSqlParams(beans.subList(start, end), sql, dbname, action, con);
+	}
+
+	private void executeChunk(Connection con, List<SQLParams> params, List<GetCUDResult> results) throws SQLException {
+		PreparedDBUtil dbutil = new PreparedDBUtil();
+		dbutil.setBatchOptimize(batchOptimize);
+		dbutil.setPrepareDBName(dbname);
+		dbutil.addPreparedBatch(new ListSQLParams(params, sql));
+		GetCUDResult result = results != null ? new GetCUDResult() : null;
+		dbutil.executePreparedBatch(con, result);
+		if (result != null)
+			results.add(result);
+	}
+
+	private static void rollback(Connection con) {
+		try {
+			con.rollback();
+		} catch (Exception e) {
+
+		}
+	}
+
+	/**
+	 * 按照批次顺序合并更新记录数和自动产生的主键
+	 */
+	private static void merge(GetCUDResult getCUDResult, List<GetCUDResult> results) {
+		int total = 0;
+		for (GetCUDResult result : results) {
+			if (result.getResult() instanceof int[])
+				total += ((int[]) result.getResult()).length;
+		}
+		int[] counts = new int[total];
+		List<Object> keys = null;
+		int pos = 0;
+		for (GetCUDResult result : results) {
+			if (result.getResult() instanceof int[]) {
+				int[] ret = (int[]) result.getResult();
+				System.arraycopy(ret, 0, counts, pos, ret.length);
+				pos += ret.length;
+			}
+			if (result.getKeys() instanceof List) {
+				if (keys == null)
+					keys = new ArrayList<Object>();
+				keys.addAll((List) result.getKeys());
+			}
+		}
+		getCUDResult.setResult(counts);
+		getCUDResult.setUpdatecount(counts);
+		getCUDResult.setKeys(keys);
+		getCUDResult.setChunkResults(results);
+	}
+
+	/**
+	 * 批次转换任务，转换好的批次放入容量为2的队列，执行线程跟不上时转换线程阻塞等待。
+	 * 转换线程不在调用线程的事务环境中，插入操作需要生成主键时使用独立的数据库链接
+	 */
+	private class Converter implements Runnable {
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(2);
+		private volatile boolean stopped = false;
+		/**
+		 * 正在执行转换的线程池线程，只在转换期间中断，避免中断线程池中的其他任务
+		 */
+		private Thread worker;
+
+		public void run() {
+			synchronized (this) {
+				if (stopped)
+					return;
+				worker = Thread.currentThread();
+			}
+			try {
+				for (int start = 0; start < beans.size() && !stopped; start += batchsize) {
+					queue.put(convert(start, null));
+				}
+				queue.put(END);
+			} catch (InterruptedException e) {
+
+			} catch (Throwable e) {
+				try {
+					queue.put(e);
+				} catch (InterruptedException e1) {
+
+				}
+			} finally {
+				synchronized (this) {
+					worker = null;
+					Thread.interrupted();
+				}
+			}
+		}
+
+		List<SQLParams> take() throws SQLException {
+			Object chunk = null;
+			try {
+				chunk = queue.take();
+			} catch (InterruptedException e) {
+				throw new NestedSQLException("Wait for converting beans to sql params interrupted.", e);
+			}
+			if (chunk instanceof SQLException)
+				throw (SQLException) chunk;
+			if (chunk instanceof RuntimeException)
+				throw (RuntimeException) chunk;
+			if (chunk instanceof Throwable)
+				throw new NestedSQLException("Convert beans to sql params failed.", (Throwable) chunk);
+			return (List<SQLParams>) chunk;
+		}
+
+		synchronized void shutdown() {
+			stopped = true;
+			if (worker != null)
+				worker.interrupt();
+		}
+	}
+}
@@ -16,14 +16,19 @@
 package com.frameworkset.common.poolman;
 
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
 
 import org.frameworkset.persitent.util.SQLInfo;
 import org.frameworkset.persitent.util.SQLUtil;
+import org.frameworkset.util.MoreListInfo;
 
 import com.frameworkset.common.poolman.handle.FieldRowHandler;
 import com.frameworkset.common.poolman.handle.NullRowHandler;
 import com.frameworkset.common.poolman.handle.RowHandler;
+import com.frameworkset.orm.cache.CacheKey;
+import com.frameworkset.orm.cache.CacheModel;
+import com.frameworkset.orm.transaction.TransactionManager;
 import com.frameworkset.util.ListInfo;
 
 /**
@@ -58,6 +63,91 @@ public class ConfigSQLExecutor  {
 			throw new NestedSQLException("名称为[" + sqlname + "]的sql语句不存在，请检查配置文件[" + context.getSQLFile() + "]配置是否正确.");
 		return sql;
 	}
+	/**
+	 * 获取sql的查询结果缓存，事务中的查询不使用缓存：
+	 * 事务中的修改在提交后才刷新缓存，查询需要读到本事务未提交的修改，也不能把未提交的数据放入缓存
+	 */
+	private static CacheModel getCacheModel(SQLInfo sql)
+	{
+		CacheModel cacheModel = sql.getCacheModel();
+		if(cacheModel == null || TransactionManager.getTransaction() != null)
+			return null;
+		return cacheModel;
+	}
+	/**
+	 * 构建查询结果缓存的key
+	 */
+	private static CacheKey buildCacheKey(String method,String dbname,SQLInfo sql,Object... args)
+	{
+		return new CacheKey(method,dbname,sql.getSqlname(),args);
+	}
+	
+	/**
+	 * 复制分页结果，复制的分页结果与原结果共享记录，调用者修改分页信息或者替换记录集合不会影响原结果
+	 * @param listInfo
+	 * @param datas 复制的分页结果的当页记录
+	 * @return
+	 */
+	private static ListInfo copyListInfo(ListInfo listInfo,List datas)
+	{
+		ListInfo copy = new ListInfo();
+		copy.setShowAll(listInfo.isShowAll());
+		copy.setMaxPageItems(listInfo.getMaxPageItems());
+		copy.setTotalSize(listInfo.getTotalSize());
+		copy.setResultSize(listInfo.getResultSize());
+		copy.setObject(listInfo.getObject());
+		copy.setMore(listInfo.isMore());
+		copy.setDatas(datas);
+		if(listInfo.isdbdata())
+			copy.setArrayDatas(listInfo.getArrayDatas() == null ? null : listInfo.getArrayDatas().clone());
+		return copy;
+	}
+	
+	/**
+	 * 获取缓存的分页结果，只读缓存中的分页结果被所有调用者共享，每次返回分页结果的副本
+	 * @param cacheModel
+	 * @param value 缓存中的分页结果
+	 * @return
+	 */
+	private static ListInfo getCachedListInfo(CacheModel cacheModel,Object value)
+	{
+		if(value == CacheModel.NULL_OBJECT)
+			return null;
+		ListInfo listInfo = (ListInfo)value;
+		if(!cacheModel.isReadOnly())
+			return listInfo;
+		return copyListInfo(listInfo, listInfo.getDatas());
+	}
+	
+	/**
+	 * 缓存查询结果，只读缓存的列表结果包装为不可修改的列表，
+	 * 分页结果缓存记录为不可修改列表的副本，查询得到的分页结果原样返回给调用者
+	 * @param cacheModel
+	 * @param key
+	 * @param version 查询之前获取的缓存flush版本号
+	 * @param value
+	 * @return 返回给调用者的结果
+	 */
+	private static Object putCache(CacheModel cacheModel,CacheKey key,long version,Object value)
+	{
+		if(cacheModel.isReadOnly())
+		{
+			if(value instanceof List)
+			{
+				value = Collections.unmodifiableList((List)value);
+			}
+			else if(value instanceof ListInfo)
+			{
+				ListInfo listInfo = (ListInfo)value;
+				cacheModel.putObject(key, copyListInfo(listInfo, listInfo.getDatas() == null ? null :
+						Collections.unmodifiableList(listInfo.getDatas())), version);
+				return value;
+			}
+		}
+		cacheModel.putObject(key, value, version);
+		return value;
+	}
+	
 	public String getSql(String sqlname) throws SQLException
 	{
 		return getSql(null,sqlname);
@@ -364,14 +454,30 @@ public class ConfigSQLExecutor  {
 	{
 		
 		SQLInfo sql = getSqlInfo(dbname, sqlname);
-		return SQLInfoExecutor.queryListInfoWithDBName(beanType,dbname, sql, offset,pagesize,fields);  	 
+		CacheModel cacheModel = getCacheModel(sql);
+		if(cacheModel == null)
+			return SQLInfoExecutor.queryListInfoWithDBName(beanType,dbname, sql, offset,pagesize,fields);  	 
+		CacheKey key = buildCacheKey("queryListInfo",dbname, sql, beanType,offset,pagesize,fields);
+		Object value = cacheModel.getObject(key);
+		if(value != null)
+			return getCachedListInfo(cacheModel,value);
+		long version = cacheModel.getFlushVersion();
+		return (ListInfo)putCache(cacheModel,key,version,SQLInfoExecutor.queryListInfoWithDBName(beanType,dbname, sql, offset,pagesize,fields));
 	}
 	
 	public ListInfo queryListInfoWithDBName2ndTotalsize(Class<?> beanType,String dbname, String sqlname, long offset,int pagesize,long totalsize,Object... fields) throws SQLException
 	{
 		
 		SQLInfo sql = getSqlInfo(dbname, sqlname);
-		return SQLInfoExecutor.queryListInfoWithDBName2ndTotalsize(beanType,dbname, sql, offset,pagesize,totalsize,fields);  	 
+		CacheModel cacheModel = getCacheModel(sql);
+		if(cacheModel == null)
+			return SQLInfoExecutor.queryListInfoWithDBName2ndTotalsize(beanType,dbname, sql, offset,pagesize,totalsize,fields);  	 
+		CacheKey key = buildCacheKey("queryListInfoWithTotalsize",dbname, sql, beanType,offset,pagesize,totalsize,fields);
+		Object value = cacheModel.getObject(key);
+		if(value != null)
+			return getCachedListInfo(cacheModel,value);
+		long version = cacheModel.getFlushVersion();
+		return (ListInfo)putCache(cacheModel,key,version,SQLInfoExecutor.queryListInfoWithDBName2ndTotalsize(beanType,dbname, sql, offset,pagesize,totalsize,fields));
 	}
 	public ListInfo queryListInfoWithDBName2ndTotalsizesql(Class<?> beanType,String dbname, String sqlname, long offset,int pagesize,String totalsizesqlname,Object... fields) throws SQLException
 	{
@@ -414,7 +520,15 @@ public class ConfigSQLExecutor  {
 	public <T> List<T> queryListWithDBName(Class<T> beanType,String dbname, String sqlname, Object... fields) throws SQLException
 	{		
 		SQLInfo sql = getSqlInfo(dbname, sqlname);
-		return SQLInfoExecutor.queryListWithDBName( beanType, dbname,  sql, fields);
+		CacheModel cacheModel = getCacheModel(sql);
+		if(cacheModel == null)
+			return SQLInfoExecutor.queryListWithDBName( beanType, dbname,  sql, fields);
+		CacheKey key = buildCacheKey("queryList",dbname, sql, beanType,fields);
+		Object value = cacheModel.getObject(key);
+		if(value != null)
+			return value == CacheModel.NULL_OBJECT?null:(List<T>)value;
+		long version = cacheModel.getFlushVersion();
+		return (List<T>)putCache(cacheModel,key,version,SQLInfoExecutor.queryListWithDBName( beanType, dbname,  sql, fields));
 	}
 	
 	
@@ -422,7 +536,15 @@ public class ConfigSQLExecutor  {
 	{
 		
 		SQLInfo sql = getSqlInfo(dbname, sqlname);
-		return SQLInfoExecutor.queryObjectWithDBName( beanType, dbname,  sql, fields);
+		CacheModel cacheModel = getCacheModel(sql);
+		if(cacheModel == null)
+			return SQLInfoExecutor.queryObjectWithDBName( beanType, dbname,  sql, fields);
+		CacheKey key = buildCacheKey("queryObject",dbname, sql, beanType,fields);
+		Object value = cacheModel.getObject(key);
+		if(value != null)
+			return value == CacheModel.NULL_OBJECT?null:(T)value;
+		long version = cacheModel.getFlushVersion();
+		return (T)putCache(cacheModel,key,version,SQLInfoExecutor.queryObjectWithDBName( beanType, dbname,  sql, fields));
 		 
 	}
 	
@@ -679,7 +801,15 @@ public class ConfigSQLExecutor  {
 	{
 		
 		SQLInfo sql = getSqlInfo(dbname, sqlname);
-		return SQLInfoExecutor.queryFieldWithDBName(    dbname,  sql,  fields); 
+		CacheModel cacheModel = getCacheModel(sql);
+		if(cacheModel == null)
+			return SQLInfoExecutor.queryFieldWithDBName(    dbname,  sql,  fields); 
+		CacheKey key = buildCacheKey("queryField",dbname, sql, fields);
+		Object value = cacheModel.getObject(key);
+		if(value != null)
+			return value == CacheModel.NULL_OBJECT?null:(String)value;
+		long version = cacheModel.getFlushVersion();
+		return (String)putCache(cacheModel,key,version,SQLInfoExecutor.queryFieldWithDBName(    dbname,  sql,  fields));
 	}
 	
 	
@@ -715,7 +845,15 @@ public class ConfigSQLExecutor  {
 	{
 		
 		SQLInfo sql = getSqlInfo(dbname, sqlname);
-		return SQLInfoExecutor.queryTFieldWithDBName(     dbname,  type, sql,  fields); 
+		CacheModel cacheModel = getCacheModel(sql);
+		if(cacheModel == null)
+			return SQLInfoExecutor.queryTFieldWithDBName(     dbname,  type, sql,  fields); 
+		CacheKey key = buildCacheKey("queryTField",dbname, sql, type,fields);
+		Object value = cacheModel.getObject(key);
+		if(value != null)
+			return value == CacheModel.NULL_OBJECT?null:(T)value;
+		long version = cacheModel.getFlushVersion();
+		return (T)putCache(cacheModel,key,version,SQLInfoExecutor.queryTFieldWithDBName(     dbname,  type, sql,  fields));
 	}
 	
 	
@@ -1156,4 +1294,73 @@ public class ConfigSQLExecutor  {
 	
 	
 
+	/**
+	 * 流式游标查询，返回的游标在遍历时逐条读取记录，不会将整个结果集加载到内存中，
+	 * 适用于大数据量的导出和批处理，调用方必须在finally中关闭游标以释放数据库链接
+	 * @param beanType 记录映射的对象类型
+	 * @param dbname 数据源名称
+	 * @param sqlname 查询语句名称
+	 * @param fetchsize jdbc fetchsize，小于等于0时使用数据源配置的queryfetchsize
+	 * @param fields 查询条件
+	 * @return
+	 * @throws SQLException
+	 */
+	public <T> ResultSetCursor<T> queryCursorWithDBName(Class<T> beanType,String dbname, String sqlname,int fetchsize, Object... fields) throws SQLException
+	{
+		SQLInfo sql = getSqlInfo(dbname, sqlname);
+		return SQLInfoExecutor.queryCursorWithDBName( beanType, dbname,  sql,fetchsize, fields);
+	}
+	
+	public <T> ResultSetCursor<T> queryCursor(Class<T> beanType, String sqlname,int fetchsize, Object... fields) throws SQLException
+	{
+		return queryCursorWithDBName(beanType,null, sqlname,fetchsize, fields);
+	}
+	
+	public <T> ResultSetCursor<T> queryCursorWithDBNameByRowHandler(RowHandler rowhandler,Class<T> beanType,String dbname, String sqlname,int fetchsize, Object... fields) throws SQLException
+	{
+		SQLInfo sql = getSqlInfo(dbname, sqlname);
+		return SQLInfoExecutor.queryCursorWithDBNameByRowHandler(  rowhandler, beanType, dbname,  sql,fetchsize,  fields);
+	}
+	
+	public <T> ResultSetCursor<T> queryCursorByRowHandler(RowHandler rowhandler,Class<T> beanType, String sqlname,int fetchsize, Object... fields) throws SQLException
+	{
+		return queryCursorWithDBNameByRowHandler(rowhandler,beanType,null, sqlname,fetchsize, fields);
+	}
+	
+	public <T> ResultSetCursor<T> queryCursorBeanWithDBName(Class<T> beanType,String dbname, String sqlname,int fetchsize, Object bean) throws SQLException
+	{
+		SQLInfo sql = getSqlInfo(dbname, sqlname);
+		return SQLInfoExecutor.queryCursorBeanWithDBName(   beanType,dbname, sql,fetchsize, bean);
+	}
+	
+	public <T> ResultSetCursor<T> queryCursorBean(Class<T> beanType, String sqlname,int fetchsize, Object bean) throws SQLException
+	{
+		return queryCursorBeanWithDBName(beanType,null, sqlname,fetchsize, bean);
+	}
+	
+	/**
+	 * keyset(seek)分页查询，不执行count查询，根据上一页最后一条记录的排序字段值定位下一页
+	 * @param beanType
+	 * @param dbname
+	 * @param sqlname 查询语句名称，对应的sql，不能包含order by子句，排序字段必须出现在查询列表中
+	 * @param orderby 排序字段，例如"create_time desc,id desc"，最后一个字段必须能够唯一确定记录的顺序，
+	 * 排序字段的值不能为null，可以为null的字段需要在查询列表中通过coalesce等函数转换为非空值后再作为排序字段
+	 * @param lastkeys 上一页最后一条记录的排序字段值，与orderby中的字段一一对应，为null时查询第一页，
+	 * 其中包含null值时抛出SQLException
+	 * @param pagesize
+	 * @param fields
+	 * @return 当页记录和是否还有下一页
+	 * @throws SQLException
+	 */
+	public <T> MoreListInfo queryKeysetListInfoWithDBName(Class<T> beanType,String dbname, String sqlname,String orderby,Object[] lastkeys,int pagesize, Object... fields) throws SQLException
+	{
+		SQLInfo sql = getSqlInfo(dbname, sqlname);
+		return SQLInfoExecutor.queryKeysetListInfoWithDBName(beanType, dbname, sql, orderby, lastkeys, pagesize, fields);
+	}
+	
+	public <T> MoreListInfo queryKeysetListInfo(Class<T> beanType, String sqlname,String orderby,Object[] lastkeys,int pagesize, Object... fields) throws SQLException
+	{
+		return queryKeysetListInfoWithDBName(beanType,null, sqlname,orderby,lastkeys,pagesize, fields);
+	}
+	
 }
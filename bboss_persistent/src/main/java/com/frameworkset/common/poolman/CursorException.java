@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+/**
+ *
+ * <p>Title: CursorException.java</p>
+ *
+ * <p>Description: 流式游标遍历结果集时发生的数据库异常，原始的SQLException可以通过getCause()获取</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class CursorException extends RuntimeException {
+
+	public CursorException() {
+		super();
+	}
+
+	public CursorException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public CursorException(String message) {
+		super(message);
+	}
+
+	public CursorException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package com.frameworkset.common.poolman;
 
+import java.util.List;
+
 /**
  * 
  * <p>Title: CUDResult.java</p>
@@ -33,6 +35,10 @@ public class GetCUDResult {
 	private Object result;
 	private Object updatecount;
 	private Object keys;
+	/**
+	 * 按照数据源batchsize分批执行批处理时每个批次的执行结果
+	 */
+	private List<GetCUDResult> chunkResults;
 	public GetCUDResult()
 	{
 		
@@ -45,6 +51,7 @@ public class GetCUDResult {
 		this.result = origine.getResult();
 		this.keys = origine.getKeys();
 		this.updatecount = origine.getUpdatecount();
+		this.chunkResults = origine.getChunkResults();
 	}
 	
 	public GetCUDResult(Object result,Object updatecount,Object keys) {
@@ -77,6 +84,12 @@ public class GetCUDResult {
 	public void setKeys(Object keys) {
 		this.keys = keys;
 	}
+	public List<GetCUDResult> getChunkResults() {
+		return chunkResults;
+	}
+	public void setChunkResults(List<GetCUDResult> chunkResults) {
+		this.chunkResults = chunkResults;
+	}
 	
 
 }
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.frameworkset.persitent.util.SQLInfo;
+import org.frameworkset.persitent.util.SQLUtil;
+import org.frameworkset.util.MoreListInfo;
+
+import com.frameworkset.common.poolman.util.SQLManager;
+import com.frameworkset.orm.adapter.DB;
+
+/**
+ *
+ * <p>Title: KeysetPagine.java</p>
+ *
+ * <p>Description: keyset(seek)分页查询，根据上一页最后一条记录的排序字段值定位下一页，
+ * 不执行count查询，也不需要数据库跳过offset条记录，深度翻页时的性能与第一页相同。
+ * 每次多查询一条记录来判断是否还有下一页，结果通过MoreListInfo返回。
+ * 排序字段必须是非空字段：定位条件(k1 > ?) or (k1 = ? and k2 > ?)对null值不成立，
+ * 各数据库对null的排序位置也不一致，因此上一页最后一条记录的排序字段值包含null时直接抛出SQLException，
+ * 而不是静默地跳过记录，可以为null的字段需要在查询列表中通过coalesce等函数转换为非空值后再作为排序字段</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class KeysetPagine {
+	private final String[] keyColumns;
+	private final boolean[] descs;
+
+	/**
+	 * @param orderby 排序字段，例如"create_time desc,id desc"，没有指定排序方式时为升序
+	 * @throws SQLException
+	 */
+	public KeysetPagine(String orderby) throws SQLException {
+		if (orderby == null || orderby.trim().length() == 0)
+			throw new SQLException("Keyset pagine query must specify order by columns.");
+		String[] items = orderby.trim().split(",");
+		keyColumns = new String[items.length];
+		descs = new boolean[items.length];
+		for (int i = 0; i < items.length; i++) {
+			String[] item = items[i].trim().split("\\s+");
+			if (item.length == 0 || item[0].length() == 0 || item.length > 2)
+				throw new SQLException("Illegal keyset pagine order by columns:" + orderby);
+			keyColumns[i] = item[0];
+			if (item.length == 2) {
+				if (item[1].equalsIgnoreCase("desc"))
+					descs[i] = true;
+				else if (!item[1].equalsIgnoreCase("asc"))
+					throw new SQLException("Illegal keyset pagine order by columns:" + orderby);
+			}
+		}
+	}
+
+	/**
+	 * 构建查询参数：原始sql的参数在前，定位条件的参数按照(k1 > ?) or (k1 = ? and k2 > ?)的顺序在后，
+	 * 排序字段值为null时定位条件不成立，直接抛出异常
+	 */
+	private Object[] buildParams(Object[] fields, Object[] lastkeys) throws SQLException {
+		int fieldsize = fields == null ? 0 : fields.length;
+		if (lastkeys == null)
+			return fields;
+		if (lastkeys.length != keyColumns.length)
+			throw new SQLException("Keyset pagine last keys size " + lastkeys.length
+					+ " not match order by columns size " + keyColumns.length + ".");
+		for (int i = 0; i < lastkeys.length; i++) {
+			if (lastkeys[i] == null)
+				throw new SQLException("Keyset pagine last key of order by column " + keyColumns[i]
+						+ " is null: keyset pagine order by columns must be not null, use coalesce in the query to map null values.");
+		}
+		List<Object> params = new ArrayList<Object>(fieldsize + keyColumns.length * (keyColumns.length + 1) / 2);
+		for (int i = 0; i < fieldsize; i++)
+			params.add(fields[i]);
+		for (int i = 0; i < lastkeys.length; i++) {
+			for (int j = 0; j <= i; j++)
+				params.add(lastkeys[j]);
+		}
+		return params.toArray();
+	}
+
+	/**
+	 * 执行keyset分页查询
+	 * @param beanType
+	 * @param dbname
+	 * @param sql 原始查询语句，不能包含order by子句
+	 * @param lastkeys 上一页最后一条记录的排序字段值，为null时查询第一页
+	 * @param pagesize
+	 * @param fields 原始查询语句的参数
+	 * @return
+	 * @throws SQLException
+	 */
+	public <T> MoreListInfo query(Class<T> beanType, String dbname, SQLInfo sql, Object[] lastkeys, int pagesize,
+			Object... fields) throws SQLException {
+		DB db = SQLManager.getInstance().getDBAdapter(dbname);
+		String keysetsql = db.getKeysetPagineSql(sql.getSql(), keyColumns, descs, lastkeys == null, pagesize + 1);
+		SQLInfo keysetsqlinfo = SQLUtil.getGlobalSQLUtil().getSQLInfo(keysetsql, sql.istpl(), sql.multiparser());
+		List<T> datas = SQLInfoExecutor.queryListWithDBName(beanType, dbname, keysetsqlinfo,
+				buildParams(fields, lastkeys));
+		boolean hasmore = datas != null && datas.size() > pagesize;
+		if (hasmore)
+			datas = new ArrayList<T>(datas.subList(0, pagesize));
+		return new MoreListInfo(hasmore, datas == null ? 0 : datas.size(), datas);
+	}
+}
@@ -109,6 +109,9 @@ public interface PoolManConstants extends Serializable{
     public final static String PROP_MAXOPENPREPAREDSTATEMENTS = "maxOpenPreparedStatements";
     public final static String PROP_CONNECTIONPROPERTIES = "connectionProperties";
     public final static String PROP_WHENEXHAUSTEDACTION = "whenExhaustedAction";
+    public final static String PROP_POOLENGINE = "poolEngine";
+    public final static String PROP_MAXLIFETIME = "maxLifetime";
+    public final static String PROP_STATEMENTCACHESIZE = "statementCacheSize";
 	public static final int maxOpenPreparedStatements = -1;
     
     
@@ -16,6 +16,10 @@
 package com.frameworkset.common.poolman;
 
 import java.io.Serializable;
+import java.util.List;
+
+import com.frameworkset.common.poolman.monitor.SQLExecuteStatic;
+import com.frameworkset.common.poolman.monitor.SQLStatistics;
 
 /**
  * <p>Title: PoolmanMBean</p>
@@ -32,4 +36,19 @@ import java.io.Serializable;
 public interface PoolmanMBean extends Serializable{
     /**初始化poolman中的所有数据库链接池，并且将连接池绑定到特定服务器jndi服务*/
     public void bootStartup();
+    
+    /**获取数据源的sql执行统计信息，按照总耗时倒序排列，dbname为null时返回所有数据源的统计信息*/
+    public default List<SQLExecuteStatic> getSQLExecuteStatics(String dbname) {
+    	return SQLStatistics.getSQLExecuteStatics(dbname);
+    }
+    
+    /**以文本形式返回数据源的sql执行统计信息，每条sql一行*/
+    public default String reportSQLExecuteStatics(String dbname) {
+    	return SQLStatistics.report(dbname);
+    }
+    
+    /**清除数据源的sql执行统计信息*/
+    public default void resetSQLExecuteStatics(String dbname) {
+    	SQLStatistics.reset(dbname);
+    }
 }
@@ -20,7 +20,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -46,6 +45,7 @@ import java.util.Calendar;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.frameworkset.persitent.util.CountCache;
 import org.frameworkset.persitent.util.SQLInfo;
 import org.frameworkset.persitent.util.SQLUtil;
 import org.frameworkset.util.BigFile;
@@ -53,12 +53,13 @@ import org.frameworkset.util.BigFile;
 import com.frameworkset.common.poolman.NewSQLInfo;
 import com.frameworkset.common.poolman.handle.NullRowHandler;
 import com.frameworkset.common.poolman.handle.RowHandler;
+import com.frameworkset.common.poolman.handle.ValueExchange;
 import com.frameworkset.common.poolman.handle.XMLMark;
 import com.frameworkset.common.poolman.sql.PrimaryKey;
 import com.frameworkset.common.poolman.util.JDBCPool;
 import com.frameworkset.common.poolman.util.SQLManager;
 import com.frameworkset.common.poolman.util.StatementParser;
-import com.frameworkset.util.FileUtil;
+import com.frameworkset.orm.transaction.TransactionManager;
 
 /**
  * 执行预编sql语句
@@ -732,79 +733,35 @@ public class PreparedDBUtil extends DBUtil {
 					}
 					else
 					{
+						//文件和字节流统一按照指定的字符集解码为字符流，没有指定时与DBOracle.updateClob一样采用UTF-8
+						String charset = param.getCharset() == null ? ValueExchange.DEFAULT_LOB_CHARSET : param.getCharset();
 						if(param.data instanceof File)
 						{
-							File data = null;
-							data = (File)param.data;
-							if(param.getCharset() == null)
-							{
-								
-								 in = new java.io.BufferedInputStream(new java.io.FileInputStream(data));
-								long len = data.length();
-								statement.setAsciiStream(param.index, in,(int)len);
-								if(statement_count != null)
-								{
-				//					Reader reader = (Reader)data[0];
-									statement_count.setAsciiStream(param.index, in,(int)len);					
-									
-								}
-							}
-							else
-							{
-								String content = FileUtil.getFileContent(data, param.getCharset());
-								reader  = new java.io.StringReader(content);
-								statement.setCharacterStream(param.index, reader,content.length());
-								if(statement_count != null)
-								{
-				//					Reader reader = (Reader)data[0];
-									statement_count.setCharacterStream(param.index, reader,content.length());						
-									
-								}
-							}
+							File data = (File)param.data;
+							in = new java.io.BufferedInputStream(new java.io.FileInputStream(data), ValueExchange.LOB_BUFFER_SIZE);
+							setCharacterStream(statement, statement_count, param.index, 
+									new java.io.InputStreamReader(in, charset));
 						}
 						else if(param.data instanceof BigFile)
 						{
 							BigFile f = (BigFile)param.data;
-							long len = f.getSize();
-							 in = new java.io.BufferedInputStream(f.getInputStream());
-							statement.setAsciiStream(param.index, in,(int)len);
-							if(statement_count != null)
-							{
-			//					Reader reader = (Reader)data[0];
-								statement_count.setAsciiStream(param.index, in,(int)len);						
-								
-							}
+							in = new java.io.BufferedInputStream(f.getInputStream(), ValueExchange.LOB_BUFFER_SIZE);
+							setCharacterStream(statement, statement_count, param.index, 
+									new java.io.InputStreamReader(in, charset));
 						}
 						else if(param.data instanceof Object[])
 						{
 							Object[] values = ( Object[])param.data;
-							 dataf = (InputStream)values[0];
-							long len = (Long)values[1];
-						    in = new java.io.BufferedInputStream(dataf);
-							statement.setAsciiStream(param.index, in,(int)len);
-							if(statement_count != null)
-							{
-			//					Reader reader = (Reader)data[0];
-								statement_count.setAsciiStream(param.index, in,(int)len);				
-								
-							}
+							dataf = (InputStream)values[0];
+							in = new java.io.BufferedInputStream(dataf, ValueExchange.LOB_BUFFER_SIZE);
+							setCharacterStream(statement, statement_count, param.index, 
+									new java.io.InputStreamReader(in, charset));
 						}
 						else
 						{
-							 dataf = (InputStream)param.data;
-						    String d = null;
-						    if(param.getCharset() == null)
-						    	d = getString( dataf,(String)null);
-						    else
-						    	d = getString( dataf,param.getCharset());
-							reader  = new java.io.StringReader(d);
-							statement.setCharacterStream(param.index, reader,d.length());
-							if(statement_count != null)
-							{
-			//					Reader reader = (Reader)data[0];
-								statement_count.setCharacterStream(param.index, reader,d.length());						
-								
-							}
+							dataf = (InputStream)param.data;
+							setCharacterStream(statement, statement_count, param.index, 
+									new java.io.InputStreamReader(dataf, charset));
 						}
 					}
 				}
@@ -1253,9 +1210,87 @@ public class PreparedDBUtil extends DBUtil {
 			throw new SQLException("Can not execute batch prepared operations as single prepared operation,Please call method executePreparedBatch()!");
 		return (String)innerExecute(con,XMLMark.class,rowhandler,ResultMap.type_xml,false);
 	}
-	
-	
-	
+
+	public <T> ResultSetCursor<T> executePreparedForCursor(Class<T> objectType,int fetchsize) throws SQLException {
+		return executePreparedForCursor(null,objectType,null,fetchsize);
+	}
+
+	public <T> ResultSetCursor<T> executePreparedForCursor(Class<T> objectType,RowHandler rowhandler,int fetchsize) throws SQLException {
+		return executePreparedForCursor(null,objectType,rowhandler,fetchsize);
+	}
+
+	public <T> ResultSetCursor<T> executePreparedForCursor(Connection con,Class<T> objectType,int fetchsize) throws SQLException {
+		return executePreparedForCursor(con,objectType,null,fetchsize);
+	}
+
+	/**
+	 * 执行预编译查询语句，返回流式游标，记录在遍历游标时逐条从结果集中读取并映射为objectType类型对象，
+	 * 不会将整个结果集加载到内存中。
+	 * 游标遍历结束或者调用游标的close方法时才会释放语句和数据库链接，因此调用方必须在finally中关闭游标
+	 * @param con 外部传入的数据库链接，为null时从事务或者连接池中获取链接
+	 * @param objectType 记录映射的对象类型
+	 * @param rowhandler 行处理器，可以为null
+	 * @param fetchsize jdbc fetchsize，小于等于0时使用数据源配置的queryfetchsize
+	 * @return
+	 * @throws SQLException
+	 */
+	public <T> ResultSetCursor<T> executePreparedForCursor(Connection con,Class<T> objectType,RowHandler rowhandler,int fetchsize) throws SQLException {
+		if(this.batchparams != null && batchparams.size() > 0)
+			throw new SQLException("Can not execute batch prepared operations as single prepared operation,Please call method executePreparedBatch()!");
+		if(Params.prepareSqlifo == null || Params.prepareSqlifo.getNewsql() == null || Params.prepareSqlifo.getNewsql().equals(""))
+		{
+			throw new SQLException("执行错误：请先设置预执行sql语句！");
+		}
+		if (Params.action != SELECT_COMMON)
+		{
+			throw new SQLException("Cursor query only support common select statement,Please call method preparedSelect(String sql)!");
+		}
+		StatementInfo stmtInfo = null;
+		List resources = null;
+		boolean success = false;
+		try {
+			JDBCPool pool = SQLManager.getInstance().getPool(this.prepareDBName);
+			stmtInfo = new StatementInfo(this.prepareDBName, this.Params.prepareSqlifo,
+
+					false, offset, this.pagesize, pool.isRobotQuery(), con,oraclerownum,true);
+
+			stmtInfo.init();
+			stmtInfo.setParams(Params.params);
+			if(showsql(stmtInfo.getDbname()))
+			{
+				log.debug("Execute JDBC prepared cursor query statement:"+stmtInfo.getSql());
+			}
+			PreparedStatement statement = stmtInfo.prepareStreamStatement(fetchsize);
+			resources = new ArrayList();
+			setUpParams(Params,statement,resources);
+			ResultSet res = statement.executeQuery();
+			stmtInfo.addResultSet(res);
+			stmtInfo.cacheResultSetMetaData( res,false);
+			this.meta = stmtInfo.getMeta();
+			if(rowhandler != null)
+				rowhandler.init(meta, stmtInfo.getDbname());
+			ResultSetCursor<T> cursor = new ResultSetCursor<T>(stmtInfo,res,objectType,rowhandler);
+			success = true;
+			return cursor;
+		} catch (Exception e) {
+			if(stmtInfo != null)
+				stmtInfo.errorHandle(e);
+			throw new NestedSQLException("Execute prepared cursor sql[" + (stmtInfo != null?stmtInfo.getSql():null) + "] failed:",e);
+		} finally {
+			if(resources != null)
+				releaseResources(resources);
+			//游标创建成功后由游标负责释放语句和链接
+			if(!success && stmtInfo != null)
+			{
+				stmtInfo.dofinally();
+			}
+
+			this.resetFromSetMethod(null);
+		}
+	}
+
+
+
 	private Object innerExecute(Connection con,Class objectType,RowHandler rowhandler,int type,boolean getCUDResult) throws SQLException
 	{
 		if(this.batchparams != null && batchparams.size() > 0)
@@ -1269,6 +1304,9 @@ public class PreparedDBUtil extends DBUtil {
 		Object result = null;
 		PreparedStatement statement = null;
 		PreparedStatement statement_count  = null;
+		CountCache countCache = null;
+		String countKey = null;
+		CountCache.Stamp countStamp = null;
 //		UpdateSQL preparedUpdate = null;
 //		String[] preparedfields = null; 
 		List resources = null;
@@ -1279,6 +1317,7 @@ public class PreparedDBUtil extends DBUtil {
 					false, offset, this.pagesize, pool.isRobotQuery(), con,oraclerownum,true);
 			
 			stmtInfo.init();
+			stmtInfo.setParams(Params.params);
 
 
 			if (Params.action == INSERT) {
@@ -1424,7 +1463,23 @@ public class PreparedDBUtil extends DBUtil {
 					{
 						//@Fixme
 						stmtInfo.setTotalsizesql(Params.prepareSqlifo.getNewtotalsizesql());
-						statement_count = stmtInfo.prepareCountStatement( showsql);
+						//事务中查询的总记录数可能包含未提交的修改，不使用缓存
+						countCache = TransactionManager.getTransaction() == null?CountCache.getCountCache(pool):null;
+						long cachedTotal = -1L;
+						if(countCache != null)
+						{
+							countKey = countCache.buildKey(stmtInfo.getTotalsizesql() != null?stmtInfo.getTotalsizesql():stmtInfo.countSql(), Params.params);
+							if(countKey != null)
+							{
+								cachedTotal = countCache.getTotalsize(countKey);
+								if(cachedTotal < 0)
+									countStamp = countCache.stamp(stmtInfo.getSql());
+							}
+						}
+						if(cachedTotal >= 0)//使用缓存的总记录数，不再执行count查询
+							stmtInfo.setTotalsize(cachedTotal);
+						else
+							statement_count = stmtInfo.prepareCountStatement( showsql);
 					}
 					else
 					{
@@ -1448,7 +1503,9 @@ public class PreparedDBUtil extends DBUtil {
 				resources = new ArrayList();
 				setUpParams(Params,statement,resources);
 				statement.execute();
+				invalidateCountCache(stmtInfo.getDbname(),stmtInfo.getSql());
 				int updatecount = statement.getUpdateCount();
+				stmtInfo.setRows(updatecount);
 				if(result == null)
 				{
 					result = new Integer(updatecount);
@@ -1503,18 +1560,22 @@ public class PreparedDBUtil extends DBUtil {
 						   statement,
 						   statement_count,
 						   objectType,rowhandler,type,startidx,endidx, haspaginsql);
+				if(countStamp != null)
+					countCache.put(countKey, countStamp, this.totalSize);
 				if(type == ResultMap.type_maparray)
 				{
 					
 
 					this.allResults = (Record[])resultMap.getCommonresult();
 					this.size = allResults == null ? 0 : allResults.length;
+					stmtInfo.setRows(this.size);
 					resultMap = null;
 					return null;
 				}
 				else
 				{
 					this.size = resultMap.getSize();
+					stmtInfo.setRows(this.size);
 					return resultMap.getCommonresult();
 				}
 				
@@ -1530,11 +1591,13 @@ public class PreparedDBUtil extends DBUtil {
 
 					this.allResults = (Record[])resultMap.getCommonresult();
 					this.size = allResults == null ? 0 : allResults.length;
+					stmtInfo.setRows(this.size);
 					return null;
 				}
 				else
 				{
 					this.size = resultMap.getSize();
+					stmtInfo.setRows(this.size);
 					return resultMap.getCommonresult();
 				}
 			} 
@@ -1894,6 +1957,18 @@ public class PreparedDBUtil extends DBUtil {
 		return innerExecute(con,null,null,ResultMap.type_maparray,getCUDResult);
 	}
 
+	/**
+	 * 修改操作执行后使数据源总记录数缓存中相关表的记录失效，在事务中执行时事务提交后再失效一次
+	 * @param dbname
+	 * @param sql
+	 */
+	private static void invalidateCountCache(String dbname,String sql)
+	{
+		CountCache countCache = CountCache.getCountCache(SQLManager.getInstance().getPool(dbname));
+		if(countCache != null)
+			countCache.invalidateAfterCommit(sql);
+	}
+
 	/**
 	 * Executes a pagination prepared statement and returns results in the form
 	 * of a Hashtable array. 本方法执行完毕后无需对结果集进行缓冲
@@ -2685,7 +2760,7 @@ public class PreparedDBUtil extends DBUtil {
 		Writer swriter = null;
 		Reader reader = null;
 		try {
-			reader = new FileReader(file);
+			reader = new java.io.InputStreamReader(new java.io.FileInputStream(file), ValueExchange.DEFAULT_LOB_CHARSET);
 			swriter = new StringWriter();
 
 			int len = 0;
@@ -4061,7 +4136,7 @@ public class PreparedDBUtil extends DBUtil {
 				{
 					out.write(v, 0, i);
 				}
-				return new String(out.toByteArray());
+				return new String(out.toByteArray(), ValueExchange.DEFAULT_LOB_CHARSET);
 				
 			} catch (FileNotFoundException e) {
 				throw new NestedSQLException(e);
@@ -4089,6 +4164,36 @@ public class PreparedDBUtil extends DBUtil {
 		
 		
 	}
+	/**
+	 * 以字符流方式绑定clob参数，驱动支持JDBC4不带长度的setCharacterStream方法时由驱动分块读取，
+	 * 内容不加载到内存中；不支持时读取全部内容后再绑定
+	 */
+	private static void setCharacterStream(PreparedStatement statement, PreparedStatement statement_count, int index,
+			Reader reader) throws SQLException
+	{
+		try
+		{
+			statement.setCharacterStream(index, reader);
+			if(statement_count != null)
+			{
+				statement_count.setCharacterStream(index, reader);
+			}
+			return;
+		}
+		catch(AbstractMethodError e)
+		{
+		}
+		catch(java.sql.SQLFeatureNotSupportedException e)
+		{
+		}
+		String content = ValueExchange.getStringFromReader(reader);
+		statement.setCharacterStream(index, new StringReader(content), content.length());
+		if(statement_count != null)
+		{
+			statement_count.setCharacterStream(index, new StringReader(content), content.length());
+		}
+	}
+
 	public String getString(InputStream in,String charset) throws SQLException
 	{
 		
@@ -4103,14 +4208,7 @@ public class PreparedDBUtil extends DBUtil {
 				{
 					out.write(v, 0, i);
 				}
-				if(charset == null)
-				{
-					return new String(out.toByteArray());
-				}
-				else
-				{
-					return new String(out.toByteArray(),charset);
-				}
+				return new String(out.toByteArray(),charset == null ? ValueExchange.DEFAULT_LOB_CHARSET : charset);
 				
 			} catch (FileNotFoundException e) {
 				throw new NestedSQLException(e);
@@ -4864,6 +4962,7 @@ public class PreparedDBUtil extends DBUtil {
 					try
 					{
 						int[] ret = statement.executeBatch();	
+						invalidateCountCache(stmtInfo.getDbname(),old_sql.getNewsql());
 						if(showsql)
 						{
 							log.debug(new StringBuffer("Execute prepared Batch sql[")
@@ -4916,6 +5015,7 @@ public class PreparedDBUtil extends DBUtil {
 					try
 					{
 						int[] ret = statement.executeBatch();	
+						invalidateCountCache(stmtInfo.getDbname(),old_sql.getNewsql());
 						if(showsql)
 						{
 							log.debug(new StringBuffer("Execute prepared Batch sql[")
@@ -38,7 +38,6 @@ import com.frameworkset.common.poolman.handle.XMLMark;
 import com.frameworkset.common.poolman.handle.XMLRowHandler;
 import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
 import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData.WrapInteger;
-import com.frameworkset.common.poolman.util.JDBCPool;
 import com.frameworkset.common.poolman.util.SQLUtil;
 import com.frameworkset.orm.annotation.PrimaryKey;
 import com.frameworkset.orm.engine.model.SchemaType;
@@ -211,144 +210,42 @@ public class ResultMap {
 	//				throw new NestedSQLException(e1);
 	//			}
 				
-				List<PropertieDescription> attributes = beanInfo.getPropertyDescriptors();
 				PoolManResultSetMetaData meta = stmtInfo.getMeta();
-				for (int n = 0; attributes != null && n < attributes.size(); n++) {
-					PropertieDescription attribute = attributes.get(n);
-					if(attribute.getIgnoreORMapping() != null)
-						continue;
-					String attrName = attribute.getName();
-					String upname = attribute.getUperName();
-					
-	//				if(attrName.equals("class"))
-	//					continue;
-					String annotationName = null;
-					if(BigFile.class.isAssignableFrom(attribute.getPropertyType()) )//不支持大字段转换为BigFile接口
-						continue;
-					boolean userAnnotation = false;
+				RowMappingPlan plan = meta.getRowMappingPlan(beanInfo);
+				for (int n = 0; n < plan.size(); n++) {
+					PropertieDescription attribute = plan.getAttribute(n);
+					Class type = attribute.getPropertyType();
+					Object propsVal = null;
 					try {
-						
-	//					Field field = classinfo.getDeclaredField(attrName);
-	//					if(field != null)
-						{
-							
-							PrimaryKey apk = attribute.getPk();
-							if(apk != null)
-							{
-	//							PrimaryKey apk = field.getAnnotation(PrimaryKey.class);
-								annotationName = apk.name();
-								if(annotationName == null 
-										 || annotationName.equals(""))
-								{
-									
-								}
-								else
-								{
-									attrName = annotationName;
-									upname = annotationName.toUpperCase();
-									userAnnotation = true;
-								}
-								
-							}
-							else 
-							{
-								ColumnWraper cl = attribute.getColumn();
-								if(cl != null)
-								{
-									annotationName = cl.name();
-									if(annotationName == null 
-											|| annotationName.equals(""))
-									{
-										
-									}
-									else
-									{
-										attrName = annotationName;
-										upname = annotationName.toUpperCase();
-										userAnnotation = true;
-									}
-								}
-							}
-						}
-					} catch (Exception e1) {
-						log.info(attribute.getName() + " is not a field of bean[" +valueObjectType.getClass().getCanonicalName() + "].");
-					} 
-					for (int i = 0; i < meta.getColumnCounts(); i++) {
-						
-						int cidx = i+1;
-						String columnName = meta.getColumnLabelUpper(cidx);
-						
-		
-						if (!upname.equals(columnName))
-						{
-							if(!userAnnotation && JDBCPool.nameMapping)
-							{
-								String javaName = meta.getColumnJavaName(cidx);
-								if(javaName != null )
-								{
-									if(!attrName.equals(javaName))
-										continue;
-								}
-								else
-								{
-									continue;
-								}
-								
-							}
-							else
-							{
-								continue;
-							}
-						}
-		
-						Class type = attribute.getPropertyType();
-						Object propsVal = null;
-						
-						try {
-		//					propsVal = ValueExchange.getValueFromResultSet(rs, columnName, 
-		//														stmtInfo.getMeta().getColumnType(i + 1), 
-		//														type, 
-		//														stmtInfo.getDbname());
-							propsVal = ValueExchange.getValueFromResultSet(rs, meta.getColumnLabel(cidx), 
-									stmtInfo.getMeta().getColumnType(cidx), 
-									type, 
-									stmtInfo.getDbname());
-		
-						} catch (Exception e) {
-							StringBuffer err = new StringBuffer(
-									"Build ValueObject for ResultSet[").append(
-											stmtInfo.getSql()).append("] Get Column[")
-									.append(columnName).append("] from  ResultSet to ").append(valueObject).append(".")
-									.append(attrName).append("[")
-									.append(type.getName()).append("] failed:").append(
-											e.getMessage());
-							log.error(err.toString(), e);
-							break;
-						}
-		
-						try {
-							if(attribute.canwrite())
-							{
-								attribute.setValue(valueObject, propsVal);
-							}
-	//						attribute.getWriteMethod().invoke(valueObject,
-	//								new Object[] { propsVal });
-							break;
-						} catch (Exception e) {
-							StringBuffer err = new StringBuffer(
-							"Build ValueObject for ResultSet[").append(
-									stmtInfo.getSql()).append("] Get Column[")
-							.append(columnName).append("] from  ResultSet to ").append(valueObject).append(".")
-							.append(attrName).append("[")
-							.append(type.getName()).append("] failed:").append(
-									e.getMessage());
-	//						System.out.println(err);
-							log.error(err.toString(), e);
-							break;
-						}
-						
+						propsVal = ValueExchange.getValueFromResultSet(rs, plan.getColumnIndex(n), 
+								plan.getColumnType(n), 
+								type, 
+								stmtInfo.getDbname());
+	
+					} catch (Exception e) {
+						StringBuffer err = new StringBuffer(
+								"Build ValueObject for ResultSet[").append(
+										stmtInfo.getSql()).append("] Get Column[")
+								.append(plan.getColumnLabel(n)).append("] from  ResultSet to ").append(valueObject).append(".")
+								.append(plan.getAttrName(n)).append("[")
+								.append(type.getName()).append("] failed:").append(
+										e.getMessage());
+						log.error(err.toString(), e);
+						continue;
 					}
 	
+					try {
+						attribute.setValue(valueObject, propsVal);
+					} catch (Exception e) {
+						StringBuffer err = new StringBuffer(
+						"Build ValueObject for ResultSet[").append(
+								stmtInfo.getSql()).append("] Get Column[")
+						.append(plan.getColumnLabel(n)).append("] from  ResultSet to ").append(valueObject).append(".")
+						.append(plan.getAttrName(n)).append("[")
+						.append(type.getName()).append("] failed:").append(
+								e.getMessage());
+						log.error(err.toString(), e);
+					}
 				}
 			}
 			else
@@ -706,6 +603,8 @@ public class ResultMap {
 		Record record = null;
 		PoolManResultSetMetaData meta = stmtInfo.getMeta();
 		if (rs != null && stmtInfo != null) {
+			if(stmtInfo.isCompactRecord())
+				return ArrayRecord.buildRecord(rs, stmtInfo);
 		        int cols = meta.getColumnCounts();
 			record = new Record(cols,meta.get_columnLabel_upper(),meta.getSamecols());
 			record.setRowid(rs.getRow());	
@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.frameworkset.util.ClassUtil;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+
+import com.frameworkset.common.poolman.handle.RowHandler;
+
+/**
+ *
+ * <p>Title: ResultSetCursor.java</p>
+ *
+ * <p>Description: 流式游标查询结果，每次调用next()时才从ResultSet中读取一条记录并通过
+ * ResultMap.buildValueObject映射为指定类型的对象，内存中只保留驱动按照fetchsize预取的记录，
+ * 适用于大数据量的导出和批处理作业。
+ * 游标占用的数据库链接和语句在遍历结束或者调用close()方法时释放，
+ * 如果没有遍历完所有的记录，必须在finally块中调用close()方法：
+ * <pre>
+ * ResultSetCursor&lt;Order&gt; cursor = SQLExecutor.queryCursor(Order.class, "select * from orders", 500);
+ * try
+ * {
+ * 	while(cursor.hasNext())
+ * 	{
+ * 		Order order = cursor.next();
+ * 		...
+ * 	}
+ * }
+ * finally
+ * {
+ * 	cursor.close();
+ * }
+ * </pre>
+ * 如果查询在TransactionManager事务中执行，链接由事务管理，close()方法只关闭结果集和语句。
+ * </p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ResultSetCursor<T> implements Iterator<T>, Closeable {
+	private StatementInfo stmtInfo;
+	private ResultSet rs;
+	private Class<T> objectType;
+	private RowHandler rowhandler;
+	private boolean ismap;
+	private ClassInfo beanInfo;
+	/**
+	 * 标识当前记录是否已经通过rs.next()移动到位但还没有被next()方法消费
+	 */
+	private boolean fetched = false;
+	private boolean hasnext = false;
+	private boolean closed = false;
+	private long rowcount = 0;
+
+	ResultSetCursor(StatementInfo stmtInfo, ResultSet rs, Class<T> objectType, RowHandler rowhandler) {
+		this.stmtInfo = stmtInfo;
+		this.rs = rs;
+		this.objectType = objectType;
+		this.rowhandler = rowhandler;
+		this.ismap = Map.class.isAssignableFrom(objectType);
+		this.beanInfo = ClassUtil.getClassInfo(objectType);
+	}
+
+	public boolean hasNext() {
+		if (closed)
+			return false;
+		if (!fetched) {
+			try {
+				hasnext = rs.next();
+				fetched = true;
+			} catch (SQLException e) {
+				throw error(e);
+			}
+			if (!hasnext)
+				close();
+		}
+		return hasnext;
+	}
+
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException("No more records in cursor[" + stmtInfo.getSql() + "].");
+		fetched = false;
+		try {
+			T record = ResultMap.buildValueObject(rs, objectType, stmtInfo, rowhandler, ismap, beanInfo);
+			rowcount++;
+			return record;
+		} catch (SQLException e) {
+			throw error(e);
+		}
+	}
+
+	/**
+	 * 游标为只读游标，不支持删除操作
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException("ResultSetCursor is read only.");
+	}
+
+	private CursorException error(SQLException e) {
+		StatementInfo stmtInfo = this.stmtInfo;
+		close();
+		try {
+			stmtInfo.errorHandle(e);
+		} catch (SQLException ex) {
+			return new CursorException("Iterate cursor of sql[" + stmtInfo.getSql() + "] failed:", ex);
+		}
+		return new CursorException("Iterate cursor of sql[" + stmtInfo.getSql() + "] failed:", e);
+	}
+
+	/**
+	 * 关闭结果集和语句，如果链接不是由外部传入或者事务管理的，同时将链接归还连接池，
+	 * 可以重复调用
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		hasnext = false;
+		try {
+			stmtInfo.dofinally();
+		} finally {
+			rs = null;
+			if (rowhandler != null)
+				rowhandler.destroy();
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * 获取已经通过next()方法读取的记录条数
+	 * @return
+	 */
+	public long getRowcount() {
+		return rowcount;
+	}
+
+	public com.frameworkset.common.poolman.sql.PoolManResultSetMetaData getMeta() {
+		return stmtInfo.getMeta();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.frameworkset.util.BigFile;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.frameworkset.util.ClassUtil.PropertieDescription;
+import org.frameworkset.util.annotations.wraper.ColumnWraper;
+
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+import com.frameworkset.common.poolman.util.JDBCPool;
+import com.frameworkset.orm.annotation.PrimaryKey;
+
+/**
+ *
+ * <p>Title: RowMappingPlan.java</p>
+ *
+ * <p>Description: 结果集记录到值对象的映射计划，按照值对象类型和查询结果集元数据构建一次，
+ * 记录每个可写属性对应的列索引、列标签和列类型，映射记录时直接按照计划顺序取值和设值，
+ * 不需要对每条记录重复解析@PrimaryKey/@Column注解和逐列比较列名。
+ * 映射计划缓存在PoolManResultSetMetaData中，元数据按照数据源和sql缓存并且在列数、列标签或者列类型变化时重建，
+ * 因此映射计划实际上是按照值对象类型+sql+结果集列结构来缓存的。</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class RowMappingPlan {
+	private final PropertieDescription[] attributes;
+	private final int[] columnIndexs;
+	private final int[] columnTypes;
+	private final String[] columnLabels;
+	private final String[] attrNames;
+
+	private RowMappingPlan(List<Object[]> entries) {
+		int size = entries.size();
+		attributes = new PropertieDescription[size];
+		columnIndexs = new int[size];
+		columnTypes = new int[size];
+		columnLabels = new String[size];
+		attrNames = new String[size];
+		for (int i = 0; i < size; i++) {
+			Object[] entry = entries.get(i);
+			attributes[i] = (PropertieDescription) entry[0];
+			columnIndexs[i] = ((Integer) entry[1]).intValue();
+			columnTypes[i] = ((Integer) entry[2]).intValue();
+			columnLabels[i] = (String) entry[3];
+			attrNames[i] = (String) entry[4];
+		}
+	}
+
+	/**
+	 * 构建映射计划，属性和列的匹配规则与ResultMap.buildValueObject原来逐行匹配的规则一致：
+	 * 优先使用@PrimaryKey和@Column注解指定的列名，其次使用属性名称，
+	 * 没有使用注解并且开启了JDBCPool.nameMapping时同时按照列名转换后的java名称匹配，
+	 * 每个属性只映射到第一个匹配的列上
+	 * @param beanInfo
+	 * @param meta
+	 * @return
+	 */
+	public static RowMappingPlan buildPlan(ClassInfo beanInfo, PoolManResultSetMetaData meta) {
+		List<PropertieDescription> attributes = beanInfo.getPropertyDescriptors();
+		List<Object[]> entries = new ArrayList<Object[]>();
+		int columnCounts = meta.getColumnCounts();
+		for (int n = 0; attributes != null && n < attributes.size(); n++) {
+			PropertieDescription attribute = attributes.get(n);
+			if (attribute.getIgnoreORMapping() != null)
+				continue;
+			if (BigFile.class.isAssignableFrom(attribute.getPropertyType()))// 不支持大字段转换为BigFile接口
+				continue;
+			if (!attribute.canwrite())
+				continue;
+			String attrName = attribute.getName();
+			String upname = attribute.getUperName();
+			boolean userAnnotation = false;
+			String annotationName = null;
+			PrimaryKey apk = attribute.getPk();
+			if (apk != null) {
+				annotationName = apk.name();
+			} else {
+				ColumnWraper cl = attribute.getColumn();
+				if (cl != null)
+					annotationName = cl.name();
+			}
+			if (annotationName != null && !annotationName.equals("")) {
+				attrName = annotationName;
+				upname = annotationName.toUpperCase();
+				userAnnotation = true;
+			}
+			for (int i = 0; i < columnCounts; i++) {
+				int cidx = i + 1;
+				if (!upname.equals(meta.getColumnLabelUpper(cidx))) {
+					if (userAnnotation || !JDBCPool.nameMapping)
+						continue;
+					String javaName = meta.getColumnJavaName(cidx);
+					if (javaName == null || !attrName.equals(javaName))
+						continue;
+				}
+				try {
+					entries.add(new Object[] { attribute, new Integer(cidx),
+							new Integer(meta.getColumnType(cidx)),
+							meta.getColumnLabel(cidx), attrName });
+				} catch (java.sql.SQLException e) {
+					// PoolManResultSetMetaData为结果集元数据的拷贝，不会抛出异常
+				}
+				break;
+			}
+		}
+		return new RowMappingPlan(entries);
+	}
+
+	public int size() {
+		return attributes.length;
+	}
+
+	public PropertieDescription getAttribute(int i) {
+		return attributes[i];
+	}
+
+	public int getColumnIndex(int i) {
+		return columnIndexs[i];
+	}
+
+	public int getColumnType(int i) {
+		return columnTypes[i];
+	}
+
+	public String getColumnLabel(int i) {
+		return columnLabels[i];
+	}
+
+	public String getAttrName(int i) {
+		return attrNames[i];
+	}
+}
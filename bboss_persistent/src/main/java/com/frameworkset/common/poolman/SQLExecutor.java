@@ -16,16 +16,20 @@
 
 package com.frameworkset.common.poolman;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.frameworkset.persitent.util.SQLInfo;
 import org.frameworkset.persitent.util.SQLUtil;
+import org.frameworkset.util.MoreListInfo;
 
 import com.frameworkset.common.poolman.handle.FieldRowHandler;
+import com.frameworkset.common.poolman.handle.LobHandler;
 import com.frameworkset.common.poolman.handle.NullRowHandler;
 import com.frameworkset.common.poolman.handle.RowHandler;
+import com.frameworkset.common.poolman.handle.WriterRowHandler;
 import com.frameworkset.util.ListInfo;
 
 /**
@@ -1330,6 +1334,73 @@ public class SQLExecutor
 		SQLInfo sqlinfo = SQLUtil.getGlobalSQLUtil().getSQLInfo(sql,false,false);		
 		SQLInfoExecutor.queryWithDBNameByNullRowHandler( rowhandler, dbname,  sqlinfo,fields);
 	}
+
+	/**
+	 * 流式读取查询结果中的blob/clob字段，大字段的内容在结果集关闭前交给lobhandler处理，不会整体加载到内存中，
+	 * 例如将blob字段导出到文件：
+	 * SQLExecutor.queryLob(LobHandler.toFile("content", file), "select content from doc where id=?", id);
+	 * @param lobhandler 大字段处理器
+	 * @param sql
+	 * @param fields
+	 * @return 处理的字节数或者字符数
+	 * @throws SQLException
+	 */
+	public static long queryLob(LobHandler lobhandler, String sql, Object... fields) throws SQLException
+	{
+		return queryLobWithDBName( lobhandler,null, sql, fields);
+	}
+
+	/**
+	 * 在数据源dbname上流式读取查询结果中的blob/clob字段
+	 * @param lobhandler 大字段处理器
+	 * @param dbname
+	 * @param sql
+	 * @param fields
+	 * @return 处理的字节数或者字符数
+	 * @throws SQLException
+	 */
+	public static long queryLobWithDBName(LobHandler lobhandler,String dbname, String sql, Object... fields) throws SQLException
+	{
+		queryWithDBNameByNullRowHandler( lobhandler, dbname, sql, fields);
+		return lobhandler.getLength();
+	}
+
+	/**
+	 * 将查询结果逐条输出到rowhandler的输出流，输出xml时使用XMLWriterRowHandler，输出json时使用JSONWriterRowHandler，
+	 * 结果不在内存中拼接成完整的字符串，查询完成后输出结尾部分并刷新输出流，输出流由调用方关闭
+	 * @param rowhandler
+	 * @param sql
+	 * @param fields
+	 * @return 输出的记录数
+	 * @throws SQLException
+	 */
+	public static long queryToWriter(WriterRowHandler rowhandler, String sql, Object... fields) throws SQLException
+	{
+		return queryToWriterWithDBName( rowhandler,null, sql, fields);
+	}
+
+	/**
+	 * 在数据源dbname上执行查询，将查询结果逐条输出到rowhandler的输出流
+	 * @param rowhandler
+	 * @param dbname
+	 * @param sql
+	 * @param fields
+	 * @return 输出的记录数
+	 * @throws SQLException
+	 */
+	public static long queryToWriterWithDBName(WriterRowHandler rowhandler,String dbname, String sql, Object... fields) throws SQLException
+	{
+		queryWithDBNameByNullRowHandler( rowhandler, dbname, sql, fields);
+		try
+		{
+			rowhandler.end();
+		}
+		catch(IOException e)
+		{
+			throw new NestedSQLException(e);
+		}
+		return rowhandler.getRows();
+	}
 	
 	
 	public static <T> List<T> queryListBean(Class<T> beanType, String sql, Object bean) throws SQLException
@@ -2056,4 +2127,73 @@ public class SQLExecutor
 	}
 	
 	
+	/**
+	 * 流式游标查询，返回的游标在遍历时逐条读取记录，不会将整个结果集加载到内存中，
+	 * 适用于大数据量的导出和批处理，调用方必须在finally中关闭游标以释放数据库链接
+	 * @param beanType 记录映射的对象类型
+	 * @param dbname 数据源名称
+	 * @param sql 查询语句
+	 * @param fetchsize jdbc fetchsize，小于等于0时使用数据源配置的queryfetchsize
+	 * @param fields 查询条件
+	 * @return
+	 * @throws SQLException
+	 */
+	public static <T> ResultSetCursor<T> queryCursorWithDBName(Class<T> beanType,String dbname, String sql,int fetchsize, Object... fields) throws SQLException
+	{
+		SQLInfo sqlinfo = SQLUtil.getGlobalSQLUtil().getSQLInfo(sql,false,false);
+		return SQLInfoExecutor.queryCursorWithDBName(  beanType, dbname,  sqlinfo,fetchsize,  fields);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursor(Class<T> beanType, String sql,int fetchsize, Object... fields) throws SQLException
+	{
+		return queryCursorWithDBName(beanType,null, sql,fetchsize, fields);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorWithDBNameByRowHandler(RowHandler rowhandler,Class<T> beanType,String dbname, String sql,int fetchsize, Object... fields) throws SQLException
+	{
+		SQLInfo sqlinfo = SQLUtil.getGlobalSQLUtil().getSQLInfo(sql,false,false);
+		return SQLInfoExecutor.queryCursorWithDBNameByRowHandler(  rowhandler,beanType, dbname,  sqlinfo,fetchsize,  fields);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorByRowHandler(RowHandler rowhandler,Class<T> beanType, String sql,int fetchsize, Object... fields) throws SQLException
+	{
+		return queryCursorWithDBNameByRowHandler(rowhandler,beanType,null, sql,fetchsize, fields);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorBeanWithDBName(Class<T> beanType,String dbname, String sql,int fetchsize, Object bean) throws SQLException
+	{
+		SQLInfo sqlinfo = SQLUtil.getGlobalSQLUtil().getSQLInfo(sql,true,false);
+		return SQLInfoExecutor.queryCursorBeanWithDBName(beanType, dbname,  sqlinfo,fetchsize,  bean);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorBean(Class<T> beanType, String sql,int fetchsize, Object bean) throws SQLException
+	{
+		return queryCursorBeanWithDBName(beanType,null, sql,fetchsize, bean);
+	}
+	
+	/**
+	 * keyset(seek)分页查询，不执行count查询，根据上一页最后一条记录的排序字段值定位下一页
+	 * @param beanType
+	 * @param dbname
+	 * @param sql 查询语句，不能包含order by子句，排序字段必须出现在查询列表中
+	 * @param orderby 排序字段，例如"create_time desc,id desc"，最后一个字段必须能够唯一确定记录的顺序，
+	 * 排序字段的值不能为null，可以为null的字段需要在查询列表中通过coalesce等函数转换为非空值后再作为排序字段
+	 * @param lastkeys 上一页最后一条记录的排序字段值，与orderby中的字段一一对应，为null时查询第一页，
+	 * 其中包含null值时抛出SQLException
+	 * @param pagesize
+	 * @param fields
+	 * @return 当页记录和是否还有下一页
+	 * @throws SQLException
+	 */
+	public static <T> MoreListInfo queryKeysetListInfoWithDBName(Class<T> beanType,String dbname, String sql,String orderby,Object[] lastkeys,int pagesize, Object... fields) throws SQLException
+	{
+		SQLInfo sqlinfo = SQLUtil.getGlobalSQLUtil().getSQLInfo(sql,false,false);
+		return SQLInfoExecutor.queryKeysetListInfoWithDBName(beanType, dbname, sqlinfo, orderby, lastkeys, pagesize, fields);
+	}
+	
+	public static <T> MoreListInfo queryKeysetListInfo(Class<T> beanType, String sql,String orderby,Object[] lastkeys,int pagesize, Object... fields) throws SQLException
+	{
+		return queryKeysetListInfoWithDBName(beanType,null, sql,orderby,lastkeys,pagesize, fields);
+	}
+	
 }
@@ -20,10 +20,14 @@ import java.sql.SQLException;
 import java.util.List;
 
 import org.frameworkset.persitent.util.SQLInfo;
+import org.frameworkset.util.MoreListInfo;
 
 import com.frameworkset.common.poolman.handle.FieldRowHandler;
 import com.frameworkset.common.poolman.handle.NullRowHandler;
 import com.frameworkset.common.poolman.handle.RowHandler;
+import com.frameworkset.common.poolman.util.JDBCPool;
+import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
+import com.frameworkset.common.poolman.util.SQLManager;
 import com.frameworkset.util.ListInfo;
 import com.frameworkset.util.ValueObjectUtil;
 
@@ -91,6 +95,14 @@ public class SQLInfoExecutor {
 	
 	public static void execute(String dbname, SQLInfo sql, List beans,boolean isBatchOptimize,int action,GetCUDResult getCUDResult) throws SQLException
 	{
+		JDBCPool pool = SQLManager.getInstance().getPool(dbname);
+		JDBCPoolMetaData meta = pool != null?pool.getJDBCPoolMetadata():null;
+		if(BatchPipeline.needChunk(meta, beans))//按照数据源batchsize配置分批执行
+		{
+			new BatchPipeline(dbname, sql, beans, isBatchOptimize, action, meta).execute(getCUDResult);
+			flushCacheModels(sql);
+			return;
+		}
 		Connection con = null;
 		try
 		{
@@ -103,6 +115,7 @@ public class SQLInfoExecutor {
 			dbutil.setPrepareDBName(dbname);
 			dbutil.addPreparedBatch(new ListSQLParams(batchsqlparams,sql));
 			dbutil.executePreparedBatch(con,getCUDResult);
+			flushCacheModels(sql);
 		}
 		finally
 		{
@@ -152,7 +165,9 @@ public class SQLInfoExecutor {
 //	            if(batchsqlparams.size() > 0)
 	            {
 	                dbutil.preparedInsert(batchsqlparams, dbname,sql);
-	                return dbutil.executePrepared(con,getCUDResult);
+	                Object ret = dbutil.executePrepared(con,getCUDResult);
+	                flushCacheModels(sql);
+	                return ret;
 	            }
 //	            else
 //	            {
@@ -164,7 +179,9 @@ public class SQLInfoExecutor {
 //	            if(batchsqlparams.size() > 0)
 	            {
 	                dbutil.preparedUpdate(batchsqlparams, dbname,sql);
-	                return dbutil.executePrepared(con,getCUDResult);
+	                Object ret = dbutil.executePrepared(con,getCUDResult);
+	                flushCacheModels(sql);
+	                return ret;
 	            }
 //	            else
 //	            {
@@ -177,7 +194,9 @@ public class SQLInfoExecutor {
 //	            if(batchsqlparams.size() > 0)
 	            {
 	                dbutil.preparedDelete(batchsqlparams, dbname,sql);
-	                return dbutil.executePrepared(con,getCUDResult);
+	                Object ret = dbutil.executePrepared(con,getCUDResult);
+	                flushCacheModels(sql);
+	                return ret;
 	            }
 //	            else
 //	            {
@@ -241,7 +260,9 @@ public class SQLInfoExecutor {
 		
 		
 		
-		return dbutil.executePrepared();	
+		Object ret = dbutil.executePrepared();	
+		flushCacheModels(sql);
+		return ret;
 	}
 	
 	protected static void executeBatch(String dbname, SQLInfo sql,int action, Object fields_) throws SQLException {
@@ -331,6 +352,17 @@ public class SQLInfoExecutor {
 		
 		
 		dbutil.executePreparedBatch();	
+		flushCacheModels(sql);
+	}
+	
+	/**
+	 * 修改操作执行后刷新以该sql作为cacheflushon的查询结果缓存，在事务中执行时事务提交后才刷新
+	 * @param sql
+	 */
+	static void flushCacheModels(SQLInfo sql)
+	{
+		if(sql.getSqlutil() != null)
+			sql.getSqlutil().flushCacheModelsAfterCommit(sql.getSqlname());
 	}
 	
 	
@@ -1772,4 +1804,97 @@ public class SQLInfoExecutor {
 		 dbutil.executePreparedWithRowHandler(rowhandler);		 
 	}
 
+	/**
+	 * 流式游标查询，返回的游标在遍历时逐条读取记录，不会将整个结果集加载到内存中，
+	 * 游标遍历结束或者调用close方法时释放数据库链接，调用方必须在finally中关闭游标
+	 * @param beanType 记录映射的对象类型
+	 * @param dbname 数据源名称
+	 * @param sql 查询语句
+	 * @param fetchsize jdbc fetchsize，小于等于0时使用数据源配置的queryfetchsize
+	 * @param fields 查询条件
+	 * @return
+	 * @throws SQLException
+	 */
+	public static <T> ResultSetCursor<T> queryCursorWithDBName(Class<T> beanType,String dbname, SQLInfo sql,int fetchsize, Object... fields) throws SQLException
+	{
+		
+		SQLInfoDBUtil dbutil = new SQLInfoDBUtil();
+		dbutil.preparedSelect(dbname, sql);
+		if(fields != null && fields.length > 0)
+		{
+			for(int i = 0; i < fields.length ; i ++)
+			{
+				
+				Object field = fields[i];
+				dbutil.setObject(i + 1, field);
+			}
+		}
+		return dbutil.executePreparedForCursor(beanType,fetchsize);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursor(Class<T> beanType, SQLInfo sql,int fetchsize, Object... fields) throws SQLException
+	{
+		return queryCursorWithDBName(beanType,null, sql,fetchsize, fields);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorWithDBNameByRowHandler(RowHandler rowhandler,Class<T> beanType,String dbname, SQLInfo sql,int fetchsize, Object... fields) throws SQLException
+	{
+		
+		SQLInfoDBUtil dbutil = new SQLInfoDBUtil();
+		dbutil.preparedSelect(dbname, sql);
+		if(fields != null && fields.length > 0)
+		{
+			for(int i = 0; i < fields.length ; i ++)
+			{
+				
+				Object field = fields[i];
+				dbutil.setObject(i + 1, field);
+			}
+		}
+		return dbutil.executePreparedForCursor(beanType,rowhandler,fetchsize);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorByRowHandler(RowHandler rowhandler,Class<T> beanType, SQLInfo sql,int fetchsize, Object... fields) throws SQLException
+	{
+		return queryCursorWithDBNameByRowHandler(rowhandler,beanType,null, sql,fetchsize, fields);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorBeanWithDBName(Class<T> beanType,String dbname, SQLInfo sql,int fetchsize, Object bean) throws SQLException
+	{
+		
+		SQLInfoDBUtil dbutil = new SQLInfoDBUtil();
+		SQLParams params = SQLParams.convertBeanToSqlParams(bean, sql, dbname, PreparedDBUtil.SELECT, null);
+		dbutil.preparedSelect(params,dbname, sql);
+		return dbutil.executePreparedForCursor(beanType,fetchsize);
+	}
+	
+	public static <T> ResultSetCursor<T> queryCursorBean(Class<T> beanType, SQLInfo sql,int fetchsize, Object bean) throws SQLException
+	{
+		return queryCursorBeanWithDBName(beanType,null, sql,fetchsize, bean);
+	}
+	
+	/**
+	 * keyset(seek)分页查询，不执行count查询，根据上一页最后一条记录的排序字段值定位下一页
+	 * @param beanType
+	 * @param dbname
+	 * @param sql 查询语句，不能包含order by子句，排序字段必须出现在查询列表中
+	 * @param orderby 排序字段，例如"create_time desc,id desc"，最后一个字段必须能够唯一确定记录的顺序，
+	 * 排序字段的值不能为null，可以为null的字段需要在查询列表中通过coalesce等函数转换为非空值后再作为排序字段
+	 * @param lastkeys 上一页最后一条记录的排序字段值，与orderby中的字段一一对应，为null时查询第一页，
+	 * 其中包含null值时抛出SQLException
+	 * @param pagesize
+	 * @param fields
+	 * @return 当页记录和是否还有下一页
+	 * @throws SQLException
+	 */
+	public static <T> MoreListInfo queryKeysetListInfoWithDBName(Class<T> beanType,String dbname, SQLInfo sql,String orderby,Object[] lastkeys,int pagesize, Object... fields) throws SQLException
+	{
+		return new KeysetPagine(orderby).query(beanType, dbname, sql, lastkeys, pagesize, fields);
+	}
+	
+	public static <T> MoreListInfo queryKeysetListInfo(Class<T> beanType, SQLInfo sql,String orderby,Object[] lastkeys,int pagesize, Object... fields) throws SQLException
+	{
+		return queryKeysetListInfoWithDBName(beanType,null, sql,orderby,lastkeys,pagesize, fields);
+	}
+
 }
@@ -0,0 +1,359 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.frameworkset.spi.BaseApplicationContext;
+
+import com.frameworkset.common.poolman.ScatterResult.ShardResult;
+
+/**
+ *
+ * <p>Title: ScatterGatherExecutor.java</p>
+ *
+ * <p>Description: 多数据源并行查询执行器，将同一个查询(或者每个数据源各自的查询)分发到多个数据源，
+ * 在有界线程池中并行执行，然后合并结果：没有指定comparator时按照数据源顺序拼接，
+ * 指定comparator时对各数据源已排序的结果进行归并排序，并按照limit截取。
+ * 也可以通过ShardHandler在每个数据源查询完成时立即处理该数据源的结果，不在内存中合并。
+ * 每个数据源的耗时、记录数、异常和超时情况通过ScatterResult.getShardResults返回。
+ * ScatterQuery的timeout限制所有数据源的总等待时间，shardTimeout限制单个数据源查询的执行时间，
+ * 超时的查询通过Statement.cancel取消。
+ * 查询在工作线程中执行，不参与调用线程的事务</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ScatterGatherExecutor {
+	private static final Logger log = Logger.getLogger(ScatterGatherExecutor.class);
+	private static final AtomicInteger executorNo = new AtomicInteger();
+	private static volatile ScatterGatherExecutor defaultExecutor;
+	private static boolean shutdownHookAdded;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * 逐个处理数据源查询结果的处理器，按照数据源完成的先后顺序在调用线程中回调
+	 */
+	public interface ShardHandler<T> {
+		public void handle(ShardResult shard, List<T> datas) throws SQLException;
+	}
+
+	/**
+	 * @param threads 并行执行查询的最大线程数
+	 */
+	public ScatterGatherExecutor(int threads) {
+		final int no = executorNo.incrementAndGet();
+		executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger workerNo = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "ScatterGather-" + no + "-worker-" + workerNo.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 获取默认的执行器，线程数为cpu核数的2倍，最少4个线程；默认执行器被关闭后重新创建
+	 */
+	public static ScatterGatherExecutor getDefault() {
+		ScatterGatherExecutor executor = defaultExecutor;
+		if (executor == null) {
+			synchronized (ScatterGatherExecutor.class) {
+				executor = defaultExecutor;
+				if (executor == null) {
+					executor = new ScatterGatherExecutor(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+					defaultExecutor = executor;
+					if (!shutdownHookAdded) {
+						shutdownHookAdded = true;
+						BaseApplicationContext.addShutdownHook(new Runnable() {
+							public void run() {
+								shutdownDefault();
+							}
+						});
+					}
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 关闭默认的执行器，之后调用getDefault时重新创建
+	 */
+	private static void shutdownDefault() {
+		ScatterGatherExecutor executor = null;
+		synchronized (ScatterGatherExecutor.class) {
+			executor = defaultExecutor;
+			defaultExecutor = null;
+		}
+		if (executor != null)
+			executor.shutdown();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * 并行查询所有数据源并合并结果
+	 */
+	public <T> ScatterResult<T> queryList(ScatterQuery<T> query) throws SQLException {
+		return queryList(query, null);
+	}
+
+	/**
+	 * 并行查询所有数据源，handler不为null时每个数据源完成后立即回调handler，不合并结果
+	 */
+	public <T> ScatterResult<T> queryList(final ScatterQuery<T> query, ShardHandler<T> handler) throws SQLException {
+		List<String> dbnames = query.getDbnames();
+		if (dbnames == null || dbnames.size() == 0)
+			throw new SQLException("Scatter query must specify dbnames.");
+		long start = System.currentTimeMillis();
+		int shardsize = dbnames.size();
+		final List<ShardResult> shards = new ArrayList<ShardResult>(shardsize);
+		final List<List<T>> results = new ArrayList<List<T>>(shardsize);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>(shardsize);
+		ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<Integer>(executor);
+		for (int i = 0; i < shardsize; i++) {
+			String dbname = dbnames.get(i);
+			if (query.getSql(dbname) == null)
+				throw new SQLException("Scatter query not specify sql for dbname " + dbname + ".");
+			shards.add(new ShardResult(dbname));
+			results.add(null);
+		}
+		final List<AsyncSQLExecutor.SQLFuture<Object>> cancelables = new ArrayList<AsyncSQLExecutor.SQLFuture<Object>>(shardsize);
+		for (int i = 0; i < shardsize; i++) {
+			final int idx = i;
+			final AsyncSQLExecutor.SQLFuture<Object> cancelable = new AsyncSQLExecutor.SQLFuture<Object>();
+			cancelables.add(cancelable);
+			futures.add(completion.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					final ShardResult shard = shards.get(idx);
+					long s = System.currentTimeMillis();
+					shard.setStarted(System.nanoTime());
+					try {
+						if (cancelable.isCancelled())
+							throw new SQLException("Scatter query on dbname " + shard.getDbname() + " cancelled.");
+						//查询创建的语句登记到cancelable，超时时通过Statement.cancel取消正在执行的sql
+						List<T> datas = AsyncSQLExecutor.call(cancelable, new Callable<List<T>>() {
+							public List<T> call() throws Exception {
+								return SQLExecutor.queryListWithDBName(query.getBeanType(), shard.getDbname(),
+										query.getSql(shard.getDbname()), query.getFields());
+							}
+						});
+						results.set(idx, datas);
+						shard.setSize(datas == null ? 0 : datas.size());
+					} catch (Throwable e) {
+						shard.setException(e);
+					} finally {
+						shard.setElapsed(System.currentTimeMillis() - s);
+						shard.setCompleted(true);
+					}
+					return idx;
+				}
+			}));
+		}
+		long deadline = query.getTimeout() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(query.getTimeout()) : 0L;
+		long shardTimeout = query.getShardTimeout() > 0 ? TimeUnit.MILLISECONDS.toNanos(query.getShardTimeout()) : 0L;
+		//已经处理的数据源，单个数据源超时后即视为处理完成，不再等待其返回
+		boolean[] handled = new boolean[shardsize];
+		int done = 0;
+		boolean timeout = false;
+		try {
+			while (done < shardsize) {
+				long wait = -1L;//小于0时一直等待
+				long now = System.nanoTime();
+				if (deadline > 0L) {
+					wait = deadline - now;
+					if (wait <= 0L) {
+						timeout = true;
+						break;
+					}
+				}
+				if (shardTimeout > 0L) {
+					//等待时间不超过shardTimeout，保证等待期间开始执行的数据源查询也能及时超时
+					long next = shardTimeout;
+					for (int i = 0; i < shardsize; i++) {
+						ShardResult shard = shards.get(i);
+						if (handled[i] || !shard.isStarted() || shard.isCompleted())
+							continue;
+						long remain = shard.getStartNanos() + shardTimeout - now;
+						if (remain > 0L) {
+							next = Math.min(next, remain);
+							continue;
+						}
+						handled[i] = true;
+						done++;
+						cancel(i, futures, cancelables, shards);
+						if (query.isFailOnError())
+							throw new SQLException("Scatter query on dbname " + shard.getDbname() + " timeout after "
+									+ query.getShardTimeout() + " ms.");
+						log.warn("Scatter query on dbname " + shard.getDbname() + " timeout after " + query.getShardTimeout()
+								+ " ms,ignore it.");
+					}
+					if (done >= shardsize)
+						break;
+					wait = wait < 0L ? next : Math.min(wait, next);
+				}
+				Future<Integer> future = wait < 0L ? completion.take() : completion.poll(wait, TimeUnit.NANOSECONDS);
+				if (future == null)
+					continue;
+				int idx = future.get();
+				if (handled[idx])//已经超时的数据源
+					continue;
+				handled[idx] = true;
+				done++;
+				ShardResult shard = shards.get(idx);
+				if (shard.getException() != null) {
+					if (query.isFailOnError())
+						throw new NestedSQLException("Scatter query on dbname " + shard.getDbname() + " failed.",
+								shard.getException());
+					log.warn("Scatter query on dbname " + shard.getDbname() + " failed,ignore it:" + shard.getException());
+					continue;
+				}
+				if (handler != null) {
+					handler.handle(shard, results.get(idx));
+					results.set(idx, null);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new NestedSQLException("Wait for scatter query interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new NestedSQLException("Scatter query failed.", e.getCause());
+		} finally {
+			if (done < shardsize) {
+				for (int i = 0; i < shardsize; i++) {
+					if (!handled[i] && !shards.get(i).isCompleted())
+						cancel(i, futures, cancelables, shards);
+				}
+			}
+		}
+		if (timeout) {
+			List<String> timeouts = new ArrayList<String>();
+			for (int i = 0; i < shardsize; i++) {
+				if (!handled[i])
+					timeouts.add(shards.get(i).getDbname());
+			}
+			if (query.isFailOnError())
+				throw new SQLException("Scatter query on dbnames " + timeouts + " timeout after " + query.getTimeout() + " ms.");
+			log.warn("Scatter query on dbnames " + timeouts + " timeout after " + query.getTimeout() + " ms,ignore them.");
+		}
+		ScatterResult<T> result = new ScatterResult<T>(shards);
+		if (handler == null) {
+			//超时数据源的查询可能在取消之前已经返回了结果，不参与合并
+			for (int i = 0; i < shardsize; i++) {
+				if (shards.get(i).isTimeout())
+					results.set(i, null);
+			}
+			result.setDatas(merge(results, query.getComparator(), query.getLimit()));
+		}
+		result.setElapsed(System.currentTimeMillis() - start);
+		if (log.isDebugEnabled())
+			log.debug("Scatter query finished in " + result.getElapsed() + " ms:" + shards);
+		return result;
+	}
+
+	/**
+	 * 取消数据源的查询并标记为超时：尚未开始执行的任务不再执行，正在执行的sql通过Statement.cancel取消。
+	 * 不中断工作线程，中断正在进行网络io的jdbc调用并不能停止数据库端的执行，还可能使连接处于不可用的状态
+	 */
+	private static void cancel(int i, List<Future<Integer>> futures, List<AsyncSQLExecutor.SQLFuture<Object>> cancelables,
+			List<ShardResult> shards) {
+		shards.get(i).setTimeout(true);
+		futures.get(i).cancel(false);
+		cancelables.get(i).cancel(false);
+	}
+
+	/**
+	 * 合并各数据源的结果，comparator为null时按照数据源顺序拼接，否则进行归并排序
+	 */
+	static <T> List<T> merge(List<List<T>> results, final Comparator<? super T> comparator, int limit) {
+		int total = 0;
+		for (List<T> datas : results) {
+			if (datas != null)
+				total += datas.size();
+		}
+		if (limit > 0 && limit < total)
+			total = limit;
+		List<T> merged = new ArrayList<T>(total);
+		if (comparator == null) {
+			for (List<T> datas : results) {
+				if (datas == null)
+					continue;
+				for (int i = 0; i < datas.size() && merged.size() < total; i++)
+					merged.add(datas.get(i));
+			}
+			return merged;
+		}
+		PriorityQueue<Cursor<T>> queue = new PriorityQueue<Cursor<T>>(Math.max(1, results.size()),
+				new Comparator<Cursor<T>>() {
+					public int compare(Cursor<T> o1, Cursor<T> o2) {
+						int c = comparator.compare(o1.current(), o2.current());
+						return c != 0 ? c : o1.shard - o2.shard;//相等时按照数据源顺序，保证结果稳定
+					}
+				});
+		for (int i = 0; i < results.size(); i++) {
+			List<T> datas = results.get(i);
+			if (datas != null && datas.size() > 0)
+				queue.add(new Cursor<T>(i, datas));
+		}
+		while (merged.size() < total && !queue.isEmpty()) {
+			Cursor<T> cursor = queue.poll();
+			merged.add(cursor.current());
+			if (cursor.next())
+				queue.add(cursor);
+		}
+		return merged;
+	}
+
+	private static class Cursor<T> {
+		private final int shard;
+		private final List<T> datas;
+		private int pos;
+
+		Cursor(int shard, List<T> datas) {
+			this.shard = shard;
+			this.datas = datas;
+		}
+
+		T current() {
+			return datas.get(pos);
+		}
+
+		boolean next() {
+			return ++pos < datas.size();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * <p>Title: ScatterQuery.java</p>
+ *
+ * <p>Description: 多数据源并行查询的查询定义，所有数据源执行相同的sql，或者通过shardSqls为每个数据源指定sql。
+ * 指定comparator时每个数据源的结果必须已经按照comparator排好序(sql中包含对应的order by)，
+ * 合并时进行归并排序；limit大于0时合并结果最多保留limit条记录</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ScatterQuery<T> {
+	private final Class<T> beanType;
+	private final List<String> dbnames;
+	private final String sql;
+	private final Map<String, String> shardSqls;
+	private final Object[] fields;
+	/**
+	 * 所有数据源查询的超时时间，单位毫秒，小于等于0时不超时
+	 */
+	private long timeout = -1L;
+	/**
+	 * 单个数据源查询的超时时间，单位毫秒，从该数据源的查询开始执行时计时，小于等于0时不超时
+	 */
+	private long shardTimeout = -1L;
+	private Comparator<? super T> comparator;
+	private int limit = -1;
+	/**
+	 * 为true时任何一个数据源查询失败或者超时都抛出异常，为false时返回其他数据源的结果
+	 */
+	private boolean failOnError = true;
+
+	/**
+	 * 所有数据源执行相同的sql
+	 */
+	public ScatterQuery(Class<T> beanType, List<String> dbnames, String sql, Object... fields) {
+		this.beanType = beanType;
+		this.dbnames = dbnames;
+		this.sql = sql;
+		this.shardSqls = null;
+		this.fields = fields;
+	}
+
+	/**
+	 * 每个数据源执行各自的sql，数据源的执行顺序和合并顺序为shardSqls的迭代顺序
+	 * @param shardSqls dbname和sql的映射关系，需要保持顺序时使用LinkedHashMap
+	 */
+	public ScatterQuery(Class<T> beanType, Map<String, String> shardSqls, Object... fields) {
+		this.beanType = beanType;
+		this.dbnames = new ArrayList<String>(shardSqls.keySet());
+		this.sql = null;
+		this.shardSqls = shardSqls;
+		this.fields = fields;
+	}
+
+	public Class<T> getBeanType() {
+		return beanType;
+	}
+
+	public List<String> getDbnames() {
+		return dbnames;
+	}
+
+	/**
+	 * 获取数据源对应的sql
+	 */
+	public String getSql(String dbname) {
+		return shardSqls != null ? shardSqls.get(dbname) : sql;
+	}
+
+	public Object[] getFields() {
+		return fields;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public long getShardTimeout() {
+		return shardTimeout;
+	}
+
+	public void setShardTimeout(long shardTimeout) {
+		this.shardTimeout = shardTimeout;
+	}
+
+	public Comparator<? super T> getComparator() {
+		return comparator;
+	}
+
+	public void setComparator(Comparator<? super T> comparator) {
+		this.comparator = comparator;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	public boolean isFailOnError() {
+		return failOnError;
+	}
+
+	public void setFailOnError(boolean failOnError) {
+		this.failOnError = failOnError;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * <p>Title: ScatterResult.java</p>
+ *
+ * <p>Description: 多数据源并行查询的结果，包含合并后的记录以及每个数据源的执行情况</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ScatterResult<T> {
+	/**
+	 * 单个数据源的执行情况
+	 */
+	public static class ShardResult {
+		private final String dbname;
+		private volatile int size;
+		private volatile long elapsed = -1L;
+		private volatile Throwable exception;
+		private volatile boolean timeout;
+		private volatile boolean completed;
+		/**
+		 * 查询开始执行的时间，单位纳秒，started为false时没有开始执行
+		 */
+		private volatile long startNanos;
+		private volatile boolean started;
+
+		public ShardResult(String dbname) {
+			this.dbname = dbname;
+		}
+
+		public String getDbname() {
+			return dbname;
+		}
+
+		/**
+		 * 数据源返回的记录数
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		void setSize(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * 数据源查询耗时，单位毫秒，超时没有完成的查询为-1
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		void setElapsed(long elapsed) {
+			this.elapsed = elapsed;
+		}
+
+		public Throwable getException() {
+			return exception;
+		}
+
+		void setException(Throwable exception) {
+			this.exception = exception;
+		}
+
+		public boolean isTimeout() {
+			return timeout;
+		}
+
+		void setTimeout(boolean timeout) {
+			this.timeout = timeout;
+		}
+
+		public boolean isCompleted() {
+			return completed;
+		}
+
+		void setCompleted(boolean completed) {
+			this.completed = completed;
+		}
+
+		void setStarted(long startNanos) {
+			this.startNanos = startNanos;
+			this.started = true;
+		}
+
+		boolean isStarted() {
+			return started;
+		}
+
+		long getStartNanos() {
+			return startNanos;
+		}
+
+		public boolean isSuccess() {
+			return completed && exception == null;
+		}
+
+		public String toString() {
+			StringBuilder ret = new StringBuilder().append(dbname);
+			if (timeout)
+				ret.append(":timeout");
+			else if (exception != null)
+				ret.append(":failed[").append(exception.getMessage()).append("]");
+			else
+				ret.append(":").append(size).append(" rows in ").append(elapsed).append(" ms");
+			return ret.toString();
+		}
+	}
+
+	private List<T> datas;
+	private final List<ShardResult> shardResults;
+	private long elapsed;
+
+	public ScatterResult(List<ShardResult> shardResults) {
+		this.shardResults = shardResults;
+	}
+
+	/**
+	 * 合并后的记录，通过ShardHandler逐个处理数据源结果时为null
+	 */
+	public List<T> getDatas() {
+		return datas;
+	}
+
+	void setDatas(List<T> datas) {
+		this.datas = datas;
+	}
+
+	/**
+	 * 按照数据源顺序返回每个数据源的执行情况
+	 */
+	public List<ShardResult> getShardResults() {
+		return shardResults;
+	}
+
+	/**
+	 * 并行查询总耗时，单位毫秒
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * 失败或者超时的数据源
+	 */
+	public List<ShardResult> getFailedShards() {
+		List<ShardResult> failed = new ArrayList<ShardResult>();
+		for (ShardResult shard : shardResults) {
+			if (!shard.isSuccess())
+				failed.add(shard);
+		}
+		return failed;
+	}
+
+	/**
+	 * 是否只包含部分数据源的结果
+	 */
+	public boolean isPartial() {
+		for (ShardResult shard : shardResults) {
+			if (!shard.isSuccess())
+				return true;
+		}
+		return false;
+	}
+}
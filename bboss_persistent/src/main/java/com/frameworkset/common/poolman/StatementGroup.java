@@ -0,0 +1,296 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.frameworkset.persitent.util.SQLInfo;
+import org.frameworkset.persitent.util.SQLUtil;
+
+import com.frameworkset.orm.transaction.TransactionManager;
+
+/**
+ *
+ * <p>Title: StatementGroup.java</p>
+ *
+ * <p>Description: 语句组，收集一组参数化的增删改语句(原始sql或者ConfigSQLExecutor中的sql名称，
+ * 按位置绑定参数或者按bean属性绑定参数)，在同一个连接上以最少的数据库交互次数执行：
+ * 相邻的相同sql语句合并为一次jdbc批处理，不同sql之间保持添加的顺序，不会重排。
+ * execute返回与添加顺序一一对应的GetCUDResult，包含每条语句的更新记录数和驱动返回的自动产生的主键。
+ * 在TransactionManager事务中执行时使用事务连接，不提交事务；不在事务中时整组语句在一个本地事务中执行，
+ * 全部成功后提交，任何一条失败时回滚。
+ * 使用示例：
+ * StatementGroup group = new StatementGroup("mysql");
+ * group.insert("insert into orders(id,userid) values(?,?)", orderid, userid);
+ * for(OrderItem item:items)
+ *     group.insertBean("insert into orderitem(orderid,productid,num) values(#[orderid],#[productid],#[num])", item);
+ * group.update(configexecutor, "updateStock", num, productid);
+ * List&lt;GetCUDResult&gt; results = group.execute();</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class StatementGroup {
+	private static final Logger log = Logger.getLogger(StatementGroup.class);
+	private final String dbname;
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	public StatementGroup() {
+		this(null);
+	}
+
+	/**
+	 * @param dbname 执行语句的数据源，为null时使用缺省数据源
+	 */
+	public StatementGroup(String dbname) {
+		this.dbname = dbname;
+	}
+
+	private static class Entry {
+		final SQLInfo sql;
+		final int action;
+		final Object[] fields;
+		final Object bean;
+
+		Entry(SQLInfo sql, int action, Object[] fields, Object bean) {
+			this.sql = sql;
+			this.action = action;
+			this.fields = fields;
+			this.bean = bean;
+		}
+
+		/**
+		 * 相同sql、相同操作类型、相同参数绑定方式的相邻语句可以合并为一个批处理
+		 */
+		boolean batchWith(Entry other) {
+			return action == other.action && (bean == null) == (other.bean == null)
+					&& (sql == other.sql || sql.getSql().equals(other.sql.getSql()));
+		}
+	}
+
+	/**
+	 * 添加按位置绑定参数的语句
+	 * @param action PreparedDBUtil.INSERT、PreparedDBUtil.UPDATE或者PreparedDBUtil.DELETE
+	 */
+	public StatementGroup add(int action, SQLInfo sql, Object... fields) {
+		entries.add(new Entry(sql, action, fields, null));
+		return this;
+	}
+
+	/**
+	 * 添加按bean属性绑定参数的语句
+	 * @param action PreparedDBUtil.INSERT、PreparedDBUtil.UPDATE或者PreparedDBUtil.DELETE
+	 */
+	public StatementGroup addBean(int action, SQLInfo sql, Object bean) {
+		if (bean == null)
+			throw new IllegalArgumentException("bean is null.");
+		entries.add(new Entry(sql, action, null, bean));
+		return this;
+	}
+
+	private static SQLInfo getSQLInfo(String sql, boolean beanparams) throws SQLException {
+		return SQLUtil.getGlobalSQLUtil().getSQLInfo(sql, beanparams, beanparams);
+	}
+
+	public StatementGroup insert(String sql, Object... fields) throws SQLException {
+		return add(PreparedDBUtil.INSERT, getSQLInfo(sql, false), fields);
+	}
+
+	public StatementGroup update(String sql, Object... fields) throws SQLException {
+		return add(PreparedDBUtil.UPDATE, getSQLInfo(sql, false), fields);
+	}
+
+	public StatementGroup delete(String sql, Object... fields) throws SQLException {
+		return add(PreparedDBUtil.DELETE, getSQLInfo(sql, false), fields);
+	}
+
+	public StatementGroup insertBean(String sql, Object bean) throws SQLException {
+		return addBean(PreparedDBUtil.INSERT, getSQLInfo(sql, true), bean);
+	}
+
+	public StatementGroup updateBean(String sql, Object bean) throws SQLException {
+		return addBean(PreparedDBUtil.UPDATE, getSQLInfo(sql, true), bean);
+	}
+
+	public StatementGroup deleteBean(String sql, Object bean) throws SQLException {
+		return addBean(PreparedDBUtil.DELETE, getSQLInfo(sql, true), bean);
+	}
+
+	public StatementGroup insert(ConfigSQLExecutor executor, String sqlname, Object... fields) throws SQLException {
+		return add(PreparedDBUtil.INSERT, executor.getSqlInfo(dbname, sqlname), fields);
+	}
+
+	public StatementGroup update(ConfigSQLExecutor executor, String sqlname, Object... fields) throws SQLException {
+		return add(PreparedDBUtil.UPDATE, executor.getSqlInfo(dbname, sqlname), fields);
+	}
+
+	public StatementGroup delete(ConfigSQLExecutor executor, String sqlname, Object... fields) throws SQLException {
+		return add(PreparedDBUtil.DELETE, executor.getSqlInfo(dbname, sqlname), fields);
+	}
+
+	public StatementGroup insertBean(ConfigSQLExecutor executor, String sqlname, Object bean) throws SQLException {
+		return addBean(PreparedDBUtil.INSERT, executor.getSqlInfo(dbname, sqlname), bean);
+	}
+
+	public StatementGroup updateBean(ConfigSQLExecutor executor, String sqlname, Object bean) throws SQLException {
+		return addBean(PreparedDBUtil.UPDATE, executor.getSqlInfo(dbname, sqlname), bean);
+	}
+
+	public StatementGroup deleteBean(ConfigSQLExecutor executor, String sqlname, Object bean) throws SQLException {
+		return addBean(PreparedDBUtil.DELETE, executor.getSqlInfo(dbname, sqlname), bean);
+	}
+
+	/**
+	 * 已经添加的语句数
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * 执行所有语句
+	 * @return 与语句添加顺序一一对应的执行结果，result和updatecount为更新记录数，
+	 * keys为自动产生的主键(驱动没有返回主键时为null)
+	 */
+	public List<GetCUDResult> execute() throws SQLException {
+		List<GetCUDResult> results = new ArrayList<GetCUDResult>(entries.size());
+		if (entries.size() == 0)
+			return results;
+		Connection con = null;
+		boolean localtx = false;
+		boolean autocommit = true;
+		int start = 0;
+		try {
+			con = DBUtil.getConection(dbname);
+			if (TransactionManager.getTransaction() == null) {
+				autocommit = con.getAutoCommit();
+				con.setAutoCommit(false);
+				localtx = true;
+			}
+			while (start < entries.size()) {
+				int end = start + 1;
+				while (end < entries.size() && entries.get(start).batchWith(entries.get(end)))
+					end++;
+				executeRun(con, start, end, results);
+				start = end;
+			}
+			if (localtx)
+				con.commit();
+		} catch (SQLException e) {
+			if (localtx)
+				rollback(con);
+			log.error("Execute statement " + (start + 1) + " of statement group failed,sql:" + entries.get(start).sql.getSql(), e);
+			throw e;
+		} catch (RuntimeException e) {
+			if (localtx)
+				rollback(con);
+			throw e;
+		} finally {
+			if (con != null) {
+				if (localtx) {
+					try {
+						con.setAutoCommit(autocommit);
+					} catch (Exception e) {
+
+					}
+				}
+				try {
+					con.close();
+				} catch (Exception e) {
+
+				}
+			}
+		}
+		flushCacheModels();
+		return results;
+	}
+
+	/**
+	 * 所有语句执行成功并且本地事务提交之后刷新相关的查询结果缓存，在外部事务中执行时由事务提交后刷新；
+	 * 执行失败回滚时不刷新
+	 */
+	private void flushCacheModels() {
+		Set<SQLInfo> flushed = Collections.newSetFromMap(new IdentityHashMap<SQLInfo, Boolean>());
+		for (int i = 0; i < entries.size(); i++) {
+			SQLInfo sql = entries.get(i).sql;
+			if (flushed.add(sql))
+				SQLInfoExecutor.flushCacheModels(sql);
+		}
+	}
+
+	/**
+	 * 将[start,end)之间相同的语句作为一个批处理执行，并将批处理结果拆分到每条语句
+	 */
+	private void executeRun(Connection con, int start, int end, List<GetCUDResult> results) throws SQLException {
+		Entry first = entries.get(start);
+		SQLInfoDBUtil dbutil = new SQLInfoDBUtil();
+		dbutil.setPrepareDBName(dbname);
+		if (first.bean != null) {
+			List<Object> beans = new ArrayList<Object>(end - start);
+			for (int i = start; i < end; i++)
+				beans.add(entries.get(i).bean);
+			List<SQLParams> params = SQLParams.convertBeansToSqlParams(beans, first.sql, dbname, first.action, con);
+			dbutil.addPreparedBatch(new ListSQLParams(params, first.sql));
+		} else {
+			if (first.action == PreparedDBUtil.INSERT)
+				dbutil.preparedInsert(dbname, first.sql);
+			else if (first.action == PreparedDBUtil.DELETE)
+				dbutil.preparedDelete(dbname, first.sql);
+			else
+				dbutil.preparedUpdate(dbname, first.sql);
+			for (int i = start; i < end; i++) {
+				Object[] fields = entries.get(i).fields;
+				if (fields != null) {
+					for (int j = 0; j < fields.length; j++)
+						dbutil.setObject(j + 1, fields[j]);
+				}
+				dbutil.addPreparedBatch();
+			}
+		}
+		GetCUDResult result = new GetCUDResult();
+		dbutil.executePreparedBatch(con, result);
+		int size = end - start;
+		int[] counts = result.getResult() instanceof int[] ? (int[]) result.getResult() : null;
+		List keys = result.getKeys() instanceof List ? (List) result.getKeys() : null;
+		//驱动返回的主键个数与语句数不一致时无法确定对应关系，不拆分主键
+		if (keys != null && keys.size() != size)
+			keys = null;
+		for (int i = 0; i < size; i++) {
+			Integer count = counts != null && i < counts.length ? Integer.valueOf(counts[i]) : null;
+			results.add(new GetCUDResult(count, count, keys != null ? keys.get(i) : null));
+		}
+	}
+
+	private static void rollback(Connection con) {
+		try {
+			con.rollback();
+		} catch (Exception e) {
+
+		}
+	}
+}
@@ -33,8 +33,10 @@ import org.frameworkset.util.ClassUtil.ClassInfo;
 import com.frameworkset.common.poolman.handle.RowHandler;
 import com.frameworkset.common.poolman.handle.XMLRowHandler;
 import com.frameworkset.common.poolman.interceptor.InterceptorInf;
+import com.frameworkset.common.poolman.monitor.SQLStatistics;
 import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
 import com.frameworkset.common.poolman.util.JDBCPool;
+import com.frameworkset.common.poolman.util.ReadWriteRouter;
 import com.frameworkset.common.poolman.util.SQLManager;
 import com.frameworkset.common.poolman.util.SQLUtil;
 import com.frameworkset.orm.adapter.DB;
@@ -79,6 +81,24 @@ public class StatementInfo {
 	// protected String[] fields = null;
 
 	private PoolManResultSetMetaData meta = null;
+	/**
+	 * 数据源是否开启了sql执行统计或者慢sql日志
+	 */
+	private boolean executeStatistic = false;
+	/**
+	 * 开启sql执行统计或者慢sql日志时记录的执行开始时间，单位纳秒，获取连接之后创建第一个语句时开始计时，
+	 * 不包含等待连接池连接的时间
+	 */
+	private long executeStart = 0L;
+	private boolean executeError = false;
+	/**
+	 * 查询返回或者更新的记录数，未知时为-1
+	 */
+	private long rows = -1L;
+	/**
+	 * 绑定变量参数，输出慢sql日志时使用
+	 */
+	private Object params;
 
 	public StatementInfo(String dbname_, NewSQLInfo sql_, boolean goNative_,
 			Connection con_, boolean needTransaction) {
@@ -164,12 +184,16 @@ public class StatementInfo {
 	 * Connection con) throws SQLException
 	 */
 	public void init() throws Exception {
-
+		executeStatistic = pool != null && (pool.getJDBCPoolMetadata().isSqlstatistic() || pool.getJDBCPoolMetadata().getSlowsqlthreshold() > 0);
 		try {
 			if (!outcon) {
 				tx = TransactionManager.getTransaction();
 				if (tx == null) {
-					con = SQLUtil.getSQLManager().requestConnection(dbname);// 事务无处理，批处理的默认事务处理需要设定
+					// 事务无处理，批处理的默认事务处理需要设定；配置了读写分离时只读查询从副本获取连接
+					if (pool != null && pool.isReadWriteSplit())
+						con = pool.requestConnection(!needTransaction && ReadWriteRouter.isReadOnlySQL(sql));
+					else
+						con = SQLUtil.getSQLManager().requestConnection(dbname);
 					if (needTransaction) {
 						this.oldautocommit = con.getAutoCommit();
 						con.setAutoCommit(false);
@@ -177,6 +201,9 @@ public class StatementInfo {
 				} else {
 					try {
 						con = tx.getConnection(dbname);
+						// 事务提交后当前线程的查询在读写分离时间窗口内使用主库
+						if (pool != null && pool.isReadWriteSplit() && !ReadWriteRouter.isReadOnlySQL(sql))
+							pool.registerTransactionWrite(tx);
 					} catch (TransactionException e) {
 						try {
 							tx.setRollbackOnly();
@@ -199,17 +226,27 @@ public class StatementInfo {
 		}
 	}
 
+	/**
+	 * 记录创建的语句，异步执行时登记到AsyncSQLExecutor，以便通过Statement.cancel取消
+	 */
+	private void addStatement(Statement stmt) throws SQLException {
+		if(executeStatistic && executeStart == 0L)
+			executeStart = System.nanoTime();
+		this.statements.add(stmt);
+		AsyncSQLExecutor.registerStatement(stmt);
+	}
+
 	public Statement createStatement(int resultSetType, int resultSetConcurrency)
 			throws SQLException {
 		Statement stmt = this.con.createStatement(resultSetType,
 				resultSetConcurrency);
-		statements.add(stmt);
+		addStatement(stmt);
 		return stmt;
 	}
 
 	public PreparedStatement prepareStatement() throws SQLException {
 		PreparedStatement pstmt = this.con.prepareStatement(this.sql,this.getScrollType(dbname),this.getCursorType(dbname));
-		this.statements.add(pstmt);
+		addStatement(pstmt);
 		return pstmt;
 	}
 
@@ -221,7 +258,7 @@ public class StatementInfo {
 			dbname = SQLManager.getInstance().getDefaultDBName();
 		sql = this.interceptorInf.convertSQL(sql, this.dbadapter.getDBTYPE(), dbname);
 		PreparedStatement pstmt = this.con.prepareStatement(sql,this.getScrollType(dbname),this.getCursorType(dbname));
-		this.statements.add(pstmt);
+		addStatement(pstmt);
 		return pstmt;
 	}
 	
@@ -236,7 +273,7 @@ public class StatementInfo {
 			 */
 			
 			PreparedStatement pstmt = this.con.prepareStatement(sql,this.getScrollType(dbname),this.getCursorType(dbname));
-			this.statements.add(pstmt);
+			addStatement(pstmt);
 			return pstmt;
 		}
 		else
@@ -244,20 +281,36 @@ public class StatementInfo {
 			if(this.RETURN_GENERATED_KEYS)
 			{
 				PreparedStatement pstmt = this.con.prepareStatement(sql,Statement.RETURN_GENERATED_KEYS);
-				this.statements.add(pstmt);
+				addStatement(pstmt);
 				return pstmt;
 			}
 			else
 			{
 				
 				PreparedStatement pstmt = this.con.prepareStatement(sql,this.getScrollType(dbname),this.getCursorType(dbname));
-				this.statements.add(pstmt);
+				addStatement(pstmt);
 				return pstmt;
 			}
 			
 		}
 	}
 
+	/**
+	 * 创建流式游标查询语句，结果集为只进只读游标，并按照fetchsize从数据库分批获取记录
+	 * @param fetchsize 小于等于0时采用数据源queryfetchsize配置，都没有设置时采用驱动的缺省值
+	 * @return
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareStreamStatement(int fetchsize) throws SQLException {
+		PreparedStatement pstmt = this.con.prepareStatement(this.sql,ResultSet.TYPE_FORWARD_ONLY,ResultSet.CONCUR_READ_ONLY);
+		addStatement(pstmt);
+		if(fetchsize <= 0)
+			fetchsize = pool.getJDBCPoolMetadata().getQueryfetchsize();
+		if(fetchsize > 0)
+			pstmt.setFetchSize(this.dbadapter.getStreamFetchSize(fetchsize));
+		return pstmt;
+	}
+
 	public PreparedStatement preparePagineStatement(boolean showsql) throws SQLException {
 		paginesql = new PagineSql(this.sql,true);
 		if (this.rownum == null) {
@@ -393,7 +446,7 @@ public class StatementInfo {
 //	}
 	
 	public void errorHandle(Exception sqle) throws SQLException {
-		
+		executeError = true;
 		if(outcon )//使用外部链接
 		{
 			
@@ -540,6 +593,8 @@ public class StatementInfo {
 			// // e.printStackTrace();
 			// }
 			//
+			//执行耗时不包含归还连接的时间
+			long executeEnd = executeStart > 0L?System.nanoTime():0L;
 			try { // System.out.println("dbutil doJDBC release poolman
 				// connection:" + con);
 				if (!outcon) {
@@ -553,6 +608,13 @@ public class StatementInfo {
 			} catch (Exception e) {
 				// e.printStackTrace();
 			}
+			if(executeStart > 0L)
+			{
+				long nanos = executeEnd - executeStart;
+				executeStart = 0L;
+				SQLStatistics.record(dbname, getSqlname(), sql, nanos, rows, executeError,
+						pool.getJDBCPoolMetadata().isSqlstatistic(), pool.getJDBCPoolMetadata().getSlowsqlthreshold(), params);
+			}
 		}
 		catch(Exception e)
 		{
@@ -1048,6 +1110,28 @@ public class StatementInfo {
 		return dbname;
 	}
 
+	/**
+	 * 数据源是否配置了使用数组存储查询结果记录
+	 */
+	public boolean isCompactRecord() {
+		return pool != null && pool.getJDBCPoolMetadata().isCompactrecord();
+	}
+
+	/**
+	 * sql配置文件中的sql名称，非配置文件中的sql返回null
+	 */
+	public String getSqlname() {
+		return newsqlinfo != null && newsqlinfo.getOldsql() != null ? newsqlinfo.getOldsql().getSqlname() : null;
+	}
+
+	public void setRows(long rows) {
+		this.rows = rows;
+	}
+
+	public void setParams(Object params) {
+		this.params = params;
+	}
+
 	public Connection getCon() {
 		return con;
 	}
@@ -1083,13 +1167,13 @@ public class StatementInfo {
 	public Statement createStatement() throws SQLException {
 		Statement stmt = this.con.createStatement(this.getScrollType(dbname),this.getCursorType(dbname));
 //	    Statement stmt = this.con.createStatement();
-		this.statements.add(stmt);
+		addStatement(stmt);
 		return stmt;
 	}
 
 	public CallableStatement prepareCallableStatement() throws SQLException {
 		CallableStatement cstmt = this.con.prepareCall(this.getSql(),this.getScrollType(dbname),this.getCursorType(dbname));
-		this.statements.add(cstmt);
+		addStatement(cstmt);
 		return cstmt;
 	}
 
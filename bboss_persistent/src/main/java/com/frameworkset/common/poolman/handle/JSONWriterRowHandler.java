@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.handle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.sql.Clob;
+
+import com.frameworkset.common.poolman.Record;
+
+/**
+ * <p>Title: JSONWriterRowHandler.java</p>
+ *
+ * <p>Description: 将查询结果逐条输出为json数组，每条记录为一个json对象，属性名称为字段标签，
+ * 数字和布尔类型的字段输出为json数字和布尔值，其他类型输出为字符串，clob字段以字符流方式输出</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class JSONWriterRowHandler extends WriterRowHandler
+{
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private String[] names;
+
+	public JSONWriterRowHandler(Writer writer)
+	{
+		super(writer, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public JSONWriterRowHandler(Writer writer, int flushInterval)
+	{
+		super(writer, flushInterval);
+	}
+
+	public JSONWriterRowHandler(OutputStream out, String encoding) throws UnsupportedEncodingException
+	{
+		super(out, encoding, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public JSONWriterRowHandler(OutputStream out, String encoding, int flushInterval) throws UnsupportedEncodingException
+	{
+		super(out, encoding, flushInterval);
+	}
+
+	@Override
+	protected void writeHeader() throws IOException
+	{
+		writer.write('[');
+	}
+
+	@Override
+	protected void writeRow(Record origine, long index) throws Exception
+	{
+		if(names == null)
+		{
+			String[] temp = new String[meta.getColumnCounts()];
+			for (int i = 0; i < temp.length; i++)
+				temp[i] = meta.getColumnLabel(i + 1);
+			names = temp;
+		}
+		if(index > 0)
+			writer.write(',');
+		writer.write('{');
+		for (int i = 0; i < names.length; i++) {
+			if(i > 0)
+				writer.write(',');
+			writer.write('"');
+			writeEscaped(names[i]);
+			writer.write("\":");
+			writeValue(origine.getObject(i));
+		}
+		writer.write('}');
+	}
+
+	protected void writeValue(Object value) throws Exception
+	{
+		if(value == null)
+		{
+			writer.write("null");
+		}
+		else if(value instanceof Boolean)
+		{
+			writer.write(value.toString());
+		}
+		else if(value instanceof Number)
+		{
+			String number = value.toString();
+			if((value instanceof Double && (((Double)value).isNaN() || ((Double)value).isInfinite()))
+					|| (value instanceof Float && (((Float)value).isNaN() || ((Float)value).isInfinite())))
+				writer.write("null");
+			else
+				writer.write(number);
+		}
+		else
+		{
+			writer.write('"');
+			if(value instanceof Clob)
+				writeClob((Clob)value);
+			else
+				writeEscaped(ValueExchange.getStringFromObject(value));
+			writer.write('"');
+		}
+	}
+
+	@Override
+	protected void writeFooter() throws IOException
+	{
+		writer.write(']');
+	}
+
+	@Override
+	protected void writeEscaped(char[] chars, int offset, int length) throws IOException
+	{
+		int start = offset;
+		int end = offset + length;
+		for(int i = offset; i < end; i ++)
+		{
+			char c = chars[i];
+			if(c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029')
+				continue;
+			writer.write(chars, start, i - start);
+			start = i + 1;
+			switch(c)
+			{
+			case '"':
+				writer.write("\\\"");
+				break;
+			case '\\':
+				writer.write("\\\\");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			case '\b':
+				writer.write("\\b");
+				break;
+			case '\f':
+				writer.write("\\f");
+				break;
+			default:
+				writer.write("\\u");
+				writer.write(HEX[(c >> 12) & 0xf]);
+				writer.write(HEX[(c >> 8) & 0xf]);
+				writer.write(HEX[(c >> 4) & 0xf]);
+				writer.write(HEX[c & 0xf]);
+			}
+		}
+		writer.write(chars, start, end - start);
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.handle;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+
+import com.frameworkset.common.poolman.Record;
+
+/**
+ * <p>Title: LobHandler.java</p>
+ *
+ * <p>Description: 流式处理查询结果中的blob/clob字段，在结果集关闭之前逐条记录将大字段的输入流交给处理器，
+ * 大字段内容不会整体加载到内存中。column为null时处理每条记录的第一个字段。
+ * 通过SQLExecutor.queryLob/queryLobWithDBName执行查询，也可以直接作为NullRowHandler使用</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public abstract class LobHandler extends NullRowHandler
+{
+	private final String column;
+	private long rows;
+	private long length;
+
+	public LobHandler()
+	{
+		this(null);
+	}
+
+	public LobHandler(String column)
+	{
+		this.column = column;
+	}
+
+	@Override
+	public void handleRow(Record origine) throws Exception
+	{
+		Object value = column == null ? origine.getObject(0) : origine.getObject(column);
+		rows ++;
+		long len = handleLob(value, origine);
+		if(len > 0)
+			length += len;
+	}
+
+	/**
+	 * 处理一条记录的大字段值
+	 * @param lob Blob、Clob或者数据库驱动返回的其他类型值，字段为空时为null
+	 * @param origine 当前记录
+	 * @return 处理的字节数或者字符数，未知时返回-1
+	 */
+	protected abstract long handleLob(Object lob, Record origine) throws Exception;
+
+	/**
+	 * 已经处理的记录数
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * 已经处理的字节数或者字符数
+	 */
+	public long getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * 以二进制输入流处理大字段，输入流由handleStream的调用方负责关闭，clob按照charset编码，默认为UTF-8
+	 */
+	public static abstract class StreamHandler extends LobHandler
+	{
+		private final String charset;
+
+		public StreamHandler()
+		{
+			this(null);
+		}
+
+		public StreamHandler(String column)
+		{
+			this(column, ValueExchange.DEFAULT_LOB_CHARSET);
+		}
+
+		public StreamHandler(String column, String charset)
+		{
+			super(column);
+			this.charset = charset;
+		}
+
+		@Override
+		protected long handleLob(Object lob, Record origine) throws Exception
+		{
+			InputStream in = ValueExchange.getBinaryStream(lob, charset);
+			try
+			{
+				handleStream(in, origine);
+			}
+			finally
+			{
+				if(in != null)
+					in.close();
+			}
+			return -1;
+		}
+
+		/**
+		 * @param in 大字段的二进制输入流，字段为空时为null
+		 */
+		public abstract void handleStream(InputStream in, Record origine) throws Exception;
+	}
+
+	/**
+	 * 以字符输入流处理clob字段，输入流由handleReader的调用方负责关闭
+	 */
+	public static abstract class ReaderHandler extends LobHandler
+	{
+		public ReaderHandler()
+		{
+		}
+
+		public ReaderHandler(String column)
+		{
+			super(column);
+		}
+
+		@Override
+		protected long handleLob(Object lob, Record origine) throws Exception
+		{
+			Reader in = ValueExchange.getCharacterStream(lob);
+			try
+			{
+				handleReader(in, origine);
+			}
+			finally
+			{
+				if(in != null)
+					in.close();
+			}
+			return -1;
+		}
+
+		/**
+		 * @param in clob字段的字符输入流，字段为空时为null
+		 */
+		public abstract void handleReader(Reader in, Record origine) throws Exception;
+	}
+
+	/**
+	 * 将所有记录的大字段内容依次写入输出流，输出流由调用方关闭，clob按照UTF-8编码
+	 */
+	public static LobHandler toStream(String column, final OutputStream out)
+	{
+		return toStream(column, out, ValueExchange.DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 将所有记录的大字段内容依次写入输出流，输出流由调用方关闭，clob按照charset编码
+	 */
+	public static LobHandler toStream(String column, final OutputStream out, final String charset)
+	{
+		return new LobHandler(column)
+		{
+			@Override
+			protected long handleLob(Object lob, Record origine) throws Exception
+			{
+				return ValueExchange.writeLob(lob, out, charset);
+			}
+		};
+	}
+
+	/**
+	 * 将所有记录的大字段内容依次写入通道，通道由调用方关闭，clob按照UTF-8编码
+	 */
+	public static LobHandler toChannel(String column, final WritableByteChannel channel)
+	{
+		return toChannel(column, channel, ValueExchange.DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 将所有记录的大字段内容依次写入通道，通道由调用方关闭，clob按照charset编码
+	 */
+	public static LobHandler toChannel(String column, final WritableByteChannel channel, final String charset)
+	{
+		return new LobHandler(column)
+		{
+			@Override
+			protected long handleLob(Object lob, Record origine) throws Exception
+			{
+				return ValueExchange.writeLob(lob, channel, charset);
+			}
+		};
+	}
+
+	/**
+	 * 将所有记录的clob字段内容依次写入字符输出流，输出流由调用方关闭
+	 */
+	public static LobHandler toWriter(String column, final Writer writer)
+	{
+		return new LobHandler(column)
+		{
+			@Override
+			protected long handleLob(Object lob, Record origine) throws Exception
+			{
+				return ValueExchange.writeLob(lob, writer);
+			}
+		};
+	}
+
+	/**
+	 * 将大字段内容写入文件，查询返回多条记录时文件内容为最后一条记录的大字段内容，clob按照UTF-8编码
+	 */
+	public static LobHandler toFile(String column, final File file)
+	{
+		return toFile(column, file, ValueExchange.DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 将大字段内容写入文件，查询返回多条记录时文件内容为最后一条记录的大字段内容，clob按照charset编码
+	 */
+	public static LobHandler toFile(String column, final File file, final String charset)
+	{
+		return new LobHandler(column)
+		{
+			@Override
+			protected long handleLob(Object lob, Record origine) throws Exception
+			{
+				return ValueExchange.writeLob(lob, file, charset);
+			}
+		};
+	}
+}
@@ -1,11 +1,25 @@
 package com.frameworkset.common.poolman.handle;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.sql.Blob;
 import java.sql.CallableStatement;
 import java.sql.Clob;
@@ -862,6 +876,361 @@ public class ValueExchange {
 		
 	}
 	
+	/**
+	 * 流式读写大字段时使用的缓冲区大小
+	 */
+	public static final int LOB_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * clob字段内容转换为字节流时默认使用的字符集
+	 */
+	public static final String DEFAULT_LOB_CHARSET = "UTF-8";
+
+	/**
+	 * 获取大字段值的二进制输入流，不将字段内容加载到内存中，
+	 * 支持Blob、Clob、InputStream、byte[]和String类型的值，值为null时返回null，
+	 * Clob和String按照UTF-8编码
+	 */
+	public static InputStream getBinaryStream(Object value) throws SQLException
+	{
+		return getBinaryStream(value, DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 获取大字段值的二进制输入流，Clob和String按照charset编码，charset为null时使用UTF-8，
+	 * Clob的字符流边读取边编码，不将字段内容加载到内存中
+	 */
+	public static InputStream getBinaryStream(Object value, String charset) throws SQLException
+	{
+		if(value == null)
+			return null;
+		if(value instanceof Blob)
+			return ((Blob)value).getBinaryStream();
+		if(value instanceof Clob)
+			return new ReaderInputStream(((Clob)value).getCharacterStream(), getLobCharset(charset));
+		if(value instanceof InputStream)
+			return (InputStream)value;
+		if(value instanceof byte[])
+			return new ByteArrayInputStream((byte[])value);
+		if(value instanceof String)
+			return new ByteArrayInputStream(((String)value).getBytes(getLobCharset(charset)));
+		throw new SQLException("Error type cast:From [" + value.getClass().getName() + "] to [" + InputStream.class.getName() + "]");
+	}
+
+	private static Charset getLobCharset(String charset) throws SQLException
+	{
+		try
+		{
+			return Charset.forName(charset == null ? DEFAULT_LOB_CHARSET : charset);
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new NestedSQLException("Unsupported charset:" + charset, e);
+		}
+	}
+
+	/**
+	 * 将字符流按照指定的字符集编码为字节流，每次读取LOB_BUFFER_SIZE/4个字符进行编码，
+	 * 无法编码的字符使用字符集的替换字节
+	 */
+	static class ReaderInputStream extends InputStream
+	{
+		private final Reader reader;
+		private final CharsetEncoder encoder;
+		private final CharBuffer chars;
+		private final ByteBuffer bytes;
+		private boolean eof;
+		private boolean finished;
+
+		ReaderInputStream(Reader reader, Charset charset)
+		{
+			this.reader = reader;
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.chars = CharBuffer.allocate(LOB_BUFFER_SIZE / 4);
+			this.chars.flip();
+			this.bytes = ByteBuffer.allocate((int)Math.ceil(chars.capacity() * encoder.maxBytesPerChar()) + 16);
+			this.bytes.flip();
+		}
+
+		private boolean fill() throws IOException
+		{
+			bytes.clear();
+			while(bytes.position() == 0 && !finished)
+			{
+				if(!eof)
+				{
+					chars.compact();
+					int n = reader.read(chars);
+					chars.flip();
+					if(n < 0)
+						eof = true;
+				}
+				CoderResult result = encoder.encode(chars, bytes, eof);
+				if(result.isError())
+					result.throwException();
+				if(result.isOverflow())
+					break;
+				if(eof)
+				{
+					encoder.flush(bytes);
+					finished = true;
+				}
+			}
+			bytes.flip();
+			return bytes.hasRemaining();
+		}
+
+		public int read() throws IOException
+		{
+			if(!bytes.hasRemaining() && !fill())
+				return -1;
+			return bytes.get() & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if(len == 0)
+				return 0;
+			if(!bytes.hasRemaining() && !fill())
+				return -1;
+			int n = Math.min(len, bytes.remaining());
+			bytes.get(b, off, n);
+			return n;
+		}
+
+		public int available() throws IOException
+		{
+			return bytes.remaining();
+		}
+
+		public void close() throws IOException
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * 获取大字段值的字符输入流，不将字段内容加载到内存中，
+	 * 支持Clob、Reader和String类型的值，值为null时返回null
+	 */
+	public static Reader getCharacterStream(Object value) throws SQLException
+	{
+		if(value == null)
+			return null;
+		if(value instanceof Clob)
+			return ((Clob)value).getCharacterStream();
+		if(value instanceof Reader)
+			return (Reader)value;
+		if(value instanceof String)
+			return new StringReader((String)value);
+		throw new SQLException("Error type cast:From [" + value.getClass().getName() + "] to [" + Reader.class.getName() + "]");
+	}
+
+	/**
+	 * 将输入流的内容按LOB_BUFFER_SIZE分块写入输出流，写完后关闭输入流，不关闭输出流
+	 * @return 写入的字节数
+	 */
+	public static long copy(InputStream in, OutputStream out) throws SQLException
+	{
+		if(in == null)
+			return 0;
+		try
+		{
+			byte[] buf = new byte[LOB_BUFFER_SIZE];
+			long total = 0;
+			int i = 0;
+			while((i = in.read(buf)) != -1)
+			{
+				out.write(buf, 0, i);
+				total += i;
+			}
+			out.flush();
+			return total;
+		}
+		catch(IOException e)
+		{
+			throw new NestedSQLException(e);
+		}
+		finally
+		{
+			try
+			{
+				in.close();
+			}
+			catch(Exception e)
+			{
+				
+			}
+		}
+	}
+
+	/**
+	 * 将输入流的内容按LOB_BUFFER_SIZE分块写入通道，写完后关闭输入流，不关闭通道
+	 * @return 写入的字节数
+	 */
+	public static long copy(InputStream in, WritableByteChannel channel) throws SQLException
+	{
+		if(in == null)
+			return 0;
+		try
+		{
+			byte[] buf = new byte[LOB_BUFFER_SIZE];
+			ByteBuffer buffer = ByteBuffer.wrap(buf);
+			long total = 0;
+			int i = 0;
+			while((i = in.read(buf)) != -1)
+			{
+				buffer.clear();
+				buffer.limit(i);
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+				total += i;
+			}
+			return total;
+		}
+		catch(IOException e)
+		{
+			throw new NestedSQLException(e);
+		}
+		finally
+		{
+			try
+			{
+				in.close();
+			}
+			catch(Exception e)
+			{
+				
+			}
+		}
+	}
+
+	/**
+	 * 将字符输入流的内容按LOB_BUFFER_SIZE分块写入字符输出流，写完后关闭输入流，不关闭输出流
+	 * @return 写入的字符数
+	 */
+	public static long copy(Reader in, Writer out) throws SQLException
+	{
+		if(in == null)
+			return 0;
+		try
+		{
+			char[] buf = new char[LOB_BUFFER_SIZE];
+			long total = 0;
+			int i = 0;
+			while((i = in.read(buf)) != -1)
+			{
+				out.write(buf, 0, i);
+				total += i;
+			}
+			out.flush();
+			return total;
+		}
+		catch(IOException e)
+		{
+			throw new NestedSQLException(e);
+		}
+		finally
+		{
+			try
+			{
+				in.close();
+			}
+			catch(Exception e)
+			{
+				
+			}
+		}
+	}
+
+	/**
+	 * 将大字段的值流式写入输出流，clob按照UTF-8编码
+	 * @return 写入的字节数
+	 */
+	public static long writeLob(Object value, OutputStream out) throws SQLException
+	{
+		return writeLob(value, out, DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 将大字段的值流式写入输出流，clob按照charset编码
+	 * @return 写入的字节数
+	 */
+	public static long writeLob(Object value, OutputStream out, String charset) throws SQLException
+	{
+		return copy(getBinaryStream(value, charset), out);
+	}
+
+	/**
+	 * 将大字段的值流式写入通道，clob按照UTF-8编码
+	 * @return 写入的字节数
+	 */
+	public static long writeLob(Object value, WritableByteChannel channel) throws SQLException
+	{
+		return writeLob(value, channel, DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 将大字段的值流式写入通道，clob按照charset编码
+	 * @return 写入的字节数
+	 */
+	public static long writeLob(Object value, WritableByteChannel channel, String charset) throws SQLException
+	{
+		return copy(getBinaryStream(value, charset), channel);
+	}
+
+	/**
+	 * 将clob字段的值流式写入字符输出流
+	 * @return 写入的字符数
+	 */
+	public static long writeLob(Object value, Writer out) throws SQLException
+	{
+		return copy(getCharacterStream(value), out);
+	}
+
+	/**
+	 * 将大字段的值流式写入文件，值为null时不创建文件，clob按照UTF-8编码
+	 * @return 写入的字节数
+	 */
+	public static long writeLob(Object value, File file) throws SQLException
+	{
+		return writeLob(value, file, DEFAULT_LOB_CHARSET);
+	}
+
+	/**
+	 * 将大字段的值流式写入文件，值为null时不创建文件，clob按照charset编码
+	 * @return 写入的字节数
+	 */
+	public static long writeLob(Object value, File file, String charset) throws SQLException
+	{
+		if(value == null)
+			return 0;
+		OutputStream out = null;
+		try
+		{
+			out = new BufferedOutputStream(new FileOutputStream(file), LOB_BUFFER_SIZE);
+			return writeLob(value, out, charset);
+		}
+		catch(IOException e)
+		{
+			throw new NestedSQLException(e);
+		}
+		finally
+		{
+			try
+			{
+				if(out != null)
+					out.close();
+			}
+			catch(Exception e)
+			{
+				
+			}
+		}
+	}
+	
 	public static String getStringFromReader(Reader in) throws SQLException
 	{
 		StringWriter w = null;
@@ -1079,8 +1448,20 @@ public class ValueExchange {
 		if(value == null)
 			return ValueObjectUtil.getDefaultValue(javaType);;
 		return convert(value, value.getClass(), javaType);
-		
-		
+
+
+	}
+
+	/**
+	 * 按照列索引从结果集中获取值并转换为javaType类型，避免按照列名查找列
+	 */
+	public static Object getValueFromResultSet(ResultSet rs,
+			int columnIndex, int sqltype, Class javaType,String dbname) throws SQLException{
+		Object value = getValueFromRS(rs, columnIndex, sqltype,
+				 dbname);
+		if(value == null)
+			return ValueObjectUtil.getDefaultValue(javaType);
+		return convert(value, value.getClass(), javaType);
 	}
 	public static Object convert(Object value, Class type, Class javaType) throws SQLException{
 		try {
@@ -1114,7 +1495,6 @@ public class ValueExchange {
 	public static Object getValueFromRS(ResultSet res, int i, int type,
 			String dbname) throws SQLException {
 		Object value = null;
-		DB db = SQLUtil.getPool(dbname).getDbAdapter();
 		try {
 			switch (type) {
 
@@ -1233,13 +1613,13 @@ public class ValueExchange {
                 break;
 			case Types.LONGVARBINARY:
 				
-				value = db.getLONGVARBINARY(res, i);
+				value = SQLUtil.getPool(dbname).getDbAdapter().getLONGVARBINARY(res, i);
 				//value = this.blobToByteArray(blob);
 				break;
 			
 			case Types.LONGVARCHAR:
 				
-				value = db.getLONGVARCHAR(res, i);
+				value = SQLUtil.getPool(dbname).getDbAdapter().getLONGVARCHAR(res, i);
 				//value = this.clobToString(clob);
 				break;
 			case OracleTypes.TIMESTAMPLTZ:
@@ -1284,7 +1664,6 @@ public class ValueExchange {
 	public static Object getValueFromRS(ResultSet res, String colName, int type,
 			String dbname) throws SQLException {
 		Object value = null;
-		DB db = SQLUtil.getPool(dbname).getDbAdapter();
 		try {
 			switch (type) {
 
@@ -1403,13 +1782,13 @@ public class ValueExchange {
                 break;
 			case Types.LONGVARBINARY:
 				
-				value = db.getLONGVARBINARY(res, colName);
+				value = SQLUtil.getPool(dbname).getDbAdapter().getLONGVARBINARY(res, colName);
 				//value = this.blobToByteArray(blob);
 				break;
 			
 			case Types.LONGVARCHAR:
 				
-				value = db.getLONGVARCHAR(res, colName);
+				value = SQLUtil.getPool(dbname).getDbAdapter().getLONGVARCHAR(res, colName);
 				//value = this.clobToString(clob);
 				break;
 			case OracleTypes.TIMESTAMPLTZ:
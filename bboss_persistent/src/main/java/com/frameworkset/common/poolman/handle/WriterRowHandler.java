@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.handle;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.sql.Clob;
+
+import com.frameworkset.common.poolman.Record;
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+
+/**
+ * <p>Title: WriterRowHandler.java</p>
+ *
+ * <p>Description: 在遍历结果集的同时将记录逐条序列化输出到Writer/OutputStream的行处理器，
+ * 结果不在内存中拼接成完整的字符串，第一条记录在查询返回后即可输出到客户端。
+ * 每输出flushInterval条记录刷新一次输出流，flushInterval小于等于0时只在输出结束时刷新。
+ * 通过SQLExecutor.queryToWriter/queryToWriterWithDBName执行查询，查询结束后输出结尾部分；
+ * 直接作为NullRowHandler使用时需要在查询完成后调用end()方法。
+ * 在mvc控制器中可以将response.getOutputStream()作为输出流，实现大结果集的流式导出</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public abstract class WriterRowHandler extends NullRowHandler
+{
+	public static final int DEFAULT_FLUSH_INTERVAL = 100;
+	protected final Writer writer;
+	protected final String encoding;
+	private final int flushInterval;
+	private boolean started;
+	private long rows;
+
+	/**
+	 * @param writer 输出流，由调用方关闭
+	 * @param flushInterval 刷新输出流的记录间隔
+	 */
+	public WriterRowHandler(Writer writer, int flushInterval)
+	{
+		this(writer, "UTF-8", flushInterval);
+	}
+
+	/**
+	 * @param out 输出流，由调用方关闭
+	 * @param encoding 输出的字符集，为null时使用UTF-8
+	 * @param flushInterval 刷新输出流的记录间隔
+	 */
+	public WriterRowHandler(OutputStream out, String encoding, int flushInterval) throws UnsupportedEncodingException
+	{
+		this(new BufferedWriter(new OutputStreamWriter(out, encoding == null ? "UTF-8" : encoding), 8192),
+				encoding == null ? "UTF-8" : encoding, flushInterval);
+	}
+
+	protected WriterRowHandler(Writer writer, String encoding, int flushInterval)
+	{
+		this.writer = writer;
+		this.encoding = encoding;
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	public void init(PoolManResultSetMetaData meta, String dbname)
+	{
+		super.init(meta, dbname);
+		if(!started)
+		{
+			started = true;
+			try
+			{
+				writeHeader();
+			}
+			catch(IOException e)
+			{
+				throw new RowHandlerException(e);
+			}
+		}
+	}
+
+	@Override
+	public void handleRow(Record origine) throws Exception
+	{
+		if(meta == null)
+		{
+			throw new RowHandlerException("源数据对象[meta]未初始化,无法进行行处理.");
+		}
+		writeRow(origine, rows);
+		rows ++;
+		if(flushInterval > 0 && rows % flushInterval == 0)
+			writer.flush();
+	}
+
+	/**
+	 * 输出结尾部分并刷新输出流，不关闭输出流
+	 */
+	public void end() throws IOException
+	{
+		if(!started)
+		{
+			started = true;
+			writeHeader();
+		}
+		writeFooter();
+		writer.flush();
+	}
+
+	/**
+	 * 已经输出的记录数
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+
+	protected abstract void writeHeader() throws IOException;
+
+	/**
+	 * 输出一条记录
+	 * @param origine 记录
+	 * @param index 记录序号，从0开始
+	 */
+	protected abstract void writeRow(Record origine, long index) throws Exception;
+
+	protected abstract void writeFooter() throws IOException;
+
+	/**
+	 * 将clob字段的内容以字符流方式输出，不将clob内容加载到内存中
+	 */
+	protected void writeClob(Clob clob) throws Exception
+	{
+		Reader in = clob.getCharacterStream();
+		try
+		{
+			char[] buf = new char[ValueExchange.LOB_BUFFER_SIZE / 2];
+			int i = 0;
+			while((i = in.read(buf)) != -1)
+			{
+				writeEscaped(buf, 0, i);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	protected void writeEscaped(String value) throws IOException
+	{
+		char[] chars = value.toCharArray();
+		writeEscaped(chars, 0, chars.length);
+	}
+
+	/**
+	 * 按照输出格式转义字符后输出
+	 */
+	protected abstract void writeEscaped(char[] chars, int offset, int length) throws IOException;
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.handle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.sql.Clob;
+
+import com.frameworkset.common.poolman.Record;
+import com.frameworkset.common.poolman.util.SQLUtil;
+import com.frameworkset.orm.engine.model.SchemaType;
+
+/**
+ * <p>Title: XMLWriterRowHandler.java</p>
+ *
+ * <p>Description: 将查询结果逐条输出为xml，格式与XMLRowHandler生成的xml串相同，
+ * clob字段以字符流方式输出，字段值中的"]]>"被拆分到两个CDATA节中</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class XMLWriterRowHandler extends WriterRowHandler
+{
+	/**
+	 * CDATA节中已经连续输出的']'个数，用于跨缓冲区识别"]]>"
+	 */
+	private int brackets;
+
+	public XMLWriterRowHandler(Writer writer)
+	{
+		super(writer, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public XMLWriterRowHandler(Writer writer, int flushInterval)
+	{
+		super(writer, flushInterval);
+	}
+
+	public XMLWriterRowHandler(OutputStream out, String encoding) throws UnsupportedEncodingException
+	{
+		super(out, encoding, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public XMLWriterRowHandler(OutputStream out, String encoding, int flushInterval) throws UnsupportedEncodingException
+	{
+		super(out, encoding, flushInterval);
+	}
+
+	/**
+	 * 返回xml串的根节点名称
+	 * 缺省为records，用户可以扩展这个方法
+	 * @return
+	 */
+	public String getRootName()
+	{
+		return "records";
+	}
+
+	/**
+	 * 返回xml语法的版本号
+	 * 缺省为1.0，用户可以扩展这个方法
+	 * @return
+	 */
+	public String getVersion()
+	{
+		return "1.0";
+	}
+
+	@Override
+	protected void writeHeader() throws IOException
+	{
+		writer.write("<?xml version=\"");
+		writer.write(getVersion());
+		writer.write("\" encoding=\"");
+		writer.write(encoding);
+		writer.write("\"?>\r\n<");
+		writer.write(getRootName());
+		writer.write(">\r\n");
+	}
+
+	@Override
+	protected void writeRow(Record origine, long index) throws Exception
+	{
+		writer.write("    <record>\r\n");
+		for (int i = 0; i < meta.getColumnCounts(); i++) {
+			String columnName = meta.getColumnLabelUpper(i + 1);
+			SchemaType schemaType = SQLUtil.getSchemaType(dbname, meta.getColumnType(i + 1));
+			writer.write("\t<column name=\"");
+			writer.write(columnName);
+			writer.write("\" type=\"");
+			writer.write(String.valueOf(schemaType.getName()));
+			writer.write("\" javatype=\"");
+			writer.write(String.valueOf(schemaType.getJavaType()));
+			writer.write("\">");
+			Object value = origine.getObject(columnName);
+			if(value != null)
+			{
+				writer.write("\r\n\t    <![CDATA[");
+				brackets = 0;
+				if(value instanceof Clob)
+					writeClob((Clob)value);
+				else
+					writeEscaped(ValueExchange.getStringFromObject(value));
+				writer.write("]]>\r\n\t");
+			}
+			writer.write("</column>\r\n");
+		}
+		writer.write("    </record>\r\n");
+	}
+
+	@Override
+	protected void writeFooter() throws IOException
+	{
+		writer.write("\r\n</");
+		writer.write(getRootName());
+		writer.write(">");
+	}
+
+	@Override
+	protected void writeEscaped(char[] chars, int offset, int length) throws IOException
+	{
+		int start = offset;
+		int end = offset + length;
+		for(int i = offset; i < end; i ++)
+		{
+			char c = chars[i];
+			if(c == ']')
+			{
+				brackets ++;
+			}
+			else
+			{
+				if(c == '>' && brackets >= 2)
+				{
+					writer.write(chars, start, i - start);
+					writer.write("]]><![CDATA[");
+					start = i;
+				}
+				brackets = 0;
+			}
+		}
+		writer.write(chars, start, end - start);
+	}
+}
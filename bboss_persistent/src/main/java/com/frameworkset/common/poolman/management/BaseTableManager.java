@@ -170,7 +170,8 @@ public abstract class BaseTableManager {
 						}
 	
 						// 如果tableinfo表中表主键值与表的实际主键值不相符时，更新tableinfo中表的主键值
-						if (new_table_id_value > table_id_value || new_table_id_value < table_id_value) {
+						// 启用主键批量分配时tableinfo中的值可能包含其他应用节点预留的主键块，只能调大
+						if (new_table_id_value > table_id_value || (new_table_id_value < table_id_value && !isKeyBlockEnabled(poolName,table_name))) {
 							
 							u_pstmt.setString(2, table_name.toUpperCase());
 							u_pstmt.setLong(1, new_table_id_value);
@@ -247,6 +248,11 @@ public abstract class BaseTableManager {
 
 	}
 
+	private static boolean isKeyBlockEnabled(String poolName,String tableName)
+	{
+		return SQLManager.getInstance().getPool(poolName).getJDBCPoolMetadata().getKeyblocksize(tableName) > 1;
+	}
+
 	/**
 	 * 如果表的主键信息不存在时通过本方法从数据库中实时加载表的主键信息
 	 * 
@@ -370,7 +376,8 @@ public abstract class BaseTableManager {
 							}
 		
 							// 如果tableinfo表中表主键值与表的实际主键值不相符时，更新tableinfo中表的主键值
-							if (new_table_id_value > table_id_value || new_table_id_value < table_id_value) {
+							// 启用主键批量分配时tableinfo中的值可能包含其他应用节点预留的主键块，只能调大
+							if (new_table_id_value > table_id_value || (new_table_id_value < table_id_value && !isKeyBlockEnabled(poolName,table_name))) {
 								u_pstmt.setString(2, table_name.toUpperCase());
 								u_pstmt.setLong(1, new_table_id_value);
 								u_pstmt.execute();
@@ -153,7 +153,30 @@ public class ConfigParser extends DefaultHandler{
         		!name.equals("enablejta") &&
         		!name.equals("usepool") &&
         		!name.equals("encryptdbinfo") &&
-        		!name.equals("datasourceFile") )
+        		!name.equals("datasourceFile") &&
+        		!name.equals("queryfetchsize") &&
+        		!name.equals("sqlcachesize") &&
+        		!name.equals("keyblocksize") &&
+        		!name.equals("keyblocksizes") &&
+        		!name.equals("batchsize") &&
+        		!name.equals("batchcommit") &&
+        		!name.equals("batchpipeline") &&
+        		!name.equals("countcache") &&
+        		!name.equals("countcachettl") &&
+        		!name.equals("countcachesize") &&
+        		!name.equals("compactrecord") &&
+        		!name.equals("poolengine") &&
+        		!name.equals("maxlifetime") &&
+        		!name.equals("sqlstatistic") &&
+        		!name.equals("slowsqlthreshold") &&
+        		!name.equals("metadatasnapshot") &&
+        		!name.equals("metadatarefreshinterval") &&
+        		!name.equals("statementcachesize") &&
+        		!name.equals("readreplicas") &&
+        		!name.equals("replicaselector") &&
+        		!name.equals("readafterwritewindow") &&
+        		!name.equals("replicahealthcheckinterval") &&
+        		!name.equals("replicafailurethreshold") )
             
         {
         	log.debug("解析文件时[" + this.file + "]遇到元素[" + name + "]，忽略处理。");
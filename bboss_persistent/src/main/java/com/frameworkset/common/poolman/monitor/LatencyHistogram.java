@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * <p>Title: LatencyHistogram.java</p>
+ *
+ * <p>Description: 无锁的耗时直方图，单位微秒。按照2的幂次分段，每段再线性划分为16个桶，
+ * 记录值的相对误差不超过1/16；记录时只对所在桶做一次原子累加，
+ * 百分位数根据桶的累计计数计算</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * 能够区分的最大值为2^40微秒(约12天)，更大的值计入最后一个桶
+	 */
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS)
+			return value < 0 ? 0 : (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT)
+			return BUCKETS - 1;
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * 桶内记录值的代表值(桶的中间值)
+	 */
+	static long bucketValue(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lower = ((long) (SUB_BUCKETS + sub)) << shift;
+		return lower + ((1L << shift) >>> 1);
+	}
+
+	/**
+	 * 记录一次耗时
+	 * @param micros 耗时，单位微秒
+	 */
+	public void record(long micros) {
+		counts.incrementAndGet(bucketIndex(micros));
+		long current = max.get();
+		while (micros > current && !max.compareAndSet(current, micros))
+			current = max.get();
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += counts.get(i);
+		return count;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 获取百分位耗时，单位微秒
+	 * @param percentile 百分位，例如99.9
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0)
+			return 0;
+		long target = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+		if (target < 1)
+			target = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= target)
+				return Math.min(bucketValue(i), max.get());
+		}
+		return max.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0L);
+		max.set(0L);
+	}
+}
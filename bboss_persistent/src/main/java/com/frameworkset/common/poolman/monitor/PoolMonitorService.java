@@ -29,4 +29,19 @@ public interface PoolMonitorService {
 	public String statusCheckPool(String dbname);
 	
 	public List<AbandonedTraceExt> getTraceObjects(String dbname);
+	
+	/**
+	 * 获取sql语句结构缓存和查询结果集元数据缓存的容量、命中、未命中和淘汰统计信息
+	 */
+	public List<SQLCacheStatic> getSQLCacheStatics();
+	
+	/**
+	 * 获取数据源的sql执行统计信息，按照总耗时倒序排列，dbname为null时返回所有数据源的统计信息
+	 */
+	public List<SQLExecuteStatic> getSQLExecuteStatics(String dbname);
+	
+	/**
+	 * 清除数据源的sql执行统计信息，dbname为null时清除所有数据源的统计信息
+	 */
+	public void resetSQLExecuteStatics(String dbname);
 }
@@ -18,8 +18,11 @@ package com.frameworkset.common.poolman.monitor;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.frameworkset.persitent.util.SQLUtil;
+
 import com.frameworkset.common.poolman.DBUtil;
 import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
+import com.frameworkset.commons.dbcp.StatementCacheStatistic;
 import com.frameworkset.util.TransferObjectFactory;
 
 public class PoolMonitorServiceImpl implements PoolMonitorService {
@@ -44,6 +47,7 @@ public class PoolMonitorServiceImpl implements PoolMonitorService {
 			ps.setStartTime(DBUtil.getStartTime(dbname));
 			ps.setStopTime(DBUtil.getStopTime(dbname));
 			ps.setStatus(DBUtil.getStatus(dbname));
+			setStatementCacheStatistic(ps, dbname);
 
 			// ps.setValidationQuery(jdbcPoolMetaData.getValidationQuery());
 			// ps.setDriver(jdbcPoolMetaData.getDriver());
@@ -73,10 +77,21 @@ public class PoolMonitorServiceImpl implements PoolMonitorService {
 		ps.setStartTime(DBUtil.getStartTime(dbname));
 		ps.setStopTime(DBUtil.getStopTime(dbname));
 		ps.setStatus(DBUtil.getStatus(dbname));
+		setStatementCacheStatistic(ps, dbname);
 		ps.setDbname(dbname);
 		return ps;
 	}
 
+	private void setStatementCacheStatistic(PoolmanStatic ps, String dbname) {
+		StatementCacheStatistic statistic = DBUtil.getStatementCacheStatistic(dbname);
+		if(statistic != null)
+		{
+			ps.setStatementcachehits(statistic.getHits());
+			ps.setStatementcachemisses(statistic.getMisses());
+			ps.setStatementcacheevictions(statistic.getEvictions());
+		}
+	}
+
 	public boolean startPool(String dbname) {
 		try {
 			DBUtil.startPool(dbname);
@@ -116,4 +131,16 @@ public class PoolMonitorServiceImpl implements PoolMonitorService {
 		return PoolMonitorUtil.converAbandonedTrace(DBUtil.getTraceObjects(dbname));
 	}
 
+	public List<SQLCacheStatic> getSQLCacheStatics() {
+		return SQLUtil.getSQLCacheStatics();
+	}
+
+	public List<SQLExecuteStatic> getSQLExecuteStatics(String dbname) {
+		return SQLStatistics.getSQLExecuteStatics(dbname);
+	}
+
+	public void resetSQLExecuteStatics(String dbname) {
+		SQLStatistics.reset(dbname);
+	}
+
 }
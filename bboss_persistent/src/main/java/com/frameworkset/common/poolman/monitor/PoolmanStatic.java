@@ -40,6 +40,12 @@ public class PoolmanStatic extends JDBCPoolMetaData{
      * 使用高峰值
      */
     private int heapconnections;
+    /**
+     * 预编译语句缓存命中次数、未命中次数和淘汰次数，没有启用statementcachesize时为0
+     */
+    private long statementcachehits;
+    private long statementcachemisses;
+    private long statementcacheevictions;
    
     /**
      * poolman dbname
@@ -192,6 +198,30 @@ public class PoolmanStatic extends JDBCPoolMetaData{
     {
         this.heapconnections = heapconnections;
     }
+    public long getStatementcachehits()
+    {
+        return statementcachehits;
+    }
+    public void setStatementcachehits(long statementcachehits)
+    {
+        this.statementcachehits = statementcachehits;
+    }
+    public long getStatementcachemisses()
+    {
+        return statementcachemisses;
+    }
+    public void setStatementcachemisses(long statementcachemisses)
+    {
+        this.statementcachemisses = statementcachemisses;
+    }
+    public long getStatementcacheevictions()
+    {
+        return statementcacheevictions;
+    }
+    public void setStatementcacheevictions(long statementcacheevictions)
+    {
+        this.statementcacheevictions = statementcacheevictions;
+    }
     public String toString()
     {
         StringBuffer ret = new StringBuffer(100);
@@ -201,7 +231,10 @@ public class PoolmanStatic extends JDBCPoolMetaData{
         .append("maxconnections:").append(this.getMaximumSize()).append(",")
         .append("idleconnections:").append(idleconnections).append(",")
         .append("activeconnections:").append(activeconnections).append(",")
-        .append("heapconnections:").append(heapconnections)
+        .append("heapconnections:").append(heapconnections).append(",")
+        .append("statementcachehits:").append(statementcachehits).append(",")
+        .append("statementcachemisses:").append(statementcachemisses).append(",")
+        .append("statementcacheevictions:").append(statementcacheevictions)
         .append("\r\n");
         return ret.toString();
                 
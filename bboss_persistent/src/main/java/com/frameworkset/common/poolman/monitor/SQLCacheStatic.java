@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.monitor;
+
+/**
+ * sql缓存统计信息
+ */
+public class SQLCacheStatic {
+	public static final String CACHE_SQLSTRUCTION = "sqlstruction";
+	public static final String CACHE_TOTALSIZESQLSTRUCTION = "totalsizesqlstruction";
+	public static final String CACHE_METADATA = "metadata";
+	public static final String CACHE_RESULT = "result";
+	/**
+	 * sql配置文件，全局sql缓存为global
+	 */
+	private String sqlfile;
+	/**
+	 * 数据源名称，只有结果集元数据缓存按照数据源区分
+	 */
+	private String dbname;
+	/**
+	 * 缓存类型：sqlstruction,totalsizesqlstruction,metadata,result
+	 */
+	private String cachetype;
+	/**
+	 * 查询结果缓存模型id，只有result类型的缓存有值
+	 */
+	private String cachemodel;
+	private int maxsize;
+	private int size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public String getSqlfile() {
+		return sqlfile;
+	}
+
+	public void setSqlfile(String sqlfile) {
+		this.sqlfile = sqlfile;
+	}
+
+	public String getDbname() {
+		return dbname;
+	}
+
+	public void setDbname(String dbname) {
+		this.dbname = dbname;
+	}
+
+	public String getCachetype() {
+		return cachetype;
+	}
+
+	public void setCachetype(String cachetype) {
+		this.cachetype = cachetype;
+	}
+
+	public String getCachemodel() {
+		return cachemodel;
+	}
+
+	public void setCachemodel(String cachemodel) {
+		this.cachemodel = cachemodel;
+	}
+
+	public int getMaxsize() {
+		return maxsize;
+	}
+
+	public void setMaxsize(int maxsize) {
+		this.maxsize = maxsize;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public void setHits(long hits) {
+		this.hits = hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public void setMisses(long misses) {
+		this.misses = misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void setEvictions(long evictions) {
+		this.evictions = evictions;
+	}
+
+	/**
+	 * 命中率
+	 */
+	public double getHitratio() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+}
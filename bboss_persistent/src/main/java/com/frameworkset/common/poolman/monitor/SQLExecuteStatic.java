@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.monitor;
+
+import java.io.Serializable;
+
+/**
+ * sql语句执行统计信息，耗时单位为微秒
+ */
+public class SQLExecuteStatic implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private String dbname;
+	/**
+	 * sql配置文件中的sql名称，非配置文件中的sql为空
+	 */
+	private String sqlname;
+	/**
+	 * 最近一次执行的sql语句
+	 */
+	private String sql;
+	private long count;
+	private long errors;
+	/**
+	 * 查询返回或者更新的记录总数
+	 */
+	private long rows;
+	/**
+	 * 超过慢sql阈值的执行次数
+	 */
+	private long slowcount;
+	private long totaltime;
+	private long avgtime;
+	private long maxtime;
+	private long p50;
+	private long p90;
+	private long p99;
+	private long p999;
+
+	public String getDbname() {
+		return dbname;
+	}
+
+	public void setDbname(String dbname) {
+		this.dbname = dbname;
+	}
+
+	public String getSqlname() {
+		return sqlname;
+	}
+
+	public void setSqlname(String sqlname) {
+		this.sqlname = sqlname;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public void setSql(String sql) {
+		this.sql = sql;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public void setErrors(long errors) {
+		this.errors = errors;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	public void setRows(long rows) {
+		this.rows = rows;
+	}
+
+	public long getSlowcount() {
+		return slowcount;
+	}
+
+	public void setSlowcount(long slowcount) {
+		this.slowcount = slowcount;
+	}
+
+	public long getTotaltime() {
+		return totaltime;
+	}
+
+	public void setTotaltime(long totaltime) {
+		this.totaltime = totaltime;
+	}
+
+	public long getAvgtime() {
+		return avgtime;
+	}
+
+	public void setAvgtime(long avgtime) {
+		this.avgtime = avgtime;
+	}
+
+	public long getMaxtime() {
+		return maxtime;
+	}
+
+	public void setMaxtime(long maxtime) {
+		this.maxtime = maxtime;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public void setP50(long p50) {
+		this.p50 = p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public void setP90(long p90) {
+		this.p90 = p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public void setP99(long p99) {
+		this.p99 = p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public void setP999(long p999) {
+		this.p999 = p999;
+	}
+
+	public String toString() {
+		return new StringBuilder().append(dbname).append(":").append(sqlname != null ? sqlname : sql)
+				.append(" count=").append(count).append(",errors=").append(errors).append(",rows=").append(rows)
+				.append(",slow=").append(slowcount).append(",avg=").append(avgtime).append("us,p50=").append(p50)
+				.append("us,p90=").append(p90).append("us,p99=").append(p99).append("us,p999=").append(p999)
+				.append("us,max=").append(maxtime).append("us").toString();
+	}
+}
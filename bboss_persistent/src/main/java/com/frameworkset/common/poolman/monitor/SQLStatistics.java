@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ *
+ * <p>Title: SQLStatistics.java</p>
+ *
+ * <p>Description: 按照(数据源,sql名称)统计sql语句的执行次数、失败次数、记录数和耗时分布，
+ * 配置文件中的sql按照sql名称统计，其他sql按照sql语句统计，每个数据源最多统计MAX_STATEMENTS条sql，
+ * 超过后计入OTHERS。执行耗时超过数据源slowsqlthreshold的sql连同参数一起输出到慢sql日志
+ * (日志名称com.frameworkset.common.poolman.monitor.SQLStatistics)。
+ * 数据源配置sqlstatistic为true时开启统计</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class SQLStatistics {
+	private static final Logger log = Logger.getLogger(SQLStatistics.class);
+	public static final int MAX_STATEMENTS = 2000;
+	public static final String OTHERS = "__others__";
+	private static final ConcurrentHashMap<String, ConcurrentHashMap<String, SQLStatistic>> statistics = new ConcurrentHashMap<String, ConcurrentHashMap<String, SQLStatistic>>();
+
+	/**
+	 * 单条sql的统计数据
+	 */
+	static class SQLStatistic {
+		private final String sqlname;
+		private volatile String sql;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder slowcount = new LongAdder();
+		private final LongAdder totaltime = new LongAdder();
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		SQLStatistic(String sqlname, String sql) {
+			this.sqlname = sqlname;
+			this.sql = sql;
+		}
+
+		SQLExecuteStatic toStatic(String dbname) {
+			SQLExecuteStatic s = new SQLExecuteStatic();
+			s.setDbname(dbname);
+			s.setSqlname(sqlname);
+			s.setSql(sql);
+			long c = count.sum();
+			s.setCount(c);
+			s.setErrors(errors.sum());
+			s.setRows(rows.sum());
+			s.setSlowcount(slowcount.sum());
+			long total = totaltime.sum();
+			s.setTotaltime(total);
+			s.setAvgtime(c > 0 ? total / c : 0);
+			s.setMaxtime(histogram.getMax());
+			s.setP50(histogram.getPercentile(50));
+			s.setP90(histogram.getPercentile(90));
+			s.setP99(histogram.getPercentile(99));
+			s.setP999(histogram.getPercentile(99.9));
+			return s;
+		}
+	}
+
+	/**
+	 * 记录一次sql执行
+	 * @param dbname 数据源名称
+	 * @param sqlname sql配置文件中的sql名称，可以为null
+	 * @param sql 执行的sql语句
+	 * @param nanos 执行耗时，单位纳秒
+	 * @param rows 查询返回或者更新的记录数，未知时小于0
+	 * @param error 是否执行失败
+	 * @param statistic 是否记录统计数据
+	 * @param slowthreshold 慢sql阈值，单位毫秒，小于等于0时不输出慢sql日志
+	 * @param params 绑定变量参数，输出慢sql日志时使用
+	 */
+	public static void record(String dbname, String sqlname, String sql, long nanos, long rows, boolean error,
+			boolean statistic, long slowthreshold, Object params) {
+		if (sqlname == null && sql == null)
+			return;
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		boolean slow = slowthreshold > 0 && millis >= slowthreshold;
+		if (slow) {
+			StringBuilder msg = new StringBuilder().append("Slow sql[").append(dbname).append("]");
+			if (sqlname != null)
+				msg.append("[").append(sqlname).append("]");
+			msg.append(" took ").append(millis).append(" ms");
+			if (rows >= 0)
+				msg.append(",rows=").append(rows);
+			if (error)
+				msg.append(",failed");
+			msg.append(":").append(sql);
+			if (params != null)
+				msg.append(",params=").append(params);
+			log.warn(msg.toString());
+		}
+		if (!statistic)
+			return;
+		SQLStatistic s = getSQLStatistic(dbname, sqlname, sql);
+		if (sqlname != null)
+			s.sql = sql;
+		s.count.increment();
+		if (error)
+			s.errors.increment();
+		if (rows > 0)
+			s.rows.add(rows);
+		if (slow)
+			s.slowcount.increment();
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		s.totaltime.add(micros);
+		s.histogram.record(micros);
+	}
+
+	private static SQLStatistic getSQLStatistic(String dbname, String sqlname, String sql) {
+		ConcurrentHashMap<String, SQLStatistic> dbstatistics = statistics.get(dbname);
+		if (dbstatistics == null) {
+			dbstatistics = new ConcurrentHashMap<String, SQLStatistic>();
+			ConcurrentHashMap<String, SQLStatistic> old = statistics.putIfAbsent(dbname, dbstatistics);
+			if (old != null)
+				dbstatistics = old;
+		}
+		String key = sqlname != null ? sqlname : sql;
+		SQLStatistic s = dbstatistics.get(key);
+		if (s != null)
+			return s;
+		if (dbstatistics.size() >= MAX_STATEMENTS) {
+			key = OTHERS;
+			s = dbstatistics.get(key);
+			if (s != null)
+				return s;
+			sqlname = OTHERS;
+		}
+		s = new SQLStatistic(sqlname, sql);
+		SQLStatistic old = dbstatistics.putIfAbsent(key, s);
+		return old != null ? old : s;
+	}
+
+	/**
+	 * 获取数据源的sql执行统计信息，按照总耗时倒序排列，dbname为null时返回所有数据源的统计信息
+	 */
+	public static List<SQLExecuteStatic> getSQLExecuteStatics(String dbname) {
+		List<SQLExecuteStatic> statics = new ArrayList<SQLExecuteStatic>();
+		Iterator<Map.Entry<String, ConcurrentHashMap<String, SQLStatistic>>> it = statistics.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, ConcurrentHashMap<String, SQLStatistic>> entry = it.next();
+			if (dbname != null && !dbname.equals(entry.getKey()))
+				continue;
+			for (SQLStatistic s : entry.getValue().values())
+				statics.add(s.toStatic(entry.getKey()));
+		}
+		Collections.sort(statics, new Comparator<SQLExecuteStatic>() {
+			public int compare(SQLExecuteStatic o1, SQLExecuteStatic o2) {
+				return o1.getTotaltime() < o2.getTotaltime() ? 1 : (o1.getTotaltime() == o2.getTotaltime() ? 0 : -1);
+			}
+		});
+		return statics;
+	}
+
+	/**
+	 * 以文本形式输出数据源的sql执行统计信息，每条sql一行
+	 */
+	public static String report(String dbname) {
+		StringBuilder ret = new StringBuilder();
+		for (SQLExecuteStatic s : getSQLExecuteStatics(dbname))
+			ret.append(s).append("\n");
+		return ret.toString();
+	}
+
+	/**
+	 * 清除数据源的sql执行统计信息，dbname为null时清除所有数据源的统计信息
+	 */
+	public static void reset(String dbname) {
+		if (dbname == null)
+			statistics.clear();
+		else
+			statistics.remove(dbname);
+	}
+}
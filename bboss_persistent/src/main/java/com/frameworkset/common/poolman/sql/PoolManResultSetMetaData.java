@@ -5,7 +5,10 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.frameworkset.util.ClassUtil;
+import org.frameworkset.util.ClassUtil.ClassInfo;
 
+import com.frameworkset.common.poolman.ArrayRecord;
+import com.frameworkset.common.poolman.RowMappingPlan;
 import com.frameworkset.common.poolman.handle.RowHandlerException;
 import com.frameworkset.common.poolman.util.JDBCPool;
 
@@ -77,6 +80,15 @@ public class PoolManResultSetMetaData implements java.sql.ResultSetMetaData, jav
      */
     private Map samecols ;
     
+    /**
+     * 值对象类型对应的结果集映射计划，元数据按照sql缓存时映射计划随元数据一起被缓存
+     */
+    private transient volatile Map<Class,RowMappingPlan> mappingPlans;
+    /**
+     * 紧凑记录(ArrayRecord)共享的字段字典，随元数据一起被缓存
+     */
+    private transient volatile ArrayRecord.Columns recordColumns;
+    
 
     // used for storing error information from when getColumnClassName() fails
     private String _sqlReason;
@@ -384,6 +396,66 @@ public class PoolManResultSetMetaData implements java.sql.ResultSetMetaData, jav
         return _caseSensitive[column - 1];
     }
 
+    /**
+     * 判断结果集的列结构(列数、每一列的列标签和列类型)与本元数据是否一致，
+     * 不一致时缓存的元数据以及其中的映射计划和字段字典需要重建
+     */
+    public boolean isSameColumns(java.sql.ResultSetMetaData other) throws java.sql.SQLException {
+        if (other == this)
+            return true;
+        if (_columnCount != other.getColumnCount())
+            return false;
+        for (int c = 0; c < _columnCount; c++) {
+            if (_columnType[c] != other.getColumnType(c + 1) || !_columnLabel[c].equals(other.getColumnLabel(c + 1)))
+                return false;
+        }
+        return true;
+    }
+
+	/**
+	 * 获取值对象类型对应的结果集映射计划，如果不存在则构建并缓存
+	 * @param beanInfo
+	 * @return
+	 */
+	public RowMappingPlan getRowMappingPlan(ClassInfo beanInfo)
+	{
+		Map<Class,RowMappingPlan> plans = mappingPlans;
+		if(plans == null)
+		{
+			synchronized(this)
+			{
+				plans = mappingPlans;
+				if(plans == null)
+				{
+					plans = new java.util.concurrent.ConcurrentHashMap<Class,RowMappingPlan>();
+					mappingPlans = plans;
+				}
+			}
+		}
+		RowMappingPlan plan = plans.get(beanInfo.getClazz());
+		if(plan == null)
+		{
+			plan = RowMappingPlan.buildPlan(beanInfo, this);
+			plans.put(beanInfo.getClazz(), plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * 获取紧凑记录(ArrayRecord)共享的字段字典，如果不存在则构建并缓存
+	 * @return
+	 */
+	public ArrayRecord.Columns getRecordColumns() throws SQLException
+	{
+		ArrayRecord.Columns columns = recordColumns;
+		if(columns == null)
+		{
+			columns = new ArrayRecord.Columns(this);
+			recordColumns = columns;
+		}
+		return columns;
+	}
+
 	public String[] get_columnLabel_upper() {
 		return _columnLabel_upper;
 	}
@@ -33,6 +33,7 @@ package com.frameworkset.common.poolman.sql;
 
 import java.io.Serializable;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -41,6 +42,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -115,6 +117,57 @@ public class PrimaryKey
 	
 	private String select ;
 
+	/**
+	 * 主键批量分配的块大小，大于1时启用批量分配，由数据源的keyblocksize或者keyblocksizes属性指定：
+	 * 普通表每次通过tableinfo表预留blocksize个主键值，sequence表采用hi/lo方式，每次nextval获取blocksize个主键值
+	 */
+	private int blocksize = 0;
+
+	/**
+	 * 当前正在分配的主键块
+	 */
+	private volatile KeyBlock keyBlock;
+
+	private final Object blockLock = new Object();
+
+	private static final String reserveTableinfoSql = "update tableinfo set table_id_value=table_id_value+? where upper(table_name)=?";
+
+	private static final String raiseTableinfoSql = "update tableinfo set table_id_value=? where upper(table_name)=?";
+
+	private static final String queryTableinfoSql = "select table_id_value from tableinfo where upper(table_name)=?";
+
+	/**
+	 * 已经预留的一段主键值，通过原子计数器无锁分配
+	 */
+	private static class KeyBlock
+	{
+		private final AtomicLong next;
+		private final long max;
+		private final long step;
+		KeyBlock(long first,long max,long step)
+		{
+			this.next = new AtomicLong(first);
+			this.max = max;
+			this.step = step;
+		}
+
+		/**
+		 * 判断分配到的主键值是否在预留的范围内，超出范围说明块已经分配完
+		 */
+		boolean contain(long value)
+		{
+			return value <= max;
+		}
+
+		/**
+		 * 分配下一个主键值，返回值可能超出预留的范围
+		 */
+		long next()
+		{
+			return next.getAndAdd(step);
+		}
+	}
+
 	/**
 	 * 构造函数，构建表的基本信息
 	 * 
@@ -230,6 +283,7 @@ public class PrimaryKey
 		JDBCPool pool = (JDBCPool) (SQLManager.getInstance().getPool(dbname));
 		synsequece = pool.getJDBCPoolMetadata().synsequence();
 		this.seqfunction = pool.getJDBCPoolMetadata().getSeqfunction();
+		this.blocksize = pool.getJDBCPoolMetadata().getKeyblocksize(tableName);
 		String mode = pool.getKeygenerate();
 		if (mode.trim().equalsIgnoreCase("auto"))
 			keygenerator_mode = 0;
@@ -288,6 +342,7 @@ public class PrimaryKey
 		JDBCPool pool = (JDBCPool) (SQLManager.getInstance().getPool(dbname));
 		synsequece = pool.getJDBCPoolMetadata().synsequence();
 		this.seqfunction = pool.getJDBCPoolMetadata().getSeqfunction();
+		this.blocksize = pool.getJDBCPoolMetadata().getKeyblocksize(tableName);
 		String mode = pool.getKeygenerate();
 		if (mode.trim().equalsIgnoreCase("auto"))
 			keygenerator_mode = 0;
@@ -461,6 +516,8 @@ public class PrimaryKey
 			Sequence sequence = new Sequence();
 			if (type.equals("sequence"))
 			{
+				if(blocksize > 1)
+					return nextBlockKey(con,true);
 				long curValue = this.curValue;
 //				String sql = "select " + this.generator + ".nextval from dual";
 				do
@@ -533,6 +590,8 @@ public class PrimaryKey
 			}
 			else
 			{
+				if(blocksize > 1)
+					return nextBlockKey(con,false);
 				synchronized (this)
 				{
 					switch (keygenerator_mode)
@@ -586,6 +645,178 @@ public class PrimaryKey
 		// return curValue;
 	}
 
+	/**
+	 * 从预留的主键块中无锁分配主键，块分配完时才加锁从数据库预留下一个块
+	 * @param con
+	 * @param sequenceMode true-sequence表，false-tableinfo表
+	 * @return
+	 * @throws SQLException
+	 */
+	private Sequence nextBlockKey(Connection con,boolean sequenceMode) throws SQLException
+	{
+		long value;
+		do
+		{
+			value = nextBlockValue(con,sequenceMode);
+		}
+		while(sequenceMode && this.synsequece && this.exist(con,value));
+		Sequence sequence = new Sequence();
+		if (this.metaType.equals("int") || this.metaType.equals("java.lang.Integer")
+				|| this.metaType.equals("java.lang.integer")
+				|| this.metaType.equalsIgnoreCase("integer")
+				|| this.metaType.equals("java.lang.Long") || this.metaType.equals("java.lang.long")
+				|| this.metaType.equalsIgnoreCase("long"))
+		{
+			sequence.setPrimaryKey(new Long(value));
+		}
+		else
+		{
+			sequence.setPrimaryKey(this.prefix + value + "");
+		}
+		sequence.setSequence(value);
+		return sequence;
+	}
+
+	private long nextBlockValue(Connection con,boolean sequenceMode) throws SQLException
+	{
+		KeyBlock block = this.keyBlock;
+		if(block != null)
+		{
+			long value = block.next();
+			if(block.contain(value))
+				return value;
+		}
+		synchronized(blockLock)
+		{
+			block = this.keyBlock;
+			if(block != null)
+			{
+				long value = block.next();
+				if(block.contain(value))
+					return value;
+			}
+			block = sequenceMode?reserveSequenceBlock(con):reserveTableBlock();
+			long value = block.next();
+			this.keyBlock = block;
+			return value;
+		}
+	}
+
+	/**
+	 * sequence表采用hi/lo方式分配主键，每次nextval获取到的值v作为高位，预留[v*blocksize,v*blocksize+blocksize-1]范围内的主键值。
+	 * 不同的nextval值对应的范围互不重叠，与数据库sequence的步长无关，多个应用节点共享sequence时不会冲突；
+	 * 启用后主键值不再等于nextval的值，启用前逐个生成的主键值都小于v*blocksize，不会冲突，
+	 * 但是启用后不能再切换回逐个生成的方式
+	 */
+	private KeyBlock reserveSequenceBlock(Connection con) throws SQLException
+	{
+		long hi = this.dbAdapter.getNextValue(this.seqfunction,generator, con, this.dbname);
+		if(hi < 0 || hi > (Long.MAX_VALUE - blocksize + 1) / blocksize)
+			throw new SQLException("Reserve primary key block for table[" + tableName + "] failed:sequence value " + hi
+					+ " of [" + generator + "] is out of hi/lo range for block size " + blocksize + ".");
+		if(keyBlock == null)
+			log.info("Table[" + tableName + "] allocates primary keys from sequence[" + generator
+					+ "] in hi/lo blocks of " + blocksize + ":key=nextval*" + blocksize + "+[0," + (blocksize - 1) + "].");
+		long first = hi * blocksize;
+		this.curValue = first + blocksize - 1;
+		return new KeyBlock(first,first + blocksize - 1,1);
+	}
+
+	/**
+	 * 通过独立的连接和事务将tableinfo表中表的主键值增加blocksize*increment，
+	 * 预留(table_id_value-blocksize*increment,table_id_value]范围内的主键值。
+	 * update语句持有tableinfo表记录的行锁直到事务提交，多个应用节点共享同一个tableinfo表时预留的范围不会重叠。
+	 * 复合模式下预留时校验表中主键的实际最大值，最大值已经进入预留范围时将预留范围整体后移
+	 */
+	private KeyBlock reserveTableBlock() throws SQLException
+	{
+		Connection con = null;
+		PreparedStatement reserve = null;
+		PreparedStatement query = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+		ResultSet maxrs = null;
+		boolean autocommit = true;
+		long span = (long)blocksize * increment;
+		String table = tableName.toUpperCase();
+		try
+		{
+			con = SQLManager.getInstance().requestConnection(dbname);
+			autocommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			reserve = con.prepareStatement(reserveTableinfoSql);
+			reserve.setLong(1, span);
+			reserve.setString(2, table);
+			if(reserve.executeUpdate() == 0)
+				throw new SQLException("Reserve primary key block for table[" + tableName + "] failed:table[" + tableName + "] not found in tableinfo.");
+			query = con.prepareStatement(queryTableinfoSql);
+			query.setString(1, table);
+			rs = query.executeQuery();
+			rs.next();
+			long max = rs.getLong(1);
+			if(keygenerator_mode == 1)
+			{
+				stmt = con.createStatement();
+				maxrs = stmt.executeQuery(maxSql);
+				long temp = 0;
+				if(maxrs.next())
+					temp = maxrs.getLong(1);
+				if(temp > max - span)
+				{
+					max = temp + span;
+					reserve.close();
+					reserve = con.prepareStatement(raiseTableinfoSql);
+					reserve.setLong(1, max);
+					reserve.setString(2, table);
+					reserve.executeUpdate();
+				}
+			}
+			con.commit();
+			synchronized(this)
+			{
+				if(curValue < max)
+					curValue = max;
+			}
+			return new KeyBlock(max - span + increment,max,increment);
+		}
+		catch (SQLException e)
+		{
+			if(con != null)
+			{
+				try
+				{
+					con.rollback();
+				}
+				catch (SQLException e1)
+				{
+				}
+			}
+			throw new NestedSQLException("预留表[" + tableName + "]的主键[" + primaryKeyName + "]值块失败:", e);
+		}
+		finally
+		{
+			JDBCPool.closeResources(reserve, rs);
+			JDBCPool.closeResources(query, maxrs);
+			JDBCPool.closeResources(stmt, null);
+			if(con != null)
+			{
+				try
+				{
+					con.setAutoCommit(autocommit);
+				}
+				catch (SQLException e)
+				{
+				}
+				JDBCPool.closeConnection(con);
+			}
+		}
+	}
+
+	public int getBlocksize()
+	{
+		return blocksize;
+	}
+
 	public Sequence generateObjectKey(String type, String prefix) throws SQLException
 	{
 		 return  generateObjectKey(type, prefix,null);
@@ -608,6 +839,8 @@ public class PrimaryKey
 
 			if (type.equals("sequence")) //不需要锁
 			{
+				if(blocksize > 1)
+					return nextBlockKey(con,true);
 				long curValue = this.curValue;
 //				String sql = "select " + this.generator + ".nextval from dual";
 				do
@@ -676,6 +909,8 @@ public class PrimaryKey
             }
 			else //需要锁
 			{
+				if(blocksize > 1)
+					return nextBlockKey(con,false);
 				synchronized (this)
 				{
 					switch (keygenerator_mode)
@@ -877,6 +1112,9 @@ public class PrimaryKey
 	 */
 	public long restoreKey(Object oldValue)
 	{
+		//批量分配模式下主键值已经被预留，插入失败时不回收
+		if(blocksize > 1)
+			return curValue;
 		synchronized (this)
 		{
 			long temp = getKeyID(oldValue);
@@ -29,6 +29,7 @@ import org.frameworkset.spi.DefaultApplicationContext;
 import org.frameworkset.spi.assemble.Pro;
 
 import com.frameworkset.common.poolman.sql.PoolManDataSource;
+import com.frameworkset.commons.dbcp.StatementCacheStatistic;
 import com.frameworkset.orm.transaction.TXDataSource;
 
 /**
@@ -159,6 +160,41 @@ public class DatasourceUtil {
 		return false;
 	}
 	
+	/**
+	 * 获取数据源预编译语句缓存的命中统计，数据源不支持或者没有启用缓存时返回null
+	 * 
+	 * @return
+	 */
+	public static StatementCacheStatistic getStatementCacheStatistic(DataSource datasource) {
+		DataSource datasource_ = null;
+		if(datasource instanceof TXDataSource)
+		{
+			datasource_ =getSRCDataSource((TXDataSource)datasource);
+		}
+		else
+		{
+			datasource_ = datasource;
+		}
+		
+		if (datasource_ instanceof PoolManDataSource) {
+			PoolManDataSource temp = (PoolManDataSource) datasource_;
+			datasource_ = temp.getInnerDataSource();
+		}
+		try {
+			if (datasource_ != null) {
+				Method getStatistic = datasource_.getClass().getMethod(
+						"_getStatementCacheStatistic");
+				return (StatementCacheStatistic) getStatistic.invoke(datasource_);
+			}
+		} catch (SecurityException e) {
+		} catch (NoSuchMethodException e) {
+		} catch (IllegalArgumentException e) {
+		} catch (IllegalAccessException e) {
+		} catch (InvocationTargetException e) {
+		}
+		return null;
+	}
+	
 	/**
 	 * 获取当前链接池中空闲的链接数 接口只对内部数据源有用，外部数据源返回-1
 	 * 非连接池数据源为实现该功能
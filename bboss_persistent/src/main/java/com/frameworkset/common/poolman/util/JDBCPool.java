@@ -15,12 +15,20 @@
  */
 package com.frameworkset.common.poolman.util;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -28,6 +36,14 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.Context;
 import javax.naming.Name;
@@ -52,6 +68,7 @@ import com.frameworkset.common.poolman.sql.PoolManDataSource;
 import com.frameworkset.common.poolman.sql.PrimaryKeyMetaData;
 import com.frameworkset.common.poolman.sql.TableMetaData;
 import com.frameworkset.commons.dbcp.BasicDataSourceFactory;
+import com.frameworkset.commons.dbcp.StatementCacheStatistic;
 import com.frameworkset.commons.pool.impl.GenericObjectPool;
 import com.frameworkset.orm.adapter.DB;
 import com.frameworkset.orm.adapter.DBFactory;
@@ -169,6 +186,21 @@ public class JDBCPool {
 	private Map tableMetaDatasindexByTablename = new java.util.concurrent.ConcurrentHashMap();
 
 	private Set tableMetaDatas = new TreeSet();
+
+	/**
+	 * 正在从数据库加载的表元数据，同一张表的并发加载请求共用一次加载
+	 */
+	private final ConcurrentHashMap<String, FutureTask<TableMetaData>> loadingTableMetaDatas = new ConcurrentHashMap<String, FutureTask<TableMetaData>>();
+
+	/**
+	 * 后台刷新表元数据的线程
+	 */
+	private ScheduledExecutorService metaDataRefresher;
+
+	/**
+	 * 配置了readreplicas时的读写分离路由器
+	 */
+	private volatile ReadWriteRouter readWriteRouter;
 	
 	
 	public final static InterceptorInf defaultInterceptor = new com.frameworkset.common.poolman.interceptor.DummyInterceptor();
@@ -195,14 +227,7 @@ public class JDBCPool {
 			if (table == null) {
 				// 如果数据库元数据没有启用元数据加载机制，则动态加载其数据
 				if (this.info.getLoadmetadata().equalsIgnoreCase("false")) {
-					synchronized (tableMetaDatasindexByTablename) {
-						table = (TableMetaData) tableMetaDatasindexByTablename
-								.get(tableName.toLowerCase());
-						if (table == null) {
-							table = this.getTableMetaDataFromDatabase(con,
-									tableName);
-						}
-					}
+					table = loadTableMetaData(con, tableName);
 				}
 			}
 			return table;
@@ -213,6 +238,268 @@ public class JDBCPool {
 		}
 	}
 
+	/**
+	 * 按需加载单张表的元数据，同一张表同时只有一个线程访问数据库，其他线程等待加载结果，
+	 * 不同表的加载互不阻塞
+	 */
+	private TableMetaData loadTableMetaData(final Connection con, final String tableName) {
+		final String key = tableName.toLowerCase();
+		FutureTask<TableMetaData> task = new FutureTask<TableMetaData>(new Callable<TableMetaData>() {
+			public TableMetaData call() throws Exception {
+				TableMetaData table = (TableMetaData) tableMetaDatasindexByTablename.get(key);
+				if (table != null)
+					return table;
+				return getTableMetaDataFromDatabase(con, tableName);
+			}
+		});
+		FutureTask<TableMetaData> loading = loadingTableMetaDatas.putIfAbsent(key, task);
+		if (loading == null) {
+			loading = task;
+			try {
+				task.run();
+			} finally {
+				loadingTableMetaDatas.remove(key, task);
+			}
+		}
+		try {
+			return loading.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			log.error("load table[" + tableName + "]'s metadata failed.", e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * 将表元数据放入缓冲区，替换同名表已有的元数据
+	 */
+	private void putTableMetaData(TableMetaData tableMetaData) {
+		this.tableMetaDatasindexByTablename.put(
+				tableMetaData.getTableName().toLowerCase(), tableMetaData);
+		synchronized (tableMetaDatas) {
+			tableMetaDatas.remove(tableMetaData);
+			tableMetaDatas.add(tableMetaData);
+		}
+	}
+
+	/**
+	 * 从缓冲区删除表元数据
+	 */
+	private void removeTableMetaData(String tableName) {
+		TableMetaData tableMetaData = (TableMetaData) this.tableMetaDatasindexByTablename.remove(tableName.toLowerCase());
+		if (tableMetaData != null) {
+			synchronized (tableMetaDatas) {
+				tableMetaDatas.remove(tableMetaData);
+			}
+		}
+	}
+
+	/**
+	 * 从数据源配置的metadatasnapshot文件中恢复表元数据，快照文件不存在、
+	 * 不是当前数据库的快照或者读取失败时返回false
+	 */
+	private boolean loadMetaDataSnapshot() {
+		String snapshot = info.getMetadatasnapshot();
+		if (snapshot == null || snapshot.trim().equals(""))
+			return false;
+		File file = new File(snapshot.trim());
+		if (!file.exists())
+			return false;
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new FileInputStream(file));
+			String url = (String) in.readObject();
+			if (info.getURL() != null && !info.getURL().equals(url)) {
+				log.info("Ignore metadata snapshot[" + file.getAbsolutePath() + "] of database[" + url + "] for datasource["
+						+ info.getName() + "].");
+				return false;
+			}
+			List<TableMetaData> tables = (List<TableMetaData>) in.readObject();
+			for (TableMetaData tableMetaData : tables)
+				putTableMetaData(tableMetaData);
+			log.info("Load " + tables.size() + " tables' metadata of datasource[" + info.getName() + "] from snapshot["
+					+ file.getAbsolutePath() + "].");
+			return true;
+		} catch (Exception e) {
+			log.error("Load metadata snapshot[" + file.getAbsolutePath() + "] of datasource[" + info.getName() + "] failed.", e);
+			return false;
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (Exception e) {
+
+			}
+		}
+	}
+
+	/**
+	 * 将缓冲区中的表元数据写入数据源配置的metadatasnapshot文件，先写临时文件再替换快照文件
+	 */
+	private void saveMetaDataSnapshot() {
+		String snapshot = info.getMetadatasnapshot();
+		if (snapshot == null || snapshot.trim().equals("") || this.externalDBName != null)
+			return;
+		List<TableMetaData> tables = new ArrayList<TableMetaData>(tableMetaDatasindexByTablename.values());
+		if (tables.size() == 0)
+			return;
+		File file = new File(snapshot.trim());
+		File temp = new File(file.getAbsolutePath() + ".tmp");
+		ObjectOutputStream out = null;
+		try {
+			if (file.getParentFile() != null && !file.getParentFile().exists())
+				file.getParentFile().mkdirs();
+			out = new ObjectOutputStream(new FileOutputStream(temp));
+			out.writeObject(info.getURL());
+			out.writeObject(tables);
+			out.close();
+			out = null;
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			log.debug("Save " + tables.size() + " tables' metadata of datasource[" + info.getName() + "] to snapshot["
+					+ file.getAbsolutePath() + "].");
+		} catch (Exception e) {
+			log.error("Save metadata snapshot[" + file.getAbsolutePath() + "] of datasource[" + info.getName() + "] failed.", e);
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (Exception e) {
+
+			}
+			temp.delete();
+		}
+	}
+
+	private synchronized ScheduledExecutorService getMetaDataRefresher() {
+		if (metaDataRefresher == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "MetaDataRefresher-" + info.getName());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+			metaDataRefresher = executor;
+		}
+		return metaDataRefresher;
+	}
+
+	private void startReadWriteRouter() {
+		String readreplicas = info.getReadreplicas();
+		if (this.externalDBName != null || readreplicas == null || readreplicas.trim().length() == 0)
+			return;
+		ReadWriteRouter router = new ReadWriteRouter(this);
+		router.start();
+		readWriteRouter = router;
+	}
+
+	private void stopReadWriteRouter() {
+		ReadWriteRouter router = readWriteRouter;
+		readWriteRouter = null;
+		if (router != null)
+			router.stop();
+	}
+
+	/**
+	 * 数据源是否配置了读写分离，没有配置时不需要分析sql语句是否为只读查询
+	 */
+	public boolean isReadWriteSplit() {
+		return readWriteRouter != null;
+	}
+
+	/**
+	 * 事务中执行更新语句时调用，事务提交后当前线程在readafterwritewindow时间窗口内的查询使用主数据源
+	 * @param tx
+	 */
+	public void registerTransactionWrite(JDBCTransaction tx) {
+		ReadWriteRouter router = readWriteRouter;
+		if (router == null || tx == null)
+			return;
+		try {
+			tx.registerSynchronization(router.getCommitSynchronization());
+		} catch (Exception e) {
+			log.debug("Register read write synchronization failed:" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 获取连接，数据源配置了readreplicas时事务之外的只读查询从副本数据源获取连接
+	 * @param readonly 是否为只读查询
+	 */
+	public Connection requestConnection(boolean readonly) throws SQLException {
+		ReadWriteRouter router = readWriteRouter;
+		if (router == null)
+			return requestConnection();
+		return router.requestConnection(readonly);
+	}
+
+	private synchronized void stopMetaDataRefresher() {
+		if (metaDataRefresher != null) {
+			metaDataRefresher.shutdownNow();
+			metaDataRefresher = null;
+		}
+	}
+
+	/**
+	 * 启动时从快照恢复表元数据后，在后台加载完整的数据库元数据
+	 */
+	private void scheduleDatabaseMetaDataRefresh() {
+		getMetaDataRefresher().execute(new Runnable() {
+			public void run() {
+				refreshDatabaseMetaData();
+			}
+		});
+	}
+
+	/**
+	 * 按照数据源配置的metadatarefreshinterval定时刷新表元数据，启动时加载了全部元数据的数据源刷新全部元数据，
+	 * 按需加载元数据的数据源只刷新已经加载的表
+	 */
+	private void startMetaDataRefresher() {
+		long interval = info.getMetadatarefreshinterval();
+		if (interval <= 0 || this.externalDBName != null)
+			return;
+		getMetaDataRefresher().scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					if (info.getLoadmetadata() != null && info.getLoadmetadata().equalsIgnoreCase("true"))
+						refreshDatabaseMetaData();
+					else
+						refreshLoadedTableMetaDatas();
+				} catch (Throwable e) {
+					log.error("Refresh metadata of datasource[" + info.getName() + "] failed.", e);
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 重新加载缓冲区中已有表的元数据，所有表都刷新成功后才从缓冲区删除数据库中已经不存在的表并保存快照，
+	 * 访问数据库失败时放弃本次刷新，保留缓冲区中的元数据和快照
+	 */
+	private void refreshLoadedTableMetaDatas() {
+		List<String> tableNames = new ArrayList<String>(tableMetaDatasindexByTablename.keySet());
+		List<String> droppedTables = new ArrayList<String>();
+		for (String tableName : tableNames) {
+			if (Thread.currentThread().isInterrupted())
+				return;
+			try {
+				if (queryTableMetaData(null, tableName) == null)
+					droppedTables.add(tableName);
+			} catch (SQLException e) {
+				log.warn("Refresh table[" + tableName + "]'s metadata of datasource[" + info.getName()
+						+ "] failed,keep cached metadata and skip this refresh.", e);
+				return;
+			}
+		}
+		for (String tableName : droppedTables)
+			removeTableMetaData(tableName);
+		saveMetaDataSnapshot();
+	}
+
 	public ColumnMetaData getColumnMetaData(Connection con, String tableName,
 			String columnName) {
 		TableMetaData table = getTableMetaData(con, tableName);
@@ -466,6 +753,9 @@ public class JDBCPool {
 		}
 		
 		p.setProperty(PoolManConstants.PROP_USEPOOL, info.isUsepool() + "");
+		p.setProperty(PoolManConstants.PROP_POOLENGINE, info.getPoolengine());
+		p.setProperty(PoolManConstants.PROP_MAXLIFETIME, info.getMaxlifetime() + "");
+		p.setProperty(PoolManConstants.PROP_STATEMENTCACHESIZE, info.getStatementcachesize() + "");
 		// public final static String PROP_DEFAULTREADONLY =
 		// "defaultReadOnly";
 		// public final static String PROP_DEFAULTTRANSACTIONISOLATION =
@@ -792,11 +1082,18 @@ public class JDBCPool {
 			init();
 			this.initDBProductInfo();
 			log.debug("Load Database Meta Data=" + info.getLoadmetadata());
+			boolean restored = this.externalDBName == null && loadMetaDataSnapshot();
 			if (info.getLoadmetadata() != null
 					&& info.getLoadmetadata().equalsIgnoreCase("true") && !inited ) {
 				log.debug("Load Database[" + info.getName()
 						+ "] Meta Data beginning.....");
-				if(this.externalDBName == null)
+				if(restored)
+				{
+					//从快照恢复了元数据，完整的元数据在后台加载，不阻塞连接池启动
+					inited = true;
+					scheduleDatabaseMetaDataRefresh();
+				}
+				else if(this.externalDBName == null)
 				{
 					
 					try {
@@ -805,6 +1102,7 @@ public class JDBCPool {
 					} finally{
 						inited = true;
 					}
+					saveMetaDataSnapshot();
 					
 				}
 				else
@@ -817,6 +1115,8 @@ public class JDBCPool {
 				log.debug("Ignore Load Database[" + info.getName()
 						+ "] Meta Data .");
 			}
+			startMetaDataRefresher();
+			startReadWriteRouter();
 		} catch (Exception e) {
 			log.debug("JDBCPool: Exception while initializing", e);
 		}
@@ -1175,9 +1475,10 @@ public class JDBCPool {
 		DatabaseMetaData metaData = null;
 		
 		Connection con = null;
+		//刷新期间保留已有的元数据，加载完成后删除数据库中已经不存在的表
+		Set<String> loaded = new HashSet<String>();
+		boolean completed = false;
 		try {
-			tableMetaDatasindexByTablename.clear();
-			tableMetaDatas.clear();
 			con = requestConnection();
 
 			metaData = con.getMetaData();
@@ -1194,9 +1495,8 @@ public class JDBCPool {
 				String tableName = rs.getString("TABLE_NAME");
 				if (tableName.startsWith("BIN$"))
 					continue;
-				if (tableMetaDatasindexByTablename.containsKey(tableName
-						.toLowerCase())) {
-					System.out.println("table [" + tableName + "] 已经加载，忽略！");
+				if (!loaded.add(tableName.toLowerCase())) {
+					log.debug("table [" + tableName + "] 已经加载，忽略！");
 					continue;
 				}
 				log.debug("load table[" + tableName + "]'s metadata.");
@@ -1211,19 +1511,14 @@ public class JDBCPool {
 				// metaData.getExportedKeys(null,null,tableName);
 
 				// this.tableMetaData.put(rsMeta.)
-				this.tableMetaDatasindexByTablename.put(
-						tableName.toLowerCase(), tableMetaData);
-				tableMetaDatas.add(tableMetaData);
+				putTableMetaData(tableMetaData);
 			}
 			rs.close();
+			completed = true;
 
 			// metaData.
-		} catch (SQLException e) {
-			e.printStackTrace();
-			// TODO Auto-generated catch block
-
 		} catch (Exception e) {
-			e.printStackTrace();
+			log.error("Refresh metadata of datasource[" + info.getName() + "] failed,keep cached metadata.", e);
 		}
 
 		finally {
@@ -1242,6 +1537,14 @@ public class JDBCPool {
 			}
 
 		}
+		if (completed) {
+			List<String> tableNames = new ArrayList<String>(tableMetaDatasindexByTablename.keySet());
+			for (String tableName : tableNames) {
+				if (!loaded.contains(tableName))
+					removeTableMetaData(tableName);
+			}
+			saveMetaDataSnapshot();
+		}
 	}
 	/**
 	 * 初始化数据库元数据
@@ -1290,9 +1593,7 @@ public class JDBCPool {
 				// metaData.getExportedKeys(null,null,tableName);
 
 				// this.tableMetaData.put(rsMeta.)
-				this.tableMetaDatasindexByTablename.put(
-						tableName.toLowerCase(), tableMetaData);
-				tableMetaDatas.add(tableMetaData);
+				putTableMetaData(tableMetaData);
 			}
 			rs.close();
 
@@ -1805,10 +2106,24 @@ public class JDBCPool {
 	}
 	/**
 	 * 初始化数据库元数据 added by biaoping.yin on 20080529
-	 * 获取到的表元数据将被直接刷新到缓冲区中
+	 * 获取到的表元数据将被直接刷新到缓冲区中，表不存在或者访问数据库失败时返回null
 	 */
 	public TableMetaData getTableMetaDataFromDatabase(Connection con,
 			String tableName) {
+		try {
+			return queryTableMetaData(con, tableName);
+		} catch (SQLException e) {
+			log.error("load table[" + tableName + "]'s metadata of datasource[" + info.getName() + "] failed.", e);
+			return null;
+		}
+	}
+
+	/**
+	 * 从数据库加载表的元数据并刷新到缓冲区中，表不存在时返回null，访问数据库失败时抛出异常，
+	 * 后台刷新据此区分表已经被删除和刷新失败
+	 */
+	private TableMetaData queryTableMetaData(Connection con,
+			String tableName) throws SQLException {
 
 		
 		if(this.externalDBName == null)
@@ -1852,20 +2167,16 @@ public class JDBCPool {
 					// metaData.getExportedKeys(null,null,tableName);
 	
 					// this.tableMetaData.put(rsMeta.)
-					this.tableMetaDatasindexByTablename.put(
-							tableMetaData.getTableName().toLowerCase(), tableMetaData);
-					tableMetaDatas.add(tableMetaData);
+					putTableMetaData(tableMetaData);
 	
 				}
 				rs.close();
 	
 				// metaData.
 			} catch (SQLException e) {
-				e.printStackTrace();
-				// TODO Auto-generated catch block
-	
+				throw e;
 			} catch (Exception e) {
-				e.printStackTrace();
+				throw new NestedSQLException(e);
 			}
 	
 			finally {
@@ -1891,7 +2202,7 @@ public class JDBCPool {
 		}
 		else
 		{
-			return SQLManager.getInstance().getPool(externalDBName).getTableMetaDataFromDatabase(con, tableName);
+			return SQLManager.getInstance().getPool(externalDBName).queryTableMetaData(con, tableName);
 		}
 
 	}
@@ -2261,6 +2572,21 @@ public class JDBCPool {
 		}
 	}
 
+	/**
+	 * 获取预编译语句缓存的命中统计，没有启用statementcachesize时返回null
+	 * @return
+	 */
+	public StatementCacheStatistic getStatementCacheStatistic() {
+		if(this.externalDBName == null)
+		{
+			return DatasourceUtil.getStatementCacheStatistic(datasource);
+		}
+		else
+		{
+			return SQLManager.getInstance().getPool(externalDBName).getStatementCacheStatistic();
+		}
+	}
+
 	/**
 	 * 获取当前链接池中空闲的链接数 接口只对内部数据源有用，外部数据源返回-1
 	 * 非连接池数据源为实现该功能
@@ -2298,6 +2624,9 @@ public class JDBCPool {
 		System.out.println("Shutdown poolman[" + this.getDBName() + "] start.");
 		log.debug("Shutdown poolman[" + this.getDBName() + "] start.");
 			
+			stopMetaDataRefresher();
+			stopReadWriteRouter();
+			saveMetaDataSnapshot();
 			undeployDataSource();
 			this.stopTime = System.currentTimeMillis();
 			this.status = "stop";
@@ -2313,6 +2642,7 @@ public class JDBCPool {
 				this.preparedStatementPool.clear();
 			if(tableMetaDatasindexByTablename != null)
 				this.tableMetaDatasindexByTablename.clear();
+			this.loadingTableMetaDatas.clear();
 			this.datasource = null;
 			this.inited = false;
 	
@@ -190,7 +190,102 @@ public class JDBCPoolMetaData implements Serializable{
 	 * 当enablejta == true时，必须在poolman.xml文件中指定jndiName属性
 	 */
 	private boolean enablejta =  false;
-    
+
+	/**
+	 * 流式游标查询时使用的jdbc fetchsize，0标识使用驱动的缺省值
+	 */
+	private int queryfetchsize = 0;
+	/**
+	 * 数据源查询结果集元数据缓存的最大记录数，超过时按照LRU策略淘汰，0标识使用缺省容量
+	 */
+	private int sqlcachesize = 0;
+	/**
+	 * 表主键批量分配的缺省块大小，大于1时每次数据库交互为表预留一段主键值，0标识逐个生成主键；
+	 * sequence表按照hi/lo方式分配，主键值为nextval*块大小加上块内偏移，与sequence的步长无关
+	 */
+	private int keyblocksize = 0;
+	/**
+	 * 按表指定主键批量分配块大小，格式为table1:size1,table2:size2，优先级高于keyblocksize
+	 */
+	private String keyblocksizes;
+	/**
+	 * insertBeans/updateBeans/deleteBeans批处理每批提交的最大记录数，0标识所有记录作为一个批次执行
+	 */
+	private int batchsize = 0;
+	/**
+	 * 分批执行批处理并且不在事务环境中时，是否每批记录执行完毕后提交一次
+	 */
+	private boolean batchcommit = false;
+	/**
+	 * 分批执行批处理时，是否在独立线程中将bean转换为sql参数，同时在当前线程中执行上一批记录
+	 */
+	private boolean batchpipeline = false;
+	/**
+	 * 是否缓存分页查询的总记录数，相同sql和参数的后续分页查询直接使用缓存的总记录数
+	 */
+	private boolean countcache = false;
+	/**
+	 * 缓存的总记录数的有效时间，单位毫秒
+	 */
+	private long countcachettl = 60000L;
+	/**
+	 * 缓存的总记录数的最大条数
+	 */
+	private int countcachesize = 1000;
+	/**
+	 * 是否使用数组存储查询结果记录，同一结果集结构的所有记录共用一个字段名称索引
+	 */
+	private boolean compactrecord = false;
+	/**
+	 * 连接池实现，generic为基于GenericObjectPool的连接池，concurrent为无锁连接池，高并发时借还连接不争用池锁
+	 */
+	private String poolengine = "generic";
+	/**
+	 * 连接的最大生存时间，单位毫秒，超过后连接在空闲或者归还时被关闭，小于等于0时不限制，只对concurrent连接池有效
+	 */
+	private long maxlifetime = -1L;
+	/**
+	 * 是否按照sql语句统计执行次数、失败次数、记录数和耗时分布
+	 */
+	private boolean sqlstatistic = false;
+	/**
+	 * 慢sql阈值，单位毫秒，执行耗时超过阈值的sql连同参数一起输出到慢sql日志，小于等于0时不输出
+	 */
+	private long slowsqlthreshold = -1L;
+	/**
+	 * 表元数据快照文件路径，启动时先从快照文件恢复表元数据，停止连接池和刷新元数据后重新写入快照，为空时不使用快照
+	 */
+	private String metadatasnapshot;
+	/**
+	 * 后台刷新已加载表元数据的间隔时间，单位毫秒，小于等于0时不刷新
+	 */
+	private long metadatarefreshinterval = -1L;
+	/**
+	 * 每个物理连接缓存的预编译语句数，按照sql语句、结果集类型和并发类型缓存，缓存满时关闭最久未使用的语句，
+	 * 小于等于0时不缓存，大于0时替代poolPreparedStatements语句池
+	 */
+	private int statementcachesize = 0;
+	/**
+	 * 读写分离的只读副本数据源，格式为"数据源名称[:权重],..."，事务之外的select语句路由到副本，为空时不分离
+	 */
+	private String readreplicas;
+	/**
+	 * 副本选择策略，roundrobin(加权轮询，缺省)或者leastactive(最少活动连接)
+	 */
+	private String replicaselector = ReadWriteRouter.SELECTOR_ROUNDROBIN;
+	/**
+	 * 线程执行更新语句后查询继续使用主库的时间窗口，单位毫秒，小于等于0时不限制
+	 */
+	private long readafterwritewindow = -1L;
+	/**
+	 * 副本健康检查的间隔时间，单位毫秒，小于等于0时不检查
+	 */
+	private long replicahealthcheckinterval = 30000L;
+	/**
+	 * 副本连续失败多少次后移出路由
+	 */
+	private int replicafailurethreshold = 3;
+
     
     
    
@@ -824,6 +919,21 @@ public class JDBCPoolMetaData implements Serializable{
 			this.setDatasourceParameters(getDatasourceParameters());
 			this.setSeqfunction(extenalInfo.getSeqfunction());
 			this.setRETURN_GENERATED_KEYS(extenalInfo.getRETURN_GENERATED_KEYS());
+			this.setQueryfetchsize(extenalInfo.getQueryfetchsize());
+			this.setSqlcachesize(extenalInfo.getSqlcachesize());
+			this.setKeyblocksize(extenalInfo.getKeyblocksize());
+			this.setKeyblocksizes(extenalInfo.getKeyblocksizes());
+			this.setBatchsize(extenalInfo.getBatchsize());
+			this.setBatchcommit(extenalInfo.isBatchcommit());
+			this.setBatchpipeline(extenalInfo.isBatchpipeline());
+			this.setCountcache(extenalInfo.isCountcache());
+			this.setCountcachettl(extenalInfo.getCountcachettl());
+			this.setCountcachesize(extenalInfo.getCountcachesize());
+			this.setCompactrecord(extenalInfo.isCompactrecord());
+			this.setSqlstatistic(extenalInfo.isSqlstatistic());
+			this.setSlowsqlthreshold(extenalInfo.getSlowsqlthreshold());
+			this.setMetadatasnapshot(extenalInfo.getMetadatasnapshot());
+			this.setMetadatarefreshinterval(extenalInfo.getMetadatarefreshinterval());
 //			this.setNeadGetGenerateKeys(extenalInfo.isNeadGetGenerateKeys());
 		}
 	}
@@ -986,6 +1096,218 @@ public class JDBCPoolMetaData implements Serializable{
 		this.RETURN_GENERATED_KEYS = rETURN_GENERATED_KEYS;
 	}
 
+	public int getQueryfetchsize() {
+		return queryfetchsize;
+	}
+
+	public void setQueryfetchsize(int queryfetchsize) {
+		this.queryfetchsize = queryfetchsize;
+	}
+
+	public int getSqlcachesize() {
+		return sqlcachesize;
+	}
+
+	public void setSqlcachesize(int sqlcachesize) {
+		this.sqlcachesize = sqlcachesize;
+	}
+
+	public int getKeyblocksize() {
+		return keyblocksize;
+	}
+
+	public void setKeyblocksize(int keyblocksize) {
+		this.keyblocksize = keyblocksize;
+	}
+
+	public String getKeyblocksizes() {
+		return keyblocksizes;
+	}
+
+	public void setKeyblocksizes(String keyblocksizes) {
+		this.keyblocksizes = keyblocksizes;
+	}
+
+	public int getBatchsize() {
+		return batchsize;
+	}
+
+	public void setBatchsize(int batchsize) {
+		this.batchsize = batchsize;
+	}
+
+	public boolean isBatchcommit() {
+		return batchcommit;
+	}
+
+	public void setBatchcommit(boolean batchcommit) {
+		this.batchcommit = batchcommit;
+	}
+
+	public boolean isBatchpipeline() {
+		return batchpipeline;
+	}
+
+	public void setBatchpipeline(boolean batchpipeline) {
+		this.batchpipeline = batchpipeline;
+	}
+
+	public boolean isCountcache() {
+		return countcache;
+	}
+
+	public void setCountcache(boolean countcache) {
+		this.countcache = countcache;
+	}
+
+	public long getCountcachettl() {
+		return countcachettl;
+	}
+
+	public void setCountcachettl(long countcachettl) {
+		this.countcachettl = countcachettl;
+	}
+
+	public int getCountcachesize() {
+		return countcachesize;
+	}
+
+	public void setCountcachesize(int countcachesize) {
+		this.countcachesize = countcachesize;
+	}
+
+	public boolean isCompactrecord() {
+		return compactrecord;
+	}
+
+	public void setCompactrecord(boolean compactrecord) {
+		this.compactrecord = compactrecord;
+	}
+
+	public String getPoolengine() {
+		return poolengine;
+	}
+
+	public void setPoolengine(String poolengine) {
+		this.poolengine = poolengine;
+	}
+
+	public long getMaxlifetime() {
+		return maxlifetime;
+	}
+
+	public void setMaxlifetime(long maxlifetime) {
+		this.maxlifetime = maxlifetime;
+	}
+
+	public boolean isSqlstatistic() {
+		return sqlstatistic;
+	}
+
+	public void setSqlstatistic(boolean sqlstatistic) {
+		this.sqlstatistic = sqlstatistic;
+	}
+
+	public long getSlowsqlthreshold() {
+		return slowsqlthreshold;
+	}
+
+	public void setSlowsqlthreshold(long slowsqlthreshold) {
+		this.slowsqlthreshold = slowsqlthreshold;
+	}
+
+	public String getMetadatasnapshot() {
+		return metadatasnapshot;
+	}
+
+	public void setMetadatasnapshot(String metadatasnapshot) {
+		this.metadatasnapshot = metadatasnapshot;
+	}
+
+	public long getMetadatarefreshinterval() {
+		return metadatarefreshinterval;
+	}
+
+	public void setMetadatarefreshinterval(long metadatarefreshinterval) {
+		this.metadatarefreshinterval = metadatarefreshinterval;
+	}
+
+	public int getStatementcachesize() {
+		return statementcachesize;
+	}
+
+	public void setStatementcachesize(int statementcachesize) {
+		this.statementcachesize = statementcachesize;
+	}
+
+	public String getReadreplicas() {
+		return readreplicas;
+	}
+
+	public void setReadreplicas(String readreplicas) {
+		this.readreplicas = readreplicas;
+	}
+
+	public String getReplicaselector() {
+		return replicaselector;
+	}
+
+	public void setReplicaselector(String replicaselector) {
+		this.replicaselector = replicaselector;
+	}
+
+	public long getReadafterwritewindow() {
+		return readafterwritewindow;
+	}
+
+	public void setReadafterwritewindow(long readafterwritewindow) {
+		this.readafterwritewindow = readafterwritewindow;
+	}
+
+	public long getReplicahealthcheckinterval() {
+		return replicahealthcheckinterval;
+	}
+
+	public void setReplicahealthcheckinterval(long replicahealthcheckinterval) {
+		this.replicahealthcheckinterval = replicahealthcheckinterval;
+	}
+
+	public int getReplicafailurethreshold() {
+		return replicafailurethreshold;
+	}
+
+	public void setReplicafailurethreshold(int replicafailurethreshold) {
+		this.replicafailurethreshold = replicafailurethreshold;
+	}
+
+	/**
+	 * 获取表的主键批量分配块大小，keyblocksizes中没有指定表时返回keyblocksize
+	 * @param tableName
+	 * @return
+	 */
+	public int getKeyblocksize(String tableName) {
+		if(keyblocksizes != null && tableName != null)
+		{
+			String[] tables = keyblocksizes.split(",");
+			for(int i = 0; i < tables.length; i ++)
+			{
+				String[] table = tables[i].split(":");
+				if(table.length == 2 && table[0].trim().equalsIgnoreCase(tableName))
+				{
+					try
+					{
+						return Integer.parseInt(table[1].trim());
+					}
+					catch(NumberFormatException e)
+					{
+						//非法的配置忽略，使用缺省块大小
+					}
+				}
+			}
+		}
+		return keyblocksize;
+	}
+
 //	public boolean isNeadGetGenerateKeys() {
 //		return neadGetGenerateKeys;
 //	}
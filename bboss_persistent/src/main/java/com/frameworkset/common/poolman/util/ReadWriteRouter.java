@@ -0,0 +1,429 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+
+/**
+ *
+ *
+ * <p>Title: ReadWriteRouter.java</p>
+ *
+ * <p>Description: 读写分离路由器，由配置了readreplicas的主数据源创建。
+ * 事务之外执行的select语句从只读副本数据源获取连接，副本按照权重轮询(roundrobin)或者最少活动连接(leastactive)选择；
+ * 事务中的语句、更新语句以及同一线程在执行更新或者提交事务之后readafterwritewindow时间窗口内执行的查询使用主数据源的连接，保证读到自己写入的数据。
+ * 后台任务按照replicahealthcheckinterval对副本执行校验sql(副本数据源的validationQuery)，
+ * 连续失败replicafailurethreshold次(包括获取连接失败)的副本被移出路由，校验成功后重新加入；
+ * 没有可用副本时查询回退到主数据源。
+ * 副本是poolman.xml中的其他数据源，配置格式为"数据源名称[:权重],..."，权重缺省为1，
+ * 副本与主库的数据库类型必须相同，查询使用主数据源的适配器和拦截器</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ReadWriteRouter {
+	private static Logger log = Logger.getLogger(ReadWriteRouter.class);
+	public static final String SELECTOR_ROUNDROBIN = "roundrobin";
+	public static final String SELECTOR_LEASTACTIVE = "leastactive";
+
+	private final JDBCPool primary;
+	private final List<Replica> replicas;
+	private final boolean leastActive;
+	private final long readAfterWriteWindow;
+	private final int failureThreshold;
+	/**
+	 * 当前线程最近一次在主库执行更新的时间
+	 */
+	private final ThreadLocal<Long> lastWrite = new ThreadLocal<Long>();
+	private ScheduledExecutorService healthChecker;
+
+	public ReadWriteRouter(JDBCPool primary) {
+		this.primary = primary;
+		JDBCPoolMetaData info = primary.getJDBCPoolMetadata();
+		this.replicas = parseReplicas(info.getReadreplicas());
+		this.leastActive = SELECTOR_LEASTACTIVE.equalsIgnoreCase(info.getReplicaselector());
+		this.readAfterWriteWindow = info.getReadafterwritewindow();
+		this.failureThreshold = info.getReplicafailurethreshold() > 0 ? info.getReplicafailurethreshold() : 1;
+	}
+
+	private static List<Replica> parseReplicas(String readreplicas) {
+		List<Replica> replicas = new ArrayList<Replica>();
+		if (readreplicas == null)
+			return replicas;
+		String[] items = readreplicas.split(",");
+		for (int i = 0; i < items.length; i++) {
+			String item = items[i].trim();
+			if (item.length() == 0)
+				continue;
+			int weight = 1;
+			int idx = item.indexOf(':');
+			if (idx > 0) {
+				weight = Integer.parseInt(item.substring(idx + 1).trim());
+				item = item.substring(0, idx).trim();
+			}
+			if (weight > 0)
+				replicas.add(new Replica(item, weight));
+		}
+		return replicas;
+	}
+
+	/**
+	 * 判断sql是否为可以路由到副本的只读查询，只有从表或者视图中查询数据的select语句可以路由到副本，
+	 * 以下语句在主库执行：锁定读(for update/for share/lock in share mode)、select into、
+	 * 获取序列值(nextval/currval/next value for)和自增值的语句、没有from子句或者from dual的函数调用语句、
+	 * 以及from之后直接调用表函数的语句，这些语句可能修改数据库状态，或者在副本上执行失败、返回与主库不一致的结果
+	 */
+	public static boolean isReadOnlySQL(String sql) {
+		if (sql == null)
+			return false;
+		int len = sql.length();
+		int i = 0;
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c) || c == '(') {
+				i++;
+			} else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				if (end < 0)
+					return false;
+				i = end + 2;
+			} else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i + 2);
+				if (end < 0)
+					return false;
+				i = end + 1;
+			} else {
+				break;
+			}
+		}
+		if (!sql.regionMatches(true, i, "select", 0, 6))
+			return false;
+		List<String> tokens = tokenize(sql, i + 6);
+		boolean hasFrom = false;
+		for (int t = 0; t < tokens.size(); t++) {
+			String token = tokens.get(t);
+			if (PRIMARY_ONLY_WORDS.contains(token.substring(token.lastIndexOf('.') + 1)))
+				return false;
+			if (token.equals("for") && (next(tokens, t, 1).equals("update") || next(tokens, t, 1).equals("share")))
+				return false;
+			if (token.equals("lock") && next(tokens, t, 1).equals("in") && next(tokens, t, 2).equals("share"))
+				return false;
+			if (token.equals("next") && next(tokens, t, 1).equals("value") && next(tokens, t, 2).equals("for"))
+				return false;
+			if (token.equals("from")) {
+				String table = next(tokens, t, 1);
+				if (table.equals("dual") || table.endsWith(".dual") || (!table.equals(CALL) && next(tokens, t, 2).equals(CALL)))
+					return false;
+				hasFrom = true;
+			}
+		}
+		return hasFrom;
+	}
+
+	/**
+	 * 在主库执行的语句中出现的关键字和函数名称
+	 */
+	private static final Set<String> PRIMARY_ONLY_WORDS = new HashSet<String>(Arrays.asList("into", "nextval", "currval", "setval", "last_insert_id", "@@identity",
+			"scope_identity", "identity_val_local", "get_lock", "release_lock", "sys_guid"));
+
+	/**
+	 * 标识符之后紧跟括号时，在标识符后面追加的函数调用标记
+	 */
+	private static final String CALL = "(";
+
+	private static String next(List<String> tokens, int index, int offset) {
+		int i = index + offset;
+		return i < tokens.size() ? tokens.get(i) : "";
+	}
+
+	/**
+	 * 将sql拆分为小写的标识符(包括schema.name形式的限定名称)，跳过字符串常量、带引号的标识符和注释；
+	 * 标识符之后紧跟的左括号作为单独的CALL标记，用于识别函数调用
+	 */
+	private static List<String> tokenize(String sql, int start) {
+		List<String> tokens = new ArrayList<String>();
+		int len = sql.length();
+		int i = start;
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"' || c == '`') {
+				int end = sql.indexOf(c, i + 1);
+				if (end < 0)
+					break;
+				tokens.add("?");
+				i = end + 1;
+			} else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				if (end < 0)
+					break;
+				i = end + 2;
+			} else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i + 2);
+				if (end < 0)
+					break;
+				i = end + 1;
+			} else if (Character.isLetterOrDigit(c) || c == '_' || c == '@' || c == '$' || c == '#') {
+				int begin = i;
+				while (i < len) {
+					c = sql.charAt(i);
+					if (!(Character.isLetterOrDigit(c) || c == '_' || c == '@' || c == '$' || c == '#' || c == '.'))
+						break;
+					i++;
+				}
+				tokens.add(sql.substring(begin, i).toLowerCase());
+				int j = i;
+				while (j < len && Character.isWhitespace(sql.charAt(j)))
+					j++;
+				if (j < len && sql.charAt(j) == '(') {
+					tokens.add(CALL);
+					i = j + 1;
+				}
+			} else {
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * 记录当前线程在主库执行更新的时间，在readafterwritewindow时间窗口内当前线程的查询使用主库连接
+	 */
+	public void markWrite() {
+		if (readAfterWriteWindow > 0)
+			lastWrite.set(Long.valueOf(System.currentTimeMillis()));
+	}
+
+	/**
+	 * 事务结束后记录更新时间的同步器，事务中执行了更新语句时登记到事务中；
+	 * 读写事务中的更新语句自动提交，因此事务回滚时同样记录更新时间
+	 */
+	public Synchronization getCommitSynchronization() {
+		return commitSynchronization;
+	}
+
+	private final Synchronization commitSynchronization = new Synchronization() {
+		public void beforeCompletion() {
+		}
+
+		public void afterCompletion(int status) {
+			markWrite();
+		}
+	};
+
+	/**
+	 * 获取连接，只读查询优先从副本获取，其他语句从主数据源获取并记录更新时间
+	 * @param readonly 是否为事务之外的只读查询
+	 */
+	public Connection requestConnection(boolean readonly) throws SQLException {
+		if (!readonly) {
+			markWrite();
+			return primary.requestConnection();
+		}
+		if (readAfterWriteWindow > 0) {
+			Long last = lastWrite.get();
+			if (last != null) {
+				if (System.currentTimeMillis() - last.longValue() < readAfterWriteWindow)
+					return primary.requestConnection();
+				lastWrite.remove();
+			}
+		}
+		List<Replica> tried = null;
+		Replica replica;
+		while ((replica = select(tried)) != null) {
+			JDBCPool pool = replica.getPool();
+			if (pool != null) {
+				try {
+					Connection con = pool.requestConnection();
+					replica.success();
+					return con;
+				} catch (SQLException e) {
+					log.error("Request connection from read replica[" + replica.dbname + "] of datasource["
+							+ primary.getDBName() + "] failed, try next replica.", e);
+				}
+			}
+			replica.failure(failureThreshold);
+			if (tried == null)
+				tried = new ArrayList<Replica>(replicas.size());
+			tried.add(replica);
+		}
+		return primary.requestConnection();
+	}
+
+	/**
+	 * 从健康的副本中选择一个，没有可用副本时返回null
+	 */
+	private Replica select(List<Replica> excludes) {
+		Replica best = null;
+		if (leastActive) {
+			int bestActive = 0;
+			for (int i = 0; i < replicas.size(); i++) {
+				Replica replica = replicas.get(i);
+				if (!replica.healthy || (excludes != null && excludes.contains(replica)))
+					continue;
+				JDBCPool pool = replica.getPool();
+				int active = pool == null ? 0 : Math.max(pool.getNumActive(), 0);
+				if (best == null || (long) active * best.weight < (long) bestActive * replica.weight) {
+					best = replica;
+					bestActive = active;
+				}
+			}
+			return best;
+		}
+		// 平滑加权轮询
+		synchronized (replicas) {
+			int total = 0;
+			for (int i = 0; i < replicas.size(); i++) {
+				Replica replica = replicas.get(i);
+				if (!replica.healthy || (excludes != null && excludes.contains(replica)))
+					continue;
+				replica.currentWeight += replica.weight;
+				total += replica.weight;
+				if (best == null || replica.currentWeight > best.currentWeight)
+					best = replica;
+			}
+			if (best != null)
+				best.currentWeight -= total;
+		}
+		return best;
+	}
+
+	public void start() {
+		long interval = primary.getJDBCPoolMetadata().getReplicahealthcheckinterval();
+		if (replicas.isEmpty() || interval <= 0)
+			return;
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ReplicaHealthChecker-" + primary.getDBName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		executor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				for (int i = 0; i < replicas.size(); i++) {
+					try {
+						check(replicas.get(i));
+					} catch (Throwable e) {
+						log.error("Check read replica[" + replicas.get(i).dbname + "] of datasource["
+								+ primary.getDBName() + "] failed.", e);
+					}
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		healthChecker = executor;
+	}
+
+	public void stop() {
+		if (healthChecker != null) {
+			healthChecker.shutdownNow();
+			healthChecker = null;
+		}
+	}
+
+	/**
+	 * 执行副本数据源的校验sql，没有配置校验sql时只检查能否获取连接
+	 */
+	private void check(Replica replica) {
+		JDBCPool pool = replica.getPool();
+		if (pool == null) {
+			replica.failure(failureThreshold);
+			return;
+		}
+		Connection con = null;
+		Statement stmt = null;
+		try {
+			con = pool.requestConnection();
+			String validationQuery = pool.getJDBCPoolMetadata().getValidationQuery();
+			if (validationQuery != null && validationQuery.trim().length() > 0) {
+				stmt = con.createStatement();
+				stmt.execute(validationQuery);
+			}
+			replica.success();
+		} catch (SQLException e) {
+			log.error("Validate read replica[" + replica.dbname + "] of datasource[" + primary.getDBName()
+					+ "] failed: " + e.getMessage());
+			replica.failure(failureThreshold);
+		} finally {
+			JDBCPool.closeStatement(stmt);
+			JDBCPool.closeConnection(con);
+		}
+	}
+
+	/**
+	 * 当前可用的副本数据源名称
+	 */
+	public List<String> getHealthyReplicas() {
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get(i);
+			if (replica.healthy)
+				names.add(replica.dbname);
+		}
+		return Collections.unmodifiableList(names);
+	}
+
+	private static class Replica {
+		final String dbname;
+		final int weight;
+		int currentWeight;
+		volatile boolean healthy = true;
+		private int failures;
+
+		Replica(String dbname, int weight) {
+			this.dbname = dbname;
+			this.weight = weight;
+		}
+
+		JDBCPool getPool() {
+			return SQLManager.getInstance().getPoolIfExist(dbname);
+		}
+
+		synchronized void success() {
+			failures = 0;
+			if (!healthy) {
+				healthy = true;
+				log.info("Read replica[" + dbname + "] recovered.");
+			}
+		}
+
+		synchronized void failure(int threshold) {
+			failures++;
+			if (healthy && failures >= threshold) {
+				healthy = false;
+				log.info("Read replica[" + dbname + "] removed after " + failures + " failures.");
+			}
+		}
+	}
+}
@@ -61,6 +61,7 @@ import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
 import com.frameworkset.common.poolman.sql.PrimaryKeyMetaData;
 import com.frameworkset.common.poolman.sql.TableMetaData;
 import com.frameworkset.common.poolman.sql.UpdateSQL;
+import com.frameworkset.commons.dbcp.StatementCacheStatistic;
 import com.frameworkset.orm.adapter.DB;
 import com.frameworkset.orm.adapter.DB.PagineSql;
 import com.frameworkset.orm.adapter.DBFactory;
@@ -1237,6 +1238,20 @@ public class SQLUtil implements Serializable{
 		
 	}
 	
+	/**
+	 * 获取数据源预编译语句缓存的命中统计
+	 * 接口只对内部数据源有用，外部数据源和没有启用statementcachesize的数据源返回null
+	 * @return
+	 */
+	public static StatementCacheStatistic getStatementCacheStatistic(String dbName)
+	{
+		JDBCPool pool = SQLManager.getInstance().getPool(dbName);
+		if(pool != null)
+			return pool.getStatementCacheStatistic();
+		else
+			return null;
+	}
+	
 	/**
      * 获取当前链接池中空闲的链接数
      * 接口只对内部数据源有用，外部数据源返回-1
@@ -34,6 +34,8 @@ import java.util.logging.Logger;
 import javax.sql.DataSource;
 
 import com.frameworkset.commons.pool.KeyedObjectPoolFactory;
+import com.frameworkset.commons.pool.ObjectPool;
+import com.frameworkset.commons.pool.impl.ConcurrentObjectPool;
 import com.frameworkset.commons.pool.impl.GenericKeyedObjectPool;
 import com.frameworkset.commons.pool.impl.GenericKeyedObjectPoolFactory;
 import com.frameworkset.commons.pool.impl.GenericObjectPool;
@@ -293,6 +295,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setMaxActive(maxActive);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setMaxActive(maxActive);
+        }
     }
 
     /**
@@ -331,6 +336,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setMaxIdle(maxIdle);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setMaxIdle(maxIdle);
+        }
     }
 
     /**
@@ -360,6 +368,9 @@ public class BasicDataSource implements DataSource {
        if (connectionPool != null) {
            connectionPool.setMinIdle(minIdle);
        }
+       if (concurrentPool != null) {
+           concurrentPool.setMinIdle(minIdle);
+       }
     }
 
     /**
@@ -429,6 +440,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setMaxWait(maxWait);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setMaxWait(maxWait);
+        }
     }
 
     /**
@@ -533,6 +547,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setTestOnBorrow(testOnBorrow);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setTestOnBorrow(testOnBorrow);
+        }
     }
 
     /**
@@ -565,6 +582,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setTestOnReturn(testOnReturn);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setTestOnReturn(testOnReturn);
+        }
     }
 
     /**
@@ -597,6 +617,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+        }
     }
 
     /**
@@ -629,6 +652,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+        }
     }
 
     /**
@@ -660,6 +686,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+        }
     }
 
     /**
@@ -693,6 +722,9 @@ public class BasicDataSource implements DataSource {
         if (connectionPool != null) {
             connectionPool.setTestWhileIdle(testWhileIdle);
         }
+        if (concurrentPool != null) {
+            concurrentPool.setTestWhileIdle(testWhileIdle);
+        }
     }
 
     /**
@@ -704,6 +736,8 @@ public class BasicDataSource implements DataSource {
     public synchronized int getNumActive() {
         if (connectionPool != null) {
             return connectionPool.getNumActive();
+        } else if (concurrentPool != null) {
+            return concurrentPool.getNumActive();
         } else {
             return 0;
         }
@@ -719,6 +753,8 @@ public class BasicDataSource implements DataSource {
     public synchronized int getNumIdle() {
         if (connectionPool != null) {
             return connectionPool.getNumIdle();
+        } else if (concurrentPool != null) {
+            return concurrentPool.getNumIdle();
         } else {
             return 0;
         }
@@ -734,6 +770,8 @@ public class BasicDataSource implements DataSource {
     public int _getNumActive() {
         if (connectionPool != null) {
             return connectionPool._getNumActive();
+        } else if (concurrentPool != null) {
+            return concurrentPool._getNumActive();
         } else {
             return 0;
         }
@@ -749,6 +787,8 @@ public class BasicDataSource implements DataSource {
     public int _getNumIdle() {
         if (connectionPool != null) {
             return connectionPool._getNumIdle();
+        } else if (concurrentPool != null) {
+            return concurrentPool._getNumIdle();
         } else {
             return 0;
         }
@@ -763,6 +803,8 @@ public class BasicDataSource implements DataSource {
     public int getMaxNumActive() {
         if (connectionPool != null) {
             return connectionPool.getMaxNumActive();
+        } else if (concurrentPool != null) {
+            return concurrentPool.getMaxNumActive();
         } else {
             return 0;
         }
@@ -1052,10 +1094,130 @@ public class BasicDataSource implements DataSource {
         return restartNeeded;
     }
 
+    /**
+     * Pool engine backed by {@link GenericObjectPool}, the default.
+     */
+    public static final String POOL_ENGINE_GENERIC = "generic";
+
+    /**
+     * Pool engine backed by the lock-free {@link ConcurrentObjectPool}.
+     */
+    public static final String POOL_ENGINE_CONCURRENT = "concurrent";
+
+    /**
+     * The pool engine used to manage connections, {@link #POOL_ENGINE_GENERIC}
+     * or {@link #POOL_ENGINE_CONCURRENT}.
+     */
+    protected volatile String poolEngine = POOL_ENGINE_GENERIC;
+
+    /**
+     * @return the pool engine used to manage connections
+     */
+    public String getPoolEngine() {
+        return poolEngine;
+    }
+
+    /**
+     * <p>Sets the pool engine used to manage connections.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param poolEngine {@link #POOL_ENGINE_GENERIC} or {@link #POOL_ENGINE_CONCURRENT}
+     */
+    public void setPoolEngine(String poolEngine) {
+        this.poolEngine = poolEngine;
+        this.restartNeeded = true;
+    }
+
+    /**
+     * The maximum lifetime in milliseconds of a connection, connections
+     * older than this are closed when idle or when returned. Only supported
+     * by the concurrent pool engine, non-positive means no limit.
+     */
+    protected volatile long maxLifetime = -1L;
+
+    /**
+     * @return the maximum lifetime in milliseconds of a connection
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * @param maxLifetime the maximum lifetime in milliseconds of a connection
+     */
+    public synchronized void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+        if (concurrentPool != null) {
+            concurrentPool.setMaxLifetime(maxLifetime);
+        }
+    }
+
+    /**
+     * Max number of prepared statements cached per physical connection by
+     * {@link CachingConnection}, least recently used statements are closed
+     * when the cache is full. Non-positive disables the cache. When enabled
+     * it replaces the {@link #poolPreparedStatements} statement pool.
+     */
+    protected int statementCacheSize = 0;
+
+    /**
+     * Hit/miss statistic shared by the statement caches of all connections.
+     */
+    protected final StatementCacheStatistic statementCacheStatistic = new StatementCacheStatistic();
+
+    /**
+     * @return max number of prepared statements cached per connection
+     */
+    public synchronized int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * <p>Sets the max number of prepared statements cached per connection.</p>
+     * <p>
+     * Note: this method currently has no effect once the pool has been
+     * initialized.  The pool is initialized the first time one of the
+     * following methods is invoked: <code>getConnection, setLogwriter,
+     * setLoginTimeout, getLoginTimeout, getLogWriter.</code></p>
+     *
+     * @param statementCacheSize max cached statements per connection, non-positive disables the cache
+     */
+    public synchronized void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        this.restartNeeded = true;
+    }
+
+    /**
+     * [Read Only] The statement cache statistic of this data source, null if
+     * the statement cache is disabled.
+     *
+     * @return the statement cache statistic
+     */
+    public StatementCacheStatistic _getStatementCacheStatistic() {
+        return statementCacheSize > 0 ? statementCacheStatistic : null;
+    }
+
     /**
      * The object pool that internally manages our connections.
      */
     protected volatile GenericObjectPool connectionPool = null;
+
+    /**
+     * The lock-free object pool that manages our connections when the
+     * concurrent pool engine is selected, <code>connectionPool</code> is null then.
+     */
+    protected volatile ConcurrentObjectPool concurrentPool = null;
+
+    /**
+     * @return the object pool that internally manages our connections
+     */
+    protected ObjectPool getObjectPool() {
+        return concurrentPool != null ? concurrentPool : connectionPool;
+    }
     
     /**
      * The connection properties that will be sent to our JDBC driver when
@@ -1353,8 +1515,9 @@ public class BasicDataSource implements DataSource {
      */
     public synchronized void close() throws SQLException {
         closed = true;
-        GenericObjectPool oldpool = connectionPool;
+        ObjectPool oldpool = getObjectPool();
         connectionPool = null;
+        concurrentPool = null;
         dataSource = null;
         try {
             if (oldpool != null) {
@@ -1439,7 +1602,7 @@ public class BasicDataSource implements DataSource {
         
         try {
             for (int i = 0 ; i < initialSize ; i++) {
-                connectionPool.addObject();
+                getObjectPool().addObject();
             }
         } catch (Exception e) {
             throw new SQLNestedException("Error preloading the connection pool", e);
@@ -1530,6 +1693,15 @@ public class BasicDataSource implements DataSource {
      * so subclasses can replace the implementation class.
      */
     protected void createConnectionPool() {
+        if (POOL_ENGINE_CONCURRENT.equalsIgnoreCase(poolEngine)) {
+            if ((abandonedConfig != null) && (abandonedConfig.getRemoveAbandoned())) {
+                log("Concurrent pool engine does not support removeAbandoned, use generic pool engine instead.");
+            }
+            else {
+                createConcurrentPool();
+                return;
+            }
+        }
         // Create an object pool to contain our active connections
         GenericObjectPool gop;
         if ((abandonedConfig != null) && (abandonedConfig.getRemoveAbandoned())) {
@@ -1551,6 +1723,25 @@ public class BasicDataSource implements DataSource {
         connectionPool = gop;
     }
 
+    /**
+     * Creates the lock-free connection pool used by the concurrent pool engine.
+     */
+    protected void createConcurrentPool() {
+        ConcurrentObjectPool cop = new ConcurrentObjectPool();
+        cop.setMaxActive(maxActive);
+        cop.setMaxIdle(maxIdle);
+        cop.setMinIdle(minIdle);
+        cop.setMaxWait(maxWait);
+        cop.setTestOnBorrow(testOnBorrow);
+        cop.setTestOnReturn(testOnReturn);
+        cop.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+        cop.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+        cop.setTestWhileIdle(testWhileIdle);
+        cop.setMaxLifetime(maxLifetime);
+        cop.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+        concurrentPool = cop;
+    }
+
     /**
      * Creates the actual data source instance.  This method only exists so
      * subclasses can replace the implementation class.
@@ -1558,7 +1749,7 @@ public class BasicDataSource implements DataSource {
      * @throws SQLException if unable to create a datasource instance
      */
     protected void createDataSourceInstance() throws SQLException {
-        PoolingDataSource pds = new PoolingDataSource(connectionPool);
+        PoolingDataSource pds = new PoolingDataSource(getObjectPool());
         pds.setAccessToUnderlyingConnectionAllowed(isAccessToUnderlyingConnectionAllowed());
         pds.setLogWriter(logWriter);
         dataSource = pds;
@@ -1579,7 +1770,7 @@ public class BasicDataSource implements DataSource {
         try {
             connectionFactory =
                 new PoolableConnectionFactory(driverConnectionFactory,
-                                              connectionPool,
+                                              getObjectPool(),
                                               statementPoolFactory,
                                               validationQuery,
                                               validationQueryTimeout,
@@ -1589,6 +1780,7 @@ public class BasicDataSource implements DataSource {
                                               defaultTransactionIsolation,
                                               defaultCatalog,
                                               configuration);
+            connectionFactory.setStatementCache(statementCacheSize, statementCacheStatistic);
             validateConnectionFactory(connectionFactory);
         } catch (RuntimeException e) {
             throw e;
@@ -79,6 +79,9 @@ public class BasicDataSourceFactory implements ObjectFactory {
     private final static String PROP_POOLPREPAREDSTATEMENTS = "poolPreparedStatements";
     private final static String PROP_MAXOPENPREPAREDSTATEMENTS = "maxOpenPreparedStatements";
     private final static String PROP_CONNECTIONPROPERTIES = "connectionProperties";
+    private final static String PROP_POOLENGINE = "poolEngine";
+    private final static String PROP_MAXLIFETIME = "maxLifetime";
+    private final static String PROP_STATEMENTCACHESIZE = "statementCacheSize";
 
     private final static String[] ALL_PROPERTIES = {
         PROP_DEFAULTAUTOCOMMIT,
@@ -109,7 +112,10 @@ public class BasicDataSourceFactory implements ObjectFactory {
         PROP_LOGABANDONED,
         PROP_POOLPREPAREDSTATEMENTS,
         PROP_MAXOPENPREPAREDSTATEMENTS,
-        PROP_CONNECTIONPROPERTIES
+        PROP_CONNECTIONPROPERTIES,
+        PROP_POOLENGINE,
+        PROP_MAXLIFETIME,
+        PROP_STATEMENTCACHESIZE
     };
 
     // -------------------------------------------------- ObjectFactory Methods
@@ -328,6 +334,21 @@ public class BasicDataSourceFactory implements ObjectFactory {
             dataSource.setMaxOpenPreparedStatements(Integer.parseInt(value));
         }
 
+        value = properties.getProperty(PROP_POOLENGINE);
+        if (value != null) {
+            dataSource.setPoolEngine(value);
+        }
+
+        value = properties.getProperty(PROP_MAXLIFETIME);
+        if (value != null) {
+            dataSource.setMaxLifetime(Long.parseLong(value));
+        }
+
+        value = properties.getProperty(PROP_STATEMENTCACHESIZE);
+        if (value != null) {
+            dataSource.setStatementCacheSize(Integer.parseInt(value));
+        }
+
         value = properties.getProperty(PROP_INITCONNECTIONSQLS);
         if (value != null) {
             StringTokenizer tokenizer = new StringTokenizer(value, ";");
@@ -0,0 +1,397 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.commons.dbcp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ *
+ * <p>Title: CachingConnection.java</p>
+ *
+ * <p>Description: 按照sql语句缓存预编译语句的物理连接包装器，每个物理连接维护一个最近最少使用(LRU)缓存。
+ * 应用关闭语句时清除参数和批处理、恢复修改过的fetchSize等语句属性后归还到缓存，下次以相同的sql、结果集类型和并发类型(或者自增主键标识)
+ * 预编译时直接返回缓存的语句，不再访问数据库；缓存满时关闭最久未使用的空闲语句。
+ * 同一条sql的缓存语句正在使用时(例如嵌套执行)，新预编译的语句不进入缓存，关闭时直接关闭。
+ * 缓存属于物理连接，事务中的连接和普通连接使用同一个缓存，连接归还连接池时未关闭的语句自动归还到缓存，
+ * 物理连接销毁时关闭所有缓存的语句。
+ * 与GenericKeyedObjectPool实现的poolPreparedStatements相比，缓存键不需要每次调用getCatalog，
+ * 缓存满时淘汰旧语句而不是抛出异常，并且支持RETURN_GENERATED_KEYS语句</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class CachingConnection extends DelegatingConnection {
+	private static final int UNSPECIFIED = -1;
+	private final int cacheSize;
+	private final StatementCacheStatistic statistic;
+	private final LinkedHashMap<StatementKey, CachedStatement> cache;
+	/**
+	 * 放入缓存时被淘汰的空闲语句，在释放缓存锁之后关闭
+	 */
+	private CachedStatement evicted;
+	/**
+	 * 物理连接已经关闭，不再缓存新的语句
+	 */
+	private boolean released;
+
+	/**
+	 * @param c 物理连接
+	 * @param cacheSize 缓存的最大语句数
+	 * @param statistic 数据源共享的缓存统计信息
+	 */
+	public CachingConnection(Connection c, int cacheSize, StatementCacheStatistic statistic) {
+		super(c);
+		this.cacheSize = cacheSize;
+		this.statistic = statistic;
+		this.cache = new LinkedHashMap<StatementKey, CachedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+				if (size() <= CachingConnection.this.cacheSize) {
+					return false;
+				}
+				CachedStatement stmt = eldest.getValue();
+				stmt.cached = false;
+				if (!stmt.inUse) {
+					evicted = stmt;
+				}
+				CachingConnection.this.statistic.evict();
+				return true;
+			}
+		};
+	}
+
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return prepareCachedStatement(new StatementKey(sql, UNSPECIFIED, UNSPECIFIED, UNSPECIFIED));
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return prepareCachedStatement(new StatementKey(sql, resultSetType, resultSetConcurrency, UNSPECIFIED));
+	}
+
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return prepareCachedStatement(new StatementKey(sql, UNSPECIFIED, UNSPECIFIED, autoGeneratedKeys));
+	}
+
+	private PreparedStatement prepareCachedStatement(StatementKey key) throws SQLException {
+		checkOpen();
+		CachedStatement stmt = null;
+		synchronized (cache) {
+			stmt = cache.get(key);
+			if (stmt != null) {
+				if (stmt.inUse) {
+					stmt = null;
+				} else {
+					stmt.inUse = true;
+				}
+			}
+		}
+		if (stmt != null) {
+			statistic.hit();
+			stmt.reuse();
+			return stmt;
+		}
+		statistic.miss();
+		try {
+			stmt = new CachedStatement(this, key.prepare(_conn), key);
+		} catch (SQLException e) {
+			handleException(e);
+			return null;
+		}
+		CachedStatement toClose = null;
+		synchronized (cache) {
+			if (!released && !cache.containsKey(key)) {
+				stmt.cached = true;
+				cache.put(key, stmt);
+				toClose = evicted;
+				evicted = null;
+			}
+		}
+		if (toClose != null) {
+			toClose.closeQuietly();
+		}
+		return stmt;
+	}
+
+	/**
+	 * 切换catalog后原来预编译的语句可能指向其他库中的对象，清空缓存
+	 */
+	public void setCatalog(String catalog) throws SQLException {
+		clearStatementCache();
+		super.setCatalog(catalog);
+	}
+
+	/**
+	 * 关闭缓存中所有空闲的语句，正在使用的语句在应用关闭时直接关闭
+	 */
+	public void clearStatementCache() {
+		List<CachedStatement> idle = new ArrayList<CachedStatement>();
+		synchronized (cache) {
+			Iterator<CachedStatement> it = cache.values().iterator();
+			while (it.hasNext()) {
+				CachedStatement stmt = it.next();
+				stmt.cached = false;
+				if (!stmt.inUse) {
+					idle.add(stmt);
+				}
+			}
+			cache.clear();
+		}
+		for (int i = 0; i < idle.size(); i++) {
+			idle.get(i).closeQuietly();
+		}
+	}
+
+	/**
+	 * 当前缓存的语句数
+	 */
+	public int getStatementCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * 关闭所有缓存的语句和物理连接
+	 */
+	public synchronized void close() throws SQLException {
+		synchronized (cache) {
+			released = true;
+		}
+		clearStatementCache();
+		super.close();
+	}
+
+	/**
+	 * 缓存键，autoGeneratedKeys和resultSetType不会同时指定
+	 */
+	private static final class StatementKey {
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		private final int autoGeneratedKeys;
+		private final int hash;
+
+		StatementKey(String sql, int resultSetType, int resultSetConcurrency, int autoGeneratedKeys) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+			int h = sql == null ? 0 : sql.hashCode();
+			h = 31 * h + resultSetType;
+			h = 31 * h + resultSetConcurrency;
+			h = 31 * h + autoGeneratedKeys;
+			this.hash = h;
+		}
+
+		PreparedStatement prepare(Connection conn) throws SQLException {
+			if (autoGeneratedKeys != UNSPECIFIED) {
+				return conn.prepareStatement(sql, autoGeneratedKeys);
+			}
+			if (resultSetType != UNSPECIFIED) {
+				return conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			}
+			return conn.prepareStatement(sql);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof StatementKey)) {
+				return false;
+			}
+			StatementKey other = (StatementKey) obj;
+			return hash == other.hash
+					&& resultSetType == other.resultSetType
+					&& resultSetConcurrency == other.resultSetConcurrency
+					&& autoGeneratedKeys == other.autoGeneratedKeys
+					&& (sql == null ? other.sql == null : sql.equals(other.sql));
+		}
+	}
+
+	private static final int FETCH_SIZE = 1;
+	private static final int MAX_ROWS = 2;
+	private static final int QUERY_TIMEOUT = 4;
+	private static final int FETCH_DIRECTION = 8;
+
+	/**
+	 * 缓存的预编译语句，close时归还到所属连接的缓存，已经被淘汰或者没有进入缓存时直接关闭。
+	 * 应用修改过的fetchSize、maxRows、queryTimeout和fetchDirection在归还时恢复为预编译时的值，
+	 * 例如流式查询设置的fetchSize(mysql为Integer.MIN_VALUE)不会影响下一次使用该语句的普通查询。
+	 * inUse和cached的修改都在缓存锁中进行
+	 */
+	private final class CachedStatement extends DelegatingPreparedStatement {
+		private final StatementKey key;
+		boolean inUse = true;
+		boolean cached;
+		private boolean batchAdded;
+		/**
+		 * 被修改过的语句属性
+		 */
+		private int changed;
+		private int fetchSize;
+		private int maxRows;
+		private int queryTimeout;
+		private int fetchDirection;
+
+		CachedStatement(DelegatingConnection conn, PreparedStatement stmt, StatementKey key) {
+			super(conn, stmt);
+			this.key = key;
+		}
+
+		void reuse() {
+			_closed = false;
+			CachingConnection.this.addTrace(this);
+		}
+
+		public void addBatch() throws SQLException {
+			super.addBatch();
+			batchAdded = true;
+		}
+
+		public void clearBatch() throws SQLException {
+			batchAdded = false;
+			super.clearBatch();
+		}
+
+		public void setFetchSize(int rows) throws SQLException {
+			if ((changed & FETCH_SIZE) == 0) {
+				fetchSize = super.getFetchSize();
+				changed |= FETCH_SIZE;
+			}
+			super.setFetchSize(rows);
+		}
+
+		public void setMaxRows(int max) throws SQLException {
+			if ((changed & MAX_ROWS) == 0) {
+				maxRows = super.getMaxRows();
+				changed |= MAX_ROWS;
+			}
+			super.setMaxRows(max);
+		}
+
+		public void setQueryTimeout(int seconds) throws SQLException {
+			if ((changed & QUERY_TIMEOUT) == 0) {
+				queryTimeout = super.getQueryTimeout();
+				changed |= QUERY_TIMEOUT;
+			}
+			super.setQueryTimeout(seconds);
+		}
+
+		public void setFetchDirection(int direction) throws SQLException {
+			if ((changed & FETCH_DIRECTION) == 0) {
+				fetchDirection = super.getFetchDirection();
+				changed |= FETCH_DIRECTION;
+			}
+			super.setFetchDirection(direction);
+		}
+
+		/**
+		 * 恢复应用修改过的语句属性
+		 */
+		private void resetProperties() throws SQLException {
+			if (changed == 0) {
+				return;
+			}
+			if ((changed & FETCH_SIZE) != 0) {
+				super.setFetchSize(fetchSize);
+			}
+			if ((changed & MAX_ROWS) != 0) {
+				super.setMaxRows(maxRows);
+			}
+			if ((changed & QUERY_TIMEOUT) != 0) {
+				super.setQueryTimeout(queryTimeout);
+			}
+			if ((changed & FETCH_DIRECTION) != 0) {
+				super.setFetchDirection(fetchDirection);
+			}
+			changed = 0;
+		}
+
+		public void close() throws SQLException {
+			if (isClosed()) {
+				return;
+			}
+			boolean keep;
+			synchronized (cache) {
+				keep = cached;
+			}
+			if (!keep) {
+				super.close();
+				return;
+			}
+			try {
+				CachingConnection.this.removeTrace(this);
+				// The JDBC spec requires that a statment close any open
+				// ResultSet's when it is closed.
+				List resultSets = getTrace();
+				if (resultSets != null) {
+					ResultSet[] set = (ResultSet[]) resultSets.toArray(new ResultSet[resultSets.size()]);
+					for (int i = 0; i < set.length; i++) {
+						set[i].close();
+					}
+					clearTrace();
+				}
+				if (batchAdded) {
+					clearBatch();
+				}
+				clearParameters();
+				resetProperties();
+			} catch (SQLException e) {
+				synchronized (cache) {
+					if (cache.get(key) == this) {
+						cache.remove(key);
+					}
+					cached = false;
+				}
+				super.close();
+				return;
+			}
+			_closed = true;
+			synchronized (cache) {
+				keep = cached;
+				inUse = false;
+			}
+			if (!keep) {
+				closeQuietly();
+			}
+		}
+
+		void closeQuietly() {
+			try {
+				super.close();
+			} catch (SQLException e) {
+				// 缓存的语句关闭失败不影响连接的使用
+			}
+		}
+	}
+}
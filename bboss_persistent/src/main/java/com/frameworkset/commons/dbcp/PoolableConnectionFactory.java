@@ -546,6 +546,18 @@ public class PoolableConnectionFactory implements PoolableObjectFactory {
         _stmtPoolFactory = stmtPoolFactory;
     }
 
+    /**
+     * Sets the size of the per connection {@link java.sql.PreparedStatement} cache,
+     * see {@link CachingConnection}. When greater than zero it takes precedence over
+     * the {@link KeyedObjectPoolFactory} statement pool.
+     * @param statementCacheSize max cached statements per connection, 0 disables the cache
+     * @param statistic hit/miss statistic shared by all connections of the pool
+     */
+    public void setStatementCache(int statementCacheSize, StatementCacheStatistic statistic) {
+        _statementCacheSize = statementCacheSize;
+        _statementCacheStatistic = statistic;
+    }
+
     /**
      * Sets the default "read only" setting for borrowed {@link Connection}s
      * @param defaultReadOnly the default "read only" setting for borrowed {@link Connection}s
@@ -584,7 +596,9 @@ public class PoolableConnectionFactory implements PoolableObjectFactory {
             throw new IllegalStateException("Connection factory returned null from createConnection");
         }
         initializeConnection(conn);
-        if(null != _stmtPoolFactory) {
+        if(_statementCacheSize > 0) {
+            conn = new CachingConnection(conn, _statementCacheSize, _statementCacheStatistic);
+        } else if(null != _stmtPoolFactory) {
             KeyedObjectPool stmtpool = _stmtPoolFactory.createPool();
             conn = new PoolingConnection(conn,stmtpool);
             stmtpool.setFactory((PoolingConnection)conn);
@@ -725,6 +739,8 @@ public class PoolableConnectionFactory implements PoolableObjectFactory {
     protected Collection _connectionInitSqls = null;
     protected volatile ObjectPool _pool = null;
     protected volatile KeyedObjectPoolFactory _stmtPoolFactory = null;
+    protected volatile int _statementCacheSize = 0;
+    protected volatile StatementCacheStatistic _statementCacheStatistic = null;
     protected Boolean _defaultReadOnly = null;
     protected boolean _defaultAutoCommit = true;
     protected int _defaultTransactionIsolation = UNKNOWN_TRANSACTIONISOLATION;
@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.commons.dbcp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ *
+ * <p>Title: StatementCacheStatistic.java</p>
+ *
+ * <p>Description: 数据源所有连接的预编译语句缓存命中统计，由同一个数据源的CachingConnection共享</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class StatementCacheStatistic {
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	void miss() {
+		misses.incrementAndGet();
+	}
+
+	void evict() {
+		evictions.incrementAndGet();
+	}
+
+	/**
+	 * 从缓存中取得预编译语句的次数
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * 缓存中没有可用语句、重新预编译的次数
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * 缓存满时按照最近最少使用原则淘汰语句的次数
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * 命中率，没有请求时返回0
+	 */
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double)h / total;
+	}
+
+	public String toString() {
+		return new StringBuilder().append("hits:").append(getHits())
+				.append(",misses:").append(getMisses())
+				.append(",evictions:").append(getEvictions()).toString();
+	}
+}
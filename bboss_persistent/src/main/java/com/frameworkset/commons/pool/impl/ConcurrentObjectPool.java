@@ -0,0 +1,616 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.commons.pool.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.frameworkset.commons.pool.BaseObjectPool;
+import com.frameworkset.commons.pool.ObjectPool;
+import com.frameworkset.commons.pool.PoolableObjectFactory;
+
+/**
+ *
+ *
+ * <p>Title: ConcurrentObjectPool.java</p>
+ *
+ * <p>Description: 无锁对象池，用来替代高并发场景下的GenericObjectPool。
+ * 池中的对象保存在CopyOnWriteArrayList中，每个对象的状态(空闲、使用中、保留、已移除)通过CAS切换，
+ * 借出和归还都不需要获取池的监视器锁；线程优先从本线程最近归还的对象中借出(线程亲和)，
+ * 然后扫描共享列表；池满时借用线程在公平的SynchronousQueue上等待归还的对象，直到maxWait超时。
+ * 后台维护任务负责回收空闲超时、超过最大生存时间的对象，空闲时校验对象并保持minIdle个空闲对象。
+ * 配置属性的含义与GenericObjectPool相同，另外增加maxLifetime</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ConcurrentObjectPool extends BaseObjectPool implements ObjectPool {
+	private static final Logger log = Logger.getLogger(ConcurrentObjectPool.class);
+	static final int STATE_NOT_IN_USE = 0;
+	static final int STATE_IN_USE = 1;
+	static final int STATE_RESERVED = -1;
+	static final int STATE_REMOVED = -2;
+	/**
+	 * 每个线程最多记录的最近归还对象数
+	 */
+	private static final int THREAD_LIST_SIZE = 16;
+	/**
+	 * 等待归还对象时每次等待的最长时间，超过后重新扫描共享列表并尝试创建对象，
+	 * 避免对象被销毁后池中有空余容量而等待线程一直等待
+	 */
+	private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+
+	private volatile PoolableObjectFactory factory;
+	private final CopyOnWriteArrayList<PooledEntry> sharedList = new CopyOnWriteArrayList<PooledEntry>();
+	private final ConcurrentHashMap<IdentityKey, PooledEntry> entries = new ConcurrentHashMap<IdentityKey, PooledEntry>();
+	private final ThreadLocal<List<WeakReference<PooledEntry>>> threadList = new ThreadLocal<List<WeakReference<PooledEntry>>>() {
+		protected List<WeakReference<PooledEntry>> initialValue() {
+			return new ArrayList<WeakReference<PooledEntry>>(THREAD_LIST_SIZE);
+		}
+	};
+	private final SynchronousQueue<PooledEntry> handoffQueue = new SynchronousQueue<PooledEntry>(true);
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final AtomicInteger totalCount = new AtomicInteger();
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicInteger maxNumActive = new AtomicInteger();
+
+	private volatile int maxActive = GenericObjectPool.DEFAULT_MAX_ACTIVE;
+	private volatile int maxIdle = GenericObjectPool.DEFAULT_MAX_IDLE;
+	private volatile int minIdle = GenericObjectPool.DEFAULT_MIN_IDLE;
+	private volatile long maxWait = GenericObjectPool.DEFAULT_MAX_WAIT;
+	private volatile byte whenExhaustedAction = GenericObjectPool.DEFAULT_WHEN_EXHAUSTED_ACTION;
+	private volatile boolean testOnBorrow = GenericObjectPool.DEFAULT_TEST_ON_BORROW;
+	private volatile boolean testOnReturn = GenericObjectPool.DEFAULT_TEST_ON_RETURN;
+	private volatile boolean testWhileIdle = GenericObjectPool.DEFAULT_TEST_WHILE_IDLE;
+	private volatile long timeBetweenEvictionRunsMillis = GenericObjectPool.DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
+	private volatile int numTestsPerEvictionRun = GenericObjectPool.DEFAULT_NUM_TESTS_PER_EVICTION_RUN;
+	private volatile long minEvictableIdleTimeMillis = GenericObjectPool.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
+	/**
+	 * 对象的最大生存时间，单位毫秒，超过后空闲时或者归还时被销毁，小于等于0时不限制
+	 */
+	private volatile long maxLifetime = -1L;
+	private TimerTask housekeeper;
+
+	public ConcurrentObjectPool() {
+		this(null);
+	}
+
+	public ConcurrentObjectPool(PoolableObjectFactory factory) {
+		this.factory = factory;
+	}
+
+	//--- configuration methods --------------------------------------
+
+	public int getMaxActive() {
+		return maxActive;
+	}
+
+	public void setMaxActive(int maxActive) {
+		this.maxActive = maxActive;
+	}
+
+	public byte getWhenExhaustedAction() {
+		return whenExhaustedAction;
+	}
+
+	public void setWhenExhaustedAction(byte whenExhaustedAction) {
+		switch (whenExhaustedAction) {
+		case GenericObjectPool.WHEN_EXHAUSTED_BLOCK:
+		case GenericObjectPool.WHEN_EXHAUSTED_FAIL:
+		case GenericObjectPool.WHEN_EXHAUSTED_GROW:
+			this.whenExhaustedAction = whenExhaustedAction;
+			break;
+		default:
+			throw new IllegalArgumentException("whenExhaustedAction " + whenExhaustedAction + " not recognized.");
+		}
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public boolean getTestOnBorrow() {
+		return testOnBorrow;
+	}
+
+	public void setTestOnBorrow(boolean testOnBorrow) {
+		this.testOnBorrow = testOnBorrow;
+	}
+
+	public boolean getTestOnReturn() {
+		return testOnReturn;
+	}
+
+	public void setTestOnReturn(boolean testOnReturn) {
+		this.testOnReturn = testOnReturn;
+	}
+
+	public boolean getTestWhileIdle() {
+		return testWhileIdle;
+	}
+
+	public void setTestWhileIdle(boolean testWhileIdle) {
+		this.testWhileIdle = testWhileIdle;
+	}
+
+	public long getTimeBetweenEvictionRunsMillis() {
+		return timeBetweenEvictionRunsMillis;
+	}
+
+	public void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
+		this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+		startHousekeeper();
+	}
+
+	public int getNumTestsPerEvictionRun() {
+		return numTestsPerEvictionRun;
+	}
+
+	public void setNumTestsPerEvictionRun(int numTestsPerEvictionRun) {
+		this.numTestsPerEvictionRun = numTestsPerEvictionRun;
+	}
+
+	public long getMinEvictableIdleTimeMillis() {
+		return minEvictableIdleTimeMillis;
+	}
+
+	public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis) {
+		this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+	}
+
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+		startHousekeeper();
+	}
+
+	//--- ObjectPool methods -----------------------------------------
+
+	public Object borrowObject() throws Exception {
+		assertOpen();
+		long start = System.nanoTime();
+		for (;;) {
+			PooledEntry entry = acquire(start);
+			boolean fresh = entry.fresh;
+			entry.fresh = false;
+			try {
+				factory.activateObject(entry.object);
+				if (testOnBorrow && !factory.validateObject(entry.object)) {
+					throw new Exception("ValidateObject failed");
+				}
+			} catch (Throwable e) {
+				removeEntry(entry);
+				destroy(entry.object);
+				if (fresh) {
+					throw new NoSuchElementException("Could not create a validated object, cause: " + e.getMessage());
+				}
+				continue;
+			}
+			int active = activeCount.incrementAndGet();
+			int max = maxNumActive.get();
+			while (active > max && !maxNumActive.compareAndSet(max, active))
+				max = maxNumActive.get();
+			return entry.object;
+		}
+	}
+
+	/**
+	 * 获取一个状态为使用中的对象：先从本线程最近归还的对象中获取，然后扫描共享列表，
+	 * 容量允许时创建新对象，否则等待其他线程归还对象
+	 */
+	private PooledEntry acquire(long start) throws Exception {
+		List<WeakReference<PooledEntry>> list = threadList.get();
+		for (int i = list.size() - 1; i >= 0; i--) {
+			PooledEntry entry = list.remove(i).get();
+			if (entry != null && entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE))
+				return entry;
+		}
+		waiters.incrementAndGet();
+		try {
+			PooledEntry entry = scanOrCreate();
+			if (entry != null)
+				return entry;
+			if (whenExhaustedAction == GenericObjectPool.WHEN_EXHAUSTED_FAIL)
+				throw new NoSuchElementException("Pool exhausted");
+			long timeout = maxWait > 0 ? TimeUnit.MILLISECONDS.toNanos(maxWait) : -1L;
+			for (;;) {
+				long wait = WAIT_SLICE_NANOS;
+				if (timeout > 0) {
+					long remain = timeout - (System.nanoTime() - start);
+					if (remain <= 0)
+						throw new NoSuchElementException("Timeout waiting for idle object");
+					wait = Math.min(wait, remain);
+				}
+				entry = handoffQueue.poll(wait, TimeUnit.NANOSECONDS);
+				if (entry != null && entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE))
+					return entry;
+				assertOpen();
+				entry = scanOrCreate();
+				if (entry != null)
+					return entry;
+			}
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	private PooledEntry scanOrCreate() throws Exception {
+		for (PooledEntry entry : sharedList) {
+			if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE))
+				return entry;
+		}
+		return create(STATE_IN_USE, whenExhaustedAction == GenericObjectPool.WHEN_EXHAUSTED_GROW);
+	}
+
+	/**
+	 * 在池的容量范围内创建对象，池已满时返回null
+	 */
+	private PooledEntry create(int state, boolean grow) throws Exception {
+		if (factory == null)
+			throw new IllegalStateException("Cannot create objects without a factory.");
+		for (;;) {
+			int total = totalCount.get();
+			if (!grow && maxActive > 0 && total >= maxActive)
+				return null;
+			if (totalCount.compareAndSet(total, total + 1))
+				break;
+		}
+		Object obj = null;
+		try {
+			obj = factory.makeObject();
+			if (state == STATE_NOT_IN_USE)
+				factory.passivateObject(obj);
+		} catch (Exception e) {
+			totalCount.decrementAndGet();
+			if (obj != null)
+				destroy(obj);
+			throw e;
+		}
+		PooledEntry entry = new PooledEntry(obj, state);
+		entry.fresh = state == STATE_IN_USE;
+		entries.put(new IdentityKey(obj), entry);
+		sharedList.add(entry);
+		return entry;
+	}
+
+	public void returnObject(Object obj) throws Exception {
+		PooledEntry entry = entries.get(new IdentityKey(obj));
+		if (entry == null) {
+			//不是池中的对象
+			destroy(obj);
+			return;
+		}
+		if (!entry.compareAndSet(STATE_IN_USE, STATE_RESERVED)) {
+			//重复归还的对象已经在空闲列表中或者已经被销毁，不能再销毁
+			log.warn("Object[" + obj + "] is not in use,ignore return.");
+			return;
+		}
+		activeCount.decrementAndGet();
+		boolean valid = !isClosed();
+		if (valid && maxLifetime > 0 && System.currentTimeMillis() - entry.createTime > maxLifetime)
+			valid = false;
+		if (valid && maxIdle >= 0 && totalCount.get() - activeCount.get() > maxIdle)
+			valid = false;
+		if (valid) {
+			try {
+				if (testOnReturn && !factory.validateObject(obj)) {
+					valid = false;
+				} else {
+					factory.passivateObject(obj);
+				}
+			} catch (Exception e) {
+				valid = false;
+			}
+		}
+		if (!valid) {
+			removeEntry(entry);
+			destroy(obj);
+			return;
+		}
+		entry.lastReturnTime = System.currentTimeMillis();
+		entry.state.set(STATE_NOT_IN_USE);
+		for (int i = 0; waiters.get() > 0; i++) {
+			if (entry.state.get() != STATE_NOT_IN_USE || handoffQueue.offer(entry))
+				return;
+			if ((i & 0xff) == 0xff)
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+			else
+				Thread.yield();
+		}
+		List<WeakReference<PooledEntry>> list = threadList.get();
+		if (list.size() < THREAD_LIST_SIZE)
+			list.add(new WeakReference<PooledEntry>(entry));
+	}
+
+	public void invalidateObject(Object obj) throws Exception {
+		PooledEntry entry = entries.get(new IdentityKey(obj));
+		if (entry != null) {
+			if (entry.state.get() == STATE_IN_USE)
+				activeCount.decrementAndGet();
+			removeEntry(entry);
+		}
+		destroy(obj);
+	}
+
+	public void addObject() throws Exception {
+		assertOpen();
+		PooledEntry entry = create(STATE_NOT_IN_USE, true);
+		entry.lastReturnTime = System.currentTimeMillis();
+		if (isClosed()) {
+			removeEntry(entry);
+			destroy(entry.object);
+		}
+	}
+
+	public int getNumActive() {
+		return activeCount.get();
+	}
+
+	public int getNumIdle() {
+		int idle = 0;
+		for (PooledEntry entry : sharedList) {
+			if (entry.state.get() == STATE_NOT_IN_USE)
+				idle++;
+		}
+		return idle;
+	}
+
+	public int _getNumActive() {
+		return getNumActive();
+	}
+
+	public int _getNumIdle() {
+		return getNumIdle();
+	}
+
+	/**
+	 * 池启动以来并发借出对象的最大数目
+	 */
+	public int getMaxNumActive() {
+		assertOpen();
+		return maxNumActive.get();
+	}
+
+	/**
+	 * 销毁所有空闲对象，使用中的对象不受影响
+	 */
+	public void clear() {
+		for (PooledEntry entry : sharedList) {
+			if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_RESERVED)) {
+				removeEntry(entry);
+				destroy(entry.object);
+			}
+		}
+	}
+
+	/**
+	 * 关闭对象池，销毁空闲对象，使用中的对象归还时被销毁
+	 */
+	public void close() throws Exception {
+		super.close();
+		stopHousekeeper();
+		clear();
+	}
+
+	public void setFactory(PoolableObjectFactory factory) throws IllegalStateException {
+		assertOpen();
+		if (0 < getNumActive())
+			throw new IllegalStateException("Objects are already active");
+		clear();
+		this.factory = factory;
+	}
+
+	//--- housekeeping -----------------------------------------------
+
+	private synchronized void startHousekeeper() {
+		stopHousekeeper();
+		long period = timeBetweenEvictionRunsMillis;
+		if (period <= 0 && maxLifetime > 0)
+			period = Math.max(1000L, Math.min(30000L, maxLifetime / 2));
+		if (period > 0 && !isClosed()) {
+			housekeeper = new Housekeeper();
+			EvictionTimer.schedule(housekeeper, period, period);
+		}
+	}
+
+	private synchronized void stopHousekeeper() {
+		if (housekeeper != null) {
+			EvictionTimer.cancel(housekeeper);
+			housekeeper = null;
+		}
+	}
+
+	/**
+	 * 回收空闲超时和超过最大生存时间的空闲对象，校验空闲对象
+	 */
+	public void evict() throws Exception {
+		assertOpen();
+		long now = System.currentTimeMillis();
+		int idle = getNumIdle();
+		int removable = idle - minIdle;
+		int tests = numTestsPerEvictionRun >= 0 ? Math.min(numTestsPerEvictionRun, idle)
+				: (int) Math.ceil(idle / Math.abs((double) numTestsPerEvictionRun));
+		for (PooledEntry entry : sharedList) {
+			if (entry.state.get() != STATE_NOT_IN_USE)
+				continue;
+			boolean expired = maxLifetime > 0 && now - entry.createTime > maxLifetime;
+			boolean idleTimeout = minEvictableIdleTimeMillis > 0 && removable > 0
+					&& now - entry.lastReturnTime > minEvictableIdleTimeMillis;
+			if (expired || idleTimeout) {
+				if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_RESERVED)) {
+					removeEntry(entry);
+					destroy(entry.object);
+					removable--;
+				}
+			} else if (testWhileIdle && tests > 0) {
+				if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_RESERVED)) {
+					tests--;
+					boolean valid;
+					try {
+						factory.activateObject(entry.object);
+						valid = factory.validateObject(entry.object);
+						if (valid)
+							factory.passivateObject(entry.object);
+					} catch (Exception e) {
+						valid = false;
+					}
+					if (valid) {
+						entry.state.set(STATE_NOT_IN_USE);
+					} else {
+						removeEntry(entry);
+						destroy(entry.object);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 补充空闲对象到minIdle个
+	 */
+	private void ensureMinIdle() throws Exception {
+		int count = minIdle - getNumIdle();
+		for (int i = 0; i < count && !isClosed(); i++) {
+			if (maxActive > 0 && totalCount.get() >= maxActive)
+				break;
+			addObject();
+		}
+	}
+
+	private void removeEntry(PooledEntry entry) {
+		if (entry.state.getAndSet(STATE_REMOVED) != STATE_REMOVED) {
+			entries.remove(new IdentityKey(entry.object));
+			sharedList.remove(entry);
+			totalCount.decrementAndGet();
+		}
+	}
+
+	private void destroy(Object obj) {
+		try {
+			if (factory != null)
+				factory.destroyObject(obj);
+		} catch (Exception e) {
+			// ignored
+		}
+	}
+
+	String debugInfo() {
+		StringBuffer buf = new StringBuffer();
+		buf.append("Active: ").append(getNumActive()).append("\n");
+		buf.append("Idle: ").append(getNumIdle()).append("\n");
+		buf.append("Total: ").append(totalCount.get()).append("\n");
+		buf.append("Waiters: ").append(waiters.get()).append("\n");
+		return buf.toString();
+	}
+
+	//--- inner classes ----------------------------------------------
+
+	private class Housekeeper extends TimerTask {
+		public void run() {
+			try {
+				evict();
+			} catch (Exception e) {
+				// ignored
+			} catch (OutOfMemoryError oome) {
+				oome.printStackTrace(System.err);
+			}
+			try {
+				ensureMinIdle();
+			} catch (Exception e) {
+				// ignored
+			}
+		}
+	}
+
+	static final class PooledEntry {
+		final Object object;
+		final AtomicInteger state;
+		final long createTime;
+		volatile long lastReturnTime;
+		/**
+		 * 新创建还没有被激活过的对象，只在借出线程中访问
+		 */
+		boolean fresh;
+
+		PooledEntry(Object object, int state) {
+			this.object = object;
+			this.state = new AtomicInteger(state);
+			this.createTime = System.currentTimeMillis();
+			this.lastReturnTime = createTime;
+		}
+
+		boolean compareAndSet(int expect, int update) {
+			return state.compareAndSet(expect, update);
+		}
+	}
+
+	/**
+	 * 按照对象标识查找池中的对象，池中对象的equals和hashCode可能随对象状态变化
+	 */
+	private static final class IdentityKey {
+		private final Object object;
+		private final int hash;
+
+		IdentityKey(Object object) {
+			this.object = object;
+			this.hash = System.identityHashCode(object);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey && ((IdentityKey) obj).object == object;
+		}
+	}
+}
@@ -644,6 +644,59 @@ public abstract class DB implements Serializable, IDMethod,Platform
 //    	statement.setLong(startidx, offset);
 //		statement.setLong(endidx, maxsize);
     }
+
+	/**
+	 * 获取keyset(seek)分页sql语句，根据上一页最后一条记录的排序字段值定位下一页，不需要count查询和offset定位。
+	 * 多个排序字段的定位条件展开为(k1 > ?) or (k1 = ? and k2 > ?) ...，降序字段使用<比较，
+	 * 条件参数在原始sql的参数之后依次绑定。
+	 * 定位条件不处理null值：null与任何值的比较结果都不为真，排序字段为null的记录不会出现在第二页及以后的页中，
+	 * 而各数据库对null的排序位置也不一致(oracle、postgresql升序时排在最后，mysql、sqlserver排在最前)，
+	 * 无法生成通用的null定位条件，因此排序字段必须是非空字段，或者在查询列表中通过coalesce转换为非空值，
+	 * KeysetPagine在上一页最后一条记录的排序字段值包含null时直接抛出异常
+	 * @param sql 原始查询语句，不能包含order by子句，排序字段必须出现在查询列表中
+	 * @param keyColumns 排序字段，最后一个字段必须能够唯一确定记录的顺序，一般为主键，字段值不能为null
+	 * @param descs 排序字段是否降序
+	 * @param first 是否为第一页，第一页不需要定位条件
+	 * @param fetchsize 获取的最大记录数
+	 * @return
+	 */
+	public String getKeysetPagineSql(String sql, String[] keyColumns, boolean[] descs, boolean first, int fetchsize) {
+		StringBuffer ret = new StringBuffer();
+		ret.append("select * from (").append(sql).append(") bboss_ks");
+		if(!first)
+		{
+			ret.append(" where ");
+			for(int i = 0; i < keyColumns.length; i ++)
+			{
+				if(i > 0)
+					ret.append(" or ");
+				ret.append("(");
+				for(int j = 0; j < i; j ++)
+				{
+					ret.append(keyColumns[j]).append(" = ? and ");
+				}
+				ret.append(keyColumns[i]).append(descs[i]?" < ?":" > ?").append(")");
+			}
+		}
+		ret.append(" order by ");
+		for(int i = 0; i < keyColumns.length; i ++)
+		{
+			if(i > 0)
+				ret.append(",");
+			ret.append(keyColumns[i]).append(descs[i]?" desc":" asc");
+		}
+		return getKeysetLimitSql(ret.toString(), fetchsize);
+	}
+
+	/**
+	 * 为keyset分页语句添加记录数限制，缺省采用sql:2008标准的fetch first语法，不支持的数据库需要覆盖本方法
+	 * @param sql 以select * from开头并且包含order by子句的查询语句
+	 * @param fetchsize
+	 * @return
+	 */
+	protected String getKeysetLimitSql(String sql, int fetchsize) {
+		return new StringBuffer(sql).append(" fetch first ").append(fetchsize).append(" rows only").toString();
+	}
 	
 //	public String getDBPagineSql(String sql, long offset, int maxsize) {
 //		
@@ -794,7 +847,18 @@ public abstract class DB implements Serializable, IDMethod,Platform
 
 	        return ResultSet.CONCUR_READ_ONLY;
 	    }
-	    
+
+	    /**
+	     * 获取流式游标查询时设置到Statement上的fetchsize，缺省直接使用配置的fetchsize，
+	     * 对于需要特殊值才能开启服务端流式读取的数据库（例如mysql）由对应的适配器覆盖本方法
+	     * @param fetchsize 配置的fetchsize
+	     * @return
+	     */
+	    public int getStreamFetchSize(int fetchsize)
+	    {
+	    	return fetchsize;
+	    }
+
 	    public String getDateFormat()
 	    {
 	        return this.date_format;
@@ -443,6 +443,19 @@ public class DBMM extends DB
     	statement.setLong(startidx, offset);
 		statement.setLong(endidx, maxsize);
     }
+
+	protected String getKeysetLimitSql(String sql, int fetchsize) {
+		return new StringBuffer(sql).append(" limit ").append(fetchsize).toString();
+	}
+
+	/**
+	 * mysql驱动只有在fetchsize为Integer.MIN_VALUE时才逐行读取结果集，
+	 * 否则会将整个结果集加载到内存中
+	 */
+	public int getStreamFetchSize(int fetchsize)
+	{
+		return Integer.MIN_VALUE;
+	}
 	public Object getLONGVARBINARY(CallableStatement cstmt,int parameterIndex) throws SQLException
     {
         return    cstmt.getBlob(parameterIndex);
@@ -98,6 +98,14 @@ public class DBMSSQL extends DBSybase
 	{
 		return DB.NULL_SCHEMA;
 	}
+
+    /**
+     * 采用top限制keyset分页的记录数
+     */
+    protected String getKeysetLimitSql(String sql, int fetchsize)
+    {
+        return new StringBuffer("select top ").append(fetchsize).append(sql.substring("select".length())).toString();
+    }
     
     
 
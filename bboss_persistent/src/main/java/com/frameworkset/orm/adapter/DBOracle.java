@@ -33,9 +33,10 @@ package com.frameworkset.orm.adapter;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
@@ -54,6 +55,7 @@ import oracle.sql.BLOB;
 import oracle.sql.CLOB;
 
 import com.frameworkset.common.poolman.NestedSQLException;
+import com.frameworkset.common.poolman.handle.ValueExchange;
 import com.frameworkset.common.poolman.security.DBInfoEncrypt;
 import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
 import com.frameworkset.common.poolman.util.SQLUtil;
@@ -495,6 +497,14 @@ public class DBOracle extends DB
 		statement.setLong(endidx, offset + 1);
     }
 
+    /**
+     * 兼容12c以前的版本，采用rownum限制keyset分页的记录数
+     */
+    protected String getKeysetLimitSql(String sql, int fetchsize)
+    {
+        return new StringBuffer("select * from (").append(sql).append(") where rownum <= ").append(fetchsize).toString();
+    }
+
     /**
      * 获取受限制结果条数的sql语句，要求selectSql的语法，按oracle自定义受限语句语法，例如 SELECT
      * a.cpmc,a.ggxh,a.
@@ -758,13 +768,15 @@ public class DBOracle extends DB
 			else if(content instanceof File)
 			{
 				File f = (File)content;
-				FileReader reader = new FileReader(f);
-			    char[] cbuf = new char[1024];
-			    int i = 0;
-			    while((i = reader.read(cbuf)) > 0)
-			    {
-			    	wr.write(cbuf,0,i);
-			    }
+				ValueExchange.copy(new InputStreamReader(new FileInputStream(f), ValueExchange.DEFAULT_LOB_CHARSET), wr);
+			}
+			else if(content instanceof Reader)
+			{
+				ValueExchange.copy((Reader)content, wr);
+			}
+			else if(content instanceof InputStream)
+			{
+				ValueExchange.copy(new InputStreamReader((InputStream)content, ValueExchange.DEFAULT_LOB_CHARSET), wr);
 			}
 			else
 			{
@@ -1581,7 +1593,7 @@ public class DBOracle extends DB
 			else if(content instanceof File)
 			{
 				File f = (File)content;
-				reader = new java.io.BufferedReader(new FileReader(f));
+				reader = new java.io.BufferedReader(new InputStreamReader(new FileInputStream(f), ValueExchange.DEFAULT_LOB_CHARSET));
 //				File f = (File)content;
 //				FileReader reader = new FileReader(f);
 //			    char[] cbuf = new char[1024];
@@ -197,4 +197,9 @@ public class DBPostgres extends DB
     	 sdf = new SimpleDateFormat(DATE_FORMAT);
     	this.platform = new PlatformPostgresqlImpl();
     }
+
+    protected String getKeysetLimitSql(String sql, int fetchsize)
+    {
+        return new StringBuffer(sql).append(" limit ").append(fetchsize).toString();
+    }
 }
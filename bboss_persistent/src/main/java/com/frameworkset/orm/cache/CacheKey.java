@@ -15,6 +15,80 @@
  */
 package com.frameworkset.orm.cache;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * 
+ * <p>Title: CacheKey.java</p>
+ *
+ * <p>Description: 查询结果缓存的key，由查询方法、数据源、sql名称、结果类型以及查询参数组成，
+ * 数组类型的参数按照元素逐个比较</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
 public class CacheKey {
+	private static final int DEFAULT_MULTIPLYER = 37;
+	private static final int DEFAULT_HASHCODE = 17;
+	private static final Object NULL_COMPONENT = new Object();
+
+	private int hashcode = DEFAULT_HASHCODE;
+	private final List<Object> components = new ArrayList<Object>();
+
+	public CacheKey() {
+	}
+
+	public CacheKey(Object... components) {
+		for (int i = 0; i < components.length; i++)
+			update(components[i]);
+	}
+
+	/**
+	 * 添加一个key的组成部分，Object[]类型的值会记录长度并展开每个元素
+	 * 
+	 * @param object
+	 * @return
+	 */
+	public CacheKey update(Object object) {
+		if (object instanceof Object[]) {
+			Object[] values = (Object[]) object;
+			doUpdate(Integer.valueOf(values.length));
+			for (int i = 0; i < values.length; i++)
+				update(values[i]);
+		} else {
+			doUpdate(object == null ? NULL_COMPONENT : object);
+		}
+		return this;
+	}
+
+	private void doUpdate(Object object) {
+		hashcode = DEFAULT_MULTIPLYER * hashcode + object.hashCode();
+		components.add(object);
+	}
+
+	public int hashCode() {
+		return hashcode;
+	}
+
+	public boolean equals(Object object) {
+		if (this == object)
+			return true;
+		if (!(object instanceof CacheKey))
+			return false;
+		CacheKey key = (CacheKey) object;
+		return hashcode == key.hashcode && components.equals(key.components);
+	}
 
+	public String toString() {
+		StringBuilder ret = new StringBuilder().append(hashcode);
+		for (int i = 0; i < components.size(); i++) {
+			Object component = components.get(i);
+			ret.append('|').append(component == NULL_COMPONENT ? "null" : component);
+		}
+		return ret.toString();
+	}
 }
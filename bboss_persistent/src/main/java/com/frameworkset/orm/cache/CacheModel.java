@@ -24,11 +24,32 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 
 import org.apache.log4j.Logger;
 
+import com.frameworkset.orm.annotation.TransactionType;
+import com.frameworkset.orm.transaction.JDBCTransaction;
+import com.frameworkset.orm.transaction.TransactionManager;
 
 
+/**
+ * 
+ * 
+ * <p>Title: CacheModel.java</p>
+ *
+ * <p>Description: 缓存模型，读写操作不加锁，只有flush操作串行执行；
+ * 每次flush都会增加flush版本号，查询前获取的版本号与放入缓存时的版本号不一致时，
+ * 查询结果不会被放入缓存，避免flush之前查询得到的旧数据在flush之后被缓存</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
 public class CacheModel {
 	
 	private static final Logger log = Logger.getLogger(CacheModel.class);
@@ -40,8 +61,8 @@ public class CacheModel {
 	   * that they can be cached, too.
 	   */
 	  public static final Object NULL_OBJECT = new String("SERIALIZABLE_NULL_OBJECT");
-	  private int requests = 0;
-	  private int hits = 0;
+	  private final LongAdder requests = new LongAdder();
+	  private final LongAdder hits = new LongAdder();
 
 	  /**
 	   * Constant to turn off periodic cache flushes
@@ -53,7 +74,8 @@ public class CacheModel {
 	  private boolean readOnly;
 	  private boolean serialize;
 
-	  private long lastFlush;
+	  private volatile long lastFlush;
+	  private volatile long flushVersion;
 	  private long flushInterval;
 	  private long flushIntervalSeconds;
 	  private Set flushTriggerStatements;
@@ -146,13 +168,8 @@ public class CacheModel {
 
 	  /**
 	   * Sets up the controller for the cache model
-	   *
-	   * @throws ClassNotFoundException - if the class cannot be found
-	   * @throws InstantiationException - if the class cannot be instantiated
-	   * @throws IllegalAccessException - if the classes constructor is not accessible
 	   */
-	  public void setCacheController(CacheControl controller)
-	      throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+	  public void setCacheController(CacheControl controller) {
 	    this.controller = controller;
 	  }
 
@@ -224,7 +241,29 @@ public class CacheModel {
 	   * @return the number of cache hits divided by the total requests
 	   */
 	  public double getHitRatio() {
-	    return (double) hits / (double) requests;
+	    long total = requests.sum();
+	    return total == 0 ? 0 : (double) hits.sum() / (double) total;
+	  }
+
+	  public long getRequests() {
+	    return requests.sum();
+	  }
+
+	  public long getHits() {
+	    return hits.sum();
+	  }
+
+	  public CacheControl getCacheController() {
+	    return controller;
+	  }
+
+	  /**
+	   * 获取当前的flush版本号，在执行查询之前获取，放入查询结果时传入
+	   *
+	   * @return flush版本号
+	   */
+	  public long getFlushVersion() {
+	    return flushVersion;
 	  }
 
 	  /**
@@ -241,6 +280,7 @@ public class CacheModel {
 	   */
 	  public void flush() {
 	  	synchronized (this)  {
+	      flushVersion++;
 	      controller.flush(this);
 	      lastFlush = System.currentTimeMillis();
 	      if ( log.isDebugEnabled() )  {
@@ -249,6 +289,37 @@ public class CacheModel {
 	    }
 	  }
 
+	  /**
+	   * 事务提交后flush缓存的同步器，同一个事务中多次修改只登记一次
+	   */
+	  private final Synchronization flushOnCommit = new Synchronization() {
+	    public void beforeCompletion() {
+	    }
+
+	    public void afterCompletion(int status) {
+	      if (status == Status.STATUS_COMMITTED)
+	        flush();
+	    }
+	  };
+
+	  /**
+	   * 修改语句执行后flush缓存。当前线程存在事务时在事务提交后flush：提交之前其他线程只能查询到修改前的数据，
+	   * 提前flush会使这些数据重新进入缓存并在提交后一直有效；事务回滚时缓存中的数据仍然有效，不需要flush。
+	   * 没有事务或者读写事务(修改语句自动提交)时立即flush
+	   */
+	  public void flushAfterCommit() {
+	    JDBCTransaction tx = TransactionManager.getTransaction();
+	    if (tx != null && tx.getTXType() != TransactionType.RW_TRANSACTION) {
+	      try {
+	        tx.registerSynchronization(flushOnCommit);
+	        return;
+	      } catch (Exception e) {
+	        log.debug("Register cache flush synchronization failed,flush cache[" + id + "] now:" + e.getMessage());
+	      }
+	    }
+	    flush();
+	  }
+
 	  /**
 	   * Get an object out of the cache.
 	   * A side effect of this method is that is may clear the cache if it has not been
@@ -259,38 +330,40 @@ public class CacheModel {
 	   */
 	  public Object getObject(CacheKey key) {
 	  	Object value = null;
-	    synchronized (this) {
-	      if (flushInterval != NO_FLUSH_INTERVAL
-	          && System.currentTimeMillis() - lastFlush > flushInterval) {
-	        flush();
-	      }
-
-	      value = controller.getObject(this, key);
-	      if (serialize && !readOnly &&
-	       	    (value != NULL_OBJECT && value != null)) {
-	        try {
-	          ByteArrayInputStream bis = new ByteArrayInputStream((byte[]) value);
-	          ObjectInputStream ois = new ObjectInputStream(bis);
-	          value = ois.readObject();
-	          ois.close();
-	        } catch (Exception e) {
-	          throw new RuntimeException("Error caching serializable object.  Be sure you're not attempting to use " +
-	                                           "a serialized cache for an object that may be taking advantage of lazy loading.  Cause: " + e, e);
+	    if (flushInterval != NO_FLUSH_INTERVAL
+	        && System.currentTimeMillis() - lastFlush > flushInterval) {
+	      synchronized (this) {
+	        if (System.currentTimeMillis() - lastFlush > flushInterval) {
+	          flush();
 	        }
 	      }
-	      requests++;
-	      if (value != null) {
-	        hits++;
-	      }
-	      if ( log.isDebugEnabled() )  {
-	      	if ( value != null )  {
-	            log("retrieved object", true, value);
-	      	}
-	      	else  {
-	      		log("cache miss", false, null);
-	      	}
+	    }
+
+	    value = controller.getObject(this, key);
+	    if (serialize && !readOnly &&
+	     	    (value != NULL_OBJECT && value != null)) {
+	      try {
+	        ByteArrayInputStream bis = new ByteArrayInputStream((byte[]) value);
+	        ObjectInputStream ois = new ObjectInputStream(bis);
+	        value = ois.readObject();
+	        ois.close();
+	      } catch (Exception e) {
+	        throw new RuntimeException("Error caching serializable object.  Be sure you're not attempting to use " +
+	                                         "a serialized cache for an object that may be taking advantage of lazy loading.  Cause: " + e, e);
 	      }
 	    }
+	    requests.increment();
+	    if (value != null) {
+	      hits.increment();
+	    }
+	    if ( log.isDebugEnabled() )  {
+	    	if ( value != null )  {
+	          log("retrieved object", true, value);
+	    	}
+	    	else  {
+	    		log("cache miss", false, null);
+	    	}
+	    }
 	    return value;
 	  }
 
@@ -301,25 +374,39 @@ public class CacheModel {
 	   * @param value The object to be cached
 	   */
 	  public void putObject(CacheKey key, Object value) {
+	  	putObject(key, value, flushVersion);
+	  }
+
+	  /**
+	   * Add an object to the cache,如果查询期间缓存被flush过则不放入缓存
+	   *
+	   * @param key   The key of the object to be cached
+	   * @param value The object to be cached
+	   * @param version 查询之前通过getFlushVersion获取的flush版本号
+	   */
+	  public void putObject(CacheKey key, Object value, long version) {
 	  	if (null == value) value = NULL_OBJECT;
-	  	synchronized ( this )  {
-	      if (serialize && !readOnly && value != NULL_OBJECT) {
-	        try {
-	          ByteArrayOutputStream bos = new ByteArrayOutputStream();
-	          ObjectOutputStream oos = new ObjectOutputStream(bos);
-	          oos.writeObject(value);
-	          oos.flush();
-	          oos.close();
-	          value = bos.toByteArray();
-	        } catch (IOException e) {
-	          throw new RuntimeException("Error caching serializable object.  Cause: " + e, e);
-	        }
-	      }
-	      controller.putObject(this, key, value);
-	      if ( log.isDebugEnabled() )  {
-	        log("stored object", true, value);
+	    if (version != flushVersion)
+	      return;
+	    if (serialize && !readOnly && value != NULL_OBJECT) {
+	      try {
+	        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+	        ObjectOutputStream oos = new ObjectOutputStream(bos);
+	        oos.writeObject(value);
+	        oos.flush();
+	        oos.close();
+	        value = bos.toByteArray();
+	      } catch (IOException e) {
+	        log.warn("Cache '" + getId() + "': object can not be serialized and will not be cached.", e);
+	        return;
 	      }
 	    }
+	    controller.putObject(this, key, value);
+	    if (version != flushVersion)//放入缓存的同时发生了flush
+	      controller.removeObject(this, key);
+	    if ( log.isDebugEnabled() )  {
+	      log("stored object", true, value);
+	    }
 	  }
 
 	  /**
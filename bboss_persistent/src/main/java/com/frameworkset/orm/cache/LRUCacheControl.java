@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.orm.cache;
+
+import java.util.Properties;
+
+import org.frameworkset.persitent.util.ConcurrentLRUCache;
+
+/**
+ *
+ *
+ * <p>Title: LRUCacheControl.java</p>
+ *
+ * <p>Description: 查询结果缓存容器，有容量限制，读写不加锁，超过容量时淘汰最久没有被访问的结果</p>
+ *
+ * <p>Copyright: Copyright (c) 2007</p>
+ *
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class LRUCacheControl implements CacheControl {
+	public static final int DEFAULT_SIZE = 1000;
+	private volatile ConcurrentLRUCache<Object, Object> cache;
+
+	public LRUCacheControl() {
+		this(DEFAULT_SIZE);
+	}
+
+	public LRUCacheControl(int size) {
+		cache = new ConcurrentLRUCache<Object, Object>(size > 0 ? size : DEFAULT_SIZE);
+	}
+
+	/**
+	 * Configures the cache
+	 *
+	 * @param props Optionally can contain properties [size=缓存的最大结果数，必须大于0]
+	 * @throws IllegalArgumentException size不是大于0的整数
+	 */
+	public void setProperties(Properties props) {
+		String size = props.getProperty("size");
+		if (size == null)
+			return;
+		int max;
+		try {
+			max = Integer.parseInt(size.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Cache size must be a positive integer:" + size, e);
+		}
+		if (max <= 0)
+			throw new IllegalArgumentException("Cache size must be greater than 0:" + size);
+		cache = new ConcurrentLRUCache<Object, Object>(max);
+	}
+
+	public void putObject(CacheModel cacheModel, Object key, Object value) {
+		cache.put(key, value);
+	}
+
+	public Object getObject(CacheModel cacheModel, Object key) {
+		return cache.get(key);
+	}
+
+	public Object removeObject(CacheModel cacheModel, Object key) {
+		Object value = cache.get(key);
+		cache.remove(key);
+		return value;
+	}
+
+	public void flush(CacheModel cacheModel) {
+		cache.clear();
+	}
+
+	public ConcurrentLRUCache<Object, Object> getCache() {
+		return cache;
+	}
+
+}
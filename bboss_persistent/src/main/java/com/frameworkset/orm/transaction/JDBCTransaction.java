@@ -32,8 +32,10 @@ package com.frameworkset.orm.transaction;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
@@ -46,6 +48,8 @@ import javax.transaction.Synchronization;
 import javax.transaction.SystemException;
 import javax.transaction.xa.XAResource;
 
+import org.apache.log4j.Logger;
+
 import com.frameworkset.common.poolman.NestedSQLException;
 import com.frameworkset.common.poolman.util.SQLManager;
 import com.frameworkset.commons.dbcp.AbandonedTrace;
@@ -67,6 +71,11 @@ public class JDBCTransaction {
 	
 	private Map<Object,TransactionEntity> txentities = new HashMap<Object,TransactionEntity>(1);
 	private Stack<TransactionEntity> executeStack = new Stack<TransactionEntity>();
+	/**
+	 * 事务提交或者回滚完成后需要回调的同步器，例如提交后才能刷新的查询缓存
+	 */
+	private List<Synchronization> synchronizations;
+	private static final Logger log = Logger.getLogger(JDBCTransaction.class);
 	private int count = 0;
 	TransactionType currenttxtype;
 	public TransactionType getTXType()
@@ -602,6 +611,7 @@ public class JDBCTransaction {
 			try {
 				this.commitAll();
 				this.status = Status.STATUS_COMMITTED;
+				this.afterCompletion(Status.STATUS_COMMITTED);
 			} catch (SQLException e) {
 //				this.status = Status.STATUS_MARKED_ROLLBACK;
 				try {
@@ -652,9 +662,36 @@ public class JDBCTransaction {
 		}	
 		this.txentities.clear();
 	}
-	public void registerSynchronization(Synchronization arg0) throws RollbackException, IllegalStateException, SystemException {
-		
-		
+	/**
+	 * 登记事务完成后的回调，事务提交或者回滚后按照登记顺序调用afterCompletion，
+	 * 同一个同步器对象只登记一次
+	 */
+	public void registerSynchronization(Synchronization synchronization) throws RollbackException, IllegalStateException, SystemException {
+		if(this.status == Status.STATUS_COMMITTED || this.status == Status.STATUS_ROLLEDBACK)
+			throw new IllegalStateException("事务已经结束，不能登记同步器");
+		if(synchronizations == null)
+			synchronizations = new ArrayList<Synchronization>();
+		if(!synchronizations.contains(synchronization))
+			synchronizations.add(synchronization);
+	}
+	
+	private void afterCompletion(int status)
+	{
+		List<Synchronization> synchronizations = this.synchronizations;
+		this.synchronizations = null;
+		if(synchronizations == null)
+			return;
+		for(int i = 0; i < synchronizations.size(); i ++)
+		{
+			try
+			{
+				synchronizations.get(i).afterCompletion(status);
+			}
+			catch(Throwable e)
+			{
+				log.error("Transaction synchronization afterCompletion failed.",e);
+			}
+		}
 	}
 	
 	protected void rollback() throws IllegalStateException, SystemException {
@@ -695,6 +732,7 @@ public class JDBCTransaction {
 		{
 			this.rollbackAll();
 			this.status = Status.STATUS_ROLLEDBACK;
+			this.afterCompletion(Status.STATUS_ROLLEDBACK);
 		}
 		else
 		{
@@ -708,6 +746,7 @@ public class JDBCTransaction {
 			if(this.currenttxtype != TransactionManager.RW_TRANSACTION)
 			{
 				this.rollbackAll();
+				this.afterCompletion(Status.STATUS_ROLLEDBACK);
 			}
 		}
 		
@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.frameworkset.persitent.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Title: ConcurrentLRUCache.java</p>
+ * <p>Description: 有容量限制的并发缓存，读操作不加锁，只记录最近访问时间；
+ * 当缓存记录数超过容量时，由一个写线程批量淘汰最久没有被访问的记录，
+ * 将记录数压缩到容量的90%，其他线程不会因为淘汰操作而阻塞。
+ * 缓存记录为强引用，命中率不受gc影响，同时统计命中、未命中和淘汰次数。</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ConcurrentLRUCache<K,V> {
+	private static class CacheEntry<V>
+	{
+		private final V value;
+		private volatile long lastAccess;
+		CacheEntry(V value)
+		{
+			this.value = value;
+			this.lastAccess = System.nanoTime();
+		}
+	}
+
+	private static class EvictCandidate<K,V> implements Comparable<EvictCandidate<K,V>>
+	{
+		private final K key;
+		private final CacheEntry<V> entry;
+		private final long lastAccess;
+		EvictCandidate(K key,CacheEntry<V> entry)
+		{
+			this.key = key;
+			this.entry = entry;
+			this.lastAccess = entry.lastAccess;
+		}
+		public int compareTo(EvictCandidate<K,V> o) {
+			long d = lastAccess - o.lastAccess;
+			return d < 0?-1:(d == 0?0:1);
+		}
+	}
+
+	private final ConcurrentHashMap<K,CacheEntry<V>> entries;
+	private final int maxSize;
+	private final int trimSize;
+	private final AtomicBoolean evicting = new AtomicBoolean(false);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public ConcurrentLRUCache(int maxSize) {
+		if(maxSize <= 0)
+			throw new IllegalArgumentException("Cache size must be greater than 0:" + maxSize);
+		this.maxSize = maxSize;
+		this.trimSize = Math.max(1, maxSize - maxSize / 10);
+		this.entries = new ConcurrentHashMap<K,CacheEntry<V>>(Math.min(maxSize, 1024));
+	}
+
+	public V get(K key)
+	{
+		CacheEntry<V> entry = entries.get(key);
+		if(entry == null)
+		{
+			misses.increment();
+			return null;
+		}
+		entry.lastAccess = System.nanoTime();
+		hits.increment();
+		return entry.value;
+	}
+
+	public void put(K key,V value)
+	{
+		entries.put(key, new CacheEntry<V>(value));
+		evictIfNecessary();
+	}
+
+	/**
+	 * 如果key对应的记录已经存在则返回已经存在的值，否则放入value并返回value
+	 */
+	public V putIfAbsent(K key,V value)
+	{
+		CacheEntry<V> old = entries.putIfAbsent(key, new CacheEntry<V>(value));
+		if(old != null)
+			return old.value;
+		evictIfNecessary();
+		return value;
+	}
+
+	public void remove(K key)
+	{
+		entries.remove(key);
+	}
+
+	public void clear()
+	{
+		entries.clear();
+	}
+
+	private void evictIfNecessary()
+	{
+		if(entries.size() <= maxSize || !evicting.compareAndSet(false, true))
+			return;
+		try
+		{
+			int size = entries.size();
+			if(size <= maxSize)
+				return;
+			//先记录访问时间的快照再排序，避免排序过程中访问时间变化
+			List<EvictCandidate<K,V>> all = new ArrayList<EvictCandidate<K,V>>(size);
+			Iterator<Map.Entry<K,CacheEntry<V>>> it = entries.entrySet().iterator();
+			while(it.hasNext())
+			{
+				Map.Entry<K,CacheEntry<V>> e = it.next();
+				all.add(new EvictCandidate<K,V>(e.getKey(),e.getValue()));
+			}
+			Collections.sort(all);
+			int removes = all.size() - trimSize;
+			for(int i = 0; i < removes; i ++)
+			{
+				EvictCandidate<K,V> e = all.get(i);
+				if(entries.remove(e.key, e.entry))
+					evictions.increment();
+			}
+		}
+		finally
+		{
+			evicting.set(false);
+		}
+	}
+
+	public int size()
+	{
+		return entries.size();
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	public void resetStatistics()
+	{
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.frameworkset.persitent.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import com.frameworkset.common.poolman.Param;
+import com.frameworkset.common.poolman.util.JDBCPool;
+import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
+import com.frameworkset.common.poolman.util.SQLManager;
+import com.frameworkset.orm.annotation.TransactionType;
+import com.frameworkset.orm.transaction.JDBCTransaction;
+import com.frameworkset.orm.transaction.TransactionManager;
+
+/**
+ * <p>Title: CountCache.java</p>
+ * <p>Description: 分页查询总记录数缓存，按照数据源区分，缓存的key为count语句和绑定的参数值，
+ * 相同查询条件的第2..N页直接使用第一页查询得到的总记录数，不再执行count查询。
+ * 缓存记录在countcachettl毫秒后过期；通过PreparedDBUtil执行的insert/update/delete语句会使
+ * 查询了相同表的缓存记录失效，无法解析表名的修改语句使数据源所有的缓存记录失效。
+ * 修改语句在事务中执行时，语句执行后和事务提交后各失效一次，事务执行期间其他线程查询并缓存的
+ * 提交前的总记录数在提交时失效；事务中的分页查询不读取也不写入缓存。
+ * 缓存只能感知通过PreparedDBUtil执行的修改，其他途径（其他应用、存储过程、外部传入的非自动提交连接等）
+ * 修改数据后，缓存的总记录数最长在countcachettl毫秒内与实际记录数不一致，
+ * 可以调用invalidate(dbname,table)或者clear(dbname)主动失效。
+ * 在数据源上配置countcache为true时启用</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class CountCache {
+	private static final ConcurrentHashMap<String,CountCache> countCaches = new ConcurrentHashMap<String,CountCache>();
+	private static final Pattern DML_TABLE = Pattern.compile(
+			"^\\s*(?:insert\\s+into|update|delete\\s+from|delete|merge\\s+into|truncate\\s+table)\\s+([\\w$#.\"`\\[\\]]+)",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern QUERY_TABLES = Pattern.compile("\\b(from|join)\\s+", Pattern.CASE_INSENSITIVE);
+	private static final Pattern IDENTIFIER = Pattern.compile("\\G\\s*([\\w$#.\"`\\[\\]]+)");
+	private static final String[] CLAUSE_KEYWORDS = new String[]{"where","group","order","having","union","join","left","right",
+		"inner","outer","full","cross","on","limit","connect","start","minus","except","intersect","natural","for","fetch","offset"};
+
+	/**
+	 * 缓存的总记录数以及计算总记录数时相关表的版本号
+	 */
+	private static class CountEntry
+	{
+		private final long total;
+		private final long expire;
+		private final Stamp stamp;
+		CountEntry(long total,long expire,Stamp stamp)
+		{
+			this.total = total;
+			this.expire = expire;
+			this.stamp = stamp;
+		}
+	}
+
+	/**
+	 * 执行count查询前记录的相关表的版本号，count查询执行期间表被修改时缓存的记录会被判定为失效
+	 */
+	public static class Stamp
+	{
+		private final String[] tables;
+		private final long[] versions;
+		private final long globalVersion;
+		private Stamp(String[] tables,long[] versions,long globalVersion)
+		{
+			this.tables = tables;
+			this.versions = versions;
+			this.globalVersion = globalVersion;
+		}
+	}
+
+	private final long ttl;
+	private final ConcurrentLRUCache<String,CountEntry> counts;
+	private final ConcurrentHashMap<String,AtomicLong> tableVersions = new ConcurrentHashMap<String,AtomicLong>();
+	/**
+	 * 无法解析出表名的修改操作以及clear操作使用的全局版本号
+	 */
+	private final AtomicLong globalVersion = new AtomicLong();
+
+	public CountCache(long ttl,int maxSize) {
+		this.ttl = ttl;
+		this.counts = new ConcurrentLRUCache<String,CountEntry>(maxSize > 0?maxSize:1000);
+	}
+
+	/**
+	 * 获取数据源的总记录数缓存，数据源没有启用countcache时返回null
+	 * @param pool
+	 * @return
+	 */
+	public static CountCache getCountCache(JDBCPool pool)
+	{
+		if(pool == null)
+			return null;
+		JDBCPoolMetaData meta = pool.getJDBCPoolMetadata();
+		if(meta == null || !meta.isCountcache())
+			return null;
+		CountCache cache = countCaches.get(pool.getDBName());
+		if(cache == null)
+		{
+			cache = new CountCache(meta.getCountcachettl(),meta.getCountcachesize());
+			CountCache old = countCaches.putIfAbsent(pool.getDBName(), cache);
+			if(old != null)
+				cache = old;
+		}
+		return cache;
+	}
+
+	private static CountCache getCountCache(String dbname)
+	{
+		JDBCPool pool = SQLManager.getInstance().getPool(dbname);
+		return pool == null?null:countCaches.get(pool.getDBName());
+	}
+
+	/**
+	 * 使数据源中查询了指定表的缓存记录失效，用于数据被其他途径修改的场景
+	 * @param dbname
+	 * @param table
+	 */
+	public static void invalidate(String dbname,String table)
+	{
+		CountCache cache = getCountCache(dbname);
+		if(cache != null)
+			cache.invalidateTable(table);
+	}
+
+	/**
+	 * 清除数据源所有的缓存记录
+	 * @param dbname
+	 */
+	public static void clear(String dbname)
+	{
+		CountCache cache = getCountCache(dbname);
+		if(cache != null)
+			cache.clear();
+	}
+
+	/**
+	 * 构建缓存key，参数中包含流、大字段等无法比较的值时返回null，不缓存
+	 * @param countsql
+	 * @param params
+	 * @return
+	 */
+	public String buildKey(String countsql,List<Param> params)
+	{
+		StringBuilder key = new StringBuilder(countsql);
+		if(params != null)
+		{
+			for(int i = 0; i < params.size(); i ++)
+			{
+				key.append('\n');
+				if(!appendValue(key, params.get(i).getData()))
+					return null;
+			}
+		}
+		return key.toString();
+	}
+
+	private static boolean appendValue(StringBuilder key,Object value)
+	{
+		if(value == null)
+		{
+			key.append("null");
+		}
+		else if(value instanceof Object[])
+		{
+			Object[] values = (Object[])value;
+			key.append('[');
+			for(int i = 0; i < values.length; i ++)
+			{
+				if(i > 0)
+					key.append(',');
+				if(!appendValue(key, values[i]))
+					return false;
+			}
+			key.append(']');
+		}
+		else if(value instanceof Date)
+		{
+			key.append(value.getClass().getName()).append(':').append(((Date)value).getTime());
+		}
+		else if(value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof Character || value instanceof java.util.Calendar)
+		{
+			key.append(value.getClass().getName()).append(':').append(value);
+		}
+		else
+		{
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 获取缓存的总记录数，没有缓存、缓存过期或者相关的表已经被修改时返回-1
+	 * @param key
+	 * @return
+	 */
+	public long getTotalsize(String key)
+	{
+		CountEntry entry = counts.get(key);
+		if(entry == null)
+			return -1L;
+		if(entry.expire < System.currentTimeMillis() || !isCurrent(entry.stamp))
+		{
+			counts.remove(key);
+			return -1L;
+		}
+		return entry.total;
+	}
+
+	/**
+	 * 执行count查询之前记录查询相关表的版本号
+	 * @param sql 分页查询语句
+	 * @return
+	 */
+	public Stamp stamp(String sql)
+	{
+		String[] tables = parserQueryTables(sql);
+		long[] versions = new long[tables.length];
+		for(int i = 0; i < tables.length; i ++)
+		{
+			versions[i] = getVersion(tables[i]).get();
+		}
+		return new Stamp(tables,versions,globalVersion.get());
+	}
+
+	public void put(String key,Stamp stamp,long total)
+	{
+		counts.put(key, new CountEntry(total,System.currentTimeMillis() + ttl,stamp));
+	}
+
+	private boolean isCurrent(Stamp stamp)
+	{
+		if(stamp.globalVersion != globalVersion.get())
+			return false;
+		for(int i = 0; i < stamp.tables.length; i ++)
+		{
+			if(stamp.versions[i] != getVersion(stamp.tables[i]).get())
+				return false;
+		}
+		return true;
+	}
+
+	private AtomicLong getVersion(String table)
+	{
+		AtomicLong version = tableVersions.get(table);
+		if(version == null)
+		{
+			version = new AtomicLong();
+			AtomicLong old = tableVersions.putIfAbsent(table, version);
+			if(old != null)
+				version = old;
+		}
+		return version;
+	}
+
+	/**
+	 * 修改语句执行后调用，使查询了修改语句对应表的缓存记录失效
+	 * @param sql insert/update/delete语句
+	 */
+	public void invalidate(String sql)
+	{
+		invalidateTableOrAll(parserDMLTable(sql));
+	}
+
+	/**
+	 * 修改语句执行后调用，立即使相关的缓存记录失效；语句在事务中执行时，事务提交后再失效一次，
+	 * 避免事务执行期间其他线程查询并缓存的提交前的总记录数在提交后继续使用到过期
+	 * @param sql insert/update/delete语句
+	 */
+	public void invalidateAfterCommit(String sql)
+	{
+		String table = parserDMLTable(sql);
+		invalidateTableOrAll(table);
+		JDBCTransaction tx = TransactionManager.getTransaction();
+		if(tx != null && tx.getTXType() != TransactionType.RW_TRANSACTION)
+		{
+			try
+			{
+				tx.registerSynchronization(new CommitInvalidation(this,table));
+			}
+			catch(Exception e)
+			{
+				//事务已经结束，语句执行后的失效已经生效
+			}
+		}
+	}
+
+	private static String parserDMLTable(String sql)
+	{
+		Matcher m = DML_TABLE.matcher(sql);
+		return m.find()?normalize(m.group(1)):null;
+	}
+
+	private void invalidateTableOrAll(String table)
+	{
+		if(table != null)
+			getVersion(table).incrementAndGet();
+		else
+			globalVersion.incrementAndGet();
+	}
+
+	/**
+	 * 事务提交后使修改表的缓存记录失效，同一事务中相同的表只注册一次
+	 */
+	private static class CommitInvalidation implements Synchronization
+	{
+		private final CountCache cache;
+		private final String table;
+		CommitInvalidation(CountCache cache,String table)
+		{
+			this.cache = cache;
+			this.table = table;
+		}
+
+		public void beforeCompletion()
+		{
+		}
+
+		public void afterCompletion(int status)
+		{
+			if(status == Status.STATUS_COMMITTED)
+				cache.invalidateTableOrAll(table);
+		}
+
+		public boolean equals(Object obj)
+		{
+			if(!(obj instanceof CommitInvalidation))
+				return false;
+			CommitInvalidation other = (CommitInvalidation)obj;
+			return cache == other.cache && (table == null?other.table == null:table.equals(other.table));
+		}
+
+		public int hashCode()
+		{
+			return System.identityHashCode(cache) * 31 + (table == null?0:table.hashCode());
+		}
+	}
+
+	public void invalidateTable(String table)
+	{
+		getVersion(normalize(table)).incrementAndGet();
+	}
+
+	public void clear()
+	{
+		globalVersion.incrementAndGet();
+		counts.clear();
+	}
+
+	public ConcurrentLRUCache<String,?> getCounts()
+	{
+		return counts;
+	}
+
+	/**
+	 * 去掉表名的schema前缀和引号，转换为小写
+	 */
+	private static String normalize(String table)
+	{
+		int idx = table.lastIndexOf('.');
+		if(idx >= 0)
+			table = table.substring(idx + 1);
+		StringBuilder ret = new StringBuilder(table.length());
+		for(int i = 0; i < table.length(); i ++)
+		{
+			char c = table.charAt(i);
+			if(c != '"' && c != '`' && c != '[' && c != ']')
+				ret.append(Character.toLowerCase(c));
+		}
+		return ret.toString();
+	}
+
+	private static boolean isClauseKeyword(String token)
+	{
+		for(int i = 0; i < CLAUSE_KEYWORDS.length; i ++)
+		{
+			if(CLAUSE_KEYWORDS[i].equalsIgnoreCase(token))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 解析查询语句from和join子句中的表名，子查询中的表由子查询的from子句解析
+	 */
+	static String[] parserQueryTables(String sql)
+	{
+		List<String> tables = new ArrayList<String>();
+		Matcher m = QUERY_TABLES.matcher(sql);
+		Matcher id = IDENTIFIER.matcher(sql);
+		while(m.find())
+		{
+			boolean from = m.group(1).equalsIgnoreCase("from");
+			int pos = m.end();
+			while(true)
+			{
+				id.region(pos, sql.length());
+				if(!id.find())//子查询或者语法不支持的情况
+					break;
+				String table = normalize(id.group(1));
+				if(isClauseKeyword(table))
+					break;
+				if(!tables.contains(table))
+					tables.add(table);
+				pos = id.end();
+				//跳过表的别名
+				id.region(pos, sql.length());
+				if(id.find())
+				{
+					String alias = id.group(1);
+					if(alias.equalsIgnoreCase("as"))
+					{
+						pos = id.end();
+						id.region(pos, sql.length());
+						if(id.find())
+							pos = id.end();
+					}
+					else if(!isClauseKeyword(alias))
+					{
+						pos = id.end();
+					}
+				}
+				if(!from)
+					break;
+				//from子句中逗号分隔的多个表
+				while(pos < sql.length() && Character.isWhitespace(sql.charAt(pos)))
+					pos ++;
+				if(pos >= sql.length() || sql.charAt(pos) != ',')
+					break;
+				pos ++;
+			}
+		}
+		return tables.toArray(new String[tables.size()]);
+	}
+}
@@ -16,19 +16,26 @@
 
 package org.frameworkset.persitent.util;
 
-import java.lang.ref.SoftReference;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.frameworkset.common.poolman.monitor.SQLCacheStatic;
 import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+import com.frameworkset.common.poolman.util.JDBCPool;
+import com.frameworkset.common.poolman.util.SQLManager;
 import com.frameworkset.util.VariableHandler;
 import com.frameworkset.util.VariableHandler.SQLStruction;
 
 /**
  * <p>Title: SQLCache.java</p> 
- * <p>Description: </p>
+ * <p>Description: sql语句结构和查询结果集元数据缓存，所有的缓存都有容量限制，
+ * 超过容量时按照LRU策略淘汰，结果集元数据缓存按照数据源分别设置容量，
+ * 容量通过poolman.xml中数据源的sqlcachesize属性指定</p>
  * <p>bboss workgroup</p>
  * <p>Copyright (c) 2007</p>
  * @Date 2012-12-5 下午6:15:07
@@ -36,12 +43,22 @@ import com.frameworkset.util.VariableHandler.SQLStruction;
  * @version 1.0
  */
 public class SQLCache {
-	private Object lock = new Object();
-	private Map<String,SQLStruction> parserSQLStructions = new java.util.WeakHashMap<String,SQLStruction>();
-	private Map<String,SQLStruction> parsertotalsizeSQLStructions = new java.util.WeakHashMap<String,SQLStruction>();
-	protected Map<String,Map<String, SoftReference<PoolManResultSetMetaData>>> metas = new HashMap<String,Map<String, SoftReference<PoolManResultSetMetaData>>>();
+	/**
+	 * 缺省缓存容量
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 5000;
+	private int cacheSize;
+	private ConcurrentLRUCache<String,SQLStruction> parserSQLStructions ;
+	private ConcurrentLRUCache<String,SQLStruction> parsertotalsizeSQLStructions ;
+	protected ConcurrentHashMap<String,ConcurrentLRUCache<String,PoolManResultSetMetaData>> metas = new ConcurrentHashMap<String,ConcurrentLRUCache<String,PoolManResultSetMetaData>>();
 	public SQLCache() {
-		// TODO Auto-generated constructor stub
+		this(DEFAULT_CACHE_SIZE);
+	}
+	
+	public SQLCache(int cacheSize) {
+		this.cacheSize = cacheSize;
+		parserSQLStructions = new ConcurrentLRUCache<String,SQLStruction>(cacheSize);
+		parsertotalsizeSQLStructions = new ConcurrentLRUCache<String,SQLStruction>(cacheSize);
 	}
 	
 	
@@ -51,50 +68,67 @@ public class SQLCache {
 		parserSQLStructions.clear();
 		parsertotalsizeSQLStructions.clear();
 	}
-	public PoolManResultSetMetaData getPoolManResultSetMetaData(String dbname,String sqlkey,ResultSetMetaData rsmetadata) throws SQLException
+	
+	private ConcurrentLRUCache<String,PoolManResultSetMetaData> getDBMetas(String dbname)
 	{
-		PoolManResultSetMetaData meta = null;
-		Map<String, SoftReference<PoolManResultSetMetaData>> dbmetas = metas.get(dbname);
+		ConcurrentLRUCache<String,PoolManResultSetMetaData> dbmetas = metas.get(dbname);
 		if(dbmetas == null)
 		{
-			synchronized(metas)
-			{
-				dbmetas = metas.get(dbname);
-				if(dbmetas == null)
-				{
-					dbmetas = new HashMap<String, SoftReference<PoolManResultSetMetaData>>();
-					metas.put(dbname, dbmetas);
-				}
-			}
+			int size = cacheSize;
+			JDBCPool pool = SQLManager.getInstance().getPool(dbname);
+			if(pool != null && pool.getJDBCPoolMetadata().getSqlcachesize() > 0)
+				size = pool.getJDBCPoolMetadata().getSqlcachesize();
+			dbmetas = new ConcurrentLRUCache<String,PoolManResultSetMetaData>(size);
+			ConcurrentLRUCache<String,PoolManResultSetMetaData> old = metas.putIfAbsent(dbname, dbmetas);
+			if(old != null)
+				dbmetas = old;
 		}
-//		sqlkey = sqlkey + "__pagine" ;
-//		if (dbmetas.containsKey(sqlkey)) {
-		SoftReference<PoolManResultSetMetaData> wr =  dbmetas.get(sqlkey);
-		if (wr != null) {
-			meta = (PoolManResultSetMetaData) wr.get();
-			
-			if (meta == null) {				
-				meta = PoolManResultSetMetaData.getCopy(rsmetadata);
-				SoftReference<PoolManResultSetMetaData> wr1 = new SoftReference<PoolManResultSetMetaData>(meta);				
-				dbmetas.put(sqlkey, wr1);
-			}
-			else
-			{
-				if(meta.getColumnCount() != rsmetadata.getColumnCount())
-				{
-					meta = PoolManResultSetMetaData.getCopy(rsmetadata);
-					wr = new SoftReference<PoolManResultSetMetaData>(meta);
-					dbmetas.put(sqlkey, wr);
-				}
-			}
-		} else {
+		return dbmetas;
+	}
+	public PoolManResultSetMetaData getPoolManResultSetMetaData(String dbname,String sqlkey,ResultSetMetaData rsmetadata) throws SQLException
+	{
+		ConcurrentLRUCache<String,PoolManResultSetMetaData> dbmetas = getDBMetas(dbname);
+		PoolManResultSetMetaData meta = dbmetas.get(sqlkey);
+		if (meta == null || !meta.isSameColumns(rsmetadata)) {
 			meta = PoolManResultSetMetaData.getCopy(rsmetadata);
-			wr = new SoftReference<PoolManResultSetMetaData>(meta);
-			dbmetas.put(sqlkey, wr);
+			dbmetas.put(sqlkey, meta);
 		}
 		return meta;
 	}
 	
+	/**
+	 * 获取缓存统计信息
+	 * @param sqlfile 缓存所属的sql配置文件
+	 * @return
+	 */
+	public List<SQLCacheStatic> getSQLCacheStatics(String sqlfile)
+	{
+		List<SQLCacheStatic> statics = new ArrayList<SQLCacheStatic>();
+		statics.add(buildStatic(sqlfile, null, SQLCacheStatic.CACHE_SQLSTRUCTION, parserSQLStructions));
+		statics.add(buildStatic(sqlfile, null, SQLCacheStatic.CACHE_TOTALSIZESQLSTRUCTION, parsertotalsizeSQLStructions));
+		Iterator<Map.Entry<String,ConcurrentLRUCache<String,PoolManResultSetMetaData>>> it = metas.entrySet().iterator();
+		while(it.hasNext())
+		{
+			Map.Entry<String,ConcurrentLRUCache<String,PoolManResultSetMetaData>> entry = it.next();
+			statics.add(buildStatic(sqlfile, entry.getKey(), SQLCacheStatic.CACHE_METADATA, entry.getValue()));
+		}
+		return statics;
+	}
+	
+	private SQLCacheStatic buildStatic(String sqlfile,String dbname,String cachetype,ConcurrentLRUCache cache)
+	{
+		SQLCacheStatic cacheStatic = new SQLCacheStatic();
+		cacheStatic.setSqlfile(sqlfile);
+		cacheStatic.setDbname(dbname);
+		cacheStatic.setCachetype(cachetype);
+		cacheStatic.setMaxsize(cache.getMaxSize());
+		cacheStatic.setSize(cache.size());
+		cacheStatic.setHits(cache.getHits());
+		cacheStatic.setMisses(cache.getMisses());
+		cacheStatic.setEvictions(cache.getEvictions());
+		return cacheStatic;
+	}
+	
 	public SQLStruction getSQLStruction(SQLInfo sqlinfo,String newsql)
 	{
 		String sql = newsql;
@@ -116,15 +150,7 @@ public class SQLCache {
 		SQLStruction sqlstruction =  parserSQLStructions.get(key);
         if(sqlstruction == null)
         {
-            synchronized(lock)
-            {
-            	sqlstruction =  parserSQLStructions.get(key);
-                if(sqlstruction == null)
-                {
-                	sqlstruction = VariableHandler.parserSQLStruction(sql);
-                	parserSQLStructions.put(key,sqlstruction);
-                }
-            }
+        	sqlstruction = parserSQLStructions.putIfAbsent(key,VariableHandler.parserSQLStruction(sql));
         }  
         return sqlstruction;
 	}
@@ -150,15 +176,7 @@ public class SQLCache {
 		SQLStruction totalsizesqlstruction =  parsertotalsizeSQLStructions.get(key);
 	    if(totalsizesqlstruction == null)
 	    {
-	        synchronized(lock)
-	        {
-	        	totalsizesqlstruction =  parsertotalsizeSQLStructions.get(key);
-	            if(totalsizesqlstruction == null)
-	            {
-	            	totalsizesqlstruction = VariableHandler.parserSQLStruction(totalsizesql);
-	            	parsertotalsizeSQLStructions.put(key,totalsizesqlstruction);
-	            }
-	        }
+	    	totalsizesqlstruction = parsertotalsizeSQLStructions.putIfAbsent(key,VariableHandler.parserSQLStruction(totalsizesql));
 	    } 
         return totalsizesqlstruction;
 	}
@@ -16,6 +16,8 @@
 
 package org.frameworkset.persitent.util;
 
+import com.frameworkset.orm.cache.CacheModel;
+
 /**
  * <p>Title: SQLInfo.java</p> 
  * <p>Description: </p>
@@ -31,6 +33,10 @@ public class SQLInfo {
 	private SQLTemplate sqltpl;
 	private boolean istpl;
 	private boolean multiparser;
+	/**
+	 * 查询结果缓存模型，sql配置了cachemodel属性时才有值
+	 */
+	private CacheModel cacheModel;
 	/**
 	 * @param multiparser the multiparser to set
 	 */
@@ -94,6 +100,16 @@ public class SQLInfo {
 	}
 
 
+	public CacheModel getCacheModel() {
+		return cacheModel;
+	}
+
+
+	public void setCacheModel(CacheModel cacheModel) {
+		this.cacheModel = cacheModel;
+	}
+
+
 	public SQLUtil getSqlutil() {
 		return sqlutil;
 	}
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -33,8 +34,11 @@ import org.frameworkset.spi.assemble.Pro;
 
 import bboss.org.apache.velocity.VelocityContext;
 
+import com.frameworkset.common.poolman.monitor.SQLCacheStatic;
 import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
 import com.frameworkset.common.poolman.util.SQLManager;
+import com.frameworkset.orm.cache.CacheModel;
+import com.frameworkset.orm.cache.LRUCacheControl;
 import com.frameworkset.util.DaemonThread;
 import com.frameworkset.util.ResourceInitial;
 import com.frameworkset.util.VariableHandler.SQLStruction;
@@ -68,6 +72,14 @@ public class SQLUtil {
 	protected Map<String,SQLInfo> sqls;
 	protected Map<String,SQLRef> sqlrefs;
 	protected boolean hasrefs;
+	/**
+	 * 查询结果缓存模型，以cachemodel id为索引
+	 */
+	protected Map<String,CacheModel> cacheModels = new HashMap<String,CacheModel>();
+	/**
+	 * 修改操作的sql名称和执行后需要刷新的缓存模型
+	 */
+	protected Map<String,List<CacheModel>> flushTriggers = new HashMap<String,List<CacheModel>>();
 	
 	public static class SQLRef
 	{
@@ -152,6 +164,8 @@ public class SQLUtil {
 		sqlrefs = null;
 		sqls = new HashMap<String,SQLInfo>();
 		sqlrefs = new HashMap<String,SQLRef> ();
+		Map<String,CacheModel> cacheModels = new HashMap<String,CacheModel>();
+		Map<String,List<CacheModel>> flushTriggers = new HashMap<String,List<CacheModel>>();
 		Set keys = this.sqlcontext.getPropertyKeys();
 		if(keys != null && keys.size() > 0)
 		{
@@ -184,7 +198,7 @@ public class SQLUtil {
 								BBossVelocityUtil.initTemplate(sqltpl);
 								sqltpl.process();
 							}
-							
+							buildCacheModel(pro,sqlinfo,cacheModels,flushTriggers);
 							sqls.put(key, sqlinfo);
 						}
 					}
@@ -204,6 +218,158 @@ public class SQLUtil {
 				}
 			}
 		}
+		this.cacheModels = cacheModels;
+		this.flushTriggers = flushTriggers;
+	}
+	
+	/**
+	 * 根据sql的cachemodel属性构建查询结果缓存模型，cachemodel相同的sql共用一个缓存模型，
+	 * 缓存模型的属性可以配置在其中任意一个sql上：
+	 * cacheflushinterval 定时刷新缓存的间隔，单位毫秒；
+	 * cachesize 缓存的最大结果数，默认1000，必须大于0，否则sql配置文件加载失败；
+	 * cachereadonly 默认为true，所有调用者共享缓存的结果，不能修改结果；为false时缓存序列化后的结果，每次返回结果的副本；
+	 * cacheflushon 逗号分隔的sql名称，通过这些sql执行修改操作后刷新缓存
+	 */
+	private void buildCacheModel(Pro pro,SQLInfo sqlinfo,Map<String,CacheModel> cacheModels,Map<String,List<CacheModel>> flushTriggers)
+	{
+		String id = (String)pro.getExtendAttribute("cachemodel");
+		if(id == null)
+			return;
+		CacheModel cacheModel = cacheModels.get(id);
+		if(cacheModel == null)
+		{
+			cacheModel = new CacheModel();
+			cacheModel.setId(id);
+			cacheModel.setResource(sqlcontext.getConfigfile());
+			cacheModel.setReadOnly(true);
+			cacheModel.setCacheController(new LRUCacheControl());
+			cacheModels.put(id, cacheModel);
+		}
+		if(pro.getExtendAttribute("cachereadonly") != null)
+		{
+			boolean readOnly = pro.getBooleanExtendAttribute("cachereadonly");
+			cacheModel.setReadOnly(readOnly);
+			cacheModel.setSerialize(!readOnly);
+		}
+		if(pro.getExtendAttribute("cacheflushinterval") != null)
+			cacheModel.setFlushInterval(pro.getLongExtendAttribute("cacheflushinterval"));
+		if(pro.getExtendAttribute("cachesize") != null)
+		{
+			Properties props = new Properties();
+			props.setProperty("size", String.valueOf(pro.getExtendAttribute("cachesize")));
+			try
+			{
+				cacheModel.configure(props);
+			}
+			catch(IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException(sqlcontext.getConfigfile()+"中name="+sqlinfo.getSqlname()+"的sql的缓存模型["+id+"]配置错误:" + e.getMessage(), e);
+			}
+		}
+		String flushon = (String)pro.getExtendAttribute("cacheflushon");
+		if(flushon != null)
+		{
+			String[] sqlnames = flushon.split(",");
+			for(int i = 0; i < sqlnames.length; i ++)
+			{
+				String sqlname = sqlnames[i].trim();
+				if(sqlname.length() == 0)
+					continue;
+				cacheModel.addFlushTriggerStatement(sqlname);
+				List<CacheModel> models = flushTriggers.get(sqlname);
+				if(models == null)
+				{
+					models = new ArrayList<CacheModel>();
+					flushTriggers.put(sqlname, models);
+				}
+				if(!models.contains(cacheModel))
+					models.add(cacheModel);
+			}
+		}
+		sqlinfo.setCacheModel(cacheModel);
+	}
+	
+	private void clearCacheModels()
+	{
+		Iterator<CacheModel> it = this.cacheModels.values().iterator();
+		while(it.hasNext())
+			it.next().flush();
+	}
+	
+	/**
+	 * 修改操作执行后刷新以该sql作为cacheflushon的查询结果缓存，
+	 * 数据库专用的sql(sqlname-dbtype)按照sqlname匹配
+	 * @param sqlname
+	 */
+	public void flushCacheModels(String sqlname)
+	{
+		List<CacheModel> models = getFlushCacheModels(sqlname);
+		if(models != null)
+		{
+			for(int i = 0; i < models.size(); i ++)
+				models.get(i).flush();
+		}
+	}
+	
+	/**
+	 * 修改语句执行后刷新以该sql作为cacheflushon的查询结果缓存，当前线程存在事务时在事务提交后刷新
+	 * @param sqlname
+	 */
+	public void flushCacheModelsAfterCommit(String sqlname)
+	{
+		List<CacheModel> models = getFlushCacheModels(sqlname);
+		if(models != null)
+		{
+			for(int i = 0; i < models.size(); i ++)
+				models.get(i).flushAfterCommit();
+		}
+	}
+	
+	private List<CacheModel> getFlushCacheModels(String sqlname)
+	{
+		if(sqlname == null)
+			return null;
+		Map<String,List<CacheModel>> flushTriggers = this.flushTriggers;
+		if(flushTriggers.isEmpty())
+			return null;
+		List<CacheModel> models = flushTriggers.get(sqlname);
+		if(models == null)
+		{
+			int idx = sqlname.lastIndexOf('-');
+			if(idx > 0)
+				models = flushTriggers.get(sqlname.substring(0,idx));
+		}
+		return models;
+	}
+	
+	/**
+	 * 获取查询结果缓存的统计信息
+	 * @param sqlfile
+	 * @return
+	 */
+	List<SQLCacheStatic> getCacheModelStatics(String sqlfile)
+	{
+		List<SQLCacheStatic> statics = new ArrayList<SQLCacheStatic>();
+		Iterator<CacheModel> it = this.cacheModels.values().iterator();
+		while(it.hasNext())
+		{
+			CacheModel cacheModel = it.next();
+			SQLCacheStatic cacheStatic = new SQLCacheStatic();
+			cacheStatic.setSqlfile(sqlfile);
+			cacheStatic.setCachetype(SQLCacheStatic.CACHE_RESULT);
+			cacheStatic.setCachemodel(cacheModel.getId());
+			cacheStatic.setHits(cacheModel.getHits());
+			cacheStatic.setMisses(cacheModel.getRequests() - cacheModel.getHits());
+			if(cacheModel.getCacheController() instanceof LRUCacheControl)
+			{
+				ConcurrentLRUCache<Object,Object> cache = ((LRUCacheControl)cacheModel.getCacheController()).getCache();
+				cacheStatic.setMaxsize(cache.getMaxSize());
+				cacheStatic.setSize(cache.size());
+				cacheStatic.setEvictions(cache.getEvictions());
+			}
+			statics.add(cacheStatic);
+		}
+		return statics;
 	}
 	
 	public boolean hasrefs()
@@ -224,6 +390,7 @@ public class SQLUtil {
 			sqlrefs = null;
 		}
 		this.cache.clear();
+		this.clearCacheModels();
 		if(sqlcontext != null)
 			sqlcontext.destroy(true);
 		
@@ -244,6 +411,7 @@ public class SQLUtil {
 			sqlrefs = null;
 		}
 		this.cache.clear();
+		this.clearCacheModels();
 		String file = sqlcontext.getConfigfile();
 		sqlcontext.destroy(true);
 		sqlcontext = new SOAFileApplicationContext(file);		
@@ -719,5 +887,27 @@ public class SQLUtil {
 	public static GloableSQLUtil getGlobalSQLUtil() {
 		return globalSQLUtil;
 	}
+	
+	/**
+	 * 获取全局sql缓存和所有sql配置文件缓存的统计信息，全局sql缓存对应的sqlfile为global
+	 * @return
+	 */
+	public static List<SQLCacheStatic> getSQLCacheStatics()
+	{
+		List<SQLCacheStatic> statics = new ArrayList<SQLCacheStatic>();
+		if(globalSQLUtil != null)
+			statics.addAll(globalSQLUtil.cache.getSQLCacheStatics("global"));
+		List<Map.Entry<String,SQLUtil>> utils = null;
+		synchronized(sqlutils)
+		{
+			utils = new ArrayList<Map.Entry<String,SQLUtil>>(sqlutils.entrySet());
+		}
+		for(Map.Entry<String,SQLUtil> util:utils)
+		{
+			statics.addAll(util.getValue().cache.getSQLCacheStatics(util.getKey()));
+			statics.addAll(util.getValue().getCacheModelStatics(util.getKey()));
+		}
+		return statics;
+	}
 
 }
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+
+import com.frameworkset.common.poolman.handle.ValueExchange;
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData.WrapInteger;
+
+/**
+ * <p>Title: ArrayRecordBenchmark.java</p>
+ * <p>Description: Hashtable存储的Record与数组存储的ArrayRecord的每行内存分配、常驻内存、构建和读取耗时对比，
+ * 结果集由ResultSetStub模拟，字段类型在INTEGER、BIGINT、DOUBLE、TIMESTAMP、FLOAT、VARCHAR之间循环，
+ * 不属于单元测试，通过main方法单独运行：
+ * java ArrayRecordBenchmark [字段数,默认30] [记录数,默认100000]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ArrayRecordBenchmark {
+	private static int sum;
+
+	/**
+	 * 与ResultMap.buildMap的处理方式相同，构建Hashtable存储的记录
+	 */
+	private static Record buildMap(ResultSetStub rs, PoolManResultSetMetaData meta) throws SQLException {
+		int cols = meta.getColumnCounts();
+		Record record = new Record(cols, meta.get_columnLabel_upper(), meta.getSamecols());
+		record.setRowid(rs.getResultSet().getRow());
+		for (int i = 1; i <= cols; i++) {
+			Object value = ValueExchange.getValueFromRS(rs.getResultSet(), meta.getColumnLabel(i), meta.getColumnType(i),
+					null);
+			if (value != null) {
+				WrapInteger wi = meta.getSameColumns(i);
+				if (wi == null || i == 1)
+					record.put(meta.getColumnLabelUpper(i), value);
+				else
+					record.put(wi.getColumnName(i - 1), value);
+			}
+		}
+		return record;
+	}
+
+	private static Record[] build(ResultSetStub rs, PoolManResultSetMetaData meta, boolean compact, int count)
+			throws SQLException {
+		Record[] records = new Record[count];
+		for (int i = 0; i < count; i++) {
+			rs.setRow(i + 1);
+			records[i] = compact ? ArrayRecord.buildRecord(rs.getResultSet(), meta.getRecordColumns(), null) : buildMap(
+					rs, meta);
+		}
+		return records;
+	}
+
+	private static void read(Record[] records, String[] keys) {
+		for (int i = 0; i < records.length; i++) {
+			for (int j = 0; j < keys.length; j++)
+				sum += records[i].get(keys[j]).hashCode();
+		}
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1L;
+	}
+
+	private static long usedMemory() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void run(ResultSetStub rs, PoolManResultSetMetaData meta, boolean compact, int count)
+			throws SQLException {
+		String[] keys = meta.get_columnLabel_upper();
+		//预热
+		for (int i = 0; i < 5; i++)
+			read(build(rs, meta, compact, count), keys);
+
+		long used = usedMemory();
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		Record[] records = build(rs, meta, compact, count);
+		long buildTime = System.nanoTime() - start;
+		allocated = allocated < 0 ? -1L : allocatedBytes() - allocated;
+		start = System.nanoTime();
+		read(records, keys);
+		long readTime = System.nanoTime() - start;
+		long retained = usedMemory() - used;
+		System.out.println((compact ? "ArrayRecord" : "Record") + " build:" + (buildTime / count) + "ns/row,read:"
+				+ (readTime / count) + "ns/row,allocated:" + (allocated < 0 ? "n/a" : (allocated / count) + "bytes/row")
+				+ ",retained:" + (retained / count) + "bytes/row," + records.length);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int cols = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		ResultSetStub rs = ResultSetStub.columns(cols);
+		PoolManResultSetMetaData meta = PoolManResultSetMetaData.getCopy(rs.getMetaData());
+		run(rs, meta, false, count);
+		run(rs, meta, true, count);
+		System.out.println(sum);
+	}
+}
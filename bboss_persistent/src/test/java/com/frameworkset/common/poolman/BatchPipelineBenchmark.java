@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frameworkset.common.poolman.util.JDBCPoolMetaData;
+import com.frameworkset.common.poolman.util.SQLManager;
+
+/**
+ * <p>Title: BatchPipelineBenchmark.java</p>
+ * <p>Description: insertBeans在嵌入式数据库上的批处理耗时对比：不分批一次executeBatch、按照batchsize分批执行、
+ * 分批并且由转换线程池流水线转换批次，同时输出执行期间jvm中的最大线程数，
+ * 用于确认流水线模式不会为每个批次创建新的线程。缺省使用h2内存数据库，运行时需要将数据库驱动包加入classpath，
+ * 不属于单元测试，通过main方法单独运行：
+ * java BatchPipelineBenchmark [记录数,默认100000] [batchsize,默认1000] [驱动类,默认org.h2.Driver]
+ * [jdbcurl,默认jdbc:h2:mem:batchpipeline;DB_CLOSE_DELAY=-1] [用户名,默认sa] [口令,默认空]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class BatchPipelineBenchmark {
+	private static final String DBNAME = "batchpipeline";
+	private static final String INSERT = "insert into batchpipeline(id,name,amount,created) values(#[id],#[name],#[amount],#[created])";
+
+	public static class Item {
+		private long id;
+		private String name;
+		private double amount;
+		private Timestamp created;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+
+		public void setAmount(double amount) {
+			this.amount = amount;
+		}
+
+		public Timestamp getCreated() {
+			return created;
+		}
+
+		public void setCreated(Timestamp created) {
+			this.created = created;
+		}
+	}
+
+	private static List<Item> createItems(int count) {
+		List<Item> items = new ArrayList<Item>(count);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			Item item = new Item();
+			item.setId(i);
+			item.setName("item" + i);
+			item.setAmount(i * 0.01);
+			item.setCreated(new Timestamp(now + i));
+			items.add(item);
+		}
+		return items;
+	}
+
+	/**
+	 * 按照指定的批处理参数插入所有记录，返回耗时(毫秒)
+	 */
+	private static long run(JDBCPoolMetaData meta, List<Item> items, int batchsize, boolean pipeline) throws Exception {
+		SQLExecutor.deleteWithDBName(DBNAME, "delete from batchpipeline");
+		meta.setBatchsize(batchsize);
+		meta.setBatchpipeline(pipeline);
+		long start = System.nanoTime();
+		SQLExecutor.insertBeans(DBNAME, INSERT, items);
+		return (System.nanoTime() - start) / 1000000L;
+	}
+
+	private static void report(String mode, JDBCPoolMetaData meta, List<Item> items, int batchsize, boolean pipeline)
+			throws Exception {
+		//预热
+		run(meta, items, batchsize, pipeline);
+		int before = Thread.activeCount();
+		long time = run(meta, items, batchsize, pipeline);
+		System.out.println(mode + ":" + time + "ms," + (items.size() * 1000L / Math.max(1L, time)) + "rows/s,threads:"
+				+ before + "->" + Thread.activeCount());
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int batchsize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		String driver = args.length > 2 ? args[2] : "org.h2.Driver";
+		String url = args.length > 3 ? args[3] : "jdbc:h2:mem:batchpipeline;DB_CLOSE_DELAY=-1";
+		String user = args.length > 4 ? args[4] : "sa";
+		String password = args.length > 5 ? args[5] : "";
+		SQLManager.startPool(DBNAME, driver, url, user, password, "false", null);
+		SQLExecutor.updateWithDBName(DBNAME,
+				"create table batchpipeline(id bigint primary key,name varchar(64),amount double,created timestamp)");
+		JDBCPoolMetaData meta = SQLManager.getInstance().getPool(DBNAME).getJDBCPoolMetadata();
+		boolean batchcommit = meta.isBatchcommit();
+		List<Item> items = createItems(count);
+		try {
+			report("single batch", meta, items, 0, false);
+			report("batchsize " + batchsize, meta, items, batchsize, false);
+			report("batchsize " + batchsize + " pipeline", meta, items, batchsize, true);
+			meta.setBatchcommit(true);
+			report("batchsize " + batchsize + " pipeline batchcommit", meta, items, batchsize, true);
+		} finally {
+			meta.setBatchcommit(batchcommit);
+			SQLExecutor.updateWithDBName(DBNAME, "drop table batchpipeline");
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * <p>Title: ResultSetStub.java</p>
+ * <p>Description: 内存中模拟的结果集和结果集元数据，用于不连接数据库的测试和性能对比，
+ * 字段值由列索引和当前行号计算得到：字符串为"列标签:行号"，数值为行号*1000+列索引，时间为行号*1000+列索引毫秒</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+class ResultSetStub implements InvocationHandler {
+	/**
+	 * columns方法生成的字段依次使用的类型
+	 */
+	static final int[] TYPES = new int[] { Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.DOUBLE,
+			Types.TIMESTAMP, Types.FLOAT };
+
+	private final String[] labels;
+	private final int[] types;
+	private final ResultSetMetaData metaData;
+	private final ResultSet resultSet;
+	private int row = 1;
+
+	ResultSetStub(String[] labels, int[] types) {
+		this.labels = labels;
+		this.types = types;
+		ClassLoader loader = ResultSetStub.class.getClassLoader();
+		metaData = (ResultSetMetaData) Proxy.newProxyInstance(loader, new Class[] { ResultSetMetaData.class }, this);
+		resultSet = (ResultSet) Proxy.newProxyInstance(loader, new Class[] { ResultSet.class }, this);
+	}
+
+	/**
+	 * 生成cols个字段，字段标签为col1到colN，字段类型依次循环使用TYPES中的类型
+	 */
+	static ResultSetStub columns(int cols) {
+		String[] labels = new String[cols];
+		int[] types = new int[cols];
+		for (int i = 0; i < cols; i++) {
+			labels[i] = "col" + (i + 1);
+			types[i] = TYPES[(i + 1) % TYPES.length];
+		}
+		return new ResultSetStub(labels, types);
+	}
+
+	ResultSetMetaData getMetaData() {
+		return metaData;
+	}
+
+	ResultSet getResultSet() {
+		return resultSet;
+	}
+
+	void setRow(int row) {
+		this.row = row;
+	}
+
+	private int column(Object arg) {
+		if (arg instanceof Integer)
+			return ((Integer) arg).intValue();
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i].equalsIgnoreCase((String) arg))
+				return i + 1;
+		}
+		throw new IllegalArgumentException("column[" + arg + "] not found.");
+	}
+
+	private static Object defaultValue(Class type) {
+		if (type == boolean.class)
+			return Boolean.FALSE;
+		if (type == int.class)
+			return Integer.valueOf(0);
+		if (type == String.class)
+			return "";
+		return null;
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if (name.equals("getColumnCount"))
+			return Integer.valueOf(labels.length);
+		if (name.equals("getRow"))
+			return Integer.valueOf(row);
+		if (name.equals("getMetaData"))
+			return metaData;
+		if (args == null || args.length != 1)
+			return defaultValue(method.getReturnType());
+		int col = column(args[0]);
+		long value = row * 1000L + col;
+		if (name.equals("getColumnLabel") || name.equals("getColumnName"))
+			return labels[col - 1];
+		if (name.equals("getColumnType"))
+			return Integer.valueOf(types[col - 1]);
+		if (name.equals("getString"))
+			return labels[col - 1] + ":" + row;
+		if (name.equals("getInt"))
+			return Integer.valueOf((int) value);
+		if (name.equals("getLong"))
+			return Long.valueOf(value);
+		if (name.equals("getDouble"))
+			return Double.valueOf(value);
+		if (name.equals("getFloat"))
+			return Float.valueOf(value);
+		if (name.equals("getTimestamp"))
+			return new Timestamp(value);
+		return defaultValue(method.getReturnType());
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.List;
+
+import org.frameworkset.util.BigFile;
+import org.frameworkset.util.ClassUtil;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.frameworkset.util.ClassUtil.PropertieDescription;
+import org.frameworkset.util.annotations.wraper.ColumnWraper;
+
+import bboss.org.objectweb.asm.ClassWriter;
+import bboss.org.objectweb.asm.MethodVisitor;
+import bboss.org.objectweb.asm.Opcodes;
+
+import com.frameworkset.common.poolman.handle.ValueExchange;
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+import com.frameworkset.common.poolman.util.JDBCPool;
+import com.frameworkset.orm.annotation.PrimaryKey;
+
+/**
+ * <p>Title: RowMappingPlanBenchmark.java</p>
+ * <p>Description: 结果集记录映射为值对象时，逐行解析注解和逐列比较列名的原有方式与按照缓存的映射计划映射的单行耗时对比，
+ * 分别测试10、50、200列的结果集，值对象为按照列类型生成的public字段类，结果集由ResultSetStub模拟，
+ * 不属于单元测试，通过main方法单独运行：
+ * java RowMappingPlanBenchmark [每种方式映射的记录数,默认20000]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class RowMappingPlanBenchmark {
+	private static final int[] COLUMNS = new int[] { 10, 50, 200 };
+
+	private static long sum;
+
+	private static class BeanLoader extends ClassLoader {
+		BeanLoader() {
+			super(RowMappingPlanBenchmark.class.getClassLoader());
+		}
+
+		Class define(String name, byte[] code) {
+			return defineClass(name, code, 0, code.length);
+		}
+	}
+
+	private static String descriptor(int type) {
+		switch (type) {
+		case Types.INTEGER:
+			return "I";
+		case Types.BIGINT:
+			return "J";
+		case Types.DOUBLE:
+			return "D";
+		case Types.FLOAT:
+			return "F";
+		case Types.TIMESTAMP:
+			return "Ljava/sql/Timestamp;";
+		default:
+			return "Ljava/lang/String;";
+		}
+	}
+
+	/**
+	 * 生成与结果集字段一一对应的值对象类，字段名称为col1到colN，字段类型与列类型对应
+	 */
+	private static Class createBeanClass(BeanLoader loader, PoolManResultSetMetaData meta) throws Exception {
+		String name = "com/frameworkset/common/poolman/BenchmarkRow" + meta.getColumnCounts();
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		for (int i = 1; i <= meta.getColumnCounts(); i++)
+			cw.visitField(Opcodes.ACC_PUBLIC, "col" + i, descriptor(meta.getColumnType(i)), null, null).visitEnd();
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+		cw.visitEnd();
+		return loader.define(name.replace('/', '.'), cw.toByteArray());
+	}
+
+	/**
+	 * 原有的映射方式：每条记录都重新解析每个属性的@PrimaryKey/@Column注解，并逐列比较列名
+	 */
+	private static void mapByScan(ResultSet rs, PoolManResultSetMetaData meta, ClassInfo beanInfo, Object bean)
+			throws Exception {
+		List<PropertieDescription> attributes = beanInfo.getPropertyDescriptors();
+		for (int n = 0; attributes != null && n < attributes.size(); n++) {
+			PropertieDescription attribute = attributes.get(n);
+			if (attribute.getIgnoreORMapping() != null)
+				continue;
+			if (BigFile.class.isAssignableFrom(attribute.getPropertyType()))
+				continue;
+			String attrName = attribute.getName();
+			String upname = attribute.getUperName();
+			boolean userAnnotation = false;
+			String annotationName = null;
+			PrimaryKey apk = attribute.getPk();
+			if (apk != null) {
+				annotationName = apk.name();
+			} else {
+				ColumnWraper cl = attribute.getColumn();
+				if (cl != null)
+					annotationName = cl.name();
+			}
+			if (annotationName != null && !annotationName.equals("")) {
+				attrName = annotationName;
+				upname = annotationName.toUpperCase();
+				userAnnotation = true;
+			}
+			for (int i = 0; i < meta.getColumnCounts(); i++) {
+				int cidx = i + 1;
+				if (!upname.equals(meta.getColumnLabelUpper(cidx))) {
+					if (userAnnotation || !JDBCPool.nameMapping)
+						continue;
+					String javaName = meta.getColumnJavaName(cidx);
+					if (javaName == null || !attrName.equals(javaName))
+						continue;
+				}
+				Object value = ValueExchange.getValueFromResultSet(rs, meta.getColumnLabel(cidx),
+						meta.getColumnType(cidx), attribute.getPropertyType(), null);
+				if (attribute.canwrite())
+					attribute.setValue(bean, value);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 与ResultMap.buildValueObject相同，按照缓存的映射计划映射
+	 */
+	private static void mapByPlan(ResultSet rs, PoolManResultSetMetaData meta, ClassInfo beanInfo, Object bean)
+			throws Exception {
+		RowMappingPlan plan = meta.getRowMappingPlan(beanInfo);
+		for (int n = 0; n < plan.size(); n++) {
+			PropertieDescription attribute = plan.getAttribute(n);
+			Object value = ValueExchange.getValueFromResultSet(rs, plan.getColumnIndex(n), plan.getColumnType(n),
+					attribute.getPropertyType(), null);
+			attribute.setValue(bean, value);
+		}
+	}
+
+	private static double run(ResultSetStub rs, PoolManResultSetMetaData meta, ClassInfo beanInfo, boolean plan,
+			int count) throws Exception {
+		Class beanClass = beanInfo.getClazz();
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			rs.setRow(i + 1);
+			Object bean = beanClass.newInstance();
+			if (plan)
+				mapByPlan(rs.getResultSet(), meta, beanInfo, bean);
+			else
+				mapByScan(rs.getResultSet(), meta, beanInfo, bean);
+			sum += bean.hashCode();
+		}
+		return (double) (System.nanoTime() - start) / count;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		BeanLoader loader = new BeanLoader();
+		for (int i = 0; i < COLUMNS.length; i++) {
+			ResultSetStub rs = ResultSetStub.columns(COLUMNS[i]);
+			PoolManResultSetMetaData meta = PoolManResultSetMetaData.getCopy(rs.getMetaData());
+			ClassInfo beanInfo = ClassUtil.getClassInfo(createBeanClass(loader, meta));
+			//预热
+			run(rs, meta, beanInfo, false, count);
+			run(rs, meta, beanInfo, true, count);
+			System.out.println(COLUMNS[i] + " columns scan:" + run(rs, meta, beanInfo, false, count) + "ns/row,plan:"
+					+ run(rs, meta, beanInfo, true, count) + "ns/row");
+		}
+		System.out.println(sum);
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import org.frameworkset.persitent.util.ConcurrentLRUCache;
+import org.frameworkset.persitent.util.SQLCache;
+import org.frameworkset.util.ClassUtil;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.junit.Test;
+
+import com.frameworkset.common.poolman.sql.PoolManResultSetMetaData;
+import com.frameworkset.orm.annotation.Column;
+
+/**
+ * <p>Title: RowMappingPlanTest.java</p>
+ * <p>Description: 映射计划的属性和列匹配结果，以及结果集列结构变化(列数、列标签、列类型)时缓存的元数据和映射计划的重建</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class RowMappingPlanTest {
+	private static final String DBNAME = "rowmappingplan";
+
+	public static class RowBean {
+		private int id;
+		private String name;
+		@Column(name = "create_time")
+		private Timestamp created;
+		private String remark;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Timestamp getCreated() {
+			return created;
+		}
+
+		public void setCreated(Timestamp created) {
+			this.created = created;
+		}
+
+		public String getRemark() {
+			return remark;
+		}
+
+		public void setRemark(String remark) {
+			this.remark = remark;
+		}
+	}
+
+	/**
+	 * 预先注册数据源的元数据缓存，不需要启动数据源
+	 */
+	private static class MetaCache extends SQLCache {
+		MetaCache() {
+			metas.put(DBNAME, new ConcurrentLRUCache<String, PoolManResultSetMetaData>(10));
+		}
+
+		PoolManResultSetMetaData getMeta(ResultSetStub rs) throws SQLException {
+			return getPoolManResultSetMetaData(DBNAME, "select * from rowbean", rs.getMetaData());
+		}
+	}
+
+	private static ResultSetStub columns(String[] labels, int[] types) {
+		return new ResultSetStub(labels, types);
+	}
+
+	private static int indexOf(RowMappingPlan plan, String attrName) {
+		for (int i = 0; i < plan.size(); i++) {
+			if (plan.getAttrName(i).equals(attrName))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * 返回属性在映射计划中对应的列索引，没有映射时返回-1
+	 */
+	private static int columnIndex(RowMappingPlan plan, String attrName) {
+		int i = indexOf(plan, attrName);
+		return i < 0 ? -1 : plan.getColumnIndex(i);
+	}
+
+	@Test
+	public void testPlan() throws Exception {
+		ResultSetStub rs = columns(new String[] { "ID", "name", "CREATE_TIME" }, new int[] { Types.INTEGER,
+				Types.VARCHAR, Types.TIMESTAMP });
+		PoolManResultSetMetaData meta = PoolManResultSetMetaData.getCopy(rs.getMetaData());
+		ClassInfo beanInfo = ClassUtil.getClassInfo(RowBean.class);
+		RowMappingPlan plan = meta.getRowMappingPlan(beanInfo);
+		assertEquals(3, plan.size());
+		assertEquals(1, columnIndex(plan, "id"));
+		assertEquals(2, columnIndex(plan, "name"));
+		// 注解指定的列名优先于属性名称
+		assertEquals(3, columnIndex(plan, "create_time"));
+		assertEquals(-1, columnIndex(plan, "remark"));
+		assertEquals(Types.TIMESTAMP, plan.getColumnType(indexOf(plan, "create_time")));
+		assertSame(plan, meta.getRowMappingPlan(beanInfo));
+	}
+
+	@Test
+	public void testRebuildOnLayoutChange() throws Exception {
+		MetaCache cache = new MetaCache();
+		ClassInfo beanInfo = ClassUtil.getClassInfo(RowBean.class);
+		ResultSetStub rs = columns(new String[] { "ID", "NAME" }, new int[] { Types.INTEGER, Types.VARCHAR });
+		PoolManResultSetMetaData meta = cache.getMeta(rs);
+		RowMappingPlan plan = meta.getRowMappingPlan(beanInfo);
+		assertSame(meta, cache.getMeta(columns(new String[] { "ID", "NAME" },
+				new int[] { Types.INTEGER, Types.VARCHAR })));
+		assertSame(plan, meta.getRowMappingPlan(beanInfo));
+
+		// 列数相同但是列的顺序变化，缓存的元数据和映射计划需要重建
+		ResultSetStub swapped = columns(new String[] { "NAME", "ID" }, new int[] { Types.VARCHAR, Types.INTEGER });
+		assertFalse(meta.isSameColumns(swapped.getMetaData()));
+		PoolManResultSetMetaData swappedMeta = cache.getMeta(swapped);
+		assertSame(swappedMeta, cache.getMeta(swapped));
+		assertNotSame(meta, swappedMeta);
+		RowMappingPlan swappedPlan = swappedMeta.getRowMappingPlan(beanInfo);
+		assertNotSame(plan, swappedPlan);
+		assertEquals(2, columnIndex(swappedPlan, "id"));
+		assertEquals(1, columnIndex(swappedPlan, "name"));
+
+		// 列标签相同但是列类型变化
+		ResultSetStub retyped = columns(new String[] { "NAME", "ID" }, new int[] { Types.VARCHAR, Types.BIGINT });
+		PoolManResultSetMetaData retypedMeta = cache.getMeta(retyped);
+		assertNotSame(swappedMeta, retypedMeta);
+		RowMappingPlan retypedPlan = retypedMeta.getRowMappingPlan(beanInfo);
+		assertEquals(Types.BIGINT, retypedPlan.getColumnType(indexOf(retypedPlan, "id")));
+
+		// 列数变化
+		ResultSetStub widened = columns(new String[] { "NAME", "ID", "REMARK" }, new int[] { Types.VARCHAR,
+				Types.BIGINT, Types.VARCHAR });
+		PoolManResultSetMetaData widenedMeta = cache.getMeta(widened);
+		assertTrue(widenedMeta.isSameColumns(widened.getMetaData()));
+		assertEquals(3, widenedMeta.getRowMappingPlan(beanInfo).size());
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * <p>Title: LatencyHistogramTest.java</p>
+ * <p>Description: 耗时直方图的分桶计算、桶代表值的误差范围、百分位数计算以及并发记录的计数</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class LatencyHistogramTest {
+	@Test
+	public void testSmallValues() {
+		//32以内的每个值独占一个桶
+		for (int i = 0; i < 32; i++) {
+			assertEquals(i, LatencyHistogram.bucketIndex(i));
+			assertEquals(i, LatencyHistogram.bucketValue(i));
+		}
+		assertEquals(0, LatencyHistogram.bucketIndex(-5));
+		//从32开始每个桶的宽度为2
+		assertEquals(32, LatencyHistogram.bucketIndex(32));
+		assertEquals(32, LatencyHistogram.bucketIndex(33));
+		assertEquals(33, LatencyHistogram.bucketIndex(34));
+		assertEquals(33, LatencyHistogram.bucketValue(32));
+	}
+
+	@Test
+	public void testBucketBounds() {
+		int last = 0;
+		for (long value = 1; value < (1L << 41); value = value * 3 / 2 + 1) {
+			int index = LatencyHistogram.bucketIndex(value);
+			assertTrue("bucket index must not decrease at " + value, index >= last);
+			last = index;
+			long represent = LatencyHistogram.bucketValue(index);
+			assertTrue("relative error of " + value + " is " + represent, Math.abs(represent - value) * 16 <= value);
+		}
+		for (int exponent = 5; exponent <= 40; exponent++) {
+			long lower = 1L << exponent;
+			//每个2的幂次开始一个新的分段，分段之间的桶是连续的
+			assertEquals(LatencyHistogram.bucketIndex(lower - 1) + 1, LatencyHistogram.bucketIndex(lower));
+		}
+	}
+
+	@Test
+	public void testOverflow() {
+		int lastBucket = LatencyHistogram.bucketIndex(1L << 41);
+		assertEquals(lastBucket, LatencyHistogram.bucketIndex(1L << 50));
+		assertEquals(lastBucket, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+		assertEquals(1, histogram.getCount());
+	}
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(99));
+		for (int i = 1; i <= 1000; i++)
+			histogram.record(i);
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(1, histogram.getPercentile(0));
+		assertTrue(Math.abs(histogram.getPercentile(50) - 500) * 16 <= 500);
+		assertTrue(Math.abs(histogram.getPercentile(99) - 990) * 16 <= 990);
+		//百分位数不会超过记录的最大值
+		assertEquals(1000, histogram.getPercentile(100));
+		assertEquals(1000, histogram.getPercentile(150));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+
+	@Test
+	public void testConcurrentRecord() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final int threads = 8;
+		final int loops = 10000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final int base = t * loops;
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 1; i <= loops; i++)
+							histogram.record(base + i);
+					} catch (InterruptedException e) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+		assertEquals(threads * loops, histogram.getCount());
+		assertEquals(threads * loops, histogram.getMax());
+	}
+}
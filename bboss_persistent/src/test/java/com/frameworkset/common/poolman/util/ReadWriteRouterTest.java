@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.common.poolman.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * <p>Title: ReadWriteRouterTest.java</p>
+ * <p>Description: 读写分离路由器对sql的只读判断：普通查询路由到副本，锁定读、序列、自增值、
+ * select into、from dual、无from子句和表函数调用的语句留在主库，字符串常量、带引号的标识符和注释中的关键字不影响判断</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ReadWriteRouterTest {
+	private static void assertReplica(String sql) {
+		assertTrue("should route to replica:" + sql, ReadWriteRouter.isReadOnlySQL(sql));
+	}
+
+	private static void assertPrimary(String sql) {
+		assertFalse("should stay on primary:" + sql, ReadWriteRouter.isReadOnlySQL(sql));
+	}
+
+	@Test
+	public void testReadOnly() {
+		assertReplica("select * from orders");
+		assertReplica("SELECT id,name FROM app.users u WHERE u.id = ?");
+		assertReplica("  (select a from t) union (select a from s)");
+		assertReplica("/* hint */ select a from t");
+		assertReplica("-- comment\nselect a from t");
+		assertReplica("select count(*) from orders o join items i on o.id = i.order_id group by o.id");
+		assertReplica("select * from (select a from t) x");
+		assertReplica("select dual_flag,update_time from t");
+	}
+
+	@Test
+	public void testKeywordsInLiterals() {
+		assertReplica("select * from t where note = 'for update'");
+		assertReplica("select * from t where name = 'nextval' or name = 'dual'");
+		assertReplica("select \"into\" from t");
+		assertReplica("select `currval` from t");
+		assertReplica("select a /* for update */ from t");
+		assertReplica("select a from t -- for update\n where b = 1");
+	}
+
+	@Test
+	public void testSequences() {
+		assertPrimary("select seq_order.nextval from dual");
+		assertPrimary("select app.seq_order.NEXTVAL from t");
+		assertPrimary("select nextval('seq_order')");
+		assertPrimary("select nextval ('seq_order') from t");
+		assertPrimary("select currval('seq_order') from t");
+		assertPrimary("select setval('seq_order', 10) from t");
+		assertPrimary("select next value for seq_order from t");
+		assertPrimary("select last_insert_id() from t");
+		assertPrimary("select @@identity from t");
+		assertPrimary("select scope_identity() from t");
+		assertPrimary("select sys_guid() from t");
+	}
+
+	@Test
+	public void testLockingReads() {
+		assertPrimary("select * from t where id = ? for update");
+		assertPrimary("select * from t where id = ? FOR UPDATE NOWAIT");
+		assertPrimary("select * from t where id = ?\nfor\nupdate");
+		assertPrimary("select * from t for share");
+		assertPrimary("select * from t lock in share mode");
+		assertPrimary("select get_lock('job', 10) from t");
+	}
+
+	@Test
+	public void testDualAndNoFrom() {
+		assertPrimary("select sysdate from dual");
+		assertPrimary("select 1 from sys.dual");
+		assertPrimary("select 1");
+		assertPrimary("select now()");
+		assertPrimary("select * from generate_series(1, 10)");
+		assertPrimary("select * from table(pkg.rows(?))");
+	}
+
+	@Test
+	public void testNotSelect() {
+		assertPrimary(null);
+		assertPrimary("");
+		assertPrimary("update t set a = 1");
+		assertPrimary("insert into t select * from s");
+		assertPrimary("delete from t");
+		assertPrimary("with x as (select a from t) select * from x");
+		assertPrimary("select a into b from t");
+		assertPrimary("/* unclosed comment select a from t");
+		assertPrimary("-- only comment");
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.frameworkset.commons.pool.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.frameworkset.commons.pool.BasePoolableObjectFactory;
+import com.frameworkset.commons.pool.ObjectPool;
+
+/**
+ * <p>Title: ConcurrentObjectPoolBenchmark.java</p>
+ * <p>Description: GenericObjectPool与ConcurrentObjectPool的并发借出/归还吞吐量对比，
+ * 不属于单元测试，通过main方法单独运行：
+ * java ConcurrentObjectPoolBenchmark [线程数,默认300] [maxActive,默认10] [每个线程的借还次数,默认20000]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ConcurrentObjectPoolBenchmark {
+	private static class ObjectFactory extends BasePoolableObjectFactory {
+		public Object makeObject() throws Exception {
+			return new Object();
+		}
+	}
+
+	private static GenericObjectPool createGenericPool(int maxActive) {
+		return new GenericObjectPool(new ObjectFactory(), maxActive, GenericObjectPool.WHEN_EXHAUSTED_BLOCK, 60000L, maxActive);
+	}
+
+	private static ConcurrentObjectPool createConcurrentPool(int maxActive) {
+		ConcurrentObjectPool pool = new ConcurrentObjectPool(new ObjectFactory());
+		pool.setMaxActive(maxActive);
+		pool.setMaxIdle(maxActive);
+		pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+		pool.setMaxWait(60000L);
+		return pool;
+	}
+
+	/**
+	 * threads个线程同时对pool执行loops次借出/归还，返回每秒完成的借还次数
+	 */
+	private static long run(final ObjectPool pool, int threads, final int loops) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicLong failed = new AtomicLong();
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < loops; j++) {
+							Object obj = pool.borrowObject();
+							pool.returnObject(obj);
+						}
+					} catch (Exception e) {
+						failed.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long time = System.nanoTime() - begin;
+		if (failed.get() > 0)
+			throw new IllegalStateException(failed.get() + " threads failed.");
+		return (long) threads * loops * 1000000000L / time;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int maxActive = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int loops = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		//预热
+		for (int i = 0; i < 3; i++) {
+			ObjectPool pool = createGenericPool(maxActive);
+			run(pool, threads, loops / 10);
+			pool.close();
+			pool = createConcurrentPool(maxActive);
+			run(pool, threads, loops / 10);
+			pool.close();
+		}
+		ObjectPool pool = createGenericPool(maxActive);
+		long generic = run(pool, threads, loops);
+		pool.close();
+		pool = createConcurrentPool(maxActive);
+		long concurrent = run(pool, threads, loops);
+		pool.close();
+		System.out.println("threads:" + threads + ",maxActive:" + maxActive + ",loops:" + loops);
+		System.out.println("GenericObjectPool:" + generic + " ops/s");
+		System.out.println("ConcurrentObjectPool:" + concurrent + " ops/s");
+	}
+}
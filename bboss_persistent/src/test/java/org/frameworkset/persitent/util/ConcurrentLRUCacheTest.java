@@ -0,0 +1,155 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.persitent.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * <p>Title: ConcurrentLRUCacheTest.java</p>
+ * <p>Description: 有容量限制的并发缓存按照最近访问时间淘汰记录、命中统计，
+ * 以及多线程并发读写和淘汰时记录数、淘汰计数和缓存值的一致性</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2007</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class ConcurrentLRUCacheTest {
+	/**
+	 * 保证前后两次操作记录的访问时间不同
+	 */
+	private static void tick() throws InterruptedException {
+		Thread.sleep(1);
+	}
+
+	@Test
+	public void testIllegalSize() {
+		try {
+			new ConcurrentLRUCache<String, String>(0);
+			fail("size 0 must be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(10);
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, "v" + i);
+			tick();
+		}
+		assertEquals(10, cache.size());
+		assertEquals(0, cache.getEvictions());
+		//访问0到4，5到9成为最久没有访问的记录
+		for (int i = 0; i < 5; i++) {
+			assertEquals("v" + i, cache.get(i));
+			tick();
+		}
+		cache.put(10, "v10");
+		//超过容量后压缩到容量的90%，即淘汰最久没有访问的5和6
+		assertEquals(9, cache.size());
+		assertEquals(2, cache.getEvictions());
+		assertNull(cache.get(5));
+		assertNull(cache.get(6));
+		for (int i = 0; i < 5; i++)
+			assertNotNull(cache.get(i));
+		for (int i = 7; i <= 10; i++)
+			assertNotNull(cache.get(i));
+	}
+
+	@Test
+	public void testStatistics() {
+		ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(5);
+		assertNull(cache.get("a"));
+		cache.put("a", "1");
+		assertEquals("1", cache.get("a"));
+		assertEquals("1", cache.putIfAbsent("a", "2"));
+		assertEquals("3", cache.putIfAbsent("b", "3"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals(1, cache.size());
+		cache.resetStatistics();
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(5, cache.getMaxSize());
+	}
+
+	@Test
+	public void testConcurrentEviction() throws Exception {
+		final int maxSize = 100;
+		final int threads = 16;
+		final int loops = 20000;
+		final ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(maxSize);
+		final AtomicLong inserted = new AtomicLong();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			new Thread() {
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						start.await();
+						for (int i = 0; i < loops; i++) {
+							//一半的访问集中在10个热点记录上
+							int key = random.nextBoolean() ? random.nextInt(10) : random.nextInt(1000);
+							String value = cache.get(key);
+							if (value == null) {
+								String created = new String("v" + key);
+								if (cache.putIfAbsent(key, created) == created)
+									inserted.incrementAndGet();
+							} else if (!value.equals("v" + key)) {
+								throw new AssertionError("key " + key + " mapped to " + value);
+							}
+						}
+					} catch (Throwable e) {
+						error.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+		if (error.get() != null)
+			throw new AssertionError(error.get());
+		assertEquals((long) threads * loops, cache.getHits() + cache.getMisses());
+		//记录只会被淘汰一次，插入的记录要么还在缓存中要么被淘汰
+		assertEquals(inserted.get(), cache.size() + cache.getEvictions());
+		assertTrue(cache.getEvictions() > 0);
+		//并发淘汰期间其他线程放入的记录可能暂时超出容量，下一次放入时压缩到容量以内
+		String value = new String("v" + 1000);
+		assertSame(value, cache.putIfAbsent(1000, value));
+		assertTrue("size " + cache.size() + " exceeds " + maxSize, cache.size() <= maxSize);
+	}
+}
@@ -22,6 +22,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -47,6 +48,8 @@ import org.frameworkset.util.annotations.wraper.PathVariableWraper;
 import org.frameworkset.util.annotations.wraper.RequestBodyWraper;
 import org.frameworkset.util.annotations.wraper.RequestHeaderWraper;
 import org.frameworkset.util.annotations.wraper.RequestParamWraper;
+import org.frameworkset.util.asm.AccessorGenerator;
+import org.frameworkset.util.asm.PropertyAccessor;
 
 import com.frameworkset.orm.annotation.Column;
 import com.frameworkset.orm.annotation.IgnoreORMapping;
@@ -74,6 +77,21 @@ public class ClassUtil
 	
 	private static final Logger log = Logger.getLogger(ClassUtil.class);
 	private static final ParameterNameDiscoverer parameterNameDiscoverer = new LocalVariableTableParameterNameDiscoverer();
+	/**
+	 * 是否为bean类型生成asm属性访问器，生成后PropertieDescription的getValue/setValue方法
+	 * 直接调用public的get/set方法和字段，非public的成员仍然通过反射访问。
+	 * 缺省关闭，可以通过jvm参数-Dbboss.asm.accessor=true开启，或者在第一次获取ClassInfo之前调用
+	 * setEnableAsmAccessor方法开启，已经缓存的ClassInfo不受影响
+	 */
+	private static boolean enableAsmAccessor = Boolean.getBoolean("bboss.asm.accessor");
+	public static boolean isEnableAsmAccessor()
+	{
+		return enableAsmAccessor;
+	}
+	public static void setEnableAsmAccessor(boolean enableAsmAccessor)
+	{
+		ClassUtil.enableAsmAccessor = enableAsmAccessor;
+	}
 	public static void destroy()
 	{
 		if(classInfos != null)
@@ -173,6 +191,14 @@ public class ClassUtil
 		private IgnoreBind ignoreBind;
 		private IgnoreORMapping ignoreORMapping;
 		private MapKey mapkey;
+		/**
+		 * asm生成的属性访问器以及当前属性在访问器中的索引
+		 */
+		private PropertyAccessor accessor;
+		private int accessorIndex = -1;
+		private boolean accessorRead = false;
+		private boolean accessorWrite = false;
+		private Class accessorWriteType;
 		public IgnoreBind getIgnoreBind() {
 			return ignoreBind;
 		}
@@ -456,10 +482,33 @@ public class ClassUtil
 		
 		
 		
+		private void setAccessor(PropertyAccessor accessor,int accessorIndex,boolean accessorRead,boolean accessorWrite)
+		{
+			this.accessor = accessor;
+			this.accessorIndex = accessorIndex;
+			this.accessorRead = accessorRead;
+			this.accessorWrite = accessorWrite;
+			if(accessorWrite)
+			{
+				this.accessorWriteType = this.writeMethod != null?this.writeMethod.getParameterTypes()[0]:this.field.getType();
+			}
+		}
+		
 		public Object getValue(Object po) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException
 		{
 			if(po == null)
 				return null;
+			if(this.accessorRead)
+			{
+				try
+				{
+					return accessor.getValue(po, accessorIndex);
+				}
+				catch(Throwable e)
+				{
+					throw new InvocationTargetException(e);
+				}
+			}
 			if(this.readMethod != null)
 				return this.readMethod.invoke(po);
 			else if(this.field != null)
@@ -471,6 +520,19 @@ public class ClassUtil
 		{
 			if(po == null)
 				return ;
+			//类型不匹配或者基本类型属性设置null值时使用反射，保持原有的异常信息
+			if(this.accessorWrite && ClassUtils.isAssignableValue(accessorWriteType, value))
+			{
+				try
+				{
+					accessor.setValue(po, accessorIndex, value);
+				}
+				catch(Throwable e)
+				{
+					throw new InvocationTargetException(e);
+				}
+				return;
+			}
 			if(this.writeMethod != null)
 			{
 				this.writeMethod.invoke(po,value);
@@ -513,10 +575,12 @@ public class ClassUtil
 
 		public void setWriteMethod(Method writeMethod) {
 			this.writeMethod = writeMethod;
+			this.accessorWrite = false;
 		}
 
 		public void setReadMethod(Method readMethod) {
 			this.readMethod = readMethod;
+			this.accessorRead = false;
 		}
 
 		public String getRequestParamName() {
@@ -606,6 +670,7 @@ public class ClassUtil
 	    private volatile transient Method[] declaredMethods;
 	    
 	    private volatile transient Constructor defaultConstruction;
+	    private transient PropertyAccessor propertyAccessor;
 	    private volatile transient Constructor[] constructions;
 
 	    private Class clazz;
@@ -815,6 +880,8 @@ public class ClassUtil
     			}
     			
     			this.propertyDescriptors = retpropertyDescriptors;
+    			if(enableAsmAccessor)
+    				initAccessor();
     			
     			if(retfs == null)
 					declaredFields = NULL;
@@ -826,6 +893,56 @@ public class ClassUtil
 	    	
 	    	
 	    }
+	    /**
+	     * 为可以直接访问的get/set方法和public字段生成asm属性访问器，属性索引即属性在propertyDescriptors中的位置
+	     */
+	    private void initAccessor()
+	    {
+	    	if(propertyDescriptors == null || propertyDescriptors == NULL_P || this.primary)
+	    		return;
+	    	int size = propertyDescriptors.size();
+	    	Member[] readers = new Member[size];
+	    	Member[] writers = new Member[size];
+	    	boolean hasMember = false;
+	    	for(int i = 0; i < size; i ++)
+	    	{
+	    		PropertieDescription p = propertyDescriptors.get(i);
+	    		Member reader = p.readMethod != null ?(Member)p.readMethod:p.field;
+	    		if(AccessorGenerator.isAccessible(clazz, reader))
+	    		{
+	    			readers[i] = reader;
+	    			hasMember = true;
+	    		}
+	    		Member writer = p.writeMethod != null ?(Member)p.writeMethod:p.field;
+	    		if(writer == p.field && writer != null && Modifier.isFinal(writer.getModifiers()))
+	    			writer = null;
+	    		if(AccessorGenerator.isAccessible(clazz, writer))
+	    		{
+	    			writers[i] = writer;
+	    			hasMember = true;
+	    		}
+	    	}
+	    	if(!hasMember)
+	    		return;
+	    	PropertyAccessor accessor = AccessorGenerator.generate(clazz, readers, writers);
+	    	if(accessor == null)
+	    		return;
+	    	this.propertyAccessor = accessor;
+	    	for(int i = 0; i < size; i ++)
+	    	{
+	    		propertyDescriptors.get(i).setAccessor(accessor, i, readers[i] != null, writers[i] != null);
+	    	}
+	    }
+	    
+	    /**
+	     * 获取asm生成的属性访问器，没有开启或者生成失败时返回null
+	     * @return
+	     */
+	    public PropertyAccessor getPropertyAccessor()
+	    {
+	    	return propertyAccessor;
+	    }
+	    
 	    public Field[] getDeclaredFields()
 	    {
 //	    	init();
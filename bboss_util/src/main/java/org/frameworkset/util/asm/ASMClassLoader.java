@@ -25,6 +25,14 @@ package org.frameworkset.util.asm;
  * @version 1.0
  */
 public class ASMClassLoader extends ClassLoader {
+    public ASMClassLoader() {
+    	super();
+    }
+
+    public ASMClassLoader(ClassLoader parent) {
+    	super(parent);
+    }
+
     public Class defineClass(String name, byte[] b) {
     	return defineClass(name, b, 0, b.length);
     }
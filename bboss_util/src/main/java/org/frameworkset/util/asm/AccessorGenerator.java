@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.util.asm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.log4j.Logger;
+
+import bboss.org.objectweb.asm.ClassWriter;
+import bboss.org.objectweb.asm.Label;
+import bboss.org.objectweb.asm.MethodVisitor;
+import bboss.org.objectweb.asm.Opcodes;
+import bboss.org.objectweb.asm.Type;
+
+/**
+ * <p>Title: AccessorGenerator.java</p>
+ * <p>Description: 为bean类型生成PropertyAccessor实现类，生成的getValue/setValue方法按照属性索引
+ * tableswitch到对应的invokevirtual get/set方法调用或者getfield/putfield指令，
+ * 基本类型的属性值自动装箱拆箱。
+ * 生成的类由bean类型所在的classloader的子classloader加载，因此只能访问public类型的public成员，
+ * 非public的成员由调用方继续通过反射访问</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class AccessorGenerator implements Opcodes {
+	private static final Logger log = Logger.getLogger(AccessorGenerator.class);
+	private static final String ACCESSOR_PACKAGE = "org/frameworkset/util/asm/gen/";
+	private static final String ACCESSOR_INTERFACE = Type.getInternalName(PropertyAccessor.class);
+
+	/**
+	 * 判断生成的访问器能否直接访问bean类型的成员
+	 * @param beanType
+	 * @param member get/set方法或者字段
+	 * @return
+	 */
+	public static boolean isAccessible(Class beanType, Member member) {
+		if (member == null || !isPublicType(beanType) || beanType.isInterface())
+			return false;
+		int mode = member.getModifiers();
+		if (!Modifier.isPublic(mode) || Modifier.isStatic(mode))
+			return false;
+		if (member instanceof Method) {
+			Method method = (Method) member;
+			Class[] params = method.getParameterTypes();
+			if (params.length == 1)
+				return isPublicType(params[0]);
+			return params.length == 0 && method.getReturnType() != void.class;
+		} else if (member instanceof Field) {
+			return isPublicType(((Field) member).getType());
+		}
+		return false;
+	}
+
+	private static boolean isPublicType(Class type) {
+		while (type.isArray())
+			type = type.getComponentType();
+		return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+	}
+
+	/**
+	 * 生成bean类型的属性访问器
+	 * @param beanType
+	 * @param readers 属性索引对应的get方法或者字段，为null时对应的索引不支持读取
+	 * @param writers 属性索引对应的set方法或者字段，为null时对应的索引不支持写入
+	 * @return 生成失败时返回null
+	 */
+	public static PropertyAccessor generate(Class beanType, Member[] readers, Member[] writers) {
+		ClassLoader parent = beanType.getClassLoader();
+		if (parent == null)
+			return null;
+		String className = ACCESSOR_PACKAGE
+				+ beanType.getName().replace('.', '_').replace('$', '_')
+				+ "$$PropertyAccessor";
+		try {
+			byte[] code = buildClass(className, beanType, readers, writers);
+			Class accessorClass = new ASMClassLoader(parent).defineClass(className.replace('/', '.'), code);
+			return (PropertyAccessor) accessorClass.newInstance();
+		} catch (Throwable e) {
+			log.warn("Generate property accessor for [" + beanType.getName() + "] failed,use reflection instead:", e);
+			return null;
+		}
+	}
+
+	private static byte[] buildClass(String className, Class beanType, Member[] readers, Member[] writers) {
+		String owner = Type.getInternalName(beanType);
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null,
+				"java/lang/Object", new String[] { ACCESSOR_INTERFACE });
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// public Object getValue(Object bean, int index)
+		mv = cw.visitMethod(ACC_PUBLIC, "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;", null, null);
+		mv.visitCode();
+		Label dflt = new Label();
+		Label[] labels = newLabels(readers, dflt);
+		if (labels.length > 0) {
+			mv.visitVarInsn(ILOAD, 2);
+			mv.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+			for (int i = 0; i < readers.length; i++) {
+				if (readers[i] == null)
+					continue;
+				mv.visitLabel(labels[i]);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, owner);
+				Class type;
+				if (readers[i] instanceof Method) {
+					Method m = (Method) readers[i];
+					type = m.getReturnType();
+					mv.visitMethodInsn(INVOKEVIRTUAL, owner, m.getName(), Type.getMethodDescriptor(m));
+				} else {
+					Field f = (Field) readers[i];
+					type = f.getType();
+					mv.visitFieldInsn(GETFIELD, owner, f.getName(), Type.getDescriptor(type));
+				}
+				box(mv, type);
+				mv.visitInsn(ARETURN);
+			}
+		}
+		mv.visitLabel(dflt);
+		throwIllegalIndex(mv, beanType);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// public void setValue(Object bean, int index, Object value)
+		mv = cw.visitMethod(ACC_PUBLIC, "setValue", "(Ljava/lang/Object;ILjava/lang/Object;)V", null, null);
+		mv.visitCode();
+		dflt = new Label();
+		labels = newLabels(writers, dflt);
+		if (labels.length > 0) {
+			mv.visitVarInsn(ILOAD, 2);
+			mv.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+			for (int i = 0; i < writers.length; i++) {
+				if (writers[i] == null)
+					continue;
+				mv.visitLabel(labels[i]);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, owner);
+				mv.visitVarInsn(ALOAD, 3);
+				if (writers[i] instanceof Method) {
+					Method m = (Method) writers[i];
+					unbox(mv, m.getParameterTypes()[0]);
+					mv.visitMethodInsn(INVOKEVIRTUAL, owner, m.getName(), Type.getMethodDescriptor(m));
+					Class ret = m.getReturnType();
+					if (ret == long.class || ret == double.class)
+						mv.visitInsn(POP2);
+					else if (ret != void.class)
+						mv.visitInsn(POP);
+				} else {
+					Field f = (Field) writers[i];
+					unbox(mv, f.getType());
+					mv.visitFieldInsn(PUTFIELD, owner, f.getName(), Type.getDescriptor(f.getType()));
+				}
+				mv.visitInsn(RETURN);
+			}
+		}
+		mv.visitLabel(dflt);
+		throwIllegalIndex(mv, beanType);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * 不支持访问的属性索引直接跳转到default分支
+	 */
+	private static Label[] newLabels(Member[] members, Label dflt) {
+		Label[] labels = new Label[members.length];
+		for (int i = 0; i < members.length; i++)
+			labels[i] = members[i] != null ? new Label() : dflt;
+		return labels;
+	}
+
+	private static void throwIllegalIndex(MethodVisitor mv, Class beanType) {
+		mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn("Property index is not accessible for " + beanType.getName());
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V");
+		mv.visitInsn(ATHROW);
+	}
+
+	private static Class wrapper(Class type) {
+		if (type == int.class)
+			return Integer.class;
+		if (type == long.class)
+			return Long.class;
+		if (type == boolean.class)
+			return Boolean.class;
+		if (type == double.class)
+			return Double.class;
+		if (type == float.class)
+			return Float.class;
+		if (type == short.class)
+			return Short.class;
+		if (type == byte.class)
+			return Byte.class;
+		return Character.class;
+	}
+
+	private static void box(MethodVisitor mv, Class type) {
+		if (!type.isPrimitive())
+			return;
+		Class wrapper = wrapper(type);
+		mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+				"(" + Type.getDescriptor(type) + ")" + Type.getDescriptor(wrapper));
+	}
+
+	private static void unbox(MethodVisitor mv, Class type) {
+		if (!type.isPrimitive()) {
+			if (type != Object.class)
+				mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+			return;
+		}
+		Class wrapper = wrapper(type);
+		String wrapperName = Type.getInternalName(wrapper);
+		mv.visitTypeInsn(CHECKCAST, wrapperName);
+		mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getName() + "Value", "()" + Type.getDescriptor(type));
+	}
+}
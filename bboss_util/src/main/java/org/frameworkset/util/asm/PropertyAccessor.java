@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.util.asm;
+
+/**
+ * <p>Title: PropertyAccessor.java</p>
+ * <p>Description: 由AccessorGenerator为每个bean类型生成的属性访问器，
+ * 按照属性索引直接调用bean的get/set方法或者读写public字段，避免反射调用的开销</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public interface PropertyAccessor {
+	public Object getValue(Object bean, int index);
+
+	public void setValue(Object bean, int index, Object value);
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.util;
+
+import java.lang.reflect.Method;
+
+import org.frameworkset.util.AsmAccessorTest.AccessorBean;
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.frameworkset.util.ClassUtil.PropertieDescription;
+
+/**
+ * <p>Title: AsmAccessorBenchmark.java</p>
+ * <p>Description: 反射调用getter与asm属性访问器读取属性的单次调用耗时对比，
+ * 不属于单元测试，通过main方法单独运行：
+ * java AsmAccessorBenchmark [每种方式的执行次数,默认5000000]</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class AsmAccessorBenchmark {
+	private static long sum;
+
+	private static double reflect(Method getter, Object bean, int count) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			sum += (Integer) getter.invoke(bean);
+		return (double) (System.nanoTime() - start) / count;
+	}
+
+	private static double accessor(PropertieDescription property, Object bean, int count) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			sum += (Integer) property.getValue(bean);
+		return (double) (System.nanoTime() - start) / count;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		ClassUtil.setEnableAsmAccessor(true);
+		ClassInfo classInfo = ClassUtil.getClassInfo(AccessorBean.class);
+		PropertieDescription age = classInfo.getPropertyDescriptor("age");
+		Method getAge = AccessorBean.class.getMethod("getAge");
+		AccessorBean bean = new AccessorBean();
+		age.setValue(bean, 18);
+		//预热
+		reflect(getAge, bean, count);
+		accessor(age, bean, count);
+		System.out.println("reflection:" + reflect(getAge, bean, count) + "ns/op,asm accessor:"
+				+ accessor(age, bean, count) + "ns/op," + sum);
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2008 biaoping.yin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.frameworkset.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.frameworkset.util.ClassUtil.ClassInfo;
+import org.frameworkset.util.ClassUtil.PropertieDescription;
+import org.junit.Test;
+
+/**
+ * <p>Title: AsmAccessorTest.java</p>
+ * <p>Description: asm属性访问器的读写结果，public成员通过asm访问，非public成员回退到反射访问，
+ * 与反射访问的耗时对比见AsmAccessorBenchmark</p>
+ * <p>bboss workgroup</p>
+ * <p>Copyright (c) 2008</p>
+ * @author biaoping.yin
+ * @version 1.0
+ */
+public class AsmAccessorTest {
+	public static class AccessorBean {
+		private int age;
+		private String name;
+		private long id;
+		public double score;
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		long getId() {
+			return id;
+		}
+
+		void setId(long id) {
+			this.id = id;
+		}
+	}
+
+	@Test
+	public void testAccessor() throws Exception {
+		boolean old = ClassUtil.isEnableAsmAccessor();
+		ClassUtil.setEnableAsmAccessor(true);
+		ClassInfo classInfo = null;
+		try {
+			classInfo = ClassUtil.getClassInfo(AccessorBean.class);
+		} finally {
+			ClassUtil.setEnableAsmAccessor(old);
+		}
+		assertNotNull(classInfo.getPropertyAccessor());
+		AccessorBean bean = new AccessorBean();
+		PropertieDescription age = classInfo.getPropertyDescriptor("age");
+		PropertieDescription name = classInfo.getPropertyDescriptor("name");
+		PropertieDescription id = classInfo.getPropertyDescriptor("id");
+		PropertieDescription score = classInfo.getPropertyDescriptor("score");
+		age.setValue(bean, 18);
+		name.setValue(bean, "duoduo");
+		id.setValue(bean, 100L);// 非public成员通过反射访问
+		score.setValue(bean, 99.5d);
+		assertEquals(18, age.getValue(bean));
+		assertEquals("duoduo", name.getValue(bean));
+		assertEquals(100L, id.getValue(bean));
+		assertEquals(99.5d, score.getValue(bean));
+		name.setValue(bean, null);
+		assertEquals(null, name.getValue(bean));
+	}
+}